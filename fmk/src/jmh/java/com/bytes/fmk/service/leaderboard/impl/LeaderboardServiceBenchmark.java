@@ -0,0 +1,111 @@
+package com.bytes.fmk.service.leaderboard.impl;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.bytes.fmk.service.leaderboard.Leaderboard;
+import com.bytes.fmk.service.leaderboard.Score;
+import com.bytes.fmk.service.leaderboard.ScoreboardType;
+
+/**
+ * Benchmarks of the {@code LeaderboardService} hot paths.
+ * 
+ * <pre>
+ * gradle jmh -Pjmh.includes=LeaderboardServiceBenchmark.getRank -Pjmh.args="-p users=1000"
+ * </pre>
+ * 
+ * @author Kent
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx8g", "-Dlogback.configurationFile=logback-benchmark.xml"})
+public class LeaderboardServiceBenchmark {
+
+	/**
+	 * The leaderboard with auto update enabled or disabled
+	 */
+	@State(Scope.Benchmark)
+	public static class UpdateState extends LeaderboardState {
+
+		@Param({"true", "false"})
+		public boolean autoUpdate;
+
+		@Override
+		@Setup(Level.Trial)
+		public void setup() {
+			super.setup();
+			leaderboard.setAutoUpdate(autoUpdate);
+		}
+	}
+
+
+	/**
+	 * All categories are staled before each calculation
+	 */
+	@State(Scope.Benchmark)
+	public static class CalculateState extends LeaderboardState {
+
+		@Param({"false", "true"})
+		public boolean parallelCalculation;
+
+		@Override
+		@Setup(Level.Trial)
+		public void setup() {
+			super.setup();
+			leaderboard.setParallelCalculation(parallelCalculation);
+		}
+
+		@Setup(Level.Invocation)
+		public void staleCategories() {
+			stale();
+		}
+	}
+
+
+	@Benchmark
+	public boolean update(UpdateState state) {
+		return state.service.update(state.leaderboard.getId(), state.randomUserId(), state.nextRecordable());
+	}
+
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public void calculate(CalculateState state) {
+		state.service.calculate(state.leaderboard.getId());
+	}
+
+
+	@Benchmark
+	public List<Score> listDescending(LeaderboardState state) {
+		return state.service.listDescending(state.leaderboard.getId(), 
+				ScoreboardType.User, Leaderboard.TOTAL, 1, 10);
+	}
+
+
+	@Benchmark
+	public List<Score> listRanks(LeaderboardState state) {
+		return state.service.listRanks(state.leaderboard.getId(), 
+				ScoreboardType.User, Leaderboard.TOTAL, state.randomUserId(), 5);
+	}
+
+
+	@Benchmark
+	public int getRank(LeaderboardState state) {
+		return state.service.getRank(state.leaderboard.getId(), Leaderboard.TOTAL, state.randomUserId());
+	}
+}
@@ -0,0 +1,107 @@
+package com.bytes.fmk.service.leaderboard.impl;
+
+import java.time.OffsetDateTime;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.bytes.fmk.data.model.User;
+import com.bytes.fmk.service.leaderboard.Cycle;
+import com.bytes.fmk.service.leaderboard.ScoreCategory;
+import com.bytes.fmk.service.leaderboard.ledger.LedgerEntry;
+import com.bytes.fmk.service.leaderboard.ledger.Recordable;
+
+/**
+ * A leaderboard populated with random scores, shared by the benchmarks.
+ * The size is parameterized by the number of users and categories.
+ * 
+ * @author Kent
+ */
+@State(Scope.Benchmark)
+public class LeaderboardState {
+
+	@Param({"1000", "100000", "1000000"})
+	public int users;
+
+	@Param({"1", "10", "50"})
+	public int categories;
+
+	LeaderboardServiceImpl service;
+	LeaderboardImpl leaderboard;
+	String[] userIds;
+	String[] categoryNames;
+
+	/**
+	 * The recordable time, each recordable is unique in the ledger
+	 */
+	private OffsetDateTime startTime;
+	private AtomicLong sequence;
+
+
+	@Setup(Level.Trial)
+	public void setup() {
+
+		service = new LeaderboardServiceImpl();
+		leaderboard = service.create("Benchmark", Cycle.Custom);
+
+		categoryNames = new String[categories];
+		for (int i = 0; i < categories; i++) {
+			categoryNames[i] = "category" + i;
+		}
+		leaderboard.addCategories(categoryNames);
+
+		userIds = new String[users];
+		for (int i = 0; i < users; i++) {
+			userIds[i] = "benchmarkUser" + i;
+			service.addUser(leaderboard.getId(), new User(userIds[i]));
+		}
+
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		for (String userId : userIds) {
+			for (String categoryName : categoryNames) {
+				leaderboard.getScore(userId, categoryName).add(random.nextInt(1000));
+			}
+		}
+		
+		startTime = OffsetDateTime.now();
+		sequence = new AtomicLong();
+		service.calculate(leaderboard.getId());
+	}
+
+
+	/**
+	 * Mark all categories as staled, forcing a full recalculation
+	 */
+	void stale() {
+		for (Scoreboard scoreboard : leaderboard.getScoreboards().values()) {
+			for (ScoreCategory category : scoreboard.getCategories()) {
+				category.setStaled(true);
+			}
+		}
+	}
+
+
+	String randomUserId() {
+		return userIds[ThreadLocalRandom.current().nextInt(users)];
+	}
+
+
+	String randomCategoryName() {
+		return categoryNames[ThreadLocalRandom.current().nextInt(categories)];
+	}
+
+
+	/**
+	 * Create a recordable of a random category with a unique time
+	 * @return the recordable
+	 */
+	Recordable nextRecordable() {
+		OffsetDateTime time = startTime.plusNanos(sequence.incrementAndGet() * 1000);
+		return new LedgerEntry(randomCategoryName(), ThreadLocalRandom.current().nextInt(1, 100), time);
+	}
+}
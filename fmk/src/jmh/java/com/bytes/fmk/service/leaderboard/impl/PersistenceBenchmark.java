@@ -0,0 +1,79 @@
+package com.bytes.fmk.service.leaderboard.impl;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.bytes.fmk.service.Thinkr;
+import com.bytes.fmk.service.persistence.PersistenceMode;
+import com.bytes.fmk.service.persistence.impl.MemoryImpl;
+
+/**
+ * End-to-end benchmarks of the leaderboard save and load on the in-memory
+ * persistence, the network is simulated by a latency and a bandwidth.
+ *
+ * <pre>
+ * gradle jmh -Pjmh.includes=PersistenceBenchmark -Pjmh.args="-p users=100000 -p categories=10"
+ * </pre>
+ *
+ * @author Kent
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx8g", "-Dlogback.configurationFile=logback-benchmark.xml"})
+public class PersistenceBenchmark {
+
+	/**
+	 * The saved leaderboard and the simulated network
+	 */
+	@State(Scope.Benchmark)
+	public static class NetworkState extends LeaderboardState {
+
+		/**
+		 * The latency of a round trip in microseconds
+		 */
+		@Param({"0", "500"})
+		public long latencyMicros;
+
+		/**
+		 * The bandwidth in bytes per second, 0 for unlimited
+		 */
+		@Param({"0", "125000000"})
+		public long bandwidth;
+
+		@Override
+		@Setup(Level.Trial)
+		public void setup() {
+			super.setup();
+			MemoryImpl datastore = (MemoryImpl) Thinkr.INSTANCE.getPersistenceService(PersistenceMode.Memory);
+			datastore.setLatency(latencyMicros, TimeUnit.MICROSECONDS);
+			datastore.setBandwidth(bandwidth);
+			service.save(leaderboard, PersistenceMode.Memory);
+		}
+	}
+
+
+	@Benchmark
+	public boolean save(NetworkState state) {
+		return state.service.save(state.leaderboard, PersistenceMode.Memory);
+	}
+
+
+	@Benchmark
+	public LeaderboardImpl load(NetworkState state) {
+		return new LeaderboardServiceImpl().load(state.leaderboard.getId(), PersistenceMode.Memory);
+	}
+}
@@ -0,0 +1,111 @@
+package com.bytes.fmk.service.leaderboard.impl;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.bytes.fmk.data.model.User;
+import com.bytes.fmk.service.leaderboard.Cycle;
+import com.bytes.fmk.service.leaderboard.ScoreStorage;
+
+/**
+ * Retained heap of a ranked leaderboard per score storage. The users are
+ * added without updates, the ledger is empty. The users of the service are
+ * created before the measurement, the bytes are the scoreboards and the
+ * rank indexes only.
+ *
+ * <pre>
+ * gradle jmh -Pjmh.includes=ScoreStorageBenchmark -Pjmh.args="-p categories=10"
+ * </pre>
+ *
+ * @author Kent
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g", "-Dlogback.configurationFile=logback-benchmark.xml"})
+public class ScoreStorageBenchmark {
+
+	@State(Scope.Benchmark)
+	public static class StorageState {
+
+		@Param({"100000"})
+		public int users;
+
+		@Param({"1", "10"})
+		public int categories;
+
+		@Param({"Default", "Columnar"})
+		public ScoreStorage storage;
+
+		String[] categoryNames;
+		User[] userList;
+
+		@Setup(Level.Trial)
+		public void setup() {
+
+			categoryNames = new String[categories];
+			for (int i = 0; i < categories; i++) {
+				categoryNames[i] = "category" + i;
+			}
+
+			userList = new User[users];
+			for (int i = 0; i < users; i++) {
+				userList[i] = new User("benchmarkUser" + i);
+			}
+		}
+	}
+
+
+	/**
+	 * The retained bytes per user of the last built leaderboard
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Footprint {
+		public long bytesPerUser;
+	}
+
+
+	@Benchmark
+	public LeaderboardImpl build(StorageState state, Footprint footprint) {
+
+		long before = usedMemory();
+		LeaderboardServiceImpl service = new LeaderboardServiceImpl();
+		LeaderboardImpl leaderboard = service.create("Benchmark", Cycle.Custom);
+		leaderboard.setScoreStorage(state.storage);
+		leaderboard.addCategories(state.categoryNames);
+		for (User user : state.userList) {
+			service.addUser(leaderboard.getId(), user);
+			for (int i = 0; i < state.categoryNames.length; i++) {
+				leaderboard.getScore(user.getId(), state.categoryNames[i]).add((user.hashCode() + i) & 1023);
+			}
+		}
+		service.calculate(leaderboard.getId());
+
+		footprint.bytesPerUser = (usedMemory() - before) / state.users;
+		return leaderboard;
+	}
+
+
+	private static long usedMemory() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
@@ -0,0 +1,94 @@
+package com.bytes.fmk.service.leaderboard.impl;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.bytes.fmk.service.persistence.Codec;
+import com.bytes.fmk.service.persistence.Compression;
+import com.bytes.fmk.service.persistence.Serializer;
+import com.bytes.fmk.service.persistence.impl.BinaryCodec;
+import com.bytes.fmk.service.persistence.impl.DeflateCompression;
+
+/**
+ * Benchmark of the serialization of a {@code LeaderboardImpl}
+ *
+ * @author Kent
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx8g", "-Dlogback.configurationFile=logback-benchmark.xml"})
+public class SerializerBenchmark {
+
+	/**
+	 * The codec and the compression of the encoded data and the encoded leaderboard
+	 */
+	@State(Scope.Benchmark)
+	public static class CodecState {
+
+		@Param({"Json", "Binary"})
+		public String codec;
+
+		@Param({"None", "Fast", "Best"})
+		public String compression;
+
+		Codec encoder;
+		Compression compressor;
+		byte[] encoded;
+		LeaderboardSerializer serializer;
+
+		@Setup(Level.Trial)
+		public void setup(LeaderboardState state) {
+			encoder = ("Binary".equals(codec)) ?new BinaryCodec() :null;
+			compressor = ("Fast".equals(compression)) ?new DeflateCompression() 
+					:("Best".equals(compression)) ?new DeflateCompression(9) :null;
+			encoded = Serializer.encode(state.leaderboard, encoder, compressor);
+			serializer = new LeaderboardSerializer();
+			serializer.registerLeaderboard(state.leaderboard.getId());
+		}
+	}
+
+
+	@Benchmark
+	public String toJson(LeaderboardState state) {
+		return Serializer.toJson(state.leaderboard);
+	}
+
+
+	/**
+	 * The size of the last encoded leaderboard, for the compression ratio
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class EncodedSize {
+		public long encodedBytes;
+	}
+
+
+	@Benchmark
+	public byte[] encode(LeaderboardState state, CodecState codecState, EncodedSize size) {
+		byte[] encoded = Serializer.encode(state.leaderboard, codecState.encoder, codecState.compressor);
+		size.encodedBytes = encoded.length;
+		return encoded;
+	}
+
+
+	@Benchmark
+	public LeaderboardImpl decode(LeaderboardState state, CodecState codecState) {
+		return codecState.serializer.getData(codecState.encoded, state.leaderboard.getId());
+	}
+}
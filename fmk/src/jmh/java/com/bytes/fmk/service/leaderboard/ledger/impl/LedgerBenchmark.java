@@ -0,0 +1,77 @@
+package com.bytes.fmk.service.leaderboard.ledger.impl;
+
+import java.time.OffsetDateTime;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.bytes.fmk.service.leaderboard.ledger.LedgerEntry;
+
+/**
+ * Benchmark of {@code LedgerImpl#add(String, Recordable)}. 
+ * Every recordable has a unique time, as recorded by the leaderboard updates.
+ * 
+ * @author Kent
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx8g", "-Dlogback.configurationFile=logback-benchmark.xml"})
+@State(Scope.Benchmark)
+public class LedgerBenchmark {
+
+	@Param({"1000", "100000", "1000000"})
+	public int users;
+
+	@Param({"1", "10", "50"})
+	public int categories;
+
+	private LedgerImpl ledger;
+	private String[] userIds;
+	private String[] categoryNames;
+	private OffsetDateTime startTime;
+	private AtomicLong sequence;
+
+
+	@Setup(Level.Iteration)
+	public void setup() {
+
+		ledger = new LedgerImpl();
+		userIds = new String[users];
+		for (int i = 0; i < users; i++) {
+			userIds[i] = "benchmarkUser" + i;
+		}
+
+		categoryNames = new String[categories];
+		for (int i = 0; i < categories; i++) {
+			categoryNames[i] = "category" + i;
+		}
+
+		startTime = OffsetDateTime.now();
+		sequence = new AtomicLong();
+	}
+
+
+	@Benchmark
+	public boolean add() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		OffsetDateTime time = startTime.plusNanos(sequence.incrementAndGet() * 1000);
+		return ledger.add(
+				userIds[random.nextInt(users)], 
+				new LedgerEntry(categoryNames[random.nextInt(categories)], 10, time));
+	}
+}
@@ -9,9 +9,15 @@ import org.slf4j.LoggerFactory;
 import com.bytes.fmk.data.model.User;
 import com.bytes.fmk.service.leaderboard.LeaderboardService;
 import com.bytes.fmk.service.leaderboard.impl.LeaderboardServiceImpl;
+import com.bytes.fmk.service.persistence.Codec;
+import com.bytes.fmk.service.persistence.Compression;
 import com.bytes.fmk.service.persistence.PersistenceMode;
 import com.bytes.fmk.service.persistence.PersistenceService;
+import com.bytes.fmk.service.persistence.impl.DeflateCompression;
+import com.bytes.fmk.service.persistence.impl.FileImpl;
+import com.bytes.fmk.service.persistence.impl.MemoryImpl;
 import com.bytes.fmk.service.persistence.impl.RedisImpl;
+import com.bytes.fmk.service.persistence.impl.WriteBehindImpl;
 import com.bytes.fmk.service.user.UserService;
 import com.bytes.fmk.service.user.impl.UserServiceImpl;
 
@@ -25,6 +31,10 @@ public enum Thinkr {
 		
 		PersistenceLocal,
 		
+		PersistenceFile,
+		
+		PersistenceMemory,
+		
 		Leaderboard, 
 		
 		User
@@ -71,25 +81,108 @@ public enum Thinkr {
 	 */
 	public PersistenceService getPersistenceService(PersistenceMode mode) {
 	
-		Service service;
+		Service service = getServiceType(mode);
+		return (services.containsKey(service)) 
+				?(PersistenceService) services.get(service) 
+						:(PersistenceService) getService(service);
+	}
+	
+	
+	/**
+	 * Request to queue the saves of the specified persistence mode and write them 
+	 * in the background, a previous write-behind service of the mode is flushed and replaced.
+	 * @param mode - the persistence mode
+	 * @param intervalMillis - the maximum time between flushes
+	 * @param threshold - the number of queued resource ids that starts a flush
+	 * @return the write-behind service, its metrics report the queue usage
+	 * @see WriteBehindImpl
+	 */
+	public synchronized WriteBehindImpl setWriteBehind(PersistenceMode mode, long intervalMillis, int threshold) {
+		
+		PersistenceService datastore = removeWriteBehind(mode);
+		WriteBehindImpl writeBehind = new WriteBehindImpl(datastore, intervalMillis, threshold);
+		services.put(getServiceType(mode), writeBehind);
+		return writeBehind;
+	}
+	
+	
+	/**
+	 * Request to write the queued saves of the specified persistence mode and 
+	 * save on the caller thread again
+	 * @param mode - the persistence mode
+	 * @return the persistence service of the mode
+	 */
+	public synchronized PersistenceService removeWriteBehind(PersistenceMode mode) {
+		
+		PersistenceService datastore = getPersistenceService(mode);
+		if (datastore instanceof WriteBehindImpl) {
+			WriteBehindImpl writeBehind = (WriteBehindImpl) datastore;
+			writeBehind.shutdown();
+			datastore = writeBehind.getDatastore();
+			services.put(getServiceType(mode), datastore);
+		}
+		return datastore;
+	}
+	
+	
+	/**
+	 * Request to compress the data saved by the specified persistence mode, the data
+	 * previously saved with or without compression are still loaded
+	 * @param mode - the persistence mode
+	 * @param compression - the compression, null to save the data uncompressed
+	 * @return true if the persistence service of the mode supports the compression
+	 * @see DeflateCompression
+	 */
+	public synchronized boolean setCompression(PersistenceMode mode, Compression compression) {
+		
+		if (getPersistenceService(mode).setCompression(compression)) {
+			return true;
+		}
+		logger.error("Compression not supported: " + mode);
+		return false;
+	}
+	
+	
+	/**
+	 * Request to encode the data saved by the specified persistence mode with the codec,
+	 * the data previously saved with other codecs are still loaded
+	 * @param mode - the persistence mode
+	 * @param codec - the codec, null to save the JSON text
+	 * @return true if the persistence service of the mode supports the codec
+	 * @see BinaryCodec
+	 */
+	public synchronized boolean setCodec(PersistenceMode mode, Codec codec) {
+		
+		if (getPersistenceService(mode).setCodec(codec)) {
+			return true;
+		}
+		logger.error("Codec not supported: " + mode);
+		return false;
+	}
+	
+	
+	/**
+	 * @param mode - the persistence mode
+	 * @return the service type of the persistence mode
+	 */
+	private Service getServiceType(PersistenceMode mode) {
+		
 		switch (mode) {
 		case RedisAzure:
-			service = Service.PersistenceAzure;
-			break;
+			return Service.PersistenceAzure;
 			
 		case RedisLocal:
-			service = Service.PersistenceLocal;
-			break;
+			return Service.PersistenceLocal;
+			
+		case File:
+			return Service.PersistenceFile;
+			
+		case Memory:
+			return Service.PersistenceMemory;
 			
 		default:
-			service = Service.PersistenceAzure;
-			break;
-		
+			return Service.PersistenceAzure;
 		} 
-		
-		return (services.containsKey(service)) 
-				?(PersistenceService) services.get(service) 
-						:(PersistenceService) getService(service);
 	}
 	
 	
@@ -129,6 +222,14 @@ public enum Thinkr {
 			services.put(service, RedisImpl.Local);
 			break;
 			
+		case PersistenceFile:
+			services.put(service, new FileImpl(FileImpl.DEFAULT_DIRECTORY));
+			break;
+			
+		case PersistenceMemory:
+			services.put(service, new MemoryImpl());
+			break;
+			
 		default:
 			logger.error("Service not supported: " + service);
 			break;
@@ -160,12 +160,10 @@ public interface Leaderboard {
 
 	
 	/**
-	 * If set, calculation will be performed on every update and 
-	 * data is saved to default persistence store. 
+	 * If set, rank is kept up-to-date on every update. 
+	 * The first update to a staled category performs a full calculation, 
+	 * subsequent updates only reposition the changed score (O(log n)).
 	 * This is on by default.
-	 *  
-	 * Not recommended unless it's a small size, < 100 entries 
-	 * and relative low update volume (i.e., < 10 per minute)
 	 * @return
 	 */
 	boolean isAutoUpdate();
@@ -178,6 +176,54 @@ public interface Leaderboard {
 	void setAutoUpdate(boolean autoUpdate);
 
 	
+	/**
+	 * If set, updates only mark the changed categories as staled. The rank of a 
+	 * staled category is recalculated on the first read, concurrent readers share 
+	 * the same recalculation. This takes precedence over auto update.
+	 * This is off by default.
+	 * @return true if the lazy update flag is set
+	 */
+	boolean isLazyUpdate();
+	
+	
+	/**
+	 * Set the lazy update flag
+	 * @param lazyUpdate - the lazyUpdate flag
+	 */
+	void setLazyUpdate(boolean lazyUpdate);
+	
+	
+	/**
+	 * The maximum time a staled category is left without recalculation when 
+	 * lazy update is set, the rank is recalculated in the background afterwards.
+	 * @return the maximum staleness in milliseconds, 0 if only recalculated on read
+	 */
+	long getMaxStaleness();
+	
+	
+	/**
+	 * Set the maximum staleness of the rank when lazy update is set
+	 * @param maxStaleness - the maximum staleness in milliseconds, 0 to only recalculate on read
+	 */
+	void setMaxStaleness(long maxStaleness);
+	
+	
+	/**
+	 * If set, the rank calculation of the scoreboards and categories runs 
+	 * concurrently on the common fork join pool, the total is calculated once 
+	 * after the other categories. This is off by default.
+	 * @return true if the parallel calculation flag is set
+	 */
+	boolean isParallelCalculation();
+	
+	
+	/**
+	 * Set the parallel calculation flag
+	 * @param parallelCalculation - the parallelCalculation flag
+	 */
+	void setParallelCalculation(boolean parallelCalculation);
+
+	
 
 	/**
 	 * If set, data is saved to the persistence store on every update.
@@ -196,6 +242,56 @@ public interface Leaderboard {
 	void setAutoPersist(boolean autoPersist);
 	
 	
+	/**
+	 * If set, a save only writes the scores changed since the previous save, 
+	 * in a hash per scoreboard and category. The leaderboard and its ledger are 
+	 * written in full when users or categories were added or removed.
+	 * This is off by default.
+	 * 
+	 * @return true if the delta persist flag is set
+	 */
+	boolean isDeltaPersist();
+	
+	
+	/**
+	 * Set the delta persist flag
+	 * @param deltaPersist - the deltaPersist flag
+	 */
+	void setDeltaPersist(boolean deltaPersist);
+	
+	
+	/**
+	 * Get the storage engine used by the scoreboards
+	 * @return the score storage
+	 */
+	ScoreStorage getScoreStorage();
+	
+	
+	/**
+	 * Set the storage engine used by the scoreboards. 
+	 * Existing scores are copied and the leaderboard must be recalculated.
+	 * The default is {@link ScoreStorage#Default}.
+	 * @param storage - the score storage
+	 */
+	void setScoreStorage(ScoreStorage storage);
+	
+	
+	/**
+	 * Get the number of top scores kept sorted per category
+	 * @return the number of top scores, 0 if disabled
+	 */
+	int getTopScoreCount();
+	
+	
+	/**
+	 * Keep the top scores of every category sorted in a bounded view, updated 
+	 * in O(log k) as scores cross the threshold. Top rank listings within the 
+	 * view are served without the full rank calculation. Disabled by default.
+	 * @param topScoreCount - the number of top scores, e.g. 100. 0 to disable
+	 */
+	void setTopScoreCount(int topScoreCount);
+	
+	
 	/**
 	 * Get the leaderboard category name
 	 * @return the leaderboard category name
@@ -138,6 +138,51 @@ public interface LeaderboardService extends ThinkrService, Persistable<Leaderboa
 	public boolean update(String id, Map<String, List<LedgerEntry>> recordEntries);
 	
 	
+	/**
+	 * Request to rebuild the leaderboard from the entries of a ledger. The points of the 
+	 * leaderboard are reset, the entries are read user by user in parallel and the points 
+	 * are added directly to the scoreboards, the rank is calculated once at the end. Only 
+	 * the entries in the active period of the leaderboard are added, they are not logged 
+	 * in the ledger again. The leaderboard must not be updated during the replay.
+	 * 
+	 * @param id - the leaderboard or the leaderboard set id
+	 * @param ledger - the ledger to replay
+	 * @return the number of replayed entries, an entry of several leaderboards of a set is counted once
+	 */
+	public long replay(String id, Ledger ledger);
+	
+	
+	/**
+	 * Request to compact the ledger entries of the closed leaderboard cycles. The entries
+	 * before the earliest start date of the open leaderboards are folded into daily
+	 * aggregates per user and category, the open leaderboards can still be replayed.
+	 * 
+	 * @param archive - the ledger receiving the compacted entries, null to only keep the aggregates
+	 * @return the number of compacted entries
+	 */
+	public long compactLedger(Ledger archive);
+
+
+	/**
+	 * Request to queue an update with a {@code Recordable}. Queued updates are applied
+	 * asynchronously in batches, the points are coalesced per scoreboard entry and category.
+	 * Blocks while the queue is full. If the recordable time is null, it is defaulted to now.
+	 *
+	 * @param id - the leaderboard or the leaderboard set id
+	 * @param userId - the user id
+	 * @param recordable - the {@code Rewardable} action
+	 * @return true if queued
+	 * @throws IllegalStateException if the user is not registered, like the synchronous update
+	 */
+	public boolean submit(String id, String userId, Recordable recordable);
+
+
+	/**
+	 * Block until all previously submitted updates are applied.
+	 */
+	public void flush();
+
+	
 	/**
 	 * Request to register the user in the leaderboard.
 	 * 
@@ -205,13 +250,26 @@ public interface LeaderboardService extends ThinkrService, Persistable<Leaderboa
 	
 	
 	/**
-	 * Request to get the ledger entries containing all of the recordable events 
-	 * going through this service.
+	 * Request to get the default ledger. It contains the recordable events of earlier 
+	 * versions, the events of a leaderboard are in its ledger partition. 
 	 * @return the leaderboard ledger
+	 * @see #getLedger(String)
 	 */
 	public Ledger getLedger();
 	
 	
+	/**
+	 * Request to get the ledger partition of a leaderboard or leaderboard set, 
+	 * containing the recordable events of the leaderboard. The leaderboards of a set 
+	 * share the partition of the set, an event is logged once for the set. 
+	 * Each partition is saved with its leaderboard under its ledger id.
+	 * 
+	 * @param id - the leaderboard or the leaderboard set id
+	 * @return the ledger partition, null if the leaderboard is not registered
+	 */
+	public Ledger getLedger(String id);
+	
+	
 		
 	/**
 	 * Generates a {@code Report}
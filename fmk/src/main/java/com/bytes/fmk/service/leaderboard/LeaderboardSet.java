@@ -67,5 +67,13 @@ public interface LeaderboardSet extends Persistable<LeaderboardSet> {
 	 * @return
 	 */
 	String getId();
+	
+	
+	/**
+	 * Get the ledger id corresponding to this set, the leaderboards 
+	 * of the set share the ledger.
+	 * @return the ledger id
+	 */
+	String getLedgerId();
 
 }
@@ -1,7 +1,16 @@
 package com.bytes.fmk.service.leaderboard;
 
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
 public class Score { 
 
+	/**
+	 * Atomic access to the points. The points field remains a plain long 
+	 * for persistence, a {@code LongAdder} would not serialize the same.
+	 */
+	private static final AtomicLongFieldUpdater<Score> POINTS = 
+			AtomicLongFieldUpdater.newUpdater(Score.class, "points");
+
 	/**
 	 * This allows the sorted score list to correlates to an entry.
 	 */
@@ -9,8 +18,9 @@ public class Score {
 	
 	/**
 	 * This allows the score to be sorted.
+	 * Updated atomically, concurrent updates do not lose points.
 	 */
-	private long points;
+	private volatile long points;
 	
 	/**
 	 * This allows the selection of score by category
@@ -46,7 +56,7 @@ public class Score {
 	
 	@Override
 	public String toString() {
-		return String.format("%1$d %2$s - %3$s", points, categoryName, entryId); 
+		return String.format("%1$d %2$s - %3$s", getPoints(), categoryName, entryId); 
 	}
 
 	@Override
@@ -88,11 +98,11 @@ public class Score {
 	}
 
 	/**
-	 * 
+	 * Atomically add points to the score
 	 * @param points the points to be added
 	 */
 	public void add(long points) {
-		this.points += points;
+		POINTS.addAndGet(this, points);
 	}
 
 	public String getCategoryName() {
@@ -7,7 +7,7 @@ public class ScoreCategory implements Comparator<Score> {
 	
 	private String name;
 	
-	private boolean isStaled;
+	private volatile boolean isStaled;
 	
 	/**
 	 * The last time this leader ran the rank calculation
@@ -0,0 +1,25 @@
+package com.bytes.fmk.service.leaderboard;
+
+/**
+ * The storage engine used by the scoreboards to hold the entry scores.
+ * The persisted format is the same for all engines.
+ */
+public enum ScoreStorage {
+
+	/**
+	 * One {@code Score} object per entry and category.
+	 * This is the default.
+	 */
+	Default,
+
+	/**
+	 * Entry ids are interned to dense row numbers and the points are stored
+	 * in a primitive column per category. {@code Score}s are flyweight views.
+	 */
+	Columnar,
+
+	/**
+	 * Same as {@code Columnar}, with the columns allocated outside of the heap.
+	 */
+	OffHeap
+}
@@ -0,0 +1,218 @@
+package com.bytes.fmk.service.leaderboard.impl;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.bytes.fmk.service.leaderboard.ledger.LedgerEntry;
+import com.bytes.fmk.service.leaderboard.ledger.Recordable;
+
+/**
+ * Queue of submitted leaderboard updates, applied in batches by a single worker thread.
+ *
+ * <p>A batch is closed when it reaches the batch size, when the window elapsed since
+ * its first update or on {@link #flush()}. The points of a batch are coalesced per
+ * scoreboard entry and category by {@link LeaderboardServiceImpl#update(List)}.
+ *
+ * <p>The queue is bounded, {@link #submit(String, String, Recordable)} blocks while
+ * it is full.
+ *
+ * @author Kent
+ */
+class BatchUpdater {
+
+	/** Logger for this class */
+	private static Logger logger = LoggerFactory.getLogger(BatchUpdater.class);
+
+	static final int DEFAULT_CAPACITY = 10000;
+	static final int DEFAULT_BATCH_SIZE = 1000;
+	static final long DEFAULT_WINDOW_MILLIS = 50;
+
+	/**
+	 * A submitted update
+	 */
+	static final class Update {
+
+		private final String id;
+		private final String userId;
+		private final Recordable recordable;
+
+		private Update(String id, String userId, Recordable recordable) {
+			this.id = id;
+			this.userId = userId;
+			this.recordable = recordable;
+		}
+
+		String getId() {
+			return id;
+		}
+
+		String getUserId() {
+			return userId;
+		}
+
+		Recordable getRecordable() {
+			return recordable;
+		}
+	}
+
+	/**
+	 * Closes the current batch
+	 */
+	private static final Update FLUSH = new Update(null, null, null);
+
+	private final LeaderboardServiceImpl service;
+	private final BlockingQueue<Update> queue;
+	private final int batchSize;
+	private final long windowNanos;
+	private final Thread worker;
+	private volatile boolean running;
+
+	/**
+	 * The number of submitted and applied updates, guarded by this
+	 */
+	private long submitted;
+	private long applied;
+
+
+	/**
+	 * Create and start the updater
+	 * @param service - the service applying the batches
+	 * @param capacity - the maximum number of queued updates
+	 * @param batchSize - the maximum number of updates in a batch
+	 * @param windowMillis - the maximum time to wait for a batch to fill
+	 */
+	BatchUpdater(LeaderboardServiceImpl service, int capacity, int batchSize, long windowMillis) {
+
+		if (capacity < 1 || batchSize < 1 || windowMillis < 0) {
+			throw new IllegalArgumentException(String.format(
+					"Invalid batch update configuration capacity: %1$d batch size: %2$d window: %3$d",
+					capacity, batchSize, windowMillis));
+		}
+
+		this.service = service;
+		this.queue = new ArrayBlockingQueue<>(capacity);
+		this.batchSize = batchSize;
+		this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+		this.running = true;
+		this.worker = new Thread(this::run, "leaderboard-batch-updater");
+		this.worker.setDaemon(true);
+		this.worker.start();
+	}
+
+
+	/**
+	 * Request to queue an update, blocks while the queue is full.
+	 * If the recordable time is null, it is set to the submit time.
+	 * @param id - the leaderboard or the leaderboard set id
+	 * @param userId - the user id
+	 * @param recordable - the {@code Recordable} action
+	 * @return true if queued, false if interrupted or stopped
+	 */
+	boolean submit(String id, String userId, Recordable recordable) {
+
+		if (!running) {
+			logger.error("Batch updater is stopped, update is rejected for user: " + userId);
+			return false;
+		}
+
+		if (recordable.getTime() == null) {
+			recordable = new LedgerEntry(recordable.getCategoryName(), recordable.getPoints(), OffsetDateTime.now());
+		}
+
+		try {
+			queue.put(new Update(id, userId, recordable));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+
+		synchronized (this) {
+			submitted++;
+		}
+		return true;
+	}
+
+
+	/**
+	 * Block until all updates submitted before this call are applied
+	 */
+	void flush() {
+
+		long target;
+		synchronized (this) {
+			target = submitted;
+		}
+
+		try {
+			queue.put(FLUSH);
+			synchronized (this) {
+				while (applied < target && worker.isAlive()) {
+					wait(100);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+
+	/**
+	 * Apply the pending updates and stop the worker
+	 */
+	void shutdown() {
+		flush();
+		running = false;
+		worker.interrupt();
+	}
+
+
+	private void run() {
+
+		List<Update> batch = new ArrayList<>(batchSize);
+		while (running) {
+			try {
+				Update update = queue.take();
+				long deadline = System.nanoTime() + windowNanos;
+				while (update != FLUSH) {
+					batch.add(update);
+					if (batch.size() >= batchSize) break;
+
+					long remaining = deadline - System.nanoTime();
+					if (remaining <= 0) break;
+
+					update = queue.poll(remaining, TimeUnit.NANOSECONDS);
+					if (update == null) break;
+				}
+			} catch (InterruptedException e) {
+				logger.debug("Batch updater interrupted, applying {} updates", batch.size());
+			}
+
+			if (!batch.isEmpty()) {
+				apply(batch);
+				batch.clear();
+			}
+		}
+	}
+
+
+	private void apply(List<Update> batch) {
+
+		try {
+			service.update(batch);
+		} catch (RuntimeException e) {
+			logger.error("Unable to apply batch of " + batch.size() + " updates: " + e.getMessage(), e);
+		}
+
+		synchronized (this) {
+			applied += batch.size();
+			notifyAll();
+		}
+	}
+}
@@ -0,0 +1,556 @@
+package com.bytes.fmk.service.leaderboard.impl;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.bytes.fmk.service.leaderboard.Score;
+import com.bytes.fmk.service.leaderboard.impl.ScoreColumns.ColumnScore;
+
+/**
+ * The rank index of a column of the {@code ScoreColumns} storage.
+ *
+ * <p>This is the order-statistic tree of {@link RankIndex} held in primitive arrays,
+ * a node is an int and its key is the row of the entry. The rows are compared by
+ * the points of the column then the entry id, the order of the {@code ScoreCategory}
+ * comparator, without creating a {@code Score}. A node costs 17 bytes, no object is
+ * kept per score. The {@code Score}s of the list are flyweights created on read.
+ * A full rank sorts the rows as an {@code int[]}, nothing is boxed.
+ *
+ * @author Kent
+ */
+class ColumnRankIndex extends ScoreIndex {
+
+	private static final int NIL = -1;
+	private static final int INITIAL_CAPACITY = 16;
+	private static final int MAX_HEIGHT = 64;
+
+	private final ScoreColumns storage;
+	private final int column;
+
+	/**
+	 * The nodes, the released nodes are chained by their left child
+	 */
+	private int[] rows;
+	private int[] left;
+	private int[] right;
+	private int[] size;
+	private byte[] height;
+	private int nodeCount;
+	private int freeNode = NIL;
+
+	private int root = NIL;
+
+
+	/**
+	 * Create an empty index
+	 * @param storage - the storage of the points
+	 * @param column - the column of the category
+	 */
+	ColumnRankIndex(ScoreColumns storage, int column) {
+		this(storage, column, new int[0]);
+	}
+
+
+	/**
+	 * Create an index from rows that are already sorted, the tree is built in O(n)
+	 * @param storage - the storage of the points
+	 * @param column - the column of the category
+	 * @param sortedRows - the rows, sorted by rank
+	 */
+	ColumnRankIndex(ScoreColumns storage, int column, int[] sortedRows) {
+		this.storage = storage;
+		this.column = column;
+		allocate(Math.max(INITIAL_CAPACITY, sortedRows.length));
+		this.root = build(sortedRows, 0, sortedRows.length - 1);
+	}
+
+
+	/**
+	 * Rank all entries of the column. The points are read once, the rows are 
+	 * sorted with their points so the order holds while the scores change.
+	 * @param storage - the storage of the points
+	 * @param column - the column of the category
+	 * @param parallel - sort the rows in parallel
+	 * @return the index of the rows
+	 */
+	static ColumnRankIndex rank(ScoreColumns storage, int column, boolean parallel) {
+
+		int[] rows = storage.getRows();
+		long[] points = new long[rows.length];
+		for (int i = 0; i < rows.length; i++) {
+			points[i] = storage.getPoints(rows[i], column);
+		}
+
+		RowSort sort = new RowSort(storage, rows, points, parallel);
+		if (parallel) {
+			ForkJoinPool.commonPool().invoke(sort);
+		} else {
+			sort.compute();
+		}
+		return new ColumnRankIndex(storage, column, rows);
+	}
+
+
+	/**
+	 * Create an index of the first rows of this index
+	 * @param count - the number of rows
+	 * @return the index of the first rows
+	 */
+	ColumnRankIndex head(int count) {
+		int[] sortedRows = new int[Math.min(count, size())];
+		for (int i = 0; i < sortedRows.length; i++) {
+			sortedRows[i] = rows[node(i)];
+		}
+		return new ColumnRankIndex(storage, column, sortedRows);
+	}
+
+
+	@Override
+	boolean insert(Score score) {
+
+		int row = rowOf(score);
+		if (row < 0) {
+			return false;
+		}
+
+		int count = size();
+		root = insert(root, row);
+		if (count != size()) {
+			modCount++;
+			return true;
+		}
+		return false;
+	}
+
+
+	@Override
+	boolean delete(Score score) {
+
+		int row = rowOf(score);
+		if (row < 0) {
+			return false;
+		}
+
+		int count = size();
+		root = delete(root, row);
+		if (count != size()) {
+			modCount++;
+			return true;
+		}
+		return false;
+	}
+
+
+	@Override
+	int rank(Score score) {
+
+		int row = rowOf(score);
+		if (row < 0) {
+			return -1;
+		}
+
+		int rank = 0;
+		int node = root;
+		while (node != NIL) {
+			int cmp = compare(row, rows[node]);
+			if (cmp < 0) {
+				node = left[node];
+			} else if (cmp > 0) {
+				rank += size(left[node]) + 1;
+				node = right[node];
+			} else {
+				return rank + size(left[node]);
+			}
+		}
+		return -1;
+	}
+
+
+	@Override
+	public Score get(int index) {
+		return new ColumnScore(storage, rows[node(index)], column);
+	}
+
+
+	/**
+	 * Linear search by {@code Score#equals(Object)}, in O(n).
+	 * Use {@link #rank(Score)} unless the scores changed since they were inserted.
+	 */
+	@Override
+	public int indexOf(Object o) {
+
+		int index = 0;
+		for (Score score : this) {
+			if (score.equals(o)) {
+				return index;
+			}
+			index++;
+		}
+		return -1;
+	}
+
+
+	@Override
+	public int size() {
+		return size(root);
+	}
+
+
+	/**
+	 * In-order traversal, O(n) for the full iteration.
+	 */
+	@Override
+	public Iterator<Score> iterator() {
+
+		return new Iterator<Score>() {
+
+			private final int[] path = new int[MAX_HEIGHT];
+			private int depth = pushLeft(root);
+
+			@Override
+			public boolean hasNext() {
+				return depth > 0;
+			}
+
+			@Override
+			public Score next() {
+				if (depth == 0) {
+					throw new NoSuchElementException();
+				}
+				int node = path[--depth];
+				pushLeft(right[node]);
+				return new ColumnScore(storage, rows[node], column);
+			}
+
+			private int pushLeft(int node) {
+				while (node != NIL) {
+					path[depth++] = node;
+					node = left[node];
+				}
+				return depth;
+			}
+		};
+	}
+
+
+	/**
+	 * Get the node at the specified index
+	 * @param index - the 0-based index, index 0 is rank 1
+	 * @return the node
+	 */
+	private int node(int index) {
+
+		if (index < 0 || index >= size()) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+		}
+
+		int node = root;
+		while (node != NIL) {
+			int leftSize = size(left[node]);
+			if (index < leftSize) {
+				node = left[node];
+			} else if (index > leftSize) {
+				index -= leftSize + 1;
+				node = right[node];
+			} else {
+				break;
+			}
+		}
+		return node;
+	}
+
+
+	/**
+	 * @param score - the score
+	 * @return the row of the score in the storage, -1 if not stored
+	 */
+	private int rowOf(Score score) {
+		if (score instanceof ColumnScore) {
+			int row = ((ColumnScore) score).getRow(storage);
+			if (row >= 0) {
+				return row;
+			}
+		}
+		return storage.getRow(score.getEntryId());
+	}
+
+
+	private int compare(int row1, int row2) {
+		return compare(storage, column, row1, row2);
+	}
+
+
+	/**
+	 * The order of the {@code ScoreCategory}, points descending then entry id
+	 */
+	private static int compare(ScoreColumns storage, int column, int row1, int row2) {
+
+		if (row1 == row2) {
+			return 0;
+		}
+
+		long p1 = storage.getPoints(row1, column);
+		long p2 = storage.getPoints(row2, column);
+		if (p1 > p2) return -1;
+		if (p1 < p2) return 1;
+
+		return storage.getEntryId(row1).compareTo(storage.getEntryId(row2));
+	}
+
+
+	private int build(int[] sortedRows, int from, int to) {
+
+		if (from > to) {
+			return NIL;
+		}
+
+		int mid = (from + to) >>> 1;
+		int node = newNode(sortedRows[mid]);
+		left[node] = build(sortedRows, from, mid - 1);
+		right[node] = build(sortedRows, mid + 1, to);
+		return update(node);
+	}
+
+
+	private int insert(int node, int row) {
+
+		if (node == NIL) {
+			return newNode(row);
+		}
+
+		// The arrays may grow in the recursion, the child is assigned after it returns
+		int cmp = compare(row, rows[node]);
+		if (cmp < 0) {
+			int child = insert(left[node], row);
+			left[node] = child;
+		} else if (cmp > 0) {
+			int child = insert(right[node], row);
+			right[node] = child;
+		} else {
+			return node;
+		}
+		return balance(update(node));
+	}
+
+
+	private int delete(int node, int row) {
+
+		if (node == NIL) {
+			return NIL;
+		}
+
+		int cmp = compare(row, rows[node]);
+		if (cmp < 0) {
+			left[node] = delete(left[node], row);
+		} else if (cmp > 0) {
+			right[node] = delete(right[node], row);
+		} else {
+			if (left[node] == NIL || right[node] == NIL) {
+				int child = (left[node] == NIL) ?right[node] :left[node];
+				releaseNode(node);
+				return child;
+			}
+
+			// Replace with the successor
+			int successor = right[node];
+			while (left[successor] != NIL) {
+				successor = left[successor];
+			}
+			rows[node] = rows[successor];
+			right[node] = delete(right[node], rows[successor]);
+		}
+		return balance(update(node));
+	}
+
+
+	private int balance(int node) {
+
+		int factor = height(left[node]) - height(right[node]);
+		if (factor > 1) {
+			if (height(left[left[node]]) < height(right[left[node]])) {
+				left[node] = rotateLeft(left[node]);
+			}
+			return rotateRight(node);
+		}
+
+		if (factor < -1) {
+			if (height(right[right[node]]) < height(left[right[node]])) {
+				right[node] = rotateRight(right[node]);
+			}
+			return rotateLeft(node);
+		}
+		return node;
+	}
+
+
+	private int rotateRight(int node) {
+		int pivot = left[node];
+		left[node] = right[pivot];
+		right[pivot] = update(node);
+		return update(pivot);
+	}
+
+
+	private int rotateLeft(int node) {
+		int pivot = right[node];
+		right[node] = left[pivot];
+		left[pivot] = update(node);
+		return update(pivot);
+	}
+
+
+	private int update(int node) {
+		height[node] = (byte) (Math.max(height(left[node]), height(right[node])) + 1);
+		size[node] = size(left[node]) + size(right[node]) + 1;
+		return node;
+	}
+
+
+	private int height(int node) {
+		return (node == NIL) ?0 :height[node];
+	}
+
+
+	private int size(int node) {
+		return (node == NIL) ?0 :size[node];
+	}
+
+
+	private int newNode(int row) {
+
+		int node;
+		if (freeNode != NIL) {
+			node = freeNode;
+			freeNode = left[node];
+		} else {
+			if (nodeCount == rows.length) {
+				allocate(nodeCount + (nodeCount >>> 1));
+			}
+			node = nodeCount++;
+		}
+
+		rows[node] = row;
+		left[node] = NIL;
+		right[node] = NIL;
+		return update(node);
+	}
+
+
+	private void releaseNode(int node) {
+		left[node] = freeNode;
+		freeNode = node;
+	}
+
+
+	private void allocate(int capacity) {
+		rows = (rows == null) ?new int[capacity] :Arrays.copyOf(rows, capacity);
+		left = (left == null) ?new int[capacity] :Arrays.copyOf(left, capacity);
+		right = (right == null) ?new int[capacity] :Arrays.copyOf(right, capacity);
+		size = (size == null) ?new int[capacity] :Arrays.copyOf(size, capacity);
+		height = (height == null) ?new byte[capacity] :Arrays.copyOf(height, capacity);
+	}
+
+
+	/**
+	 * Merge sort of the rows by their points then entry ids, the order of
+	 * {@link #compare(ScoreColumns, int, int, int)} on a snapshot of the points.
+	 * The halves are sorted in parallel above the threshold.
+	 */
+	private static final class RowSort extends RecursiveAction {
+
+		private static final int INSERTION_THRESHOLD = 32;
+		private static final int PARALLEL_THRESHOLD = 1 << 13;
+
+		private final ScoreColumns storage;
+		private final int[] rows;
+		private final long[] points;
+		private final int[] rowBuffer;
+		private final long[] pointBuffer;
+		private final int from;
+		private final int to;
+		private final boolean parallel;
+
+		RowSort(ScoreColumns storage, int[] rows, long[] points, boolean parallel) {
+			this(storage, rows, points, new int[rows.length], new long[rows.length], 0, rows.length, parallel);
+		}
+
+		private RowSort(ScoreColumns storage, int[] rows, long[] points, 
+				int[] rowBuffer, long[] pointBuffer, int from, int to, boolean parallel) {
+			this.storage = storage;
+			this.rows = rows;
+			this.points = points;
+			this.rowBuffer = rowBuffer;
+			this.pointBuffer = pointBuffer;
+			this.from = from;
+			this.to = to;
+			this.parallel = parallel;
+		}
+
+		@Override
+		protected void compute() {
+
+			if (to - from <= INSERTION_THRESHOLD) {
+				insertionSort();
+				return;
+			}
+
+			int mid = (from + to) >>> 1;
+			RowSort low = new RowSort(storage, rows, points, rowBuffer, pointBuffer, from, mid, parallel);
+			RowSort high = new RowSort(storage, rows, points, rowBuffer, pointBuffer, mid, to, parallel);
+			if (parallel && to - from > PARALLEL_THRESHOLD) {
+				invokeAll(low, high);
+			} else {
+				low.compute();
+				high.compute();
+			}
+			merge(mid);
+		}
+
+		private void insertionSort() {
+			for (int i = from + 1; i < to; i++) {
+				int row = rows[i];
+				long point = points[i];
+				int j = i - 1;
+				while (j >= from && compare(point, row, points[j], rows[j]) < 0) {
+					rows[j + 1] = rows[j];
+					points[j + 1] = points[j];
+					j--;
+				}
+				rows[j + 1] = row;
+				points[j + 1] = point;
+			}
+		}
+
+		private void merge(int mid) {
+
+			// The halves are already in order
+			if (compare(points[mid - 1], rows[mid - 1], points[mid], rows[mid]) <= 0) {
+				return;
+			}
+
+			System.arraycopy(rows, from, rowBuffer, from, to - from);
+			System.arraycopy(points, from, pointBuffer, from, to - from);
+			int low = from;
+			int high = mid;
+			for (int i = from; i < to; i++) {
+				if (high >= to || (low < mid 
+						&& compare(pointBuffer[low], rowBuffer[low], pointBuffer[high], rowBuffer[high]) <= 0)) {
+					rows[i] = rowBuffer[low];
+					points[i] = pointBuffer[low++];
+				} else {
+					rows[i] = rowBuffer[high];
+					points[i] = pointBuffer[high++];
+				}
+			}
+		}
+
+		private int compare(long points1, int row1, long points2, int row2) {
+			if (points1 > points2) return -1;
+			if (points1 < points2) return 1;
+			return (row1 == row2) ?0 :storage.getEntryId(row1).compareTo(storage.getEntryId(row2));
+		}
+	}
+}
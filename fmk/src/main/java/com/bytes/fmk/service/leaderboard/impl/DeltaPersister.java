@@ -0,0 +1,148 @@
+package com.bytes.fmk.service.leaderboard.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.bytes.fmk.service.leaderboard.Score;
+import com.bytes.fmk.service.persistence.DefaultSerializer;
+import com.bytes.fmk.service.persistence.PersistenceService;
+
+/**
+ * Saves the changed scores of a leaderboard in a hash per scoreboard and category.
+ * <pre>
+ * key   = leaderboardId:scoreboardType:categoryName
+ *  - field = entryId
+ *  - value = the points
+ * </pre>
+ * The hashes are applied over the leaderboard of the last full save when loaded.
+ * A full save is required for new or loaded leaderboards and when entries or categories
+ * were added or removed, the changes drained before the full save are written after it
+ * so the hashes are never older than the full save. The full save is a snapshot of the
+ * state at the save request, a write-behind datastore does not serialize a newer state
+ * than the hashes queued after it, see {@code PersistenceService#saveSnapshot}.
+ * The points of removed entries are written as 0.
+ *
+ * @author Kent
+ */
+class DeltaPersister {
+
+	/** Logger for this class */
+	private static Logger logger = LoggerFactory.getLogger(DeltaPersister.class);
+
+	private final LeaderboardImpl leaderboard;
+	private final PersistenceService datastore;
+
+
+	/**
+	 * @param leaderboard - the leaderboard
+	 * @param datastore - the persistence store
+	 */
+	DeltaPersister(LeaderboardImpl leaderboard, PersistenceService datastore) {
+		this.leaderboard = leaderboard;
+		this.datastore = datastore;
+	}
+
+
+	/**
+	 * Indicates if the leaderboard must be saved in full
+	 * @return true if a scoreboard does not track its changes or its entries or categories changed
+	 */
+	boolean isFullSaveRequired() {
+		for (Scoreboard scoreboard : leaderboard.getScoreboards().values()) {
+			if (!scoreboard.isTrackingChanges() || scoreboard.isStructureChanged()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+
+	/**
+	 * Take the changes of all scoreboards
+	 * @param fullSave - true if the leaderboard is saved in full after, the structure changes are cleared
+	 * @return the changed entry ids keyed by scoreboard and category name
+	 */
+	Map<Scoreboard, Map<String, Set<String>>> drainChanges(boolean fullSave) {
+
+		Map<Scoreboard, Map<String, Set<String>>> changes = new HashMap<>();
+		for (Scoreboard scoreboard : leaderboard.getScoreboards().values()) {
+			if (fullSave) {
+				scoreboard.setStructureChanged(false);
+			}
+			changes.put(scoreboard, scoreboard.drainChanges());
+		}
+		return changes;
+	}
+
+
+	/**
+	 * Write the current points of the changed entries, the changes of a failed write are tracked again
+	 * @param changes - the changed entry ids keyed by scoreboard and category name
+	 * @return true if all changes are written
+	 */
+	boolean save(Map<Scoreboard, Map<String, Set<String>>> changes) {
+
+		boolean result = true;
+		int count = 0;
+		for (Map.Entry<Scoreboard, Map<String, Set<String>>> scoreboardChanges : changes.entrySet()) {
+			Scoreboard scoreboard = scoreboardChanges.getKey();
+			Map<String, Map<String, Score>> entries = scoreboard.getScoreEntries();
+
+			for (Map.Entry<String, Set<String>> categoryChanges : scoreboardChanges.getValue().entrySet()) {
+				String categoryName = categoryChanges.getKey();
+				Map<String, Long> points = new HashMap<>();
+				for (String entryId : categoryChanges.getValue()) {
+					Map<String, Score> scores = entries.get(entryId);
+					Score score = (scores == null) ?null :scores.get(categoryName);
+					points.put(entryId, (score == null) ?0L :score.getPoints());
+				}
+
+				if (datastore.saveMap(getResourceId(scoreboard, categoryName), points)) {
+					count += points.size();
+				} else {
+					scoreboard.restoreChanges(categoryName, categoryChanges.getValue());
+					result = false;
+				}
+			}
+		}
+
+		logger.debug("Saved {} changed scores of leaderboard {}", count, leaderboard.getId());
+		return result;
+	}
+
+
+	/**
+	 * Apply the saved changes to the scores of the leaderboard loaded from the last full save,
+	 * the ranks are staled
+	 */
+	void load() {
+
+		DefaultSerializer serializer = new DefaultSerializer();
+		for (Scoreboard scoreboard : leaderboard.getScoreboards().values()) {
+			Map<String, Map<String, Score>> entries = scoreboard.getScoreEntries();
+
+			for (String categoryName : scoreboard.getCategoryNames()) {
+				String resourceId = getResourceId(scoreboard, categoryName);
+				serializer.addMapping(resourceId, Long.class);
+				Map<String, Long> points = datastore.loadMap(resourceId, serializer);
+
+				points.forEach((entryId, entryPoints) -> {
+					Map<String, Score> scores = entries.get(entryId);
+					Score score = (scores == null) ?null :scores.get(categoryName);
+					if (score != null) {
+						score.setPoints(entryPoints);
+					}
+				});
+			}
+		}
+	}
+
+
+	private String getResourceId(Scoreboard scoreboard, String categoryName) {
+		return leaderboard.getId() + ":" + scoreboard.getType() + ":" + categoryName;
+	}
+}
@@ -1,9 +1,7 @@
 package com.bytes.fmk.service.leaderboard.impl;
 
 import java.time.OffsetDateTime;
-import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
@@ -18,6 +16,7 @@ import com.bytes.fmk.service.leaderboard.Cycle;
 import com.bytes.fmk.service.leaderboard.Leaderboard;
 import com.bytes.fmk.service.leaderboard.Score;
 import com.bytes.fmk.service.leaderboard.ScoreCategory;
+import com.bytes.fmk.service.leaderboard.ScoreStorage;
 import com.bytes.fmk.service.leaderboard.ScoreboardType;
 import com.bytes.fmk.service.leaderboard.impl.util.LeaderboardUtil;
 
@@ -90,12 +89,37 @@ public class LeaderboardImpl implements Leaderboard {
 	private boolean autoUpdate;
 	
 	
+	/**
+	 * recalculate the rank of staled categories on read instead of on update
+	 */
+	private boolean lazyUpdate;
+	
+	
+	/**
+	 * The maximum staleness in milliseconds of the rank with lazy update, 
+	 * 0 if only recalculated on read
+	 */
+	private long maxStaleness;
+	
+	
+	/**
+	 * rank the scoreboards and categories concurrently
+	 */
+	private boolean parallelCalculation;
+	
+	
 	/**
 	 * enable auto persistence to the data store on update.
 	 */
 	private boolean autoPersist;
 	
 	
+	/**
+	 * only save the changed scores
+	 */
+	private boolean deltaPersist;
+	
+	
 	/**
 	 * If part of a set, this is the {@code LeaderboardSet} id.
 	 * null if not part of a set.
@@ -195,9 +219,8 @@ public class LeaderboardImpl implements Leaderboard {
 			break;
 		}
 
-		logger.info("Set " + cycle + " Leaderboard default active time: " +  
-				" \n  start: " + startDate.format(DateTimeFormatter.ISO_OFFSET_DATE_TIME) +
-				" \n    end: " + endDate.format(DateTimeFormatter.ISO_OFFSET_DATE_TIME));
+		logger.info("Set {} Leaderboard default active time:  \n  start: {} \n    end: {}", 
+				cycle, startDate, endDate);
 	}
 
 	/**
@@ -299,12 +322,35 @@ public class LeaderboardImpl implements Leaderboard {
 	}
 	
 	
+	/**
+	 * Get the top scores of the category, the caller holds the category lock
+	 * @param categoryName - the category
+	 * @param type - the scoreboard type
+	 * @return the top scores in rank order, null if disabled
+	 */
+	List<Score> getTopScores(String categoryName, ScoreboardType type) {
+		Scoreboard scoreboard = scoreboards.get(type);
+		return scoreboard.getTopScores(categoryName);
+	}
+	
+	
+	/**
+	 * Get the lock guarding the ranked scores of the category
+	 * @param categoryName - the category
+	 * @param type - the scoreboard type
+	 * @return the lock, held while reading the ranked scores
+	 */
+	Object getLock(String categoryName, ScoreboardType type) {
+		return scoreboards.get(type).getLock(categoryName);
+	}
+	
+	
 	/**
 	 * Request to update the ranks for the specified category
 	 * @param categoryName - the category name
-	 * @param scores - the ranked scores
+	 * @param scores - the rank index
 	 */
-	void setRankedScores(String categoryName, ArrayList<Score> scores) {
+	void setRankedScores(String categoryName, ScoreIndex scores) {
 		Scoreboard scoreboard = scoreboards.get(ScoreboardType.User);
 		scoreboard.setRankedScores(categoryName, scores);
 	}
@@ -381,6 +427,56 @@ public class LeaderboardImpl implements Leaderboard {
 		this.autoUpdate = autoUpdate;
 	}
 
+	public boolean isLazyUpdate() {
+		return lazyUpdate;
+	}
+
+	public void setLazyUpdate(boolean lazyUpdate) {
+		this.lazyUpdate = lazyUpdate;
+	}
+
+	public long getMaxStaleness() {
+		return maxStaleness;
+	}
+
+	public void setMaxStaleness(long maxStaleness) {
+		this.maxStaleness = maxStaleness;
+	}
+
+	public boolean isParallelCalculation() {
+		return parallelCalculation;
+	}
+
+	public void setParallelCalculation(boolean parallelCalculation) {
+		this.parallelCalculation = parallelCalculation;
+	}
+
+	
+	public ScoreStorage getScoreStorage() {
+		Scoreboard scoreboard = scoreboards.get(ScoreboardType.User);
+		return scoreboard.getStorage();
+	}
+
+
+	public void setScoreStorage(ScoreStorage storage) {
+		for (Scoreboard scoreboard : scoreboards.values()) {
+			scoreboard.setStorage(storage);
+		}
+	}
+
+	
+	public int getTopScoreCount() {
+		Scoreboard scoreboard = scoreboards.get(ScoreboardType.User);
+		return scoreboard.getTopScoreCount();
+	}
+
+
+	public void setTopScoreCount(int topScoreCount) {
+		for (Scoreboard scoreboard : scoreboards.values()) {
+			scoreboard.setTopScoreCount(topScoreCount);
+		}
+	}
+
 	
 	/**
 	 * Retrieve the category registered to this leaderboard
@@ -440,6 +536,14 @@ public class LeaderboardImpl implements Leaderboard {
 		this.autoPersist = autoPersist;
 	}
 
+	public boolean isDeltaPersist() {
+		return deltaPersist;
+	}
+
+	public void setDeltaPersist(boolean deltaPersist) {
+		this.deltaPersist = deltaPersist;
+	}
+
 	public String getGroupId() {
 		return groupId;
 	}
@@ -1,14 +1,23 @@
 package com.bytes.fmk.service.leaderboard.impl;
 
 import java.time.OffsetDateTime;
-import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -28,12 +37,11 @@ import com.bytes.fmk.service.leaderboard.ledger.Ledger;
 import com.bytes.fmk.service.leaderboard.ledger.LedgerEntry;
 import com.bytes.fmk.service.leaderboard.ledger.Recordable;
 import com.bytes.fmk.service.leaderboard.ledger.impl.LedgerImpl;
-import com.bytes.fmk.service.leaderboard.ledger.impl.LedgerSerializer;
 import com.bytes.fmk.service.leaderboard.report.Report;
 import com.bytes.fmk.service.leaderboard.report.ReportBuilder;
 import com.bytes.fmk.service.persistence.PersistenceMode;
+import com.bytes.fmk.service.persistence.PersistenceService;
 import com.bytes.fmk.service.persistence.Serializer;
-import com.bytes.fmk.service.persistence.impl.RedisImpl;
 
 /**
  * @author Kent
@@ -44,6 +52,11 @@ public class LeaderboardServiceImpl implements LeaderboardService {
 	/** Logger for this class */
 	private static Logger logger = LoggerFactory.getLogger(LeaderboardServiceImpl.class);
 	
+	/**
+	 * The interval in milliseconds to check for staled ranks of lazy updated leaderboards
+	 */
+	static final long STALENESS_CHECK_MILLIS = 100;
+	
 	/**
 	 * The serializer for the all leaderboards.
 	 */
@@ -73,11 +86,39 @@ public class LeaderboardServiceImpl implements LeaderboardService {
 	
 	
 	/**
-	 * The leaderboard ledger to store all {@code Recordable}.
+	 * The default ledger, it contains the {@code Recordable} of earlier versions.
 	 */
 	private LedgerImpl ledger;
 	
 	
+	/**
+	 * The ledger partitions storing the {@code Recordable} of each leaderboard or set
+	 * key = ledger id of the leaderboard or the leaderboard set
+	 * value = the {@code Ledger} instance
+	 */
+	private Map<String, LedgerImpl> ledgers;
+	
+	
+	/**
+	 * The ledger replacing the in-memory ledger, e.g. a {@code MappedLedger}.
+	 * It persists itself and is not saved with the service.
+	 */
+	private transient volatile Ledger externalLedger;
+	
+	
+	/**
+	 * The queue of submitted updates, created on the first submit
+	 */
+	private transient volatile BatchUpdater batchUpdater;
+	
+	
+	/**
+	 * Recalculates the staled ranks of lazy updated leaderboards, 
+	 * started on the first lazy update with a maximum staleness
+	 */
+	private transient volatile ScheduledExecutorService scheduler;
+	
+	
 	/**
 	 * Default constructor
 	 */
@@ -86,6 +127,7 @@ public class LeaderboardServiceImpl implements LeaderboardService {
 		this.serializer = new LeaderboardServiceSerializer();
 		this.leaderboards = new ConcurrentHashMap<>();
 		this.ledger = new LedgerImpl();
+		this.ledgers = new ConcurrentHashMap<>();
 		this.leaderboardSets = new ConcurrentHashMap<>();
 	}
 	
@@ -123,17 +165,42 @@ public class LeaderboardServiceImpl implements LeaderboardService {
 	/** {@inheritDoc} */
 	public List<Score> listDescending(String leaderboardId, ScoreboardType type, String categoryName, int start, int count) {
 		
-		logger.debug(String.format(
-				"List descending: %1$s scoreboard: %2$s category: %3$s entry count: %4$d", 
-				leaderboardId, type, categoryName, count));
+		logger.debug("List descending: {} scoreboard: {} category: {} entry count: {}", 
+				leaderboardId, type, categoryName, count);
 		
 		LeaderboardImpl leaderboard = getLeaderboard(leaderboardId);
+		
+		// Top ranks are served by the bounded top scores, without the full rank index
+		if (start > 0 && count > 0 && leaderboard.getTopScoreCount() > 0) {
+			synchronized (leaderboard.getLock(categoryName, type)) {
+				List<Score> topScores = leaderboard.getTopScores(categoryName, type);
+				boolean isComplete = topScores != null && topScores.size() < leaderboard.getTopScoreCount();
+				if (topScores != null && (isComplete || (long) start + count - 1 <= topScores.size())) {
+					return subList(topScores, start, count);
+				}
+			}
+		}
+		
+		refresh(leaderboard, categoryName);
 		if (!validateRange(leaderboard, type, categoryName, start, count)) {
 			return new ArrayList<Score>(0);
 		}
 		
-		List<Score> rankedScores = leaderboard.getRankedScores(categoryName, type);
-
+		synchronized (leaderboard.getLock(categoryName, type)) {
+			return subList(leaderboard.getRankedScores(categoryName, type), start, count);
+		}
+	}
+	
+	
+	/**
+	 * Copy the scores in the specified descending range
+	 * @param rankedScores - the scores in rank order
+	 * @param start - the starting placement, 1 is first
+	 * @param count - the total entries
+	 * @return the scores, bounded by the size of the ranked scores
+	 */
+	private List<Score> subList(List<Score> rankedScores, int start, int count) {
+		
 		// Adjust for 0-based index
 		start = (start >= rankedScores.size()) ? rankedScores.size()-1:  start-1; 
 		
@@ -149,7 +216,7 @@ public class LeaderboardServiceImpl implements LeaderboardService {
 			toIndex = rankedScores.size()-1;
 			padding = 1;
 		}
-		return rankedScores.subList(fromIndex, toIndex + padding);
+		return new ArrayList<>(rankedScores.subList(fromIndex, toIndex + padding));
 	}
 	
 	
@@ -158,61 +225,67 @@ public class LeaderboardServiceImpl implements LeaderboardService {
 	public List<Score> listAscending(String leaderboardId, ScoreboardType type, String categoryName, int rank, int count) {
 		
 		LeaderboardImpl leaderboard = getLeaderboard(leaderboardId);
+		refresh(leaderboard, categoryName);
 		if (!validateRange(leaderboard, type, categoryName, rank, count)) {
 			return new ArrayList<Score>(0);
 		}
 		
-		List<Score> rankedScores = leaderboard.getRankedScores(categoryName, type);
-		int maxRank = rankedScores.size();
-		
-		// Bound rank and count value (can't be more than the size)
-		if (rank  > maxRank) rank = maxRank;
-		if (count > maxRank) count = maxRank;
-		
-		// Bound the fromIndex --inclusive, 0-based
-		// Adjust for 0-based index
-		int fromIndex = rank - count;
-		if (fromIndex < 0)  {
-			count += fromIndex; // adjust the count
-			fromIndex = 0;
-		} 
-		
-		// Bound the toIndex --exclusive
-		int toIndex = fromIndex + count;
-		return rankedScores.subList(fromIndex, toIndex);
+		synchronized (leaderboard.getLock(categoryName, type)) {
+			List<Score> rankedScores = leaderboard.getRankedScores(categoryName, type);
+			int maxRank = rankedScores.size();
+			
+			// Bound rank and count value (can't be more than the size)
+			if (rank  > maxRank) rank = maxRank;
+			if (count > maxRank) count = maxRank;
+			
+			// Bound the fromIndex --inclusive, 0-based
+			// Adjust for 0-based index
+			int fromIndex = rank - count;
+			if (fromIndex < 0)  {
+				count += fromIndex; // adjust the count
+				fromIndex = 0;
+			} 
+			
+			// Bound the toIndex --exclusive
+			int toIndex = fromIndex + count;
+			return new ArrayList<>(rankedScores.subList(fromIndex, toIndex));
+		}
 	}
 	
 
 	/** {@inheritDoc} */
 	public List<Score> listRanks(String leaderboardId, ScoreboardType type, String categoryName, String userId, int count) {
 		
+		// Rank lookup is O(log n), the scores are read by index
 		LeaderboardImpl leaderboard = getLeaderboard(leaderboardId);
 		int rank = getRank(leaderboardId, categoryName, userId) -1;
 		if (!validateRange(leaderboard, type, categoryName, rank, count)) {
 			return new ArrayList<Score>(0);
 		}
 		
-		List<Score> rankedScores = leaderboard.getRankedScores(categoryName, type);
-		int maxRank = rankedScores.size();
-		
-		// Bound rank and count value (can't be more than the size)
-		if (rank  > maxRank) rank = maxRank;
-		if (count > maxRank) count = maxRank;
-		
-		// Bound the fromIndex --inclusive, 0-based
-		// Adjust for 0-based index
-		int fromIndex = rank - count;
-		if (fromIndex < 0)  {
-			count += fromIndex; // adjust the count
-			fromIndex = 0;
-		} 
-		
-		// Bound the toIndex --exclusive
-		int toIndex = rank + count;
-		if (toIndex > maxRank)  {
-			toIndex = maxRank;
-		} 
-		return rankedScores.subList(fromIndex, toIndex);
+		synchronized (leaderboard.getLock(categoryName, type)) {
+			List<Score> rankedScores = leaderboard.getRankedScores(categoryName, type);
+			int maxRank = rankedScores.size();
+			
+			// Bound rank and count value (can't be more than the size)
+			if (rank  > maxRank) rank = maxRank;
+			if (count > maxRank) count = maxRank;
+			
+			// Bound the fromIndex --inclusive, 0-based
+			// Adjust for 0-based index
+			int fromIndex = rank - count;
+			if (fromIndex < 0)  {
+				count += fromIndex; // adjust the count
+				fromIndex = 0;
+			} 
+			
+			// Bound the toIndex --exclusive
+			int toIndex = rank + count;
+			if (toIndex > maxRank)  {
+				toIndex = maxRank;
+			} 
+			return new ArrayList<>(rankedScores.subList(fromIndex, toIndex));
+		}
 	}
 	
 	
@@ -261,9 +334,11 @@ public class LeaderboardServiceImpl implements LeaderboardService {
 	 */
 	public void calculate(String leaderboardId) {
 		LeaderboardImpl leaderboard = getLeaderboard(leaderboardId);
+		List<String> categoryNames = new ArrayList<>();
 		for(ScoreCategory category : leaderboard.getCategories()) {
-			calculate(leaderboardId, category.getName());
+			categoryNames.add(category.getName());
 		}
+		calculate(leaderboard, categoryNames);
 	}
 	
 	/**
@@ -273,40 +348,161 @@ public class LeaderboardServiceImpl implements LeaderboardService {
 	public void calculate(String leaderboardId, String categoryName) {
 		
 		LeaderboardImpl leaderboard = getLeaderboard(leaderboardId);
-		for (Scoreboard scoreboard : leaderboard.getScoreboards().values()) {
-			calculateScoreboard(leaderboardId, scoreboard, categoryName);
+		calculate(leaderboard, Collections.singletonList(categoryName));
+	}
+	
+	
+	/**
+	 * Rank the categories in every scoreboard of the leaderboard. The total
+	 * is ranked once, after the other categories. 
+	 * With {@code Leaderboard#isParallelCalculation()}, every (scoreboard, category) 
+	 * pair is ranked in its own fork join task.
+	 * @param leaderboard - the leaderboard
+	 * @param categoryNames - the category names
+	 */
+	private void calculate(LeaderboardImpl leaderboard, Collection<String> categoryNames) {
+		
+		boolean parallel = leaderboard.isParallelCalculation();
+		Collection<Scoreboard> scoreboards = leaderboard.getScoreboards().values();
+		
+		List<ForkJoinTask<?>> tasks = new ArrayList<>();
+		for (Scoreboard scoreboard : scoreboards) {
+			for (String categoryName : categoryNames) {
+				if (categoryName.equals(Leaderboard.TOTAL)) continue;
+				if (parallel) {
+					tasks.add(ForkJoinTask.adapt(() -> calculateScoreboard(scoreboard, categoryName, true)));
+				} else {
+					calculateScoreboard(scoreboard, categoryName, false);
+				}
+			}
+		}
+		invokeAll(tasks);
+		
+		// Update the total
+		logger.trace("Updating total...");
+		tasks.clear();
+		for (Scoreboard scoreboard : scoreboards) {
+			if (parallel) {
+				tasks.add(ForkJoinTask.adapt(() -> calculateScoreboard(scoreboard, Leaderboard.TOTAL, true)));
+			} else {
+				calculateScoreboard(scoreboard, Leaderboard.TOTAL, false);
+			}
 		}
+		invokeAll(tasks);
 	}
-	private void calculateScoreboard(String leaderboardId, Scoreboard scoreboard, String categoryName) {
+	
+	
+	/**
+	 * Run the calculation tasks in the common fork join pool and wait for completion
+	 * @param tasks - the calculation tasks
+	 */
+	private void invokeAll(List<ForkJoinTask<?>> tasks) {
+		
+		if (tasks.isEmpty()) {
+			return;
+		}
+		ForkJoinPool.commonPool().invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+	}
+	
+	
+	/**
+	 * Rank the category of the scoreboard, unless it is already up-to-date
+	 * @param scoreboard - the scoreboard
+	 * @param categoryName - the category name
+	 * @param parallel - sort the scores in parallel
+	 */
+	private void calculateScoreboard(Scoreboard scoreboard, String categoryName, boolean parallel) {
 		
 		ScoreCategory category = scoreboard.getCategory(categoryName);
-		if (!category.isStaled()) {
-			logger.trace("Category " + categoryName + " is up-to-date, recalculation is not needed.");
-			return; 
+		
+		// Updates of the category wait for the calculation, other categories are not blocked
+		synchronized (scoreboard.getLock(categoryName)) {
+			if (scoreboard.isRanked(category)) {
+				logger.trace("Category {} is up-to-date, recalculation is not needed.", categoryName);
+				return; 
+			}
+	
+			logger.trace("calculating {} rank", categoryName);
+			
+			// Update leaderboard with sorted ranks, subsequent updates are applied incrementally
+			scoreboard.setRankedScores(categoryName, scoreboard.rank(category, parallel));
+			category.setCalculatedTime(OffsetDateTime.now());
+			category.setStaled(false);
 		}
-
-		logger.trace("calculating " + categoryName + " rank");
+	}
+	
+	
+	/**
+	 * Recalculate the staled rank of a lazy updated leaderboard before it is read.
+	 * Concurrent readers wait on the category lock and share the same recalculation.
+	 * @param leaderboard - the leaderboard
+	 * @param categoryName - the category name
+	 */
+	private void refresh(LeaderboardImpl leaderboard, String categoryName) {
 		
-		Map<String, Map<String, Score>> userScores = scoreboard.getScoreEntries();
-		Set<String> userIds = userScores.keySet();
-
-		int i = 0;
-		Score[] unsortedScores = new Score[userIds.size()];
-		for (String userId : userScores.keySet()) {
-			unsortedScores[i++] = scoreboard.getScore(userId, categoryName);
-		};
+		if (leaderboard.isLazyUpdate() && leaderboard.hasCategory(categoryName)) {
+			calculate(leaderboard.getId(), categoryName);
+		}
+	}
+	
+	
+	/**
+	 * Start the background recalculation of the staled ranks
+	 * if the leaderboard is lazy updated with a maximum staleness
+	 * @param leaderboard - the leaderboard
+	 */
+	private void scheduleRecalculation(Leaderboard leaderboard) {
 		
-		// Sort using ScoreCategory comparator --effectively ranking the scores
-		Arrays.sort(unsortedScores, category);
+		if (leaderboard.getMaxStaleness() <= 0 || scheduler != null) {
+			return;
+		}
 		
-		// Update leaderboard with sorted ranks
-		scoreboard.setRankedScores(categoryName, new ArrayList<>(Arrays.asList(unsortedScores)));
-		category.setCalculatedTime(OffsetDateTime.now());
-		category.setStaled(false);
-
-		// Update the total
-		logger.trace("Updating total...");
-		calculate(leaderboardId, Leaderboard.TOTAL);
+		synchronized (this) {
+			if (scheduler == null) {
+				ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+					Thread thread = new Thread(runnable, "leaderboard-recalculation");
+					thread.setDaemon(true);
+					return thread;
+				});
+				executor.scheduleWithFixedDelay(this::recalculateStaled, 
+						STALENESS_CHECK_MILLIS, STALENESS_CHECK_MILLIS, TimeUnit.MILLISECONDS);
+				scheduler = executor;
+			}
+		}
+	}
+	
+	
+	/**
+	 * Recalculate the ranks of lazy updated leaderboards 
+	 * which are staled for longer than their maximum staleness
+	 */
+	private void recalculateStaled() {
+		
+		try {
+			OffsetDateTime now = OffsetDateTime.now();
+			for (LeaderboardImpl leaderboard : leaderboards.values()) {
+				if (!leaderboard.isLazyUpdate() || leaderboard.getMaxStaleness() <= 0) {
+					continue;
+				}
+				
+				OffsetDateTime expired = now.minus(leaderboard.getMaxStaleness(), ChronoUnit.MILLIS);
+				Set<String> categoryNames = new HashSet<>();
+				for (Scoreboard scoreboard : leaderboard.getScoreboards().values()) {
+					for (ScoreCategory category : scoreboard.getCategories()) {
+						OffsetDateTime calculatedTime = category.getCalculatedTime();
+						if (category.isStaled() && (calculatedTime == null || !calculatedTime.isAfter(expired))) {
+							categoryNames.add(category.getName());
+						}
+					}
+				}
+				
+				if (!categoryNames.isEmpty()) {
+					calculate(leaderboard, categoryNames);
+				}
+			}
+		} catch (RuntimeException e) {
+			logger.error("Unable to recalculate staled ranks: " + e.getMessage(), e);
+		}
 	}
 
 	 
@@ -338,6 +534,40 @@ public class LeaderboardServiceImpl implements LeaderboardService {
 	}
 	
 	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long replay(String id, Ledger ledger) {
+		return new LedgerReplay(this, id).replay(ledger, Ledger.DEFAULT_RECORD_ID);
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long compactLedger(Ledger archive) {
+		
+		OffsetDateTime now = OffsetDateTime.now();
+		OffsetDateTime horizon = now;
+		for (LeaderboardImpl leaderboard : leaderboards.values()) {
+			if (leaderboard.getEndDate().isAfter(now) && leaderboard.getStartDate().isBefore(horizon)) {
+				horizon = leaderboard.getStartDate();
+			}
+		}
+		
+		logger.info("Compacting ledger entries before {}", horizon);
+		long count = getLedger().compact(horizon, archive);
+		if (externalLedger == null) {
+			for (LedgerImpl partition : getLedgers().values()) {
+				count += partition.compact(horizon, archive);
+			}
+		}
+		return count;
+	}
+	
+	
 	/**
 	 * Request to update the leaderboard with a {@code Recordable}
 	 * @param id - the leaderboard or the leaderboard set id
@@ -350,12 +580,17 @@ public class LeaderboardServiceImpl implements LeaderboardService {
 		LeaderboardImpl leaderboard = leaderboards.get(id);
 		String groupId = (leaderboard != null) ?leaderboard.getGroupId() :id;
 		if (groupId != null && leaderboardSets.containsKey(groupId)) {
+			
+			// Logged once in the ledger of the set
+			Ledger ledger = getLedger(groupId);
 			for (String leaderboardId : leaderboardSets.get(groupId).getAll()) {
-				update(getLeaderboard(leaderboardId), userId, recordable);
+				if (update(getLeaderboard(leaderboardId), userId, recordable, ledger)) {
+					ledger = null;
+				}
 			}
 			return true;
 		}
-		return update(leaderboard, userId, recordable);
+		return update(leaderboard, userId, recordable, getLedger(id));
 	}
 	
 	
@@ -367,49 +602,32 @@ public class LeaderboardServiceImpl implements LeaderboardService {
 	 * @param leaderboard - the leaderboard
 	 * @param userId - the user id
 	 * @param recordable - the {@code Rewardable} action
+	 * @param ledger - the ledger logging the recordable, null if already logged
 	 * @return true if successful
 	 */
-	private boolean update(LeaderboardImpl leaderboard, String userId, Recordable recordable) {
+	private boolean update(LeaderboardImpl leaderboard, String userId, Recordable recordable, Ledger ledger) {
 		
 		if (leaderboard == null) {
 			logger.error("Leaderboard is not registered");
 			return false;
 		}
 		
-		logger.trace(String.format(
-				"Update recordable for %1$s in leaderboard: %2$s",  
-				userId, leaderboard.getId()));
+		logger.trace("Update recordable for {} in leaderboard: {}", userId, leaderboard.getId());
 		
 		OffsetDateTime time = recordable.getTime();
 		if (time == null) {
 			time = OffsetDateTime.now();
 		}
 		
-		if (logger.isDebugEnabled()) {
-			logger.trace(String.format("\n '%5$s' Leaderboard '%1$s' updated at '%2$s'. Start: %3$s End: %4$s",
-					leaderboard.getTitle(), time.format(DateTimeFormatter.ISO_OFFSET_DATE_TIME), 
-					leaderboard.getStartDate().format(DateTimeFormatter.ISO_OFFSET_DATE_TIME), 
-					leaderboard.getEndDate().format(DateTimeFormatter.ISO_OFFSET_DATE_TIME),
-					leaderboard.getCycle()));
-		}
-		
-		if (!leaderboard.isActive(time)) {
-			if (leaderboard.getGroupId() != null && leaderboard.isAutoRenew()) {
-				logger.debug("\n\nLeaderboard is part of a group and auto renew is set. Generating a replacement of type: " + leaderboard.getCycle());
-				LeaderboardSet set = leaderboardSets.get(leaderboard.getGroupId());
-				LeaderboardImpl replacement = new LeaderboardImpl(leaderboard.getTitle(), leaderboard.getCycle());
-				replacement.setAutoRenew(true);
-				Thinkr.INSTANCE.getUserService().getUsers().forEach(user -> addUser(replacement, user));
-				replacement.setStartAndEndTime(time);
-				set.add(replacement);
-				register(replacement);
-				leaderboard.setGroupId(null);
-				leaderboard = replacement;
-				logger.debug("Replacment generation completed for type : " + leaderboard.getCycle() +"\n\n");
-			} else {
-				logger.debug("Leaderboard is inactive.");
-				return false;
-			}
+		if (logger.isTraceEnabled()) {
+			logger.trace("\n '{}' Leaderboard '{}' updated at '{}'. Start: {} End: {}",
+					leaderboard.getCycle(), leaderboard.getTitle(), time, 
+					leaderboard.getStartDate(), leaderboard.getEndDate());
+		}
+		
+		leaderboard = getActiveLeaderboard(leaderboard, time);
+		if (leaderboard == null) {
+			return false;
 		}
 		
 		// Check category
@@ -425,7 +643,7 @@ public class LeaderboardServiceImpl implements LeaderboardService {
 		}
 		
 		// Update the ledger
-		logRewardable(userId, recordable);
+		logRewardable(ledger, userId, recordable);
 		
 		// Persist on update if auto update is set
 		if (leaderboard.isAutoPersist()) {
@@ -434,6 +652,200 @@ public class LeaderboardServiceImpl implements LeaderboardService {
 		return true;
 	}
 	
+	
+	/**
+	 * Get the leaderboard that is active at the specified time.
+	 * An inactive leaderboard in a group with auto renew is replaced.
+	 * @param leaderboard - the leaderboard
+	 * @param time - the time of the update
+	 * @return the active leaderboard, null if the leaderboard is inactive
+	 */
+	private LeaderboardImpl getActiveLeaderboard(LeaderboardImpl leaderboard, OffsetDateTime time) {
+		
+		if (leaderboard.isActive(time)) {
+			return leaderboard;
+		}
+		
+		if (leaderboard.getGroupId() != null && leaderboard.isAutoRenew()) {
+			logger.debug("\n\nLeaderboard is part of a group and auto renew is set. Generating a replacement of type: {}", leaderboard.getCycle());
+			LeaderboardSet set = leaderboardSets.get(leaderboard.getGroupId());
+			LeaderboardImpl replacement = new LeaderboardImpl(leaderboard.getTitle(), leaderboard.getCycle());
+			replacement.setAutoRenew(true);
+			Thinkr.INSTANCE.getUserService().getUsers().forEach(user -> addUser(replacement, user));
+			replacement.setStartAndEndTime(time);
+			set.add(replacement);
+			register(replacement);
+			leaderboard.setGroupId(null);
+			logger.debug("Replacment generation completed for type : {}\n\n", replacement.getCycle());
+			return replacement;
+		}
+		
+		logger.debug("Leaderboard is inactive.");
+		return null;
+	}
+	
+	
+	/**
+	 * Get the leaderboards updated by the specified id
+	 * @param id - the leaderboard or the leaderboard set id
+	 * @return all leaderboards of the set, or the leaderboard. Empty if not registered
+	 */
+	List<LeaderboardImpl> getLeaderboards(String id) {
+		
+		LeaderboardImpl leaderboard = leaderboards.get(id);
+		String groupId = (leaderboard != null) ?leaderboard.getGroupId() :id;
+		if (groupId != null && leaderboardSets.containsKey(groupId)) {
+			List<LeaderboardImpl> members = new ArrayList<>();
+			for (String leaderboardId : leaderboardSets.get(groupId).getAll()) {
+				members.add(getLeaderboard(leaderboardId));
+			}
+			return members;
+		}
+		return (leaderboard == null) ?Collections.emptyList() :Collections.singletonList(leaderboard);
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean submit(String id, String userId, Recordable recordable) {
+		
+		if (recordable == null) {
+			logger.warn("Missing recordable. Update will be skipped");
+			return false;
+		}
+		
+		// Rejected at submit like the synchronous update, the batch cannot report to the caller
+		if (Thinkr.INSTANCE.getUserService().getUser(userId) == null) {
+			throw new IllegalStateException("User " + userId + " is not registered with UserService");
+		}
+		return getBatchUpdater().submit(id, userId, recordable);
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void flush() {
+		BatchUpdater updater = batchUpdater;
+		if (updater != null) {
+			updater.flush();
+		}
+	}
+	
+	
+	/**
+	 * Configure the batched updates. The updates pending in the previous 
+	 * configuration are applied first.
+	 * @param capacity - the maximum number of queued updates, submit blocks while the queue is full
+	 * @param batchSize - the maximum number of updates applied in one batch
+	 * @param windowMillis - the maximum time to wait for a batch to fill, in milliseconds
+	 */
+	public synchronized void setBatchUpdate(int capacity, int batchSize, long windowMillis) {
+		
+		BatchUpdater updater = new BatchUpdater(this, capacity, batchSize, windowMillis);
+		if (batchUpdater != null) {
+			batchUpdater.shutdown();
+		}
+		batchUpdater = updater;
+	}
+	
+	
+	private BatchUpdater getBatchUpdater() {
+		
+		BatchUpdater updater = batchUpdater;
+		if (updater == null) {
+			synchronized (this) {
+				if (batchUpdater == null) {
+					batchUpdater = new BatchUpdater(this, 
+							BatchUpdater.DEFAULT_CAPACITY, 
+							BatchUpdater.DEFAULT_BATCH_SIZE, 
+							BatchUpdater.DEFAULT_WINDOW_MILLIS);
+				}
+				updater = batchUpdater;
+			}
+		}
+		return updater;
+	}
+	
+	
+	/**
+	 * Apply a batch of submitted updates. The points are coalesced per scoreboard 
+	 * entry and category, so each score and total is updated and repositioned once 
+	 * per batch. Every recordable applied to at least one leaderboard is still logged 
+	 * in the ledger, like the synchronous update.
+	 * @param updates - the submitted updates
+	 */
+	void update(List<BatchUpdater.Update> updates) {
+		
+		// Coalesce the points, key = leaderboard
+		Map<LeaderboardImpl, Map<ScoreKey, long[]>> batch = new LinkedHashMap<>();
+		for (BatchUpdater.Update update : updates) {
+			
+			String userId = update.getUserId();
+			Recordable recordable = update.getRecordable();
+			String categoryName = recordable.getCategoryName();
+			OffsetDateTime time = (recordable.getTime() == null) ?OffsetDateTime.now() :recordable.getTime();
+			
+			// The user is checked at submit, it can only be missing if unregistered since
+			User user = Thinkr.INSTANCE.getUserService().getUser(userId);
+			if (user == null) {
+				logger.error("User " + userId + " is not registered with UserService");
+				continue;
+			}
+			
+			boolean applied = false;
+			for (LeaderboardImpl leaderboard : getLeaderboards(update.getId())) {
+				leaderboard = getActiveLeaderboard(leaderboard, time);
+				if (leaderboard == null) {
+					continue;
+				}
+				applied = true;
+				
+				if (!leaderboard.hasCategory(categoryName)) {
+					leaderboard.addCategories(categoryName);
+				}
+				
+				Map<ScoreKey, long[]> points = batch.computeIfAbsent(leaderboard, k -> new HashMap<>());
+				for (Scoreboard scoreboard : leaderboard.getScoreboards().values()) {
+					String entryId = getScoreboardId(user, scoreboard.getType());
+					if (entryId == null) {
+						continue;
+					}
+					points.computeIfAbsent(new ScoreKey(scoreboard, entryId, categoryName), k -> new long[1])[0] += recordable.getPoints();
+					points.computeIfAbsent(new ScoreKey(scoreboard, entryId, LeaderboardImpl.TOTAL), k -> new long[1])[0] += recordable.getPoints();
+				}
+			}
+			
+			if (applied) {
+				logRewardable(getLedger(update.getId()), userId, recordable);
+			}
+		}
+		
+		// Apply the coalesced points, only staled categories require a full recalculation
+		for (Map.Entry<LeaderboardImpl, Map<ScoreKey, long[]>> entry : batch.entrySet()) {
+			
+			LeaderboardImpl leaderboard = entry.getKey();
+			boolean autoUpdate = leaderboard.isAutoUpdate() && !leaderboard.isLazyUpdate();
+			entry.getValue().forEach((key, points) -> 
+				key.scoreboard.addPoints(key.entryId, key.categoryName, points[0], autoUpdate));
+			
+			if (autoUpdate) {
+				calculate(leaderboard.getId());
+			} else if (leaderboard.isLazyUpdate()) {
+				scheduleRecalculation(leaderboard);
+			}
+			
+			if (leaderboard.isAutoPersist()) {
+				save(leaderboard, PersistenceMode.RedisAzure);
+			}
+		}
+		
+		logger.debug("Applied batch of {} updates to {} leaderboards", updates.size(), batch.size());
+	}
+	
 		 
 	/**
 	 * Request to update the scoreboard with a {@code Recordable}
@@ -450,46 +862,50 @@ public class LeaderboardServiceImpl implements LeaderboardService {
 			User user, 
 			Recordable recordable) {
 		
-		logger.debug(String.format(
-				"Updating %1$s scoreboard for %2$s - category: %3$s, points: %4$d",
-				scoreboard.getType(), 
-				user.getDisplayName(),
-				recordable.getCategoryName(), 
-				recordable.getPoints()));
+		if (logger.isDebugEnabled()) {
+			logger.debug("Updating {} scoreboard for {} - category: {}, points: {}",
+					scoreboard.getType(), 
+					user.getDisplayName(),
+					recordable.getCategoryName(), 
+					recordable.getPoints());
+		}
 		
 		String categoryName = recordable.getCategoryName();
 		int points = recordable.getPoints();
 		String id = getScoreboardId(user, scoreboard.getType());
 		
 		if (id == null) {
-			logger.warn("No valid " + scoreboard.getType() + " scoreboard entry found for user: " + user.getDisplayName());
+			// Users without a team are expected, this is hit on every update
+			logger.debug("No valid {} scoreboard entry found for user: {}", scoreboard.getType(), user.getDisplayName());
 			return false;
 		}
 		
-		logger.trace(String.format("Id='%1$s' User='%2$s'", id, user.getDisplayName()));
+		logger.trace("Id='{}' User='{}'", id, user.getDisplayName());
 		
 		Score score = scoreboard.getScore(id, categoryName);
 		if (score == null) {
 			logger.warn("Score data not found for \n" +
-					" leaderboardId:   " + leaderboard.getId() + "\n" + 
-					" scoreboard type: " + scoreboard.getType() + "\n" + 
-					" user:            " + user.getDisplayName() + "\n" + 
-					" score category:  " + categoryName
-					);
+					" leaderboardId:   {}\n" + 
+					" scoreboard type: {}\n" + 
+					" user:            {}\n" + 
+					" score category:  {}",
+					leaderboard.getId(), scoreboard.getType(), user.getDisplayName(), categoryName);
 			
 			return false;
 		}
 		
-		score.add(points);
-		scoreboard.getCategory(categoryName).setStaled(true);
-		
-		// Update Total
-		scoreboard.getScoreTotal(id).add(points);
-		scoreboard.getCategory(LeaderboardImpl.TOTAL).setStaled(true);
+		// Reposition the score and the total in the rank index, 
+		// only staled categories require a full recalculation.
+		// Lazy updates only mark the categories as staled, the rank is recalculated on read
+		boolean autoUpdate = leaderboard.isAutoUpdate() && !leaderboard.isLazyUpdate();
+		scoreboard.addPoints(id, categoryName, points, autoUpdate);
+		scoreboard.addPoints(id, LeaderboardImpl.TOTAL, points, autoUpdate);
 		
-		if (leaderboard.isAutoUpdate()) {
-			logger.trace("Auto updating rank for leaderboard: " + leaderboard.getTitle());
+		if (autoUpdate) {
+			logger.trace("Auto updating rank for leaderboard: {}", leaderboard.getTitle());
 			calculate(leaderboard.getId(), categoryName);
+		} else if (leaderboard.isLazyUpdate()) {
+			scheduleRecalculation(leaderboard);
 		}
 		return true;
 	}
@@ -501,7 +917,7 @@ public class LeaderboardServiceImpl implements LeaderboardService {
 	 * @param type - the scoreboard type
 	 * @return the score id
 	 */
-	private String getScoreboardId(User user, ScoreboardType type) {
+	String getScoreboardId(User user, ScoreboardType type) {
 		
 		String id;
 		switch (type) {
@@ -529,11 +945,14 @@ public class LeaderboardServiceImpl implements LeaderboardService {
 	
 	/**
 	 * Request to log a recordable action
+	 * @param ledger - the ledger, null to skip
 	 * @param userId - the userId
 	 * @param recordable - the recordable to log
 	 */
-	private void logRewardable(String userId, Recordable recordable) {
-		ledger.add(userId, recordable);
+	private void logRewardable(Ledger ledger, String userId, Recordable recordable) {
+		if (ledger != null) {
+			ledger.add(userId, recordable);
+		}
 	}
 
 	
@@ -543,7 +962,7 @@ public class LeaderboardServiceImpl implements LeaderboardService {
 	public boolean addUser(String id, User user) {
 		
 		String userId = user.getId();
-		logger.debug("Adding user: " + user.getDisplayName() + "/" + userId);
+		logger.debug("Adding user: {}/{}", user.getDisplayName(), userId);
 		
 		if (leaderboardSets.containsKey(id)) {
 			LeaderboardSet set = leaderboardSets.get(id);
@@ -579,32 +998,18 @@ public class LeaderboardServiceImpl implements LeaderboardService {
 	private boolean registerScoreboardEntry(Scoreboard scoreboard, User user) {
 		
 		String entryId = getScoreboardId(user, scoreboard.getType());
-		logger.trace(String.format(
-				"Adding Scoreboard Entry    - Type:%1$s, Entry:%2$s, User:%3$s",
-				scoreboard.getType(), entryId, user.getDisplayName()));
+		logger.trace("Adding Scoreboard Entry    - Type:{}, Entry:{}, User:{}",
+				scoreboard.getType(), entryId, user.getDisplayName());
 		
 		if (entryId == null) {
-			logger.warn("No valid " + scoreboard.getType() + " scoreboard entry found for user: " + user.getDisplayName());
+			logger.warn("No valid {} scoreboard entry found for user: {}", scoreboard.getType(), user.getDisplayName());
 			return false;
 		}
 		
-		Map<String, Map<String, Score>> userScores = scoreboard.getScoreEntries();
-		if (userScores.containsKey(entryId)) {
-			logger.trace("Entry is already added: " + entryId);
-			return true;
-		}
-		
 		// Add score category for new entry
-		Map<String, Score> scores = new HashMap<>();
-		for (ScoreCategory category : scoreboard.getCategories()) {
-			logger.trace(String.format(
-					"Adding Scoreboard Category - Type:%1$s, Category:%2$s, Entry:%3$s",
-					scoreboard.getType(), category.getName(), entryId));
-			
-			scores.put(category.getName(), new Score(entryId, category.getName()));
-			userScores.put(entryId, scores);
+		if (!scoreboard.addEntry(entryId)) {
+			logger.trace("Entry is already added: {}", entryId);
 		}
-		
 		return true;
 	}
 	
@@ -619,19 +1024,8 @@ public class LeaderboardServiceImpl implements LeaderboardService {
 	 */
 	public boolean removeUser(String leaderboardId, String userId) {
 		LeaderboardImpl leaderboard = getLeaderboard(leaderboardId);
-		Map<String, Map<String, Score>> userScores = leaderboard.getUserScores();
-		if (userScores.containsKey(userId)) {
-			Map<String, Score> scores = userScores.remove(userId);
-			
-			for (ScoreboardType scoreboardType : leaderboard.getScoreboards().keySet()) {
-				for(String categoryName : scores.keySet()) {
-					Score score = scores.remove(categoryName);
-					leaderboard.getRankedScores(categoryName, scoreboardType).remove(score);
-				}
-			}
-			return true;
-		}
-		return false;
+		Scoreboard scoreboard = leaderboard.getScoreboards().get(ScoreboardType.User);
+		return scoreboard.removeEntry(userId) != null;
 	}
 	
 	
@@ -643,29 +1037,45 @@ public class LeaderboardServiceImpl implements LeaderboardService {
 	 */
 	public boolean save(Leaderboard leaderboard, PersistenceMode mode) {
 		
-		RedisImpl datastore = RedisImpl.AzureThinkr;
-		switch (mode) {
-		case RedisAzure:
-			logger.info("Saving to Redis Azure");
-			datastore = RedisImpl.AzureThinkr;
-			break;
-			
-		case RedisLocal:
-			logger.info("Saving to Redis Local");
-			datastore = RedisImpl.Local;
-			break;
+		logger.info("Saving to {}", mode);
+		PersistenceService datastore = Thinkr.INSTANCE.getPersistenceService(mode);
+		
+		LeaderboardImpl registered = leaderboards.get(leaderboard.getId());
+		if (registered != null && registered.isDeltaPersist()) {
+			DeltaPersister persister = new DeltaPersister(registered, datastore);
+			boolean fullSave = persister.isFullSaveRequired();
+			Map<Scoreboard, Map<String, Set<String>>> changes = persister.drainChanges(fullSave);
+			if (!fullSave) {
+				boolean result = persister.save(changes);
+				return saveLedger(leaderboard.getId(), mode, true) && result;
+			}
 			
-		default:
-			logger.info("Saving to Redis Local");
-			datastore = RedisImpl.Local;
+			// The changes are written after the full save, they are never older
+			boolean result = saveFull(leaderboard, mode, datastore, true);
+			return persister.save(changes) && result;
 		}
+		return saveFull(leaderboard, mode, datastore, false);
+	}
+	
+	
+	/**
+	 * Save the leaderboard and its ledger
+	 * @param leaderboard - the leaderboard
+	 * @param mode - the persistence mode
+	 * @param datastore - the persistence store of the mode
+	 * @param deltaPersist - true to save the state of the request, the changes saved after it are not older
+	 * @return true if successfully persisted
+	 * @see PersistenceService#saveSnapshot(String, Object)
+	 */
+	private boolean saveFull(Leaderboard leaderboard, PersistenceMode mode, PersistenceService datastore, boolean deltaPersist) {
 		
-		boolean result = 
-				datastore.saveData(leaderboard.getId(), leaderboard) && 
-				ledger.save(mode, LedgerSerializer.RESOURCE_ID);
+		boolean saved = (deltaPersist) 
+				?datastore.saveSnapshot(leaderboard.getId(), leaderboard) 
+				:datastore.saveData(leaderboard.getId(), leaderboard);
+		boolean result = saved && saveLedger(leaderboard.getId(), mode, deltaPersist);
 		
 		if (result) {
-			logger.debug("Successfully persisted, registering ids for retrieval: " + leaderboard.getId());
+			logger.debug("Successfully persisted, registering ids for retrieval: {}", leaderboard.getId());
 			leaderboardSerializer.registerLeaderboard(leaderboard.getId());
 		}
 		
@@ -673,34 +1083,31 @@ public class LeaderboardServiceImpl implements LeaderboardService {
 	}
 
 	
+	/**
+	 * Save the ledger partition of the leaderboard, the partition of a delta persisted
+	 * leaderboard saves the entries added since its previous save
+	 * @param leaderboardId - the leaderboard id
+	 * @param mode - the persistence mode
+	 * @param deltaPersist - true if the leaderboard is delta persisted
+	 * @return true if successfully persisted
+	 * @see Ledger#saveAppends(PersistenceMode, String)
+	 */
+	private boolean saveLedger(String leaderboardId, PersistenceMode mode, boolean deltaPersist) {
+		
+		Ledger ledger = getLedger(leaderboardId);
+		String ledgerId = getLedgerId(leaderboardId);
+		return (deltaPersist) ?ledger.saveAppends(mode, ledgerId) :ledger.save(mode, ledgerId);
+	}
+	
+	
 	/**
 	 * {@inheritDoc}
 	 * @TODO use Persistable interface for leaderboard - remove this
 	 */
 	public LeaderboardImpl load(String leaderboardId, PersistenceMode mode) {
 		
-		RedisImpl datastore = RedisImpl.AzureThinkr;
-		try {
-			switch (mode) {
-			case RedisAzure:
-				logger.info("Loading from Redis Azure");
-				datastore = RedisImpl.AzureThinkr;
-				break;
-				
-			case RedisLocal:
-				logger.info("Loading from Redis Local");
-				datastore = RedisImpl.Local;
-				break;
-				
-			default:
-				logger.info("Loading from Redis Local");
-				datastore = RedisImpl.Local;
-				break;
-			}
-		} catch (Exception e) {
-			logger.error("Unable to load from external cache: " + leaderboardId, e);
-			return null;
-		}
+		logger.info("Loading from {}", mode);
+		PersistenceService datastore = Thinkr.INSTANCE.getPersistenceService(mode);
 		
 		// Load leaderboard
 		leaderboardSerializer.registerLeaderboard(leaderboardId);
@@ -710,16 +1117,42 @@ public class LeaderboardServiceImpl implements LeaderboardService {
 			return null;
 		}
 		
+		if (leaderboard.isDeltaPersist()) {
+			new DeltaPersister(leaderboard, datastore).load();
+		}
 		register(leaderboard);
+		loadLedger(leaderboard, mode);
 		
 		// Perform calculation to populate the ranks
 		leaderboard.getCategories().forEach(category -> category.setStaled(true));
 		calculate(leaderboardId);
-		logger.info("Successfully loaded leaderboard: " + leaderboardId);
+		logger.info("Successfully loaded leaderboard: {}", leaderboardId);
 		return leaderboard;
 	}
 	
 	
+	/**
+	 * Load the ledger partition saved with the leaderboard, so that the next save 
+	 * appends to its history. The partition of a set is shared by its leaderboards, 
+	 * it is loaded once. The external ledger persists itself.
+	 * @param leaderboard - the registered leaderboard
+	 * @param mode - the persistence mode
+	 */
+	private void loadLedger(LeaderboardImpl leaderboard, PersistenceMode mode) {
+		
+		if (externalLedger != null) {
+			return;
+		}
+		
+		String ledgerId = getLedgerId(leaderboard.getId());
+		if (ledgerId.equals(leaderboard.getLedgerId())) {
+			getLedgers().put(ledgerId, (LedgerImpl) new LedgerImpl(ledgerId).load(mode, ledgerId));
+		} else {
+			getLedgers().computeIfAbsent(ledgerId, id -> (LedgerImpl) new LedgerImpl(id).load(mode, id));
+		}
+	}
+	
+	
 	/**
 	 * Request to merge the user score maps from the leaderboard. 
 	 * @param sourceId - the id of the source leaderboard
@@ -730,9 +1163,7 @@ public class LeaderboardServiceImpl implements LeaderboardService {
 	 */
 	public LeaderboardImpl merge(String sourceId, PersistenceMode sourceMode, String targetId, PersistenceMode targetMode) {
 
-		logger.debug(String.format(
-				"Merging %1$s(%2$s) to %3$s(%4$s)", 
-				sourceId, sourceMode, targetId, targetMode));
+		logger.debug("Merging {}({}) to {}({})", sourceId, sourceMode, targetId, targetMode);
 		
 		LeaderboardImpl source = load(sourceId, sourceMode);
 		LeaderboardImpl target = load(targetId, targetMode);
@@ -740,13 +1171,16 @@ public class LeaderboardServiceImpl implements LeaderboardService {
 		Map<String, Map<String, Score>> sourceUserScores = source.getUserScores();
 		Map<String, Map<String, Score>> targetUserScores = target.getUserScores();
 		
+		// Scores are modified outside of the rank index, force a recalculation
+		target.getCategories().forEach(category -> category.setStaled(true));
+		
 		// Merge source user's scores map to target
 		for(String userId : sourceUserScores.keySet()) {
 			if (targetUserScores.containsKey(userId)) {
-				logger.debug("Merging user to target: " + userId);
+				logger.debug("Merging user to target: {}", userId);
 				mergeScoreMap(sourceUserScores.get(userId), targetUserScores.get(userId), target);
 			} else {
-				logger.debug("Adding user to target: " + userId);
+				logger.debug("Adding user to target: {}", userId);
 				targetUserScores.put(userId, sourceUserScores.get(userId));
 			}
 		}
@@ -770,10 +1204,10 @@ public class LeaderboardServiceImpl implements LeaderboardService {
 		for(String categoryName : source.keySet()) {
 			// Handle matching entries
 			if (target.containsKey(categoryName)) {
-				logger.debug("Merging score category: " + categoryName);
+				logger.debug("Merging score category: {}", categoryName);
 				target.get(categoryName).add(source.get(categoryName).getPoints());
 			} else {
-				logger.debug("Adding new score category: " + categoryName);
+				logger.debug("Adding new score category: {}", categoryName);
 				target.put(categoryName, source.get(categoryName));
 				targetLeaderboard.addCategories(categoryName);
 			}
@@ -788,6 +1222,7 @@ public class LeaderboardServiceImpl implements LeaderboardService {
 	 */
 	public int getRank(String leaderboardId, String categoryName, String userId) {
 		LeaderboardImpl leaderboard = getLeaderboard(leaderboardId);
+		refresh(leaderboard, categoryName);
 		return leaderboard.getRank(userId, categoryName);
 	}
 
@@ -795,7 +1230,7 @@ public class LeaderboardServiceImpl implements LeaderboardService {
 	String register(LeaderboardImpl leaderboard) {
 		
 		String id = leaderboard.getId();
-		logger.debug("Registering leaderboard: " + id + " cycle: " + leaderboard.getCycle());
+		logger.debug("Registering leaderboard: {} cycle: {}", id, leaderboard.getCycle());
 		
 		if (leaderboards.containsKey(id)) {
 			logger.warn("Leaderboard is already registered, overriding: " + id);
@@ -814,7 +1249,7 @@ public class LeaderboardServiceImpl implements LeaderboardService {
 			return leaderboards.values().iterator().next();
 		}
 		
-		logger.trace("Retrieving leaderboard: " + id);
+		logger.trace("Retrieving leaderboard: {}", id);
 		if (leaderboards.containsKey(id)) {
 			return leaderboards.get(id);
 		} else {
@@ -836,11 +1271,79 @@ public class LeaderboardServiceImpl implements LeaderboardService {
 
 
 	/**
-	 * Get the ledger
+	 * Get the default ledger
 	 * @return the ledger
 	 */
 	public Ledger getLedger() {
-		return ledger;
+		Ledger external = externalLedger;
+		return (external != null) ?external :ledger;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 * <p>All leaderboards share the external ledger if it is set.
+	 */
+	@Override
+	public Ledger getLedger(String id) {
+		
+		Ledger external = externalLedger;
+		if (external != null) {
+			return external;
+		}
+		
+		String ledgerId = getLedgerId(id);
+		if (ledgerId == null) {
+			logger.warn("Leaderboard is not registered: {}", id);
+			return null;
+		}
+		return getLedgers().computeIfAbsent(ledgerId, LedgerImpl::new);
+	}
+	
+	
+	/**
+	 * Get the ledger id of a leaderboard or leaderboard set, 
+	 * the leaderboards of a set use the ledger id of the set.
+	 * @param id - the leaderboard or the leaderboard set id
+	 * @return the ledger id, null if the leaderboard is not registered
+	 */
+	private String getLedgerId(String id) {
+		
+		LeaderboardImpl leaderboard = leaderboards.get(id);
+		String groupId = (leaderboard != null) ?leaderboard.getGroupId() :id;
+		LeaderboardSetImpl set = (groupId != null) ?leaderboardSets.get(groupId) :null;
+		if (set != null) {
+			return set.getLedgerId();
+		}
+		return (leaderboard != null) ?leaderboard.getLedgerId() :null;
+	}
+	
+	
+	/**
+	 * Get the ledger partitions, the services of earlier versions have none
+	 * @return the ledger partitions
+	 */
+	private synchronized Map<String, LedgerImpl> getLedgers() {
+		if (ledgers == null) {
+			ledgers = new ConcurrentHashMap<>();
+		}
+		return ledgers;
+	}
+	
+	
+	/**
+	 * Replace the ledger storing all {@code Recordable}. Only the in-memory 
+	 * {@code LedgerImpl} is persisted with this service, other ledgers such 
+	 * as the {@code MappedLedger} persist themselves.
+	 * @param ledger - the ledger
+	 */
+	public void setLedger(Ledger ledger) {
+		if (ledger instanceof LedgerImpl) {
+			this.ledger = (LedgerImpl) ledger;
+			this.externalLedger = null;
+		} else {
+			this.externalLedger = ledger;
+		}
 	}
 
 
@@ -861,6 +1364,10 @@ public class LeaderboardServiceImpl implements LeaderboardService {
 			this.leaderboards = loadedInstance.leaderboards;
 			this.leaderboardSets = loadedInstance.leaderboardSets;
 			this.ledger = loadedInstance.ledger;
+			this.ledgers = loadedInstance.ledgers;
+			
+			// Rank indexes are not persisted, rebuild them
+			leaderboards.keySet().forEach(this::calculate);
 			
 		} catch (Exception e) {
 			logger.error("Unable to load leaderboard service data: " + e.getMessage(), e);
@@ -876,7 +1383,7 @@ public class LeaderboardServiceImpl implements LeaderboardService {
 	 */
 	public LeaderboardSet getLeaderboardSet(String id) {
 		
-		logger.trace("Retrieving leaderboard set: " + id);
+		logger.trace("Retrieving leaderboard set: {}", id);
 		if (leaderboardSets.containsKey(id)) {
 			return leaderboardSets.get(id);
 		} else {
@@ -902,9 +1409,38 @@ public class LeaderboardServiceImpl implements LeaderboardService {
 		
 		time = LeaderboardUtil.getStartTime(cycle, time);
 		String leaderboardId = set.generateLeaderboardId(cycle, time);
-		logger.debug(String.format(
-				"Generated leaderboard id '%1$s' from set '%2$s'",
-				leaderboardId, set.getId()));
+		logger.debug("Generated leaderboard id '{}' from set '{}'", leaderboardId, set.getId());
 		return leaderboards.get(leaderboardId);
 	}
+	
+	
+	/**
+	 * The coalescing key of a batch update
+	 */
+	private static final class ScoreKey {
+		
+		private final Scoreboard scoreboard;
+		private final String entryId;
+		private final String categoryName;
+		
+		private ScoreKey(Scoreboard scoreboard, String entryId, String categoryName) {
+			this.scoreboard = scoreboard;
+			this.entryId = entryId;
+			this.categoryName = categoryName;
+		}
+		
+		@Override
+		public int hashCode() {
+			return Objects.hash(System.identityHashCode(scoreboard), entryId, categoryName);
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof ScoreKey)) return false;
+			ScoreKey other = (ScoreKey) obj;
+			return scoreboard == other.scoreboard 
+					&& entryId.equals(other.entryId) 
+					&& categoryName.equals(other.categoryName);
+		}
+	}
 }
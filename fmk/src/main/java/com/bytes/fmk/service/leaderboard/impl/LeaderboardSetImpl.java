@@ -19,6 +19,7 @@ import com.bytes.fmk.service.persistence.Serializer;
 public class LeaderboardSetImpl implements LeaderboardSet {
 
 	private static final String DT_PATTERN = "MM-dd-yyyy";
+	private static final String LEDGER_PREFIX = "Ledger-";
 	static final String DELIMITER = "_";
 	
 	private static Logger logger = LoggerFactory.getLogger(LeaderboardSetImpl.class);
@@ -163,6 +164,12 @@ public class LeaderboardSetImpl implements LeaderboardSet {
 	}
 
 	
+	@Override
+	public String getLedgerId() {
+		return LEDGER_PREFIX + id;
+	}
+
+	
 	@Override
 	public Serializer getSerializer() {
 		return serializer;
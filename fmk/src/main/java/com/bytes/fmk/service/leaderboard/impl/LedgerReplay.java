@@ -0,0 +1,147 @@
+package com.bytes.fmk.service.leaderboard.impl;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.bytes.fmk.data.model.User;
+import com.bytes.fmk.service.Thinkr;
+import com.bytes.fmk.service.leaderboard.Leaderboard;
+import com.bytes.fmk.service.leaderboard.ledger.Ledger;
+import com.bytes.fmk.service.leaderboard.ledger.LedgerEntry;
+import com.bytes.fmk.service.leaderboard.ledger.LedgerFilter;
+import com.bytes.fmk.service.persistence.PersistenceMode;
+
+/**
+ * Rebuilds leaderboards from a ledger.
+ *
+ * <p>The points of the scoreboards are reset first, the replayed leaderboards hold
+ * the points of the ledger only. The ledger is read user by user, the users are
+ * partitioned across the common fork join pool. The points of a user are summed per
+ * leaderboard and category and added to the scoreboards once, the ranks are calculated
+ * once at the end. Entries are not logged in the ledger again.
+ *
+ * <p>The leaderboards must not be updated during the replay, the concurrent updates
+ * are lost by the reset.
+ *
+ * @author Kent
+ */
+class LedgerReplay {
+
+	/** Logger for this class */
+	private static Logger logger = LoggerFactory.getLogger(LedgerReplay.class);
+
+	private final LeaderboardServiceImpl service;
+	private final List<LeaderboardImpl> leaderboards;
+	private final LongAdder replayed;
+
+
+	/**
+	 * @param service - the leaderboard service
+	 * @param id - the leaderboard or the leaderboard set id
+	 */
+	LedgerReplay(LeaderboardServiceImpl service, String id) {
+		this.service = service;
+		this.leaderboards = service.getLeaderboards(id);
+		this.replayed = new LongAdder();
+	}
+
+
+	/**
+	 * Replay the entries of the ledger record
+	 * @param ledger - the ledger
+	 * @param recordId - the ledger record id
+	 * @return the number of replayed entries, an entry added to several leaderboards is counted once
+	 */
+	long replay(Ledger ledger, String recordId) {
+
+		if (leaderboards.isEmpty()) {
+			logger.error("Leaderboard is not registered");
+			return 0;
+		}
+
+		for (LeaderboardImpl leaderboard : leaderboards) {
+			leaderboard.getScoreboards().values().forEach(Scoreboard::resetPoints);
+		}
+
+		List<String> userIds = new ArrayList<>(ledger.getUserIds(recordId));
+		ForkJoinPool.commonPool().submit(() ->
+			userIds.parallelStream().forEach(userId -> replay(userId, ledger.stream(recordId, LedgerFilter.all().withUser(userId))))
+		).join();
+
+		for (LeaderboardImpl leaderboard : leaderboards) {
+			service.calculate(leaderboard.getId());
+			if (leaderboard.isAutoPersist()) {
+				service.save(leaderboard, PersistenceMode.RedisAzure);
+			}
+		}
+
+		logger.debug("Replayed {} entries of {} users", replayed.sum(), userIds.size());
+		return replayed.sum();
+	}
+
+
+	/**
+	 * Add the points of the user entries, only entries in the active period
+	 * of a leaderboard are added
+	 * @param userId - the user id
+	 * @param entries - the ledger entries of the user
+	 */
+	private void replay(String userId, Stream<LedgerEntry> entries) {
+
+		User user = Thinkr.INSTANCE.getUserService().getUser(userId);
+		if (user == null) {
+			throw new IllegalStateException("User " + userId + " is not registered with UserService");
+		}
+
+		// Sum per leaderboard and category
+		Map<LeaderboardImpl, Map<String, long[]>> points = new HashMap<>();
+		entries.forEach(entry -> {
+			OffsetDateTime time = entry.getTime();
+			boolean added = false;
+			for (LeaderboardImpl leaderboard : leaderboards) {
+				if (time == null || !leaderboard.isActive(time)) {
+					continue;
+				}
+				points.computeIfAbsent(leaderboard, k -> new HashMap<>())
+						.computeIfAbsent(entry.getCategoryName(), k -> new long[1])[0] += entry.getPoints();
+				added = true;
+			}
+			if (added) {
+				replayed.increment();
+			}
+		});
+
+		points.forEach((leaderboard, categoryPoints) -> {
+
+			service.addUser(leaderboard.getId(), user);
+			for (String categoryName : categoryPoints.keySet()) {
+				if (!leaderboard.hasCategory(categoryName)) {
+					leaderboard.addCategories(categoryName);
+				}
+			}
+
+			for (Scoreboard scoreboard : leaderboard.getScoreboards().values()) {
+				String entryId = service.getScoreboardId(user, scoreboard.getType());
+				if (entryId == null) {
+					continue;
+				}
+
+				long total = 0;
+				for (Map.Entry<String, long[]> category : categoryPoints.entrySet()) {
+					scoreboard.addPoints(entryId, category.getKey(), category.getValue()[0], false);
+					total += category.getValue()[0];
+				}
+				scoreboard.addPoints(entryId, Leaderboard.TOTAL, total, false);
+			}
+		});
+	}
+}
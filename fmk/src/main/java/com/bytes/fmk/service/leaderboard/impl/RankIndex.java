@@ -0,0 +1,335 @@
+package com.bytes.fmk.service.leaderboard.impl;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.bytes.fmk.service.leaderboard.Score;
+
+/**
+ * The ranked scores of a single {@code ScoreCategory} within a {@code Scoreboard}.
+ *
+ * <p>This is an order-statistic tree (a size augmented AVL tree) ordered by the
+ * category comparator, points descending then entry id. A changed score is
+ * repositioned in O(log n) instead of re-sorting the whole scoreboard.
+ *
+ * <p>The index is exposed as a read-only {@code List}, where index 0 is rank 1.
+ * The points of a score must not be modified while it is in the index,
+ * use {@link #delete(Score)} before the update and {@link #insert(Score)} after.
+ * This index holds the {@code Score} objects of the default storage.
+ *
+ * @author Kent
+ */
+class RankIndex extends ScoreIndex {
+
+	/**
+	 * The tree node. The size is the number of nodes in this subtree.
+	 */
+	private static final class Node {
+
+		private Score score;
+		private Node left;
+		private Node right;
+		private int height;
+		private int size;
+
+		private Node(Score score) {
+			this.score = score;
+			this.height = 1;
+			this.size = 1;
+		}
+	}
+
+	/**
+	 * The ranking order, typically the {@code ScoreCategory}
+	 */
+	private final Comparator<Score> comparator;
+
+	private Node root;
+
+
+	/**
+	 * Create an empty index
+	 * @param comparator - the ranking order
+	 */
+	RankIndex(Comparator<Score> comparator) {
+		this.comparator = comparator;
+	}
+
+
+	/**
+	 * Create an index from scores that are already sorted by the comparator.
+	 * The tree is built in O(n).
+	 * @param comparator - the ranking order
+	 * @param sortedScores - the scores, sorted by the comparator
+	 */
+	RankIndex(Comparator<Score> comparator, Score[] sortedScores) {
+		this.comparator = comparator;
+		this.root = build(sortedScores, 0, sortedScores.length - 1);
+	}
+
+
+	/**
+	 * Request to add the score to the index
+	 * @param score - the score
+	 * @return true if added, false if the score is already in the index
+	 */
+	@Override
+	boolean insert(Score score) {
+		int size = size();
+		root = insert(root, score);
+		if (size != size()) {
+			modCount++;
+			return true;
+		}
+		return false;
+	}
+
+
+	/**
+	 * Request to remove the score from the index. The score is located by
+	 * its current points, so it must not have changed since it was inserted.
+	 * @param score - the score
+	 * @return true if removed, false if not found
+	 */
+	@Override
+	boolean delete(Score score) {
+		int size = size();
+		root = delete(root, score);
+		if (size != size()) {
+			modCount++;
+			return true;
+		}
+		return false;
+	}
+
+
+	/**
+	 * Get the score at the specified index
+	 * @param index - the 0-based index, index 0 is rank 1
+	 * @return the score
+	 */
+	@Override
+	public Score get(int index) {
+
+		if (index < 0 || index >= size()) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+		}
+
+		Node node = root;
+		while (node != null) {
+			int leftSize = size(node.left);
+			if (index < leftSize) {
+				node = node.left;
+			} else if (index > leftSize) {
+				index -= leftSize + 1;
+				node = node.right;
+			} else {
+				break;
+			}
+		}
+		return node.score;
+	}
+
+
+	/**
+	 * Get the 0-based rank of the score. The score is located by its current 
+	 * points, so it must not have changed since it was inserted.
+	 * This is O(log n).
+	 * @param score - the score
+	 * @return the index of the score, -1 if not found
+	 */
+	@Override
+	int rank(Score score) {
+
+		int rank = 0;
+		Node node = root;
+		while (node != null) {
+			int cmp = comparator.compare(score, node.score);
+			if (cmp < 0) {
+				node = node.left;
+			} else if (cmp > 0) {
+				rank += size(node.left) + 1;
+				node = node.right;
+			} else {
+				return rank + size(node.left);
+			}
+		}
+		return -1;
+	}
+
+
+	/**
+	 * Linear search by {@code Score#equals(Object)}, in O(n).
+	 * Use {@link #rank(Score)} unless the scores changed since they were inserted.
+	 */
+	@Override
+	public int indexOf(Object o) {
+
+		int index = 0;
+		for (Score score : this) {
+			if (score.equals(o)) {
+				return index;
+			}
+			index++;
+		}
+		return -1;
+	}
+
+
+	@Override
+	public int size() {
+		return size(root);
+	}
+
+
+	/**
+	 * In-order traversal, O(n) for the full iteration.
+	 */
+	@Override
+	public Iterator<Score> iterator() {
+
+		return new Iterator<Score>() {
+
+			private Deque<Node> path = pushLeft(new ArrayDeque<>(), root);
+
+			@Override
+			public boolean hasNext() {
+				return !path.isEmpty();
+			}
+
+			@Override
+			public Score next() {
+				if (path.isEmpty()) {
+					throw new NoSuchElementException();
+				}
+				Node node = path.pop();
+				pushLeft(path, node.right);
+				return node.score;
+			}
+		};
+	}
+
+
+	private static Deque<Node> pushLeft(Deque<Node> path, Node node) {
+		while (node != null) {
+			path.push(node);
+			node = node.left;
+		}
+		return path;
+	}
+
+
+	private Node build(Score[] sortedScores, int from, int to) {
+
+		if (from > to) {
+			return null;
+		}
+
+		int mid = (from + to) >>> 1;
+		Node node = new Node(sortedScores[mid]);
+		node.left = build(sortedScores, from, mid - 1);
+		node.right = build(sortedScores, mid + 1, to);
+		return update(node);
+	}
+
+
+	private Node insert(Node node, Score score) {
+
+		if (node == null) {
+			return new Node(score);
+		}
+
+		int cmp = comparator.compare(score, node.score);
+		if (cmp < 0) {
+			node.left = insert(node.left, score);
+		} else if (cmp > 0) {
+			node.right = insert(node.right, score);
+		} else {
+			return node;
+		}
+		return balance(update(node));
+	}
+
+
+	private Node delete(Node node, Score score) {
+
+		if (node == null) {
+			return null;
+		}
+
+		int cmp = comparator.compare(score, node.score);
+		if (cmp < 0) {
+			node.left = delete(node.left, score);
+		} else if (cmp > 0) {
+			node.right = delete(node.right, score);
+		} else {
+			if (node.left == null) return node.right;
+			if (node.right == null) return node.left;
+
+			// Replace with the successor
+			Node successor = node.right;
+			while (successor.left != null) {
+				successor = successor.left;
+			}
+			node.score = successor.score;
+			node.right = delete(node.right, successor.score);
+		}
+		return balance(update(node));
+	}
+
+
+	private Node balance(Node node) {
+
+		int factor = height(node.left) - height(node.right);
+		if (factor > 1) {
+			if (height(node.left.left) < height(node.left.right)) {
+				node.left = rotateLeft(node.left);
+			}
+			return rotateRight(node);
+		}
+
+		if (factor < -1) {
+			if (height(node.right.right) < height(node.right.left)) {
+				node.right = rotateRight(node.right);
+			}
+			return rotateLeft(node);
+		}
+		return node;
+	}
+
+
+	private Node rotateRight(Node node) {
+		Node pivot = node.left;
+		node.left = pivot.right;
+		pivot.right = update(node);
+		return update(pivot);
+	}
+
+
+	private Node rotateLeft(Node node) {
+		Node pivot = node.right;
+		node.right = pivot.left;
+		pivot.left = update(node);
+		return update(pivot);
+	}
+
+
+	private static Node update(Node node) {
+		node.height = Math.max(height(node.left), height(node.right)) + 1;
+		node.size = size(node.left) + size(node.right) + 1;
+		return node;
+	}
+
+
+	private static int height(Node node) {
+		return (node == null) ?0 :node.height;
+	}
+
+
+	private static int size(Node node) {
+		return (node == null) ?0 :node.size;
+	}
+}
@@ -0,0 +1,613 @@
+package com.bytes.fmk.service.leaderboard.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.bytes.fmk.service.leaderboard.Score;
+
+/**
+ * Columnar storage of the scoreboard entries.
+ *
+ * <pre>
+ * entryId      -> row    (interned, dense)
+ * categoryName -> column (one primitive long column per category)
+ * points       =  columns[column][row]
+ * </pre>
+ *
+ * This is exposed as the same {@code Map} of entry id to scores keyed by category
+ * name as the default storage. The maps and the {@code Score}s are flyweight views
+ * created on access, writing to a {@code Score} updates the column. No object is
+ * kept per score, the rank indexes of this storage hold the rows, see {@link ColumnRankIndex}.
+ *
+ * <p>A column is a list of fixed size chunks, growing a column adds chunks and
+ * never moves the points. The points are read and updated without lock, atomically
+ * in the heap and under the lock of their chunk outside of the heap. The allocation
+ * of the rows and the columns is guarded by this storage.
+ *
+ * <p>The rows of removed entries are reused. A flyweight checks its entry id against
+ * its row on every access, a score held after its entry is removed keeps its last
+ * points and no longer reads or writes the row.
+ *
+ * @author Kent
+ */
+class ScoreColumns extends AbstractMap<String, Map<String, Score>> {
+
+	private static final int CHUNK_SHIFT = 10;
+	private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+	/**
+	 * Allocate the columns outside of the heap
+	 */
+	private final boolean offHeap;
+
+	/**
+	 * Key = entryId, Value = row
+	 */
+	private final Map<String, Integer> rows;
+
+	/**
+	 * The entry id of each row, null if the row is free.
+	 * Replaced by a larger copy when full.
+	 */
+	private volatile String[] entryIds;
+
+	/**
+	 * The number of rows allocated, free rows included
+	 */
+	private int rowCount;
+
+	/**
+	 * The rows released by removed entries
+	 */
+	private final Deque<Integer> freeRows;
+
+	/**
+	 * Key = categoryName, Value = column
+	 */
+	private final Map<String, Integer> columnIndex;
+
+	/**
+	 * The category name of each column
+	 */
+	private volatile String[] categoryNames;
+
+	private volatile Column[] columns;
+
+
+	/**
+	 * Create an empty storage
+	 * @param offHeap - true to allocate the columns outside of the heap
+	 */
+	ScoreColumns(boolean offHeap) {
+		this.offHeap = offHeap;
+		this.rows = new ConcurrentHashMap<>();
+		this.entryIds = new String[CHUNK_SIZE];
+		this.freeRows = new ArrayDeque<>();
+		this.columnIndex = new ConcurrentHashMap<>();
+		this.categoryNames = new String[0];
+		this.columns = new Column[0];
+	}
+
+
+	/**
+	 * Create the storage from existing score entries
+	 * @param scoreEntries - the entry scores keyed by category name
+	 * @param categoryNames - the categories
+	 * @param offHeap - true to allocate the columns outside of the heap
+	 */
+	ScoreColumns(Map<String, Map<String, Score>> scoreEntries, Collection<String> categoryNames, boolean offHeap) {
+		this(offHeap);
+		categoryNames.forEach(this::addColumn);
+		scoreEntries.forEach(this::put);
+	}
+
+
+	/**
+	 * Add a column for the category. The points of all entries are 0.
+	 * @param categoryName - the category name
+	 * @return the column, the existing one if the category is already added
+	 */
+	synchronized int addColumn(String categoryName) {
+
+		Integer column = columnIndex.get(categoryName);
+		if (column != null) {
+			return column;
+		}
+
+		column = columns.length;
+		Column added = offHeap ?new DirectColumn() :new HeapColumn();
+		added.grow(entryIds.length);
+		categoryNames = append(categoryNames, categoryName);
+		columns = append(columns, added);
+		columnIndex.put(categoryName, column);
+		return column;
+	}
+
+
+	long getPoints(int row, int column) {
+		return columns[column].get(row);
+	}
+
+
+	void setPoints(int row, int column, long points) {
+		columns[column].set(row, points);
+	}
+
+
+	void addPoints(int row, int column, long points) {
+		columns[column].add(row, points);
+	}
+
+
+	String getEntryId(int row) {
+		return entryIds[row];
+	}
+
+
+	String getCategoryName(int column) {
+		return categoryNames[column];
+	}
+
+
+	int getColumnCount() {
+		return columns.length;
+	}
+
+
+	/**
+	 * @param entryId - the entry id
+	 * @return the row of the entry, -1 if not found
+	 */
+	int getRow(Object entryId) {
+		Integer row = rows.get(entryId);
+		return (row == null) ?-1 :row;
+	}
+
+
+	/**
+	 * @param categoryName - the category name
+	 * @return the column of the category, -1 if not found
+	 */
+	int getColumn(Object categoryName) {
+		Integer column = columnIndex.get(categoryName);
+		return (column == null) ?-1 :column;
+	}
+
+
+	/**
+	 * Get the score of the entry without the view of its row
+	 * @param entryId - the entry id
+	 * @param categoryName - the category name
+	 * @return the flyweight score, null if the entry or the category is not found
+	 */
+	Score getScore(String entryId, String categoryName) {
+		int row = getRow(entryId);
+		int column = getColumn(categoryName);
+		return (row < 0 || column < 0) ?null :new ColumnScore(this, row, column);
+	}
+
+
+	/**
+	 * @return the rows of the entries, in no particular order
+	 */
+	int[] getRows() {
+		return rows.values().stream().mapToInt(Integer::intValue).toArray();
+	}
+
+
+	/**
+	 * Allocate a row for the entry, reusing released rows first
+	 * @param entryId - the entry id
+	 * @return the row
+	 */
+	private synchronized int addRow(String entryId) {
+
+		int row;
+		if (freeRows.isEmpty()) {
+			row = rowCount++;
+			if (row >= entryIds.length) {
+				int capacity = entryIds.length + Math.max(CHUNK_SIZE, (entryIds.length >>> 1) & ~CHUNK_MASK);
+				for (Column column : columns) {
+					column.grow(capacity);
+				}
+				entryIds = Arrays.copyOf(entryIds, capacity);
+			}
+		} else {
+			row = freeRows.pop();
+			for (Column column : columns) {
+				column.set(row, 0);
+			}
+		}
+		entryIds[row] = entryId;
+		rows.put(entryId, row);
+		return row;
+	}
+
+
+	/**
+	 * Release the row, the points are reset when the row is reused.
+	 * The flyweights of the removed entry no longer match the row.
+	 * @param row - the row
+	 */
+	private synchronized void releaseRow(int row) {
+		entryIds[row] = null;
+		freeRows.push(row);
+	}
+
+
+	/**
+	 * Get the flyweight view of the entry scores
+	 * @param entryId - the entry id
+	 * @return the scores keyed by category name, null if not found
+	 */
+	@Override
+	public Map<String, Score> get(Object entryId) {
+		int row = getRow(entryId);
+		return (row < 0) ?null :new Row(row);
+	}
+
+
+	@Override
+	public boolean containsKey(Object entryId) {
+		return rows.containsKey(entryId);
+	}
+
+
+	@Override
+	public int size() {
+		return rows.size();
+	}
+
+
+	/**
+	 * Copy the points of the specified scores to the entry.
+	 * Missing categories are added.
+	 * @return null
+	 */
+	@Override
+	public synchronized Map<String, Score> put(String entryId, Map<String, Score> scores) {
+
+		int row = getRow(entryId);
+		if (row < 0) {
+			row = addRow(entryId);
+		}
+
+		for (Entry<String, Score> score : scores.entrySet()) {
+			setPoints(row, addColumn(score.getKey()), score.getValue().getPoints());
+		}
+		return null;
+	}
+
+
+	/**
+	 * Remove the entry
+	 * @return a detached copy of the entry scores, null if not found
+	 */
+	@Override
+	public synchronized Map<String, Score> remove(Object entryId) {
+
+		Integer row = rows.remove(entryId);
+		if (row == null) {
+			return null;
+		}
+
+		Map<String, Score> scores = copy(row);
+		releaseRow(row);
+		return scores;
+	}
+
+
+	@Override
+	public Set<String> keySet() {
+		return Collections.unmodifiableSet(rows.keySet());
+	}
+
+
+	@Override
+	public Set<Entry<String, Map<String, Score>>> entrySet() {
+
+		return new AbstractSet<Entry<String, Map<String, Score>>>() {
+
+			@Override
+			public Iterator<Entry<String, Map<String, Score>>> iterator() {
+
+				Iterator<Entry<String, Integer>> iterator = rows.entrySet().iterator();
+				return new Iterator<Entry<String, Map<String, Score>>>() {
+
+					private int last = -1;
+
+					@Override
+					public boolean hasNext() {
+						return iterator.hasNext();
+					}
+
+					@Override
+					public Entry<String, Map<String, Score>> next() {
+						Entry<String, Integer> row = iterator.next();
+						last = row.getValue();
+						return new SimpleImmutableEntry<>(row.getKey(), new Row(last));
+					}
+
+					@Override
+					public void remove() {
+						iterator.remove();
+						releaseRow(last);
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return rows.size();
+			}
+		};
+	}
+
+
+	/**
+	 * Copy the points of the row to new {@code Score} objects
+	 * @param row - the row
+	 * @return the scores keyed by category name
+	 */
+	private Map<String, Score> copy(int row) {
+
+		Map<String, Score> scores = new HashMap<>();
+		String entryId = entryIds[row];
+		String[] names = categoryNames;
+		for (int column = 0; column < names.length; column++) {
+			Score score = new Score(entryId, names[column]);
+			score.setPoints(getPoints(row, column));
+			scores.put(score.getCategoryName(), score);
+		}
+		return scores;
+	}
+
+
+	private static <T> T[] append(T[] array, T element) {
+		T[] appended = Arrays.copyOf(array, array.length + 1);
+		appended[array.length] = element;
+		return appended;
+	}
+
+
+	/**
+	 * The scores of an entry, keyed by category name
+	 */
+	private class Row extends AbstractMap<String, Score> {
+
+		private final int row;
+
+		private Row(int row) {
+			this.row = row;
+		}
+
+		@Override
+		public Score get(Object categoryName) {
+			int column = getColumn(categoryName);
+			return (column < 0) ?null :new ColumnScore(ScoreColumns.this, row, column);
+		}
+
+		@Override
+		public boolean containsKey(Object categoryName) {
+			return columnIndex.containsKey(categoryName);
+		}
+
+		@Override
+		public int size() {
+			return getColumnCount();
+		}
+
+		@Override
+		public Score put(String categoryName, Score score) {
+			int column = addColumn(categoryName);
+			setPoints(row, column, score.getPoints());
+			return null;
+		}
+
+		@Override
+		public Set<Entry<String, Score>> entrySet() {
+
+			return new AbstractSet<Entry<String, Score>>() {
+
+				@Override
+				public Iterator<Entry<String, Score>> iterator() {
+
+					return new Iterator<Entry<String, Score>>() {
+
+						private int column = 0;
+
+						@Override
+						public boolean hasNext() {
+							return column < getColumnCount();
+						}
+
+						@Override
+						public Entry<String, Score> next() {
+							if (!hasNext()) {
+								throw new NoSuchElementException();
+							}
+							Score score = new ColumnScore(ScoreColumns.this, row, column++);
+							return new SimpleImmutableEntry<>(score.getCategoryName(), score);
+						}
+					};
+				}
+
+				@Override
+				public int size() {
+					return getColumnCount();
+				}
+			};
+		}
+	}
+
+
+	/**
+	 * Flyweight {@code Score}, the points are read from and written to the column.
+	 * The inherited points are a snapshot taken on creation so the reflective
+	 * JSON serialization writes the same format as the default storage.
+	 * Once the entry is removed, the row may hold another entry, the score
+	 * falls back to the inherited points.
+	 */
+	static final class ColumnScore extends Score {
+
+		private final transient ScoreColumns scoreColumns;
+		private final transient int row;
+		private final transient int column;
+
+		ColumnScore(ScoreColumns scoreColumns, int row, int column) {
+			super(scoreColumns.getEntryId(row), scoreColumns.getCategoryName(column));
+			this.scoreColumns = scoreColumns;
+			this.row = row;
+			this.column = column;
+			super.setPoints(scoreColumns.getPoints(row, column));
+		}
+
+		@Override
+		public long getPoints() {
+			return isStored() ?scoreColumns.getPoints(row, column) :super.getPoints();
+		}
+
+		@Override
+		public void setPoints(long points) {
+			if (isStored()) {
+				scoreColumns.setPoints(row, column, points);
+			} else {
+				super.setPoints(points);
+			}
+		}
+
+		@Override
+		public void add(long points) {
+			if (isStored()) {
+				scoreColumns.addPoints(row, column, points);
+			} else {
+				super.add(points);
+			}
+		}
+
+		/**
+		 * @param storage - the storage
+		 * @return the row of the score in the storage, -1 if it belongs to another storage or is removed
+		 */
+		int getRow(ScoreColumns storage) {
+			return (storage == scoreColumns && isStored()) ?row :-1;
+		}
+
+		/**
+		 * @return true if the row still holds the entry of this score
+		 */
+		private boolean isStored() {
+			return getEntryId().equals(scoreColumns.getEntryId(row));
+		}
+	}
+
+
+	/**
+	 * A column of points in chunks, the chunks are added by the storage lock
+	 */
+	private static abstract class Column {
+
+		abstract long get(int row);
+
+		abstract void set(int row, long points);
+
+		abstract void add(int row, long points);
+
+		/**
+		 * Add the chunks holding the rows up to the capacity
+		 * @param capacity - the number of rows, a multiple of the chunk size
+		 */
+		abstract void grow(int capacity);
+	}
+
+
+	private static final class HeapColumn extends Column {
+
+		private volatile AtomicLongArray[] chunks = new AtomicLongArray[0];
+
+		@Override
+		long get(int row) {
+			return chunks[row >>> CHUNK_SHIFT].get(row & CHUNK_MASK);
+		}
+
+		@Override
+		void set(int row, long points) {
+			chunks[row >>> CHUNK_SHIFT].set(row & CHUNK_MASK, points);
+		}
+
+		@Override
+		void add(int row, long points) {
+			chunks[row >>> CHUNK_SHIFT].addAndGet(row & CHUNK_MASK, points);
+		}
+
+		@Override
+		void grow(int capacity) {
+			AtomicLongArray[] grown = Arrays.copyOf(chunks, capacity >>> CHUNK_SHIFT);
+			for (int i = chunks.length; i < grown.length; i++) {
+				grown[i] = new AtomicLongArray(CHUNK_SIZE);
+			}
+			chunks = grown;
+		}
+	}
+
+
+	/**
+	 * The chunks are direct buffers, a chunk is its own lock
+	 */
+	private static final class DirectColumn extends Column {
+
+		private volatile LongBuffer[] chunks = new LongBuffer[0];
+
+		@Override
+		long get(int row) {
+			LongBuffer chunk = chunks[row >>> CHUNK_SHIFT];
+			synchronized (chunk) {
+				return chunk.get(row & CHUNK_MASK);
+			}
+		}
+
+		@Override
+		void set(int row, long points) {
+			LongBuffer chunk = chunks[row >>> CHUNK_SHIFT];
+			synchronized (chunk) {
+				chunk.put(row & CHUNK_MASK, points);
+			}
+		}
+
+		@Override
+		void add(int row, long points) {
+			LongBuffer chunk = chunks[row >>> CHUNK_SHIFT];
+			synchronized (chunk) {
+				int index = row & CHUNK_MASK;
+				chunk.put(index, chunk.get(index) + points);
+			}
+		}
+
+		@Override
+		void grow(int capacity) {
+			LongBuffer[] grown = Arrays.copyOf(chunks, capacity >>> CHUNK_SHIFT);
+			for (int i = chunks.length; i < grown.length; i++) {
+				grown[i] = ByteBuffer.allocateDirect(CHUNK_SIZE * Long.BYTES)
+						.order(ByteOrder.nativeOrder())
+						.asLongBuffer();
+			}
+			chunks = grown;
+		}
+	}
+}
@@ -0,0 +1,45 @@
+package com.bytes.fmk.service.leaderboard.impl;
+
+import java.util.AbstractList;
+
+import com.bytes.fmk.service.leaderboard.Score;
+
+/**
+ * The ranked scores of a single {@code ScoreCategory} within a {@code Scoreboard},
+ * exposed as a read-only {@code List} where index 0 is rank 1.
+ *
+ * <p>The scores are located by their current points, the points of a score must
+ * not be modified while it is in the index. Use {@link #delete(Score)} before the
+ * update and {@link #insert(Score)} after. The index is guarded by the category lock.
+ *
+ * @see RankIndex
+ * @see ColumnRankIndex
+ * @author Kent
+ */
+abstract class ScoreIndex extends AbstractList<Score> {
+
+
+	/**
+	 * Request to add the score to the index
+	 * @param score - the score
+	 * @return true if added, false if the score is already in the index
+	 */
+	abstract boolean insert(Score score);
+
+
+	/**
+	 * Request to remove the score from the index
+	 * @param score - the score
+	 * @return true if removed, false if not found
+	 */
+	abstract boolean delete(Score score);
+
+
+	/**
+	 * Get the 0-based rank of the score in O(log n)
+	 * @param score - the score
+	 * @return the index of the score, -1 if not found
+	 */
+	abstract int rank(Score score);
+
+}
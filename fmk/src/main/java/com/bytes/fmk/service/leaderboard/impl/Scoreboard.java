@@ -1,6 +1,7 @@
 package com.bytes.fmk.service.leaderboard.impl;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
@@ -14,13 +15,15 @@ import org.slf4j.LoggerFactory;
 import com.bytes.fmk.service.leaderboard.Leaderboard;
 import com.bytes.fmk.service.leaderboard.Score;
 import com.bytes.fmk.service.leaderboard.ScoreCategory;
+import com.bytes.fmk.service.leaderboard.ScoreStorage;
 import com.bytes.fmk.service.leaderboard.ScoreboardType;
+import com.bytes.fmk.service.persistence.Restorable;
 
 /**
  * The score board encapsulates the scoring logic for the leaderboard.
  * @author Kent
  */
-public class Scoreboard {
+public class Scoreboard implements Restorable {
 	
 	private static Logger logger = LoggerFactory.getLogger(Scoreboard.class);
 	
@@ -28,18 +31,63 @@ public class Scoreboard {
 	
 	/**
 	 * user  
-	 * 	+ user: for each categories, add new score object for user
-	 * 	- user: for each categories, remove score object belonging to user
+	 * 	+ user: for each ranked categories, insert the new score object
+	 * 	- user: for each ranked categories, delete the score object belonging to user
 	 * 
 	 * score 
-	 * 	- call update to replace ranked score list corresponding to category
+	 * 	- reposition the score in the rank index corresponding to category
 	 * 
 	 * keyed by CategoryName, 
-	 * contains the list of user scores sorted by rank,
+	 * contains the index of user scores ordered by rank,
 	 * Key =   CategoryName
-	 * Value = List of ranked scores
+	 * Value = The rank index
+	 * 
+	 * This map is not persisted, it is rebuilt by the rank calculation.
+	 */
+	private transient Map<String, ScoreIndex> rankedScores;
+	
+	
+	/**
+	 * The lock of each category, keyed by CategoryName.
+	 * Guards the rank index of the category and the repositioning of its scores,
+	 * updates of different categories do not contend.
+	 */
+	private transient Map<String, Object> locks;
+	
+	
+	/**
+	 * The highest scores of each category, bounded to {@code topScoreCount}.
+	 * Key =   CategoryName
+	 * Value = The rank index of the top scores
+	 * 
+	 * A view is complete, it holds the top min(topScoreCount, size) scores.
+	 * A view is removed when that can no longer be guaranteed incrementally, 
+	 * e.g. a top score decreased below a score outside the view, and rebuilt 
+	 * on the next read. This map is not persisted.
+	 */
+	private transient Map<String, ScoreIndex> topScores;
+	
+	
+	/**
+	 * The entries whose score changed since the last delta save, keyed by CategoryName.
+	 * Null until drained by the first save, the changes are only tracked afterwards.
+	 * A category is guarded by its lock.
+	 */
+	private transient volatile Map<String, Set<String>> changes;
+	
+	
+	/**
+	 * Indicates if entries or categories were added or removed since the last full save.
+	 * This is set for new and loaded scoreboards.
+	 */
+	private transient volatile boolean structureChanged = true;
+	
+	
+	/**
+	 * This is persisted.
+	 * The number of top scores kept per category, 0 if disabled.
 	 */
-	private Map<String, List<Score>> rankedScores;
+	private int topScoreCount;
 	
 		
 	/** 
@@ -66,6 +114,15 @@ public class Scoreboard {
 	private Map<String, Map<String, Score>> scoreEntries;
 	
 	
+	/**
+	 * This is persisted.
+	 * The storage engine of the score entries. The persisted format of the 
+	 * score entries is the same for all engines, the storage is restored 
+	 * once after load, see {@link #restore()}.
+	 */
+	private ScoreStorage storage;
+	
+	
 	/**
 	 * This map is persisted.
 	 * category
@@ -106,9 +163,12 @@ public class Scoreboard {
 		this.type = type;
 		this.title = title;
 		this.scoreEntries = new ConcurrentHashMap<>();
+		this.storage = ScoreStorage.Default;
 		
 		// Rank is not calculated
 		this.rankedScores = new ConcurrentHashMap<>();
+		this.locks = new ConcurrentHashMap<>();
+		this.topScores = new ConcurrentHashMap<>();
 		
 		// Default score category (Total)
 		this.categories = new ConcurrentHashMap<>();
@@ -140,17 +200,25 @@ public class Scoreboard {
 			return null;
 		}
 		
-		if (!scoreEntries.containsKey(entryId)) {
+		Map<String, Map<String, Score>> entries = getScoreEntries();
+		if (entries instanceof ScoreColumns) {
+			// The score without the view of the entry scores
+			Score score = ((ScoreColumns) entries).getScore(entryId, categoryName);
+			if (score != null) {
+				return score;
+			}
+		}
+		
+		Map<String, Score> scores = entries.get(entryId);
+		if (scores == null) {
 			logger.error("entry is not registered: " + entryId);
 			return null;
 		}
 		
-		Score score;
-		if (!scoreEntries.get(entryId).containsKey(categoryName)) {
+		Score score = scores.get(categoryName);
+		if (score == null) {
 			logger.error("No score found for " + entryId + " category: " + categoryName);
 			score = new Score(entryId, categoryName);
-		} else {
-			score = scoreEntries.get(entryId).get(categoryName);
 		}
 		return score;
 	}
@@ -161,11 +229,12 @@ public class Scoreboard {
 	 */
 	public Map<String, Score> getScores(String entryId) {
 		
-		if(!scoreEntries.containsKey(entryId)) {
+		Map<String, Score> scores = getScoreEntries().get(entryId);
+		if(scores == null) {
 			logger.warn("Entry Id not found: " + entryId);
 			return new HashMap<>();
 		}
-		return scoreEntries.get(entryId);
+		return scores;
 		
 	}
 
@@ -179,7 +248,8 @@ public class Scoreboard {
 
 	
 	/**
-	 * Get the rank of the specified score
+	 * Get the rank of the specified score.
+	 * This is O(log n) if the category rank is up-to-date.
 	 * @param userId - the user id
 	 * @param categoryName - the specific category, identified by its name
 	 * @return the rank of the specified score, -1 if user is not ranked
@@ -187,19 +257,255 @@ public class Scoreboard {
 	int getRank(String userId, String categoryName) {
 		
 		ScoreCategory category = getCategory(categoryName);
-		if (category.isStaled()) {
-			logger.warn("Rank is staled. It might be incorrect.");
+		ScoreIndex index = rankedScores.get(categoryName);
+		Score score = getScore(userId, categoryName);
+		if (category == null || index == null || score == null) {
+			logger.warn("Unable to get rank, not calculated or not registered: " + userId);
+			return -1;
+		}
+		
+		int rank;
+		synchronized (getLock(categoryName)) {
+			if (isRanked(category)) {
+				rank = index.rank(score);
+			} else {
+				// Scores changed after the calculation, the index can only be scanned
+				logger.warn("Rank is staled. It might be incorrect.");
+				rank = index.indexOf(score);
+			}
+		}
+		return (rank < 0) ?-1 :rank +1;
+	}
+	
+	
+	/**
+	 * Add points to the score of the specified entry.
+	 * If the category rank is up-to-date and {@code updateRank} is set, the score 
+	 * is repositioned in the rank index in O(log n). Otherwise the category is 
+	 * marked as staled and requires a recalculation. This is thread-safe.
+	 * @param entryId - the id of the entry, can be userId, teamId, etc...
+	 * @param categoryName - the specific category
+	 * @param points - the points to be added
+	 * @param updateRank - true to keep the rank up-to-date 
+	 * @return the updated {@code Score}, null if the entry is not registered
+	 */
+	Score addPoints(String entryId, String categoryName, long points, boolean updateRank) {
+		
+		Score score = getScore(entryId, categoryName);
+		if (score == null) {
+			return null;
+		}
+		
+		ScoreCategory category = getCategory(categoryName);
+		synchronized (getLock(categoryName)) {
+			
+			// Remove from the indexes before the points change
+			ScoreIndex top = topScores.get(categoryName);
+			boolean isTop = top != null && top.delete(score);
+			
+			// The score is not indexed if its entry was concurrently removed
+			ScoreIndex index = rankedScores.get(categoryName);
+			boolean reposition = updateRank && isRanked(category) && index.delete(score);
+			score.add(points);
+			markChanged(categoryName, entryId);
+			if (reposition) {
+				index.insert(score);
+			} else if (category != null) {
+				category.setStaled(true);
+			}
+			
+			if (top != null) {
+				updateTopScores(top, categoryName, score, isTop, points);
+			}
+		}
+		return score;
+	}
+	
+	
+	/**
+	 * Register a new entry with a zero score in every category.
+	 * The new scores are added to all up-to-date rank indexes.
+	 * @param entryId - the id of the entry, can be userId, teamId, etc...
+	 * @return true if added, false if the entry is already registered
+	 */
+	synchronized boolean addEntry(String entryId) {
+		
+		Map<String, Map<String, Score>> entries = getScoreEntries();
+		if (entries.containsKey(entryId)) {
+			return false;
+		}
+		
+		Map<String, Score> scores = new ConcurrentHashMap<>();
+		for (ScoreCategory category : categories.values()) {
+			scores.put(category.getName(), new Score(entryId, category.getName()));
+		}
+		entries.put(entryId, scores);
+		structureChanged = true;
+		
+		// Index the stored scores, these are views for the columnar storage
+		scores = entries.get(entryId);
+		for (ScoreCategory category : categories.values()) {
+			synchronized (getLock(category.getName())) {
+				Score score = scores.get(category.getName());
+				if (isRanked(category)) {
+					rankedScores.get(category.getName()).insert(score);
+				}
+				
+				ScoreIndex top = topScores.get(category.getName());
+				if (top != null) {
+					updateTopScores(top, category.getName(), score, false, 0);
+				}
+			}
+		}
+		return true;
+	}
+	
+	
+	/**
+	 * Set the points of every score to zero, the entries stay registered.
+	 * The rank indexes are dropped and the categories are staled, the ranks
+	 * are rebuilt by the next calculation.
+	 */
+	synchronized void resetPoints() {
+		
+		for (ScoreCategory category : categories.values()) {
+			synchronized (getLock(category.getName())) {
+				rankedScores.remove(category.getName());
+				topScores.remove(category.getName());
+				for (Map<String, Score> scores : getScoreEntries().values()) {
+					Score score = scores.get(category.getName());
+					if (score != null && score.getPoints() != 0) {
+						score.setPoints(0);
+						markChanged(category.getName(), score.getEntryId());
+					}
+				}
+				category.setStaled(true);
+			}
 		}
+	}
+	
+	
+	/**
+	 * Unregister the entry and remove its scores from all rank indexes.
+	 * @param entryId - the id of the entry, can be userId, teamId, etc...
+	 * @return the removed scores keyed by category name, null if not registered
+	 */
+	synchronized Map<String, Score> removeEntry(String entryId) {
 		
-		int rank = -1;
-		try {
-			Score score = getScore(userId, categoryName);
-			rank = rankedScores.get(categoryName).indexOf(score) +1;
-		} catch (Exception e) {
-			logger.error("Unable to get user rank.", e);
+		Map<String, Score> scores = getScoreEntries().get(entryId);
+		if (scores == null) {
+			return null;
 		}
-		return rank;
 		
+		// Remove from the indexes while the points are still stored
+		structureChanged = true;
+		for (Score score : scores.values()) {
+			synchronized (getLock(score.getCategoryName())) {
+				markChanged(score.getCategoryName(), entryId);
+				ScoreIndex index = rankedScores.get(score.getCategoryName());
+				if (index != null && !index.delete(score)) {
+					// Not in the index or out of order, the index needs a rebuild
+					getCategory(score.getCategoryName()).setStaled(true);
+				}
+				
+				// A score outside the view would move up, rebuild on the next read
+				ScoreIndex top = topScores.get(score.getCategoryName());
+				if (top != null && top.delete(score) && getSize() > topScoreCount) {
+					topScores.remove(score.getCategoryName());
+				}
+			}
+		}
+		return getScoreEntries().remove(entryId);
+	}
+	
+	
+	/**
+	 * Record the changed score, the caller holds the category lock
+	 * @param categoryName - the category name
+	 * @param entryId - the id of the entry
+	 */
+	private void markChanged(String categoryName, String entryId) {
+		Map<String, Set<String>> tracked = changes;
+		if (tracked != null) {
+			tracked.computeIfAbsent(categoryName, k -> ConcurrentHashMap.newKeySet()).add(entryId);
+		}
+	}
+	
+	
+	/**
+	 * Take the entries whose score changed since the previous call, 
+	 * the changes are tracked from the first call.
+	 * @return the changed entry ids keyed by category name
+	 */
+	Map<String, Set<String>> drainChanges() {
+		
+		Map<String, Set<String>> drained = new HashMap<>();
+		Map<String, Set<String>> previous;
+		synchronized (this) {
+			previous = changes;
+			changes = new ConcurrentHashMap<>();
+		}
+		if (previous == null) {
+			return drained;
+		}
+		
+		// A writer holding the category lock may still add to the previous changes
+		List<String> categoryNames = new ArrayList<>(categories.keySet());
+		categoryNames.addAll(previous.keySet());
+		for (String categoryName : categoryNames) {
+			synchronized (getLock(categoryName)) {
+				Set<String> entryIds = previous.remove(categoryName);
+				if (entryIds != null) {
+					drained.put(categoryName, entryIds);
+				}
+			}
+		}
+		return drained;
+	}
+	
+	
+	/**
+	 * Track the changes again, e.g. after a failed save
+	 * @param categoryName - the category name
+	 * @param entryIds - the changed entry ids
+	 */
+	void restoreChanges(String categoryName, Collection<String> entryIds) {
+		synchronized (getLock(categoryName)) {
+			entryIds.forEach(entryId -> markChanged(categoryName, entryId));
+		}
+	}
+	
+	
+	/**
+	 * @return true if the changes are tracked
+	 */
+	boolean isTrackingChanges() {
+		return changes != null;
+	}
+	
+	
+	/**
+	 * @return true if entries or categories were added or removed since the last full save
+	 */
+	boolean isStructureChanged() {
+		return structureChanged;
+	}
+	
+	
+	void setStructureChanged(boolean structureChanged) {
+		this.structureChanged = structureChanged;
+	}
+	
+	
+	/**
+	 * Indicates if the rank index of the category is up-to-date.
+	 * @param category - the score category
+	 * @return true if the rank index can be updated incrementally
+	 */
+	boolean isRanked(ScoreCategory category) {
+		return category != null && 
+				!category.isStaled() && 
+				rankedScores.containsKey(category.getName());
 	}
 	
 	
@@ -207,7 +513,7 @@ public class Scoreboard {
 	 * Add the specified category
 	 * @param category - the categories to add
 	 */
-	public void addCategories(String... categoryNames) {
+	public synchronized void addCategories(String... categoryNames) {
 		
 		for (String categoryName : categoryNames) {
 			if (categories.containsKey(categoryName)) {
@@ -240,34 +546,186 @@ public class Scoreboard {
 	 * @param categoryName - the name of the category
 	 * @return the {@code ScoreCategory}
 	 */
-	 ScoreCategory addCategoryInternal(String categoryName) {
+	synchronized ScoreCategory addCategoryInternal(String categoryName) {
 		
 		ScoreCategory category = new ScoreCategory(categoryName);
 		categories.put(categoryName, category);
+		structureChanged = true;
 		
 		// Add new category to all user scores
-		for (String userId : scoreEntries.keySet()) {
-			Map<String, Score> scoreByCategory = scoreEntries.get(userId);
+		Map<String, Map<String, Score>> entries = getScoreEntries();
+		if (entries instanceof ScoreColumns) {
+			((ScoreColumns) entries).addColumn(categoryName);
+			return category;
+		}
+		
+		for (String userId : entries.keySet()) {
+			Map<String, Score> scoreByCategory = entries.get(userId);
 			scoreByCategory.put(categoryName, new Score(userId, categoryName));
 		}
 		return category;
 	}
 
+	/**
+	 * Get the lock guarding the rank index and the score repositioning 
+	 * of the category. Readers of the rank index hold this lock.
+	 * @param categoryName - the category name
+	 * @return the lock
+	 */
+	Object getLock(String categoryName) {
+		return locks.computeIfAbsent(categoryName, k -> new Object());
+	}
+	
 	/**
 	 * Get the ranked score corresponding to the category
 	 * @param categoryName - the category
-	 * @return the rankedScores
+	 * @return the rankedScores, a read-only view of the rank index
 	 */
 	List<Score> getRankedScores(String categoryName) {
 		return rankedScores.get(categoryName);
 	}
 	
+	/**
+	 * Get the top scores of the category, the view is built if needed in 
+	 * O(k) from an up-to-date rank index, otherwise in O(n log k).
+	 * The caller holds the category lock.
+	 * @param categoryName - the category
+	 * @return the top scores in rank order, null if disabled
+	 */
+	List<Score> getTopScores(String categoryName) {
+		
+		if (topScoreCount < 1) {
+			return null;
+		}
+		
+		ScoreIndex top = topScores.get(categoryName);
+		if (top != null) {
+			return top;
+		}
+		
+		ScoreCategory category = getCategory(categoryName);
+		if (category == null) {
+			return null;
+		}
+		
+		Map<String, Map<String, Score>> entries = getScoreEntries();
+		if (entries instanceof ScoreColumns) {
+			ScoreColumns columns = (ScoreColumns) entries;
+			if (isRanked(category)) {
+				top = ((ColumnRankIndex) rankedScores.get(categoryName)).head(topScoreCount);
+			} else {
+				top = new ColumnRankIndex(columns, columns.getColumn(categoryName));
+				for (String entryId : columns.keySet()) {
+					updateTopScores(top, categoryName, columns.getScore(entryId, categoryName), false, 0);
+				}
+			}
+		} else if (isRanked(category)) {
+			List<Score> ranked = rankedScores.get(categoryName);
+			Score[] sorted = ranked.subList(0, Math.min(topScoreCount, ranked.size())).toArray(new Score[0]);
+			top = new RankIndex(category, sorted);
+		} else {
+			top = new RankIndex(category);
+			for (Map<String, Score> scores : entries.values()) {
+				updateTopScores(top, categoryName, scores.get(categoryName), false, 0);
+			}
+		}
+		topScores.put(categoryName, top);
+		return top;
+	}
+	
+	
+	/**
+	 * Reposition a changed score in the top scores, in O(log k).
+	 * The score must have been deleted from the view before its points changed.
+	 * @param top - the top scores
+	 * @param categoryName - the category
+	 * @param score - the changed score
+	 * @param isTop - true if the score was in the view
+	 * @param points - the points added to the score
+	 */
+	private void updateTopScores(ScoreIndex top, String categoryName, Score score, boolean isTop, long points) {
+		
+		if (score == null) {
+			return;
+		}
+		
+		ScoreCategory category = getCategory(categoryName);
+		if (isTop) {
+			// A lowered score stays in the view only if it is still ahead of the 
+			// remaining last score, the scores outside the view are ranked after it
+			if (points >= 0 || 
+					getSize() <= topScoreCount || 
+					(!top.isEmpty() && category.compare(score, top.get(top.size()-1)) < 0)) {
+				top.insert(score);
+			} else {
+				topScores.remove(categoryName);
+			}
+			
+		} else if (top.size() < topScoreCount) {
+			// All scores are in the view
+			top.insert(score);
+			
+		} else if (category.compare(score, top.get(top.size()-1)) < 0) {
+			// Crossed the threshold, the last score leaves the view
+			top.delete(top.get(top.size()-1));
+			top.insert(score);
+		}
+	}
+	
+	
+	public int getTopScoreCount() {
+		return topScoreCount;
+	}
+	
+	
+	/**
+	 * Set the number of top scores kept per category. The views are rebuilt 
+	 * on the next read.
+	 * @param topScoreCount - the number of top scores, 0 to disable
+	 */
+	public void setTopScoreCount(int topScoreCount) {
+		this.topScoreCount = Math.max(0, topScoreCount);
+		topScores.clear();
+	}
+	
+	
+	/**
+	 * Rank all entries of the category, the columnar storage is ranked by rows
+	 * @param category - the category
+	 * @param parallel - sort the scores in parallel
+	 * @return the rank index of the category
+	 */
+	ScoreIndex rank(ScoreCategory category, boolean parallel) {
+		
+		Map<String, Map<String, Score>> entries = getScoreEntries();
+		if (entries instanceof ScoreColumns) {
+			ScoreColumns columns = (ScoreColumns) entries;
+			return ColumnRankIndex.rank(columns, columns.getColumn(category.getName()), parallel);
+		}
+		
+		List<Score> scores = new ArrayList<>(entries.size());
+		for (Map<String, Score> entryScores : entries.values()) {
+			Score score = entryScores.get(category.getName());
+			if (score != null) scores.add(score);
+		}
+		Score[] unsortedScores = scores.toArray(new Score[scores.size()]);
+		
+		// Sort using ScoreCategory comparator --effectively ranking the scores
+		if (parallel) {
+			Arrays.parallelSort(unsortedScores, category);
+		} else {
+			Arrays.sort(unsortedScores, category);
+		}
+		return new RankIndex(category, unsortedScores);
+	}
+	
+	
 	/**
 	 * Request to update the ranks for the specified category
 	 * @param categoryName - the category name
-	 * @param scores - the ranked scores
+	 * @param scores - the rank index
 	 */
-	void setRankedScores(String categoryName, ArrayList<Score> scores) {
+	void setRankedScores(String categoryName, ScoreIndex scores) {
 		rankedScores.put(categoryName, scores);
 	}
 
@@ -318,11 +776,11 @@ public class Scoreboard {
 	 * @return the number of users in this leaderboard.
 	 */
 	public int getSize() {
-		return scoreEntries.keySet().size();
+		return getScoreEntries().size();
 	}
 
 	public Set<String> getEntries() {
-		return scoreEntries.keySet();
+		return getScoreEntries().keySet();
 	}
 
 	public ScoreboardType getType() {
@@ -332,5 +790,88 @@ public class Scoreboard {
 	public void setType(ScoreboardType type) {
 		this.type = type;
 	}
+	
+	
+	public ScoreStorage getStorage() {
+		return storage;
+	}
+	
+	
+	/**
+	 * Change the storage engine of the score entries.
+	 * The scores are copied to the new storage and all ranks are staled.
+	 * @param storage - the storage engine
+	 */
+	public void setStorage(ScoreStorage storage) {
+		
+		if (this.storage == storage) {
+			return;
+		}
+		
+		logger.info("{} scoreboard storage changed from {} to {}", type, this.storage, storage);
+		this.storage = storage;
+		this.scoreEntries = convert(scoreEntries, storage);
+		
+		// The rank indexes reference the scores of the previous storage
+		rankedScores.clear();
+		topScores.clear();
+	}
+	
+	
+	/**
+	 * Rebuild the maps read by Gson as the concurrent maps of this scoreboard and 
+	 * the score entries in their storage, before the scoreboard is shared.
+	 */
+	@Override
+	public void restore() {
+		
+		if (storage == null) {
+			storage = ScoreStorage.Default;
+		}
+		
+		categories = (categories == null) 
+				?new ConcurrentHashMap<>() :new ConcurrentHashMap<>(categories);
+		
+		Map<String, Map<String, Score>> entries = (scoreEntries == null) 
+				?new ConcurrentHashMap<>() :scoreEntries;
+		if (storage == ScoreStorage.Default) {
+			Map<String, Map<String, Score>> restored = new ConcurrentHashMap<>();
+			entries.forEach((entryId, scores) -> restored.put(entryId, new ConcurrentHashMap<>(scores)));
+			scoreEntries = restored;
+		} else {
+			scoreEntries = convert(entries, storage);
+		}
+	}
+	
+	
+	/**
+	 * Copy the score entries to the specified storage
+	 * @param entries - the score entries
+	 * @param storage - the storage engine
+	 * @return the score entries in the new storage
+	 */
+	private Map<String, Map<String, Score>> convert(Map<String, Map<String, Score>> entries, ScoreStorage storage) {
+		
+		switch (storage) {
+		case Columnar:
+			return new ScoreColumns(entries, categories.keySet(), false);
+			
+		case OffHeap:
+			return new ScoreColumns(entries, categories.keySet(), true);
+			
+		default:
+			Map<String, Map<String, Score>> converted = new ConcurrentHashMap<>();
+			entries.forEach((entryId, scores) -> {
+				Map<String, Score> copy = new ConcurrentHashMap<>();
+				scores.forEach((categoryName, score) -> {
+					Score scoreCopy = new Score(entryId, categoryName);
+					scoreCopy.setPoints(score.getPoints());
+					copy.put(categoryName, scoreCopy);
+				});
+				converted.put(entryId, copy);
+			});
+			return converted;
+		}
+	}
 
 }
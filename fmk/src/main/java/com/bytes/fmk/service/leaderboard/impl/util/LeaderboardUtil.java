@@ -2,7 +2,6 @@ package com.bytes.fmk.service.leaderboard.impl.util;
 
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
-import java.time.format.DateTimeFormatter;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -15,6 +14,14 @@ public class LeaderboardUtil {
 	
 	private static Logger logger = LoggerFactory.getLogger(LeaderboardUtil.class);
 	
+	/**
+	 * @return the zone offset of the cycle start times
+	 */
+	public static ZoneOffset getZoneOffset() {
+		return ZoneOffset.of(DEFAULT_ZONE_OFFSET_ID);
+	}
+	
+	
 	/**
 	 * Set the start and end time based on this:
 	 * start = today but at 00:00
@@ -23,10 +30,10 @@ public class LeaderboardUtil {
 	 */
 	public static OffsetDateTime getStartTime(Cycle cycle, OffsetDateTime atTime) {
 		
-		logger.debug("atTime before: " + atTime.format(DateTimeFormatter.ISO_OFFSET_DATE_TIME));
+		logger.debug("atTime before: {}", atTime);
 		OffsetDateTime time = atTime.withNano(0).withSecond(0).withMinute(0)
-				.withOffsetSameInstant(ZoneOffset.of(DEFAULT_ZONE_OFFSET_ID));
-		logger.debug("atTime after:  " + time.format(DateTimeFormatter.ISO_OFFSET_DATE_TIME));
+				.withOffsetSameInstant(getZoneOffset());
+		logger.debug("atTime after:  {}", time);
 		
 		switch (cycle) {
 		
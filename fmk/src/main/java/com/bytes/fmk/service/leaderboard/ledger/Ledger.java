@@ -1,15 +1,25 @@
 package com.bytes.fmk.service.leaderboard.ledger;
 
+import java.time.OffsetDateTime;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
 
 import com.bytes.fmk.service.persistence.Persistable;
+import com.bytes.fmk.service.persistence.PersistenceMode;
 
 /**
  *
  */
 public interface Ledger extends Persistable<Ledger> {
 
+	
+	/**
+	 * The record id of the entries added without a record id
+	 */
+	String DEFAULT_RECORD_ID = "DefaultRecords";
+	
 
 	/**
 	 * Request to log a recordable action
@@ -47,14 +57,86 @@ public interface Ledger extends Persistable<Ledger> {
 	
 	
 	/**
-	 * Get the entries corresponding to the user. Returns null if not found.
+	 * Get the entries corresponding to the user.
 	 * @param recordId - the ledger record id
 	 * @param userId - the userId
-	 * @return the list of entries, null if not found.
+	 * @return the list of entries, empty if not found.
 	 */
 	public List<LedgerEntry> getUserEntries(String recordId, String userId);
 	
 	
+	/**
+	 * Get the ids of the users with entries in the record, the entries can then 
+	 * be read user by user with {@link #getUserEntries(String, String)}.
+	 * @param recordId - the ledger record id
+	 * @return the user ids, empty if the record is not found
+	 */
+	public Set<String> getUserIds(String recordId);
+	
+	
+	/**
+	 * Visit the entries of a record lazily, without copying the record.
+	 * The entries carry the user id.
+	 * @param recordId - the ledger record id
+	 * @param filter - the entries to visit
+	 * @return the stream of matching entries, empty if the record is not found
+	 */
+	public Stream<LedgerEntry> stream(String recordId, LedgerFilter filter);
+	
+	
+	/**
+	 * Get the points earned per user and category from the daily rollups, without
+	 * visiting the entries. The days are aligned with the {@code Cycle} start times,
+	 * the leaderboard start and end dates select the days of its cycle.
+	 * @param recordId - the ledger record id
+	 * @param from - the start time, its day is included
+	 * @param to - the end time, its day is included
+	 * @return the points per user and category
+	 */
+	public Map<String, Map<String, Long>> getPoints(String recordId, OffsetDateTime from, OffsetDateTime to);
+	
+	
+	/**
+	 * Get the points earned by a user per category from the daily rollups.
+	 * @param recordId - the ledger record id
+	 * @param userId - the user id
+	 * @param from - the start time, its day is included
+	 * @param to - the end time, its day is included
+	 * @return the points per category
+	 * @see #getPoints(String, OffsetDateTime, OffsetDateTime)
+	 */
+	public Map<String, Long> getUserPoints(String recordId, String userId, OffsetDateTime from, OffsetDateTime to);
+	
+	
+	/**
+	 * Fold the entries before the horizon into daily aggregates per user and category.
+	 * The points from {@link #getPoints(String, OffsetDateTime, OffsetDateTime)} remain exact,
+	 * the compacted entries are no longer visited, counted in {@link #getSize()} or detected 
+	 * as duplicates.
+	 * <p>Compaction is optional, a ledger that does not support it keeps its entries and 
+	 * returns 0, e.g. the {@code MappedLedger} cold storage.
+	 * @param horizon - the entries before this time are compacted
+	 * @param archive - the ledger receiving the compacted entries, e.g. a cold {@code MappedLedger}, 
+	 * null to only keep the aggregates
+	 * @return the number of compacted entries, 0 if compaction is not supported
+	 */
+	public long compact(OffsetDateTime horizon, Ledger archive);
+	
+	
+	/**
+	 * Request to save the entries added since the previous save, the cost of the
+	 * save is proportional to the added entries. The ledger is saved in full by
+	 * default.
+	 * @param mode - the persistence mode
+	 * @param resourceID - the resource identifier to use when loading this data
+	 * @return true if successfully persisted
+	 * @see #save(PersistenceMode, String)
+	 */
+	public default boolean saveAppends(PersistenceMode mode, String resourceID) {
+		return save(mode, resourceID);
+	}
+	
+	
 	/**
 	 * Get the ledger id
 	 * @return
@@ -64,6 +146,7 @@ public interface Ledger extends Persistable<Ledger> {
 
 	/**
 	 * Get the total number of entries of all records and all users in this ledger.
+	 * The count is maintained on add, this does not visit the entries.
 	 * @return the total number of entries
 	 */
 	long getSize();
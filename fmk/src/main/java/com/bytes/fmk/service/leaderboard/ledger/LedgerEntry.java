@@ -5,6 +5,8 @@ import java.time.OffsetDateTime;
 public class LedgerEntry implements Recordable {
 
 	
+	private String userId;
+	
 	private String categoryName;
 
 	private OffsetDateTime time;
@@ -17,6 +19,18 @@ public class LedgerEntry implements Recordable {
 	}
 	
 	public LedgerEntry(String name, int points, OffsetDateTime time) {
+		this(null, name, points, time);
+	}
+	
+	/**
+	 * Create an entry read from a ledger
+	 * @param userId - the user id of the entry
+	 * @param name - the category name
+	 * @param points - the points
+	 * @param time - the time
+	 */
+	public LedgerEntry(String userId, String name, int points, OffsetDateTime time) {
+		this.userId = userId;
 		this.categoryName = name;
 		this.points = points;
 		this.time = time;
@@ -38,6 +52,13 @@ public class LedgerEntry implements Recordable {
 		return points;
 	}
 
+	/**
+	 * @return the user id, null if the entry was not read from a ledger stream
+	 */
+	public String getUserId() {
+		return userId;
+	}
+
 	public String getCategoryName() {
 		return categoryName;
 	}
@@ -0,0 +1,100 @@
+package com.bytes.fmk.service.leaderboard.ledger;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Selects the ledger entries visited by {@link Ledger#stream(String, LedgerFilter)}.
+ * An unset criteria matches all entries.
+ * <p>For example:
+ * <li>{@code LedgerFilter.all()                       // all entries of the record } </li>
+ * <li>{@code LedgerFilter.all().withUser("user1")     // entries of user1           } </li>
+ * <li>{@code LedgerFilter.all().withTime(from, to)    // entries from inclusive, to exclusive } </li>
+ * </p>
+ *
+ * @author Kent
+ */
+public class LedgerFilter {
+
+	private String userId;
+	private String categoryName;
+	private OffsetDateTime from;
+	private OffsetDateTime to;
+
+
+	/**
+	 * @return a filter matching all entries
+	 */
+	public static LedgerFilter all() {
+		return new LedgerFilter();
+	}
+
+
+	/**
+	 * Only match the entries of the user
+	 * @param userId - the user id
+	 * @return this filter
+	 */
+	public LedgerFilter withUser(String userId) {
+		this.userId = userId;
+		return this;
+	}
+
+
+	/**
+	 * Only match the entries of the category, the name is not case-sensitive
+	 * @param categoryName - the category name
+	 * @return this filter
+	 */
+	public LedgerFilter withCategory(String categoryName) {
+		this.categoryName = categoryName;
+		return this;
+	}
+
+
+	/**
+	 * Only match the entries in the time range
+	 * @param from - the start time inclusive, null if unbounded
+	 * @param to - the end time exclusive, null if unbounded
+	 * @return this filter
+	 */
+	public LedgerFilter withTime(OffsetDateTime from, OffsetDateTime to) {
+		this.from = from;
+		this.to = to;
+		return this;
+	}
+
+
+	/**
+	 * @param categoryName - the category name
+	 * @return true if the entries of the category match
+	 */
+	public boolean matchesCategory(String categoryName) {
+		return this.categoryName == null || this.categoryName.equalsIgnoreCase(categoryName);
+	}
+
+
+	/**
+	 * @param time - the entry time
+	 * @return true if the time is in the range
+	 */
+	public boolean matchesTime(OffsetDateTime time) {
+		return (from == null || !time.isBefore(from)) && (to == null || time.isBefore(to));
+	}
+
+
+	public String getUserId() {
+		return userId;
+	}
+
+	public String getCategoryName() {
+		return categoryName;
+	}
+
+	public OffsetDateTime getFrom() {
+		return from;
+	}
+
+	public OffsetDateTime getTo() {
+		return to;
+	}
+}
@@ -0,0 +1,51 @@
+package com.bytes.fmk.service.leaderboard.ledger.impl;
+
+import java.util.List;
+import java.util.Map;
+
+import com.bytes.fmk.service.leaderboard.ledger.LedgerEntry;
+
+/**
+ * The entries added to a {@code LedgerImpl} between two saves, a field of the
+ * append log of the ledger. The batches are applied over the ledger of the last
+ * full save in the order of their sequence when loaded.
+ *
+ * @see LedgerImpl#saveAppends(com.bytes.fmk.service.persistence.PersistenceMode, String)
+ * @author Kent
+ */
+class LedgerAppends {
+
+	/**
+	 * The number of the batch, starting after the sequence of the last full save
+	 */
+	private long sequence;
+
+	/**
+	 * The added entries with their user id, keyed by record id
+	 */
+	private Map<String, List<LedgerEntry>> entries;
+
+
+	LedgerAppends() {
+	}
+
+
+	/**
+	 * @param sequence - the number of the batch
+	 * @param entries - the added entries keyed by record id
+	 */
+	LedgerAppends(long sequence, Map<String, List<LedgerEntry>> entries) {
+		this.sequence = sequence;
+		this.entries = entries;
+	}
+
+
+	long getSequence() {
+		return sequence;
+	}
+
+
+	Map<String, List<LedgerEntry>> getEntries() {
+		return entries;
+	}
+}
@@ -1,12 +1,21 @@
 package com.bytes.fmk.service.leaderboard.ledger.impl;
 
 import java.time.OffsetDateTime;
-import java.time.format.DateTimeFormatter;
+import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -14,6 +23,7 @@ import org.slf4j.LoggerFactory;
 import com.bytes.fmk.service.Thinkr;
 import com.bytes.fmk.service.leaderboard.ledger.Ledger;
 import com.bytes.fmk.service.leaderboard.ledger.LedgerEntry;
+import com.bytes.fmk.service.leaderboard.ledger.LedgerFilter;
 import com.bytes.fmk.service.leaderboard.ledger.Recordable;
 import com.bytes.fmk.service.persistence.PersistenceMode;
 import com.bytes.fmk.service.persistence.Serializer;
@@ -43,10 +53,21 @@ public class LedgerImpl implements Ledger {
 
 	private static Logger logger = LoggerFactory.getLogger(LedgerImpl.class);
 	
+	/**
+	 * The suffix of the resource id of the append log
+	 */
+	public static final String APPENDS_SUFFIX = ":appends";
+	
+	/**
+	 * The number of append batches written before the ledger is saved in full,
+	 * a batch replaces the field of the batch this number before it
+	 */
+	static final int APPEND_SLOTS = 64;
+	
 	/**
 	 * The default record id
 	 */
-	private transient String ledgerRecordId = "DefaultRecords";
+	private transient String ledgerRecordId = DEFAULT_RECORD_ID;
 
 	
 	/**
@@ -61,10 +82,23 @@ public class LedgerImpl implements Ledger {
 	 * key = leaderboardId
 	 *  - key = userId
 	 *    - key = recordableId
-	 *      - value = timestamp
+	 *      - value = timeline of the distinct timestamps
 	 * </pre>
 	 */
-	private Map<String, Map<String, Map<Integer, List<OffsetDateTime>>>> entries;
+	private Map<String, Map<String, Map<Integer, Timeline>>> entries;
+	
+	/**
+	 * The daily aggregates of the compacted entries
+	 * <pre>
+	 * Contents
+	 * key = recordId
+	 *  - key = day number, see {@code LedgerRollup}
+	 *    - key = userId
+	 *      - key = recordableId
+	 *        - value = the number of compacted entries
+	 * </pre>
+	 */
+	private Map<String, Map<Long, Map<String, Map<Integer, Long>>>> compacted;
 	
 	/**
 	 * The recordable lookup map
@@ -73,18 +107,67 @@ public class LedgerImpl implements Ledger {
 	 */
 	private List<RecordableInfo> recordables;
 	
+	/**
+	 * The sequence of the last append batch included in the full save
+	 */
+	private long savedSequence;
+	
+	
+	/**
+	 * The recordable id lookup, the id to recordable list is the persisted recordables
+	 */
+	private transient volatile RecordableDictionary dictionary;
+	
+	/**
+	 * The number of entries and the daily rollups, built once for the entries they were created for
+	 */
+	private transient volatile AtomicLong size;
+	private transient volatile LedgerRollup rollup;
+	private transient Map<String, Map<String, Map<Integer, Timeline>>> indexedEntries;
+	
 	private transient Serializer serializer;
 	
+	/**
+	 * The entries added since the previous save keyed by record id. Null until the 
+	 * first save of the appends, the entries are only tracked afterwards.
+	 */
+	private transient volatile Queue<SimpleImmutableEntry<String, LedgerEntry>> appended;
+	
+	/**
+	 * The sequence of the last append batch, guarded by the ledger
+	 */
+	private transient long sequence;
+	
+	/**
+	 * Indicates if entries were compacted since the last full save
+	 */
+	private transient volatile boolean compactedSinceSave;
+	
 	/**
 	 * Default constructor
 	 */
 	public LedgerImpl() {
 		this.id = UUID.randomUUID().toString();
 		this.entries = new ConcurrentHashMap<>();
-		this.recordables = new ArrayList<>();
+		this.compacted = new ConcurrentHashMap<>();
+		this.dictionary = new RecordableDictionary(null);
+		this.recordables = dictionary.getRecordables();
+		this.size = new AtomicLong();
+		this.rollup = new LedgerRollup();
+		this.indexedEntries = entries;
 		this.serializer = new LedgerSerializer();
 	}
 	
+	
+	/**
+	 * Create the ledger with the specified id
+	 * @param id - the ledger id
+	 */
+	public LedgerImpl(String id) {
+		this();
+		this.id = id;
+	}
+	
 
 	/**
 	 * {@inheritDoc}
@@ -104,72 +187,72 @@ public class LedgerImpl implements Ledger {
 			return false;
 		}
 		
-		if (!entries.containsKey(recordId)) {
-			Map<String, Map<Integer, List<OffsetDateTime>>> userEntries = new ConcurrentHashMap<>();
-			entries.put(recordId, userEntries);
-		}
-		return addUserRecord(entries.get(recordId), userId, recordable);
+		index();
+		return addUserRecord(entries.computeIfAbsent(recordId, k -> new ConcurrentHashMap<>()), recordId, userId, recordable);
 	}
 	
 
 	/**
 	 * 
-	 * @param userEntries - entries containing the hierarchy of userId, recordId, List<OffsetDateTime>
+	 * @param userEntries - entries containing the hierarchy of userId, recordId, Timeline
+	 * @param recordId - the ledger record id
 	 * @param userId - the user id
 	 * @param recordable - the data to be recorded
 	 * @return true if successfully added, false otherwise
 	 */
 	private boolean addUserRecord(
-			Map<String, Map<Integer, List<OffsetDateTime>>> userEntries, 
+			Map<String, Map<Integer, Timeline>> userEntries, 
+			String recordId,
 			String userId, 
 			Recordable recordable) {
 		
-		if (!userEntries.containsKey(userId)) {
-			Map<Integer, List<OffsetDateTime>> entry = new ConcurrentHashMap<>();
-			userEntries.put(userId, entry);
-		}
-		return addTimedEntry(userEntries.get(userId), recordable);
+		return addTimedEntry(userEntries.computeIfAbsent(userId, k -> new ConcurrentHashMap<>()), recordId, userId, recordable);
 	}
 	
 	
 	/**
-	 * @param recordEntries - entries containing the hierarchy of recordId and the list of timestamp
+	 * @param recordEntries - entries containing the hierarchy of recordId and the timeline
+	 * @param recordId - the ledger record id
+	 * @param userId - the user id
 	 * @param recordable - the data to be recorded
 	 * @return true if successfully added, false otherwise
 	 */
 	private boolean addTimedEntry(
-			Map<Integer, List<OffsetDateTime>> recordEntries, 
+			Map<Integer, Timeline> recordEntries, 
+			String recordId,
+			String userId, 
 			Recordable recordable) {
 		
-		boolean isUniqueEntry = false;
+		boolean isUniqueEntry;
 		
-		int recordId = getRecordableId(recordable);
-		if (recordId < 0) {
+		int recordableId = getRecordableId(recordable);
+		if (recordableId < 0) {
 			logger.error(String.format(
 					"Unable to get recordable id. Entry will be skipped: %1$s - %2$d " ,
 					recordable.getCategoryName(), recordable.getPoints()));
 			return false;
 		}
 		
-		if (!recordEntries.containsKey(recordId)) {
-			List<OffsetDateTime> timeStamps = new ArrayList<>();
-			recordEntries.put(recordId, timeStamps);
-			isUniqueEntry = true;
-		}
-		
-		List<OffsetDateTime> timeStamps = recordEntries.get(recordId);
+		Timeline timeline = recordEntries.computeIfAbsent(recordableId, k -> new Timeline());
 		OffsetDateTime time = recordable.getTime();
 		if (time == null) {
-			time = OffsetDateTime.now();
+			time = timeline.addUnique(OffsetDateTime.now());
 			isUniqueEntry = true;
 			logger.warn("Recordable has no time, defaulting to now, this can potentially result in duplicate record.");
+		} else {
+			isUniqueEntry = timeline.add(time);
 		}
 		
-		isUniqueEntry |= !timeStamps.contains(time); 
 		if (isUniqueEntry) {
-			timeStamps.add(time);
-			recordEntries.put(recordId, timeStamps);
-			logger.trace("Added recordable time " + time.format(DateTimeFormatter.ISO_OFFSET_DATE_TIME));
+			RecordableInfo recordableInfo = getDictionary().get(recordableId);
+			Queue<SimpleImmutableEntry<String, LedgerEntry>> tracked = appended;
+			if (tracked != null) {
+				tracked.add(new SimpleImmutableEntry<>(recordId, 
+						new LedgerEntry(userId, recordableInfo.name, recordableInfo.points, time)));
+			}
+			size.incrementAndGet();
+			rollup.add(recordId, userId, recordableInfo.name, recordableInfo.points, time.toEpochSecond());
+			logger.trace("Added recordable time {}", time);
 		} else {
 			logger.trace("Duplicate entries detected, likely from a leaderboard set.");
 		}
@@ -189,18 +272,132 @@ public class LedgerImpl implements Ledger {
 			throw new IllegalArgumentException("Invalid recordable");
 		}
 		
-		RecordableInfo r = new RecordableInfo(recordable.getCategoryName(), recordable.getPoints());
-		int index = recordables.indexOf(r);
-		if (index < 0) {
-			if (recordables.add(r)) {
-				return recordables.size()-1;
-			} 
-			return -1;
+		return getDictionary().getId(recordable.getCategoryName(), recordable.getPoints());
+	}
+	
+	
+	/**
+	 * Get the recordable dictionary, it is rebuilt if the recordables 
+	 * were replaced by deserialization
+	 * @return the recordable dictionary
+	 */
+	private RecordableDictionary getDictionary() {
+		
+		RecordableDictionary d = dictionary;
+		if (d == null || d.getRecordables() != recordables) {
+			synchronized (this) {
+				d = dictionary;
+				if (d == null || d.getRecordables() != recordables) {
+					d = new RecordableDictionary(recordables);
+					recordables = d.getRecordables();
+					dictionary = d;
+				}
+			}
 		}
-		return index;
+		return d;
 	}
 
 	
+	/**
+	 * Count the entries and build the rollups again if the entries 
+	 * were replaced by deserialization or load
+	 */
+	private void index() {
+		
+		if (indexedEntries != entries) {
+			synchronized (this) {
+				Map<String, Map<String, Map<Integer, Timeline>>> indexed = entries;
+				if (indexedEntries != indexed) {
+					RecordableDictionary dictionary = getDictionary();
+					LedgerRollup rollup = new LedgerRollup();
+					long count = 0;
+					for (Map.Entry<String, Map<String, Map<Integer, Timeline>>> record : indexed.entrySet()) {
+						for (Map.Entry<String, Map<Integer, Timeline>> user : record.getValue().entrySet()) {
+							for (Map.Entry<Integer, Timeline> timedEntry : user.getValue().entrySet()) {
+								RecordableInfo recordableInfo = dictionary.get(timedEntry.getKey());
+								long[] times = timedEntry.getValue().range(Long.MIN_VALUE, Long.MAX_VALUE).toArray();
+								for (long time : times) {
+									rollup.add(record.getKey(), user.getKey(), recordableInfo.name, recordableInfo.points, 
+											Math.floorDiv(time, 1_000_000_000L));
+								}
+								count += times.length;
+							}
+						}
+					}
+					
+					getCompacted().forEach((recordId, days) -> days.forEach((day, users) -> 
+						users.forEach((userId, counts) -> counts.forEach((recordableId, entryCount) -> {
+							RecordableInfo recordableInfo = dictionary.get(recordableId);
+							rollup.add(recordId, userId, recordableInfo.name, recordableInfo.points * entryCount, 
+									rollup.getDayStart(day));
+						}))));
+					this.size = new AtomicLong(count);
+					this.rollup = rollup;
+					this.indexedEntries = indexed;
+				}
+			}
+		}
+	}
+	
+	
+	/**
+	 * Get the compacted aggregates, the ledgers of earlier versions have none
+	 * @return the compacted aggregates
+	 */
+	private synchronized Map<String, Map<Long, Map<String, Map<Integer, Long>>>> getCompacted() {
+		if (compacted == null) {
+			compacted = new ConcurrentHashMap<>();
+		}
+		return compacted;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 * <p>The compacted entries are removed from the timelines, the aggregates are persisted
+	 * with the ledger. Entries added concurrently are not compacted.
+	 */
+	@Override
+	public synchronized long compact(OffsetDateTime horizon, Ledger archive) {
+		
+		index();
+		RecordableDictionary dictionary = getDictionary();
+		Map<String, Map<Long, Map<String, Map<Integer, Long>>>> compacted = getCompacted();
+		long horizonNanos = Timeline.toEpochNanos(horizon);
+		long count = 0;
+		
+		for (Map.Entry<String, Map<String, Map<Integer, Timeline>>> record : entries.entrySet()) {
+			Map<Long, Map<String, Map<Integer, Long>>> days = 
+					compacted.computeIfAbsent(record.getKey(), k -> new ConcurrentHashMap<>());
+			
+			for (Map.Entry<String, Map<Integer, Timeline>> user : record.getValue().entrySet()) {
+				for (Map.Entry<Integer, Timeline> timedEntry : user.getValue().entrySet()) {
+					
+					long[] times = timedEntry.getValue().removeBefore(horizonNanos);
+					RecordableInfo recordableInfo = dictionary.get(timedEntry.getKey());
+					for (long time : times) {
+						long day = rollup.getDay(Math.floorDiv(time, 1_000_000_000L));
+						days.computeIfAbsent(day, k -> new ConcurrentHashMap<>())
+								.computeIfAbsent(user.getKey(), k -> new ConcurrentHashMap<>())
+								.merge(timedEntry.getKey(), 1L, Long::sum);
+						
+						if (archive != null) {
+							archive.add(record.getKey(), user.getKey(), 
+									new LedgerEntry(recordableInfo.name, recordableInfo.points, Timeline.toTime(time)));
+						}
+					}
+					count += times.length;
+				}
+			}
+		}
+		
+		size.addAndGet(-count);
+		compactedSinceSave = compactedSinceSave || count > 0;
+		logger.debug("Compacted {} entries before {}", count, horizon);
+		return count;
+	}
+	
+	
 	/**
 	 * {@inheritDoc}
 	 */
@@ -226,7 +423,7 @@ public class LedgerImpl implements Ledger {
 	public Map<String, List<LedgerEntry>> getRecordEntries(String recordId) {
 		
 		// UserId, LedgerEntry
-		Map<String, Map<Integer, List<OffsetDateTime>>> userEntries = entries.get(recordId);
+		Map<String, Map<Integer, Timeline>> userEntries = entries.get(recordId);
 		
 		Map<String, List<LedgerEntry>> recordEntries = new ConcurrentHashMap<>();
 		for (String userId : userEntries.keySet()) {
@@ -242,21 +439,89 @@ public class LedgerImpl implements Ledger {
 	 */
 	@Override
 	public List<LedgerEntry> getUserEntries(String recordId, String userId) {
-		return createLedgerEntry(entries.get(recordId).get(userId));
+		Map<String, Map<Integer, Timeline>> userEntries = entries.get(recordId);
+		Map<Integer, Timeline> timedEntries = (userEntries == null) ?null :userEntries.get(userId);
+		return (timedEntries == null) ?Collections.emptyList() :createLedgerEntry(timedEntries);
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Set<String> getUserIds(String recordId) {
+		Map<String, Map<Integer, Timeline>> userEntries = entries.get(recordId);
+		return (userEntries == null) ?Collections.emptySet() :new HashSet<>(userEntries.keySet());
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Stream<LedgerEntry> stream(String recordId, LedgerFilter filter) {
+		
+		Map<String, Map<Integer, Timeline>> userEntries = entries.get(recordId);
+		if (userEntries == null) {
+			return Stream.empty();
+		}
+		
+		Stream<Map.Entry<String, Map<Integer, Timeline>>> users;
+		if (filter.getUserId() == null) {
+			users = userEntries.entrySet().stream();
+		} else {
+			Map<Integer, Timeline> timedEntries = userEntries.get(filter.getUserId());
+			users = (timedEntries == null) ?Stream.empty() 
+					:Stream.of(new SimpleImmutableEntry<>(filter.getUserId(), timedEntries));
+		}
+		
+		RecordableDictionary dictionary = getDictionary();
+		long from = (filter.getFrom() == null) ?Long.MIN_VALUE :Timeline.toEpochNanos(filter.getFrom());
+		long to = (filter.getTo() == null) ?Long.MAX_VALUE :Timeline.toEpochNanos(filter.getTo());
+		
+		return users.flatMap(user -> user.getValue().entrySet().stream().flatMap(timedEntry -> {
+			RecordableInfo recordableInfo = dictionary.get(timedEntry.getKey());
+			if (!filter.matchesCategory(recordableInfo.name)) {
+				return Stream.empty();
+			}
+			return timedEntry.getValue().range(from, to).mapToObj(time -> new LedgerEntry(
+					user.getKey(), recordableInfo.name, recordableInfo.points, Timeline.toTime(time)));
+		}));
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Map<String, Map<String, Long>> getPoints(String recordId, OffsetDateTime from, OffsetDateTime to) {
+		index();
+		return rollup.getPoints(recordId, from, to);
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Map<String, Long> getUserPoints(String recordId, String userId, OffsetDateTime from, OffsetDateTime to) {
+		index();
+		return rollup.getUserPoints(recordId, userId, from, to);
 	}
 
 
 	/**
 	 * Creates the list {@code LedgerEntry} from the 
-	 * {@code RecordableInfo} and the list of timestamps.
-	 * @param timedEntries - the map containing the categorized timestamps
+	 * {@code RecordableInfo} and the timelines.
+	 * @param timedEntries - the map containing the categorized timelines
 	 * @return the list of {@code LedgerEntry}
 	 */
-	private List<LedgerEntry> createLedgerEntry(Map<Integer, List<OffsetDateTime>> timedEntries) {
+	private List<LedgerEntry> createLedgerEntry(Map<Integer, Timeline> timedEntries) {
+		RecordableDictionary dictionary = getDictionary();
 		List<LedgerEntry> ledgerEntries = new ArrayList<>();
 		timedEntries.keySet().forEach(id -> {
-			timedEntries.get(id).forEach(time -> {
-				RecordableInfo recordableInfo = recordables.get(id);
+			timedEntries.get(id).getTimes().forEach(time -> {
+				RecordableInfo recordableInfo = dictionary.get(id);
 				ledgerEntries.add(new LedgerEntry(
 						recordableInfo.name, recordableInfo.points, time));
 			});
@@ -269,25 +534,135 @@ public class LedgerImpl implements Ledger {
 	 * {@inheritDoc}
 	 */
 	@Override
-	public boolean save(PersistenceMode mode, String resourceID) {
-		return Thinkr.INSTANCE.getPersistenceService(mode)
-				.saveData(resourceID, this);
+	public synchronized boolean save(PersistenceMode mode, String resourceID) {
+		
+		// The drained entries are in the saved ledger, they are tracked again if the save failed
+		long previous = savedSequence;
+		boolean wasCompacted = compactedSinceSave;
+		List<SimpleImmutableEntry<String, LedgerEntry>> drained = drainAppends();
+		savedSequence = sequence;
+		compactedSinceSave = false;
+		
+		if (Thinkr.INSTANCE.getPersistenceService(mode).saveData(resourceID, this)) {
+			return true;
+		}
+		savedSequence = previous;
+		compactedSinceSave = wasCompacted;
+		if (appended != null) {
+			appended.addAll(drained);
+		}
+		return false;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 * <p>The added entries are written in a batch to the append log, a hash of 
+	 * {@link #APPEND_SLOTS} fields keyed by the resource id and {@link #APPENDS_SUFFIX}.
+	 * The ledger is saved in full on the first save, after a compaction and when
+	 * the append log is full. The entries of a failed write are tracked again.
+	 */
+	@Override
+	public synchronized boolean saveAppends(PersistenceMode mode, String resourceID) {
+		
+		if (appended == null) {
+			appended = new ConcurrentLinkedQueue<>();
+			return save(mode, resourceID);
+		}
+		if (compactedSinceSave || sequence - savedSequence >= APPEND_SLOTS) {
+			return save(mode, resourceID);
+		}
+		
+		List<SimpleImmutableEntry<String, LedgerEntry>> drained = drainAppends();
+		if (drained.isEmpty()) {
+			return true;
+		}
+		
+		Map<String, List<LedgerEntry>> entries = new HashMap<>();
+		drained.forEach(entry -> entries.computeIfAbsent(entry.getKey(), k -> new ArrayList<>()).add(entry.getValue()));
+		LedgerAppends batch = new LedgerAppends(++sequence, entries);
+		
+		if (Thinkr.INSTANCE.getPersistenceService(mode).saveMap(resourceID + APPENDS_SUFFIX, 
+				Collections.singletonMap(String.valueOf(sequence % APPEND_SLOTS), batch))) {
+			logger.debug("Saved {} added entries of ledger {}", drained.size(), id);
+			return true;
+		}
+		appended.addAll(drained);
+		return false;
+	}
+	
+	
+	/**
+	 * Take the entries added since the previous call
+	 * @return the added entries with their record id, empty if not tracked
+	 */
+	private List<SimpleImmutableEntry<String, LedgerEntry>> drainAppends() {
+		
+		List<SimpleImmutableEntry<String, LedgerEntry>> drained = new ArrayList<>();
+		Queue<SimpleImmutableEntry<String, LedgerEntry>> tracked = appended;
+		if (tracked != null) {
+			for (SimpleImmutableEntry<String, LedgerEntry> entry = tracked.poll(); entry != null; entry = tracked.poll()) {
+				drained.add(entry);
+			}
+		}
+		return drained;
+	}
+	
+	
+	/**
+	 * Apply the batches of the append log written after the full save
+	 * @param mode - the persistence mode
+	 * @param resourceID - the resource id of the ledger
+	 */
+	private void loadAppends(PersistenceMode mode, String resourceID) {
+		
+		String appendsId = resourceID + APPENDS_SUFFIX;
+		getSerializer().registerResourceID(appendsId, LedgerAppends.class);
+		Map<String, LedgerAppends> batches = Thinkr.INSTANCE.getPersistenceService(mode)
+				.loadMap(appendsId, getSerializer());
+		
+		List<LedgerAppends> applied = new ArrayList<>();
+		for (LedgerAppends batch : batches.values()) {
+			if (batch.getSequence() > savedSequence) {
+				applied.add(batch);
+			}
+		}
+		applied.sort(Comparator.comparingLong(LedgerAppends::getSequence));
+		
+		sequence = savedSequence;
+		for (LedgerAppends batch : applied) {
+			batch.getEntries().forEach((recordId, entries) -> 
+				entries.forEach(entry -> add(recordId, entry.getUserId(), entry)));
+			sequence = batch.getSequence();
+		}
+		logger.debug("Applied {} append batches to ledger {}", applied.size(), id);
 	}
 
 	
 	/**
 	 * {@inheritDoc}
+	 * <p>A ledger that was never saved, e.g. the partition of a leaderboard saved 
+	 * before the ledger was partitioned, is loaded as empty: the entries are kept.
 	 */
 	@Override
 	public Ledger load(PersistenceMode mode, String resourceID) {
 		
 		try {
+			getSerializer().registerResourceID(resourceID, LedgerImpl.class);
 			LedgerImpl loaded = Thinkr.INSTANCE.getPersistenceService(mode)
 					.loadData(resourceID, getSerializer());
+			if (loaded == null) {
+				logger.debug("No ledger saved for {}, the ledger is empty", resourceID);
+				return this;
+			}
 			
 			this.id = loaded.id;
+			this.compacted = loaded.compacted;
 			this.entries = loaded.entries;
 			this.recordables = loaded.recordables;
+			this.savedSequence = loaded.savedSequence;
+			this.appended = null;
+			loadAppends(mode, resourceID);
 			
 		} catch (Exception e) {
 			logger.error("Unable to load data: " + e.getMessage());
@@ -310,16 +685,7 @@ public class LedgerImpl implements Ledger {
 	 */
 	@Override
 	public long getSize() {
-		long count = 0;
-		for (String recordId : entries.keySet()) {
-			Map<String, Map<Integer, List<OffsetDateTime>>> userEntries = entries.get(recordId);
-			for (String userId : userEntries.keySet()) {
-				Map<Integer, List<OffsetDateTime>> recordables = userEntries.get(userId);
-				for (int recordableId : recordables.keySet()) {
-					count += recordables.get(recordableId).size();
-				}
-			}
-		}
-		return count;
+		index();
+		return size.get();
 	}
 }
@@ -0,0 +1,129 @@
+package com.bytes.fmk.service.leaderboard.ledger.impl;
+
+import java.time.OffsetDateTime;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.bytes.fmk.service.leaderboard.impl.util.LeaderboardUtil;
+
+/**
+ * Daily point totals per user and category, the days are aligned with the
+ * {@code Cycle} start times so the daily, weekly and monthly cycles are
+ * sums of whole days.
+ * <pre>
+ * Contents
+ * key = recordId
+ *  - key = day number since the epoch, in the cycle zone offset
+ *    - key = userId
+ *      - key = category name
+ *        - value = the points
+ * </pre>
+ * The rollup is not persisted, it is built from the ledger entries.
+ *
+ * @author Kent
+ */
+class LedgerRollup {
+
+	private static final long DAY_SECONDS = 24 * 60 * 60;
+
+	private final int offsetSeconds;
+	private final Map<String, NavigableMap<Long, Map<String, Map<String, LongAdder>>>> records;
+
+
+	LedgerRollup() {
+		this.offsetSeconds = LeaderboardUtil.getZoneOffset().getTotalSeconds();
+		this.records = new ConcurrentHashMap<>();
+	}
+
+
+	/**
+	 * Add the points of an entry
+	 * @param recordId - the ledger record id
+	 * @param userId - the user id
+	 * @param categoryName - the category name
+	 * @param points - the points
+	 * @param epochSecond - the time of the entry
+	 */
+	void add(String recordId, String userId, String categoryName, long points, long epochSecond) {
+		records.computeIfAbsent(recordId, k -> new ConcurrentSkipListMap<>())
+				.computeIfAbsent(getDay(epochSecond), k -> new ConcurrentHashMap<>())
+				.computeIfAbsent(userId, k -> new ConcurrentHashMap<>())
+				.computeIfAbsent(categoryName, k -> new LongAdder())
+				.add(points);
+	}
+
+
+	/**
+	 * Sum the points of the days from the day of the start time to the day of the end time
+	 * @param recordId - the ledger record id
+	 * @param from - the start time, its day is included
+	 * @param to - the end time, its day is included
+	 * @return the points per user and category
+	 */
+	Map<String, Map<String, Long>> getPoints(String recordId, OffsetDateTime from, OffsetDateTime to) {
+
+		Map<String, Map<String, Long>> points = new HashMap<>();
+		getDays(recordId, from, to).values().forEach(users -> users.forEach((userId, categories) ->
+			sum(categories, points.computeIfAbsent(userId, k -> new HashMap<>()))));
+		return points;
+	}
+
+
+	/**
+	 * Sum the points of a user from the day of the start time to the day of the end time
+	 * @param recordId - the ledger record id
+	 * @param userId - the user id
+	 * @param from - the start time, its day is included
+	 * @param to - the end time, its day is included
+	 * @return the points per category
+	 */
+	Map<String, Long> getUserPoints(String recordId, String userId, OffsetDateTime from, OffsetDateTime to) {
+
+		Map<String, Long> points = new HashMap<>();
+		getDays(recordId, from, to).values().forEach(users -> {
+			Map<String, LongAdder> categories = users.get(userId);
+			if (categories != null) {
+				sum(categories, points);
+			}
+		});
+		return points;
+	}
+
+
+	private NavigableMap<Long, Map<String, Map<String, LongAdder>>> getDays(
+			String recordId, OffsetDateTime from, OffsetDateTime to) {
+
+		NavigableMap<Long, Map<String, Map<String, LongAdder>>> days = records.get(recordId);
+		long fromDay = getDay(from.toEpochSecond());
+		long toDay = getDay(to.toEpochSecond());
+		return (days == null || fromDay > toDay) ?Collections.emptyNavigableMap() :days.subMap(fromDay, true, toDay, true);
+	}
+
+
+	private static void sum(Map<String, LongAdder> categories, Map<String, Long> points) {
+		categories.forEach((categoryName, adder) -> points.merge(categoryName, adder.sum(), Long::sum));
+	}
+
+
+	/**
+	 * @param epochSecond - the time
+	 * @return the day number of the time
+	 */
+	long getDay(long epochSecond) {
+		return Math.floorDiv(epochSecond + offsetSeconds, DAY_SECONDS);
+	}
+
+
+	/**
+	 * @param day - the day number
+	 * @return the epoch second of the start of the day
+	 */
+	long getDayStart(long day) {
+		return day * DAY_SECONDS - offsetSeconds;
+	}
+}
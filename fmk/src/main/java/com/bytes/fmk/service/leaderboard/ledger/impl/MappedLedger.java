@@ -0,0 +1,748 @@
+package com.bytes.fmk.service.leaderboard.ledger.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.bytes.fmk.service.leaderboard.ledger.Ledger;
+import com.bytes.fmk.service.leaderboard.ledger.LedgerEntry;
+import com.bytes.fmk.service.leaderboard.ledger.LedgerFilter;
+import com.bytes.fmk.service.leaderboard.ledger.Recordable;
+import com.bytes.fmk.service.persistence.PersistenceMode;
+import com.bytes.fmk.service.persistence.Serializer;
+
+/**
+ * Append-only ledger stored in memory-mapped segment files.
+ *
+ * <p>Every entry is a fixed-width binary record, written in place into the mapped segment:
+ * <pre>
+ *  recordId     int  (dictionary index + 1, 0 marks the end of the log)
+ *  userId       int  (dictionary index)
+ *  recordableId int  (dictionary index)
+ *  epochSecond  long
+ *  nano         int
+ *  offset       int  (total seconds)
+ *  total size = 28 bytes
+ * </pre>
+ * The record ids, user ids and recordables are stored once in a dictionary file.
+ * The heap only holds the dictionary, the entry numbers per record and user and the daily
+ * rollups, the entries are read from the segments. The entry numbers of a user are sorted by
+ * time, a duplicate is found by a binary search reading the times from the segments. The
+ * entries below the size are never rewritten, a stream reads them without the lock.
+ *
+ * <p>The segment files are the persisted state, {@link #save(PersistenceMode, String)}
+ * forces them to the storage device and {@link #load(PersistenceMode, String)}
+ * reopens the directory.
+ *
+ * @author Kent
+ */
+public class MappedLedger implements Ledger, Closeable {
+
+	private static Logger logger = LoggerFactory.getLogger(MappedLedger.class);
+
+	/**
+	 * The size of an entry in bytes
+	 */
+	static final int RECORD_SIZE = 28;
+
+	/**
+	 * The default number of entries in a segment, about 7MB
+	 */
+	public static final int DEFAULT_SEGMENT_ENTRIES = 1 << 18;
+
+	private static final String DICTIONARY_FILE = "ledger.dict";
+	private static final String SEGMENT_FORMAT = "ledger-%05d.seg";
+
+	/**
+	 * The dictionary entry types
+	 */
+	private static final byte RECORD = 0;
+	private static final byte USER = 1;
+	private static final byte RECORDABLE = 2;
+
+	/**
+	 * The default record id
+	 */
+	private final String ledgerRecordId = DEFAULT_RECORD_ID;
+
+	private final Path directory;
+	private final int segmentEntries;
+
+	private List<MappedByteBuffer> segments;
+	private DataOutputStream dictionary;
+
+	private List<String> recordIds;
+	private Map<String, Integer> recordIndex;
+	private Map<String, Integer> userIndex;
+
+	/**
+	 * The user ids by index, the array is published again on each add so the
+	 * entries read without the lock resolve their user
+	 */
+	private volatile String[] userIds;
+	private RecordableDictionary recordables;
+
+	/**
+	 * The entry numbers
+	 * key = record index
+	 *  - key = user index
+	 *    - value = entry numbers sorted by time and recordable id
+	 */
+	private Map<Integer, Map<Integer, EntryList>> entries;
+
+	/**
+	 * The daily points, built from the log when opened
+	 */
+	private LedgerRollup rollup;
+
+	/**
+	 * The number of entries in the log
+	 */
+	private int size;
+
+
+	/**
+	 * Open or create the ledger in the specified directory
+	 * @param directory - the directory of the segment files
+	 */
+	public MappedLedger(Path directory) {
+		this(directory, DEFAULT_SEGMENT_ENTRIES);
+	}
+
+
+	/**
+	 * Open or create the ledger in the specified directory
+	 * @param directory - the directory of the segment files
+	 * @param segmentEntries - the number of entries in a segment file
+	 */
+	public MappedLedger(Path directory, int segmentEntries) {
+
+		if (segmentEntries < 1 || (long) segmentEntries * RECORD_SIZE > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Invalid segment entries: " + segmentEntries);
+		}
+
+		this.directory = directory;
+		this.segmentEntries = segmentEntries;
+		open();
+	}
+
+
+	/**
+	 * Read the dictionary and rebuild the index from the segment files
+	 */
+	private synchronized void open() {
+
+		this.segments = new ArrayList<>();
+		this.recordIds = new ArrayList<>();
+		this.recordIndex = new HashMap<>();
+		this.userIndex = new HashMap<>();
+		this.userIds = new String[16];
+		this.recordables = new RecordableDictionary(null);
+		this.entries = new HashMap<>();
+		this.rollup = new LedgerRollup();
+		this.size = 0;
+
+		try {
+			Files.createDirectories(directory);
+			readDictionary();
+			dictionary = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(
+					directory.resolve(DICTIONARY_FILE), StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+
+			for (int i = 0; Files.exists(getSegmentPath(i)); i++) {
+				segments.add(map(i));
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to open ledger: " + directory, e);
+		}
+
+		// The log ends at the first empty record
+		long capacity = (long) segments.size() * segmentEntries;
+		while (size < capacity) {
+			MappedByteBuffer segment = segments.get(size / segmentEntries);
+			int position = (size % segmentEntries) * RECORD_SIZE;
+			int record = segment.getInt(position);
+			if (record == 0) break;
+			int user = segment.getInt(position + 4);
+			int recordableId = segment.getInt(position + 8);
+			long epochSecond = segment.getLong(position + 12);
+			index(record - 1, user, size, recordableId, Timeline.toEpochNanos(epochSecond, segment.getInt(position + 20)));
+			rollup(record - 1, user, recordableId, epochSecond);
+			size++;
+		}
+		logger.debug("Opened ledger {} with {} entries in {} segments", directory, size, segments.size());
+	}
+
+
+	private void readDictionary() throws IOException {
+
+		Path path = directory.resolve(DICTIONARY_FILE);
+		if (!Files.exists(path)) {
+			return;
+		}
+
+		try (InputStream file = Files.newInputStream(path);
+				DataInputStream in = new DataInputStream(new BufferedInputStream(file))) {
+			while (true) {
+				byte type;
+				try {
+					type = in.readByte();
+				} catch (EOFException e) {
+					break;
+				}
+
+				switch (type) {
+				case RECORD:
+					String recordId = in.readUTF();
+					recordIndex.put(recordId, recordIds.size());
+					recordIds.add(recordId);
+					break;
+
+				case USER:
+					addUserId(in.readUTF());
+					break;
+
+				case RECORDABLE:
+					String name = in.readUTF();
+					recordables.getId(name, in.readInt());
+					break;
+
+				default:
+					throw new IOException("Invalid dictionary entry type: " + type);
+				}
+			}
+		}
+	}
+
+
+	private Path getSegmentPath(int segment) {
+		return directory.resolve(String.format(SEGMENT_FORMAT, segment));
+	}
+
+
+	/**
+	 * Map the segment file, the file is created and zero filled if it does not exist
+	 * @param segment - the segment number
+	 * @return the mapped segment
+	 */
+	private MappedByteBuffer map(int segment) throws IOException {
+
+		long length = (long) segmentEntries * RECORD_SIZE;
+		try (FileChannel channel = FileChannel.open(getSegmentPath(segment),
+				StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+
+			if (channel.size() != 0 && channel.size() != length) {
+				throw new IOException("Segment " + segment + " size " + channel.size() +
+						" does not match the configured size " + length);
+			}
+
+			// The mapping remains valid after the channel is closed
+			return channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+		}
+	}
+
+
+	private void index(int record, int user, int entry, int recordableId, long epochNanos) {
+		entries.computeIfAbsent(record, k -> new HashMap<>())
+				.computeIfAbsent(user, k -> new EntryList())
+				.add(entry, recordableId, epochNanos);
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean add(String userId, Recordable recordable) {
+		return add(ledgerRecordId, userId, recordable);
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public synchronized boolean add(String recordId, String userId, Recordable recordable) {
+
+		if (recordable == null) {
+			logger.warn("Missing recordable. Entry will be skipped");
+			return false;
+		}
+
+		if (recordable.getCategoryName() == null) {
+			throw new IllegalArgumentException("Invalid recordable");
+		}
+
+		try {
+			int record = getRecordIndex(recordId);
+			int user = getUserIndex(userId);
+			int recordableId = getRecordableId(recordable);
+
+			OffsetDateTime time = recordable.getTime();
+			if (time == null) {
+				time = OffsetDateTime.now();
+				logger.warn("Recordable has no time, defaulting to now, this can potentially result in duplicate record.");
+			} else if (isDuplicate(record, user, recordableId, time)) {
+				logger.trace("Duplicate entries detected, likely from a leaderboard set.");
+				return true;
+			}
+
+			append(record, user, recordableId, time);
+			logger.trace("Added recordable time {}", time);
+			return true;
+
+		} catch (IOException e) {
+			logger.error("Unable to append ledger entry for user " + userId + ": " + e.getMessage(), e);
+			return false;
+		}
+	}
+
+
+	/**
+	 * Write the entry into the next slot of the last segment, a new segment is mapped when it is full
+	 */
+	private void append(int record, int user, int recordableId, OffsetDateTime time) throws IOException {
+
+		if (size == Integer.MAX_VALUE) {
+			throw new IOException("Ledger is full: " + directory);
+		}
+
+		int segmentNumber = size / segmentEntries;
+		if (segmentNumber == segments.size()) {
+			segments.add(map(segmentNumber));
+		}
+
+		MappedByteBuffer segment = segments.get(segmentNumber);
+		int position = (size % segmentEntries) * RECORD_SIZE;
+		segment.putInt(position + 4, user);
+		segment.putInt(position + 8, recordableId);
+		segment.putLong(position + 12, time.toEpochSecond());
+		segment.putInt(position + 20, time.getNano());
+		segment.putInt(position + 24, time.getOffset().getTotalSeconds());
+
+		// Written last, marks the record as complete
+		segment.putInt(position, record + 1);
+
+		index(record, user, size, recordableId, Timeline.toEpochNanos(time));
+		rollup(record, user, recordableId, time.toEpochSecond());
+		size++;
+	}
+
+
+	/**
+	 * Search the time and the recordable in the user's entries
+	 */
+	private boolean isDuplicate(int record, int user, int recordableId, OffsetDateTime time) {
+
+		Map<Integer, EntryList> userEntries = entries.get(record);
+		EntryList entryList = (userEntries == null) ?null :userEntries.get(user);
+		return entryList != null && entryList.contains(recordableId, Timeline.toEpochNanos(time));
+	}
+
+
+	private int getRecordIndex(String recordId) throws IOException {
+
+		Integer index = recordIndex.get(recordId);
+		if (index == null) {
+			dictionary.writeByte(RECORD);
+			dictionary.writeUTF(recordId);
+			dictionary.flush();
+			index = recordIds.size();
+			recordIds.add(recordId);
+			recordIndex.put(recordId, index);
+		}
+		return index;
+	}
+
+
+	private int getUserIndex(String userId) throws IOException {
+
+		Integer index = userIndex.get(userId);
+		if (index == null) {
+			dictionary.writeByte(USER);
+			dictionary.writeUTF(userId);
+			dictionary.flush();
+			index = addUserId(userId);
+		}
+		return index;
+	}
+
+
+	private int addUserId(String userId) {
+
+		int index = userIndex.size();
+		String[] ids = userIds;
+		if (index == ids.length) {
+			ids = Arrays.copyOf(ids, index * 2);
+		}
+		ids[index] = userId;
+		userIndex.put(userId, index);
+
+		// Publishes the user to the entries read without the lock
+		userIds = ids;
+		return index;
+	}
+
+
+	private int getRecordableId(Recordable recordable) throws IOException {
+
+		int size = recordables.size();
+		int index = recordables.getId(recordable.getCategoryName(), recordable.getPoints());
+		if (index == size) {
+			dictionary.writeByte(RECORDABLE);
+			dictionary.writeUTF(recordable.getCategoryName());
+			dictionary.writeInt(recordable.getPoints());
+			dictionary.flush();
+		}
+		return index;
+	}
+
+
+	private void rollup(int record, int user, int recordableId, long epochSecond) {
+		RecordableInfo recordableInfo = recordables.get(recordableId);
+		rollup.add(recordIds.get(record), userIds[user], recordableInfo.name, recordableInfo.points, epochSecond);
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getId() {
+		return directory.getFileName().toString();
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Map<String, List<LedgerEntry>> getRecordEntries() {
+		return getRecordEntries(ledgerRecordId);
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized Map<String, List<LedgerEntry>> getRecordEntries(String recordId) {
+
+		Map<String, List<LedgerEntry>> recordEntries = new HashMap<>();
+		Integer record = recordIndex.get(recordId);
+		Map<Integer, EntryList> userEntries = (record == null) ?null :entries.get(record);
+		if (userEntries != null) {
+			userEntries.forEach((user, entryList) ->
+				recordEntries.put(userIds[user], createLedgerEntry(entryList)));
+		}
+		return recordEntries;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized List<LedgerEntry> getUserEntries(String recordId, String userId) {
+
+		Integer record = recordIndex.get(recordId);
+		Integer user = userIndex.get(userId);
+		Map<Integer, EntryList> userEntries = (record == null) ?null :entries.get(record);
+		EntryList entryList = (userEntries == null || user == null) ?null :userEntries.get(user);
+		return (entryList == null) ?Collections.emptyList() :createLedgerEntry(entryList);
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized Set<String> getUserIds(String recordId) {
+
+		Set<String> users = new HashSet<>();
+		Integer record = recordIndex.get(recordId);
+		Map<Integer, EntryList> userEntries = (record == null) ?null :entries.get(record);
+		if (userEntries != null) {
+			userEntries.keySet().forEach(user -> users.add(userIds[user]));
+		}
+		return users;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 * <p>The log is scanned in append order, the entries of a user filter
+	 * are read through the user's entry numbers. The size and the segments
+	 * are read once under the lock, the entries are read without it. Entries
+	 * appended after the stream is created are not visited.
+	 */
+	@Override
+	public Stream<LedgerEntry> stream(String recordId, LedgerFilter filter) {
+
+		int record;
+		IntStream entryNumbers;
+		List<MappedByteBuffer> mapped;
+		synchronized (this) {
+			Integer index = recordIndex.get(recordId);
+			if (index == null) {
+				return Stream.empty();
+			}
+			record = index;
+
+			if (filter.getUserId() == null) {
+				entryNumbers = IntStream.range(0, size);
+			} else {
+				Integer user = userIndex.get(filter.getUserId());
+				Map<Integer, EntryList> userEntries = entries.get(record);
+				EntryList entryList = (userEntries == null || user == null) ?null :userEntries.get(user);
+				if (entryList == null) {
+					return Stream.empty();
+				}
+				// Copied, an entry with an earlier time is inserted in place
+				entryNumbers = Arrays.stream(Arrays.copyOf(entryList.entries, entryList.size));
+			}
+			mapped = new ArrayList<>(segments);
+		}
+
+		return entryNumbers
+				.mapToObj(entry -> readEntry(mapped, record, entry))
+				.filter(Objects::nonNull)
+				.filter(entry -> filter.matchesCategory(entry.getCategoryName()) && filter.matchesTime(entry.getTime()));
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized Map<String, Map<String, Long>> getPoints(String recordId, OffsetDateTime from, OffsetDateTime to) {
+		return rollup.getPoints(recordId, from, to);
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized Map<String, Long> getUserPoints(String recordId, String userId, OffsetDateTime from, OffsetDateTime to) {
+		return rollup.getUserPoints(recordId, userId, from, to);
+	}
+
+
+	/**
+	 * Compaction is not supported, the mapped ledger is the cold storage receiving
+	 * the entries compacted by the other ledgers. The entries are kept.
+	 * @return 0
+	 */
+	@Override
+	public long compact(OffsetDateTime horizon, Ledger archive) {
+		return 0;
+	}
+
+
+	/**
+	 * Compare the time and the recordable of an entry with the specified ones
+	 * @param entry - the entry number
+	 * @param recordableId - the recordable id
+	 * @param epochNanos - the epoch nanos of the time
+	 * @return the comparison of the entry's time, then of its recordable id
+	 */
+	private int compare(int entry, int recordableId, long epochNanos) {
+
+		MappedByteBuffer segment = segments.get(entry / segmentEntries);
+		int position = (entry % segmentEntries) * RECORD_SIZE;
+		int result = Long.compare(Timeline.toEpochNanos(segment.getLong(position + 12), segment.getInt(position + 20)), epochNanos);
+		return (result != 0) ?result :Integer.compare(segment.getInt(position + 8), recordableId);
+	}
+
+
+	/**
+	 * Read an entry from the segments without the lock, the entry is below
+	 * the size read under the lock and it is never written again
+	 * @param segments - the segments read under the lock
+	 * @param record - the record index
+	 * @param entry - the entry number
+	 * @return the entry with its user id, null if it belongs to another record
+	 */
+	private LedgerEntry readEntry(List<MappedByteBuffer> segments, int record, int entry) {
+
+		MappedByteBuffer segment = segments.get(entry / segmentEntries);
+		int position = (entry % segmentEntries) * RECORD_SIZE;
+		if (segment.getInt(position) != record + 1) {
+			return null;
+		}
+
+		RecordableInfo recordableInfo = recordables.get(segment.getInt(position + 8));
+		return new LedgerEntry(userIds[segment.getInt(position + 4)],
+				recordableInfo.name, recordableInfo.points, readTime(segment, position));
+	}
+
+
+	private static OffsetDateTime readTime(MappedByteBuffer segment, int position) {
+		return OffsetDateTime.ofInstant(
+				Instant.ofEpochSecond(segment.getLong(position + 12), segment.getInt(position + 20)),
+				ZoneOffset.ofTotalSeconds(segment.getInt(position + 24)));
+	}
+
+
+	/**
+	 * Read the entries from the segments
+	 * @param entryList - the entry numbers
+	 * @return the list of {@code LedgerEntry}
+	 */
+	private List<LedgerEntry> createLedgerEntry(EntryList entryList) {
+
+		List<LedgerEntry> ledgerEntries = new ArrayList<>(entryList.size);
+		for (int i = 0; i < entryList.size; i++) {
+			int entry = entryList.entries[i];
+			MappedByteBuffer segment = segments.get(entry / segmentEntries);
+			int position = (entry % segmentEntries) * RECORD_SIZE;
+
+			RecordableInfo recordableInfo = recordables.get(segment.getInt(position + 8));
+			ledgerEntries.add(new LedgerEntry(recordableInfo.name, recordableInfo.points, readTime(segment, position)));
+		}
+		return ledgerEntries;
+	}
+
+
+	/**
+	 * Force the segments and the dictionary to the storage device.
+	 * The entries are already written to the segment files, the mode and
+	 * resource id are not used.
+	 */
+	@Override
+	public synchronized boolean save(PersistenceMode mode, String resourceID) {
+
+		try {
+			dictionary.flush();
+			segments.forEach(MappedByteBuffer::force);
+			return true;
+		} catch (IOException e) {
+			logger.error("Unable to save ledger: " + e.getMessage(), e);
+			return false;
+		}
+	}
+
+
+	/**
+	 * Reopen the ledger from the segment files, the mode and resource id are not used.
+	 */
+	@Override
+	public synchronized Ledger load(PersistenceMode mode, String resourceID) {
+
+		try {
+			close();
+			open();
+		} catch (IOException | IllegalStateException e) {
+			logger.error("Unable to load ledger: " + e.getMessage(), e);
+		}
+		return this;
+	}
+
+
+	/**
+	 * The mapped ledger is not serialized
+	 * @return null
+	 */
+	@Override
+	public Serializer getSerializer() {
+		return null;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized long getSize() {
+		return size;
+	}
+
+
+	/**
+	 * Force the segments to the storage device and close the dictionary
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		segments.forEach(MappedByteBuffer::force);
+		dictionary.close();
+	}
+
+
+	/**
+	 * Growable list of entry numbers sorted by time and recordable id, the times and
+	 * the recordable ids are read from the segments. Appends in time order are O(1),
+	 * an earlier time is inserted after a binary search with an array copy of the
+	 * later entry numbers.
+	 */
+	private final class EntryList {
+
+		private int[] entries = new int[4];
+		private int size;
+
+		void add(int entry, int recordableId, long epochNanos) {
+
+			int index = size;
+			if (size > 0 && compare(entries[size - 1], recordableId, epochNanos) > 0) {
+				int found = search(recordableId, epochNanos);
+				index = (found >= 0) ?found + 1 :-found - 1;
+			}
+
+			if (size == entries.length) {
+				entries = Arrays.copyOf(entries, size * 2);
+			}
+			System.arraycopy(entries, index, entries, index + 1, size - index);
+			entries[index] = entry;
+			size++;
+		}
+
+		boolean contains(int recordableId, long epochNanos) {
+			return search(recordableId, epochNanos) >= 0;
+		}
+
+		/**
+		 * @return the index of the entry, (-(insertion point) - 1) if not found
+		 */
+		private int search(int recordableId, long epochNanos) {
+
+			int low = 0;
+			int high = size - 1;
+			while (low <= high) {
+				int middle = (low + high) >>> 1;
+				int result = compare(entries[middle], recordableId, epochNanos);
+				if (result < 0) {
+					low = middle + 1;
+				} else if (result > 0) {
+					high = middle - 1;
+				} else {
+					return middle;
+				}
+			}
+			return -(low + 1);
+		}
+	}
+}
@@ -0,0 +1,106 @@
+package com.bytes.fmk.service.leaderboard.ledger.impl;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Interns the recordables of a ledger, each distinct (category name, points)
+ * pair gets a stable int id. Category names are compared case-insensitively.
+ *
+ * <p>Lookups of known recordables are lock-free and do not allocate, the lookup
+ * key is reused per thread. New recordables are added under the dictionary lock.
+ *
+ * @author Kent
+ */
+class RecordableDictionary {
+
+	/**
+	 * The reusable lookup key of the current thread
+	 */
+	private static final ThreadLocal<RecordableInfo> KEY =
+			ThreadLocal.withInitial(() -> new RecordableInfo(null, 0));
+
+	/**
+	 * key = recordable
+	 * value = recordable id
+	 */
+	private final Map<RecordableInfo, Integer> ids;
+
+	/**
+	 * The recordables by id
+	 */
+	private final List<RecordableInfo> recordables;
+
+
+	/**
+	 * Create the dictionary from the recordables by id
+	 * @param recordables - the recordables, the index is the id
+	 */
+	RecordableDictionary(List<RecordableInfo> recordables) {
+
+		this.ids = new ConcurrentHashMap<>();
+		this.recordables = new CopyOnWriteArrayList<>();
+		if (recordables != null) {
+			recordables.forEach(r -> getId(r.name, r.points));
+		}
+	}
+
+
+	/**
+	 * Get the id of the recordable, it is added if it is not found
+	 * @param categoryName - the category name
+	 * @param points - the points
+	 * @return the recordable id
+	 */
+	int getId(String categoryName, int points) {
+
+		RecordableInfo key = KEY.get();
+		key.name = categoryName;
+		key.points = points;
+		Integer id = ids.get(key);
+		key.name = null;
+
+		return (id != null) ?id :add(new RecordableInfo(categoryName, points));
+	}
+
+
+	private synchronized int add(RecordableInfo recordable) {
+
+		Integer id = ids.get(recordable);
+		if (id == null) {
+			id = recordables.size();
+			recordables.add(recordable);
+			ids.put(recordable, id);
+		}
+		return id;
+	}
+
+
+	/**
+	 * Get the recordable corresponding to the id
+	 * @param id - the recordable id
+	 * @return the recordable
+	 */
+	RecordableInfo get(int id) {
+		return recordables.get(id);
+	}
+
+
+	/**
+	 * Get the recordables, the index is the id
+	 * @return the live list of recordables
+	 */
+	List<RecordableInfo> getRecordables() {
+		return recordables;
+	}
+
+
+	/**
+	 * @return the number of recordables
+	 */
+	int size() {
+		return recordables.size();
+	}
+}
@@ -1,7 +1,5 @@
 package com.bytes.fmk.service.leaderboard.ledger.impl;
 
-import java.util.Objects;
-
 class RecordableInfo {
 	String name;
 	int points;
@@ -24,7 +22,15 @@ class RecordableInfo {
 				points == recordable.points;
 	}
 	
+	/**
+	 * Case-insensitive hash, consistent with {@link #equals(Object)}.
+	 * Computed per character, without allocating a lower case name.
+	 */
 	public int hashCode() {
-		return Objects.hash(name, points);
+		int hash = 0;
+		for (int i = 0; i < name.length(); i++) {
+			hash = 31 * hash + Character.toLowerCase(Character.toUpperCase(name.charAt(i)));
+		}
+		return 31 * hash + points;
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,295 @@
+package com.bytes.fmk.service.leaderboard.ledger.impl;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * The distinct times of a user's recordable, stored as sorted epoch nanoseconds.
+ *
+ * <p>Appends in time order are O(1), duplicates are detected by binary search.
+ * Earlier times are inserted into a sorted buffer, merged into the timeline once
+ * it holds about the square root of the size, an out-of-order add is O(sqrt n)
+ * amortized. The buffer is merged before the times are read. Times are compared by instant, they are returned in UTC. The supported range
+ * is the years 1677 to 2262.
+ *
+ * <p>Persisted as an array of epoch nanoseconds, arrays of ISO offset date time
+ * strings of earlier versions are also read.
+ *
+ * @author Kent
+ */
+@JsonAdapter(Timeline.Adapter.class)
+class Timeline {
+
+	private static final int MIN_PENDING = 16;
+
+	private long[] times;
+	private int size;
+
+	/**
+	 * The sorted times added before the last time, null until the first one
+	 */
+	private long[] pending;
+	private int pendingSize;
+
+
+	Timeline() {
+		this.times = new long[4];
+	}
+
+
+	/**
+	 * Add the time if it is not already in the timeline
+	 * @param time - the time
+	 * @return true if added, false if it is a duplicate
+	 */
+	boolean add(OffsetDateTime time) {
+		return add(toEpochNanos(time));
+	}
+
+
+	/**
+	 * Add the time, moved forward by a nanosecond until it is not a duplicate
+	 * @param time - the time
+	 * @return the added time
+	 */
+	synchronized OffsetDateTime addUnique(OffsetDateTime time) {
+
+		long epochNanos = toEpochNanos(time);
+		while (!add(epochNanos)) {
+			epochNanos++;
+		}
+		return toTime(epochNanos);
+	}
+
+
+	/**
+	 * Add the time if it is not already in the timeline
+	 * @param epochNanos - the epoch nanos of the time
+	 * @return true if added, false if it is a duplicate
+	 */
+	synchronized boolean add(long epochNanos) {
+
+		if (size > 0 && epochNanos <= times[size - 1]) {
+			return addPending(epochNanos);
+		}
+
+		// The buffered times are all before the last time
+		if (size == times.length) {
+			times = Arrays.copyOf(times, size * 2);
+		}
+		times[size++] = epochNanos;
+		return true;
+	}
+
+
+	/**
+	 * Insert a time before the last time into the buffer, merged when full
+	 */
+	private boolean addPending(long epochNanos) {
+
+		if (Arrays.binarySearch(times, 0, size, epochNanos) >= 0) {
+			return false;
+		}
+
+		if (pending == null) {
+			pending = new long[MIN_PENDING];
+		}
+		int index = Arrays.binarySearch(pending, 0, pendingSize, epochNanos);
+		if (index >= 0) {
+			return false;
+		}
+		index = -index - 1;
+
+		if (pendingSize == pending.length) {
+			pending = Arrays.copyOf(pending, pendingSize * 2);
+		}
+		System.arraycopy(pending, index, pending, index + 1, pendingSize - index);
+		pending[index] = epochNanos;
+		pendingSize++;
+
+		if (pendingSize >= Math.max(MIN_PENDING, (int) Math.sqrt(size))) {
+			merge();
+		}
+		return true;
+	}
+
+
+	/**
+	 * Merge the buffer into the times, from the end in place
+	 */
+	private void merge() {
+
+		if (pendingSize == 0) {
+			return;
+		}
+
+		int total = size + pendingSize;
+		if (total > times.length) {
+			times = Arrays.copyOf(times, Math.max(total, times.length * 2));
+		}
+
+		int i = size - 1;
+		int j = pendingSize - 1;
+		for (int k = total - 1; j >= 0; k--) {
+			times[k] = (i >= 0 && times[i] > pending[j]) ?times[i--] :pending[j--];
+		}
+		size = total;
+		pendingSize = 0;
+		if (pending.length > MIN_PENDING) {
+			pending = new long[MIN_PENDING];
+		}
+	}
+
+
+	/**
+	 * Indicates if the time is in the timeline, in O(log n)
+	 * @param epochNanos - the epoch nanos of the time
+	 * @return true if found
+	 */
+	synchronized boolean contains(long epochNanos) {
+		return (size > 0 && epochNanos <= times[size - 1] && Arrays.binarySearch(times, 0, size, epochNanos) >= 0)
+				|| (pendingSize > 0 && Arrays.binarySearch(pending, 0, pendingSize, epochNanos) >= 0);
+	}
+
+
+	/**
+	 * @return the number of times
+	 */
+	synchronized int size() {
+		return size + pendingSize;
+	}
+
+
+	/**
+	 * @return the times in ascending order
+	 */
+	synchronized List<OffsetDateTime> getTimes() {
+
+		merge();
+		List<OffsetDateTime> list = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			list.add(toTime(times[i]));
+		}
+		return list;
+	}
+
+
+	/**
+	 * @param from - the start epoch nanos inclusive
+	 * @param to - the end epoch nanos exclusive
+	 * @return the epoch nanos in the range in ascending order
+	 */
+	synchronized LongStream range(long from, long to) {
+
+		merge();
+		int start = 0;
+		int end = size;
+		if (size > 0 && from > times[0]) {
+			start = Arrays.binarySearch(times, 0, size, from);
+			start = (start < 0) ?-start - 1 :start;
+		}
+		if (size > 0 && to <= times[size - 1]) {
+			end = Arrays.binarySearch(times, start, size, to);
+			end = (end < 0) ?-end - 1 :end;
+		}
+		return (start >= end) ?LongStream.empty() :LongStream.of(Arrays.copyOfRange(times, start, end));
+	}
+
+
+	/**
+	 * Remove the times before the specified time, the storage shrinks with the timeline
+	 * @param epochNanos - the end epoch nanos exclusive
+	 * @return the removed epoch nanos in ascending order
+	 */
+	synchronized long[] removeBefore(long epochNanos) {
+
+		merge();
+		int end = Arrays.binarySearch(times, 0, size, epochNanos);
+		end = (end < 0) ?-end - 1 :end;
+		long[] removed = Arrays.copyOf(times, end);
+
+		size -= end;
+		System.arraycopy(times, end, times, 0, size);
+		if (times.length > 4 && size < times.length / 4) {
+			times = Arrays.copyOf(times, Math.max(4, size * 2));
+		}
+		return removed;
+	}
+
+
+	private synchronized long[] toArray() {
+		merge();
+		return Arrays.copyOf(times, size);
+	}
+
+
+	static long toEpochNanos(OffsetDateTime time) {
+		return toEpochNanos(time.toEpochSecond(), time.getNano());
+	}
+
+
+	static long toEpochNanos(long epochSecond, int nano) {
+		return Math.addExact(Math.multiplyExact(epochSecond, 1_000_000_000L), nano);
+	}
+
+
+	static OffsetDateTime toTime(long epochNanos) {
+		return OffsetDateTime.ofInstant(Instant.ofEpochSecond(0, epochNanos), ZoneOffset.UTC);
+	}
+
+
+	/**
+	 * Reads and writes the timeline as a json array
+	 */
+	static final class Adapter extends TypeAdapter<Timeline> {
+
+		@Override
+		public void write(JsonWriter out, Timeline timeline) throws IOException {
+
+			if (timeline == null) {
+				out.nullValue();
+				return;
+			}
+
+			out.beginArray();
+			for (long epochNanos : timeline.toArray()) {
+				out.value(epochNanos);
+			}
+			out.endArray();
+		}
+
+
+		@Override
+		public Timeline read(JsonReader in) throws IOException {
+
+			if (in.peek() == JsonToken.NULL) {
+				in.nextNull();
+				return null;
+			}
+
+			Timeline timeline = new Timeline();
+			in.beginArray();
+			while (in.hasNext()) {
+				if (in.peek() == JsonToken.STRING) {
+					timeline.add(OffsetDateTime.parse(in.nextString()));
+				} else {
+					timeline.add(in.nextLong());
+				}
+			}
+			in.endArray();
+			return timeline;
+		}
+	}
+}
@@ -100,7 +100,7 @@ public abstract class ReportBuilderImpl implements ReportBuilder {
 		}
 		
 		String leaderboardId = leaderboard.getId();
-		logger.debug("Generating report: " + leaderboardId);
+		logger.debug("Generating report: {}", leaderboardId);
 		
 		LeaderboardService service = Thinkr.INSTANCE.getLeaderboardService();
 		service.calculate(leaderboardId);
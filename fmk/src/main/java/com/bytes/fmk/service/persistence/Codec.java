@@ -0,0 +1,46 @@
+package com.bytes.fmk.service.persistence;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+
+/**
+ * Encoding of the persisted data. The default encoding is the JSON text,
+ * a codec replaces it with its own format. The codec is selected per
+ * persistence service, the data of the known codecs are always decoded.
+ *
+ * @see Serializer#encode(Object, OutputStream, Codec, Compression)
+ * @see Serializer#addCodec(Codec)
+ * @author Kent
+ */
+public interface Codec {
+
+
+	/**
+	 * Write the encoded data, the header of the codec is written first
+	 * @param data - the object to encode
+	 * @param out - the output of the encoded data, flushed but not closed
+	 * @throws IOException if the output can not be written
+	 */
+	void encode(Object data, OutputStream out) throws IOException;
+
+
+	/**
+	 * Read the object of the specified type from the encoded data
+	 * @param in - the encoded data, the header included
+	 * @param type - the type of the object
+	 * @return the object
+	 * @throws IOException if the data is not supported or malformed
+	 */
+	<D> D decode(InputStream in, Type type) throws IOException;
+
+
+	/**
+	 * Indicates if the data was encoded by this codec
+	 * @param data - the persisted data, at least its first bytes
+	 * @return true if the data starts with the header of this codec
+	 */
+	boolean isEncoded(byte[] data);
+
+}
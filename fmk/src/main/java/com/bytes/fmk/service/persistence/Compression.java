@@ -0,0 +1,45 @@
+package com.bytes.fmk.service.persistence;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Compression of the encoded data. The compressed data starts with the header
+ * of the compression, the data without the header are loaded as they are.
+ *
+ * @see Serializer#encode(Object, OutputStream, Compression)
+ * @author Kent
+ */
+public interface Compression {
+
+
+	/**
+	 * Create the stream compressing the encoded data, the header of the
+	 * compression is written first
+	 * @param out - the output of the compressed data
+	 * @return the stream, closing it finishes the compressed data without closing the output
+	 * @throws IOException if the header can not be written
+	 */
+	OutputStream newOutputStream(OutputStream out) throws IOException;
+
+
+	/**
+	 * Create the stream decompressing the data, the data is decompressed while
+	 * it is read and the encoded data is never built as a whole
+	 * @param in - the compressed data, the header included
+	 * @return the stream of the encoded data, closing it releases the decompression and closes the input
+	 * @throws IOException if the header is not supported, the stream throws
+	 * if the data is corrupted or truncated
+	 */
+	InputStream newInputStream(InputStream in) throws IOException;
+
+
+	/**
+	 * Indicates if the data was compressed by this compression
+	 * @param data - the persisted data, at least its first bytes
+	 * @return true if the data starts with the header of this compression
+	 */
+	boolean isCompressed(byte[] data);
+
+}
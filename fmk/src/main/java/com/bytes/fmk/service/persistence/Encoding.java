@@ -0,0 +1,88 @@
+package com.bytes.fmk.service.persistence;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * The codec and the compression of the data saved by a persistence service.
+ * The data previously saved with other settings are still loaded, the codecs
+ * and the compressions set are registered with the {@code Serializer}.
+ *
+ * @see PersistenceService#getEncoding()
+ * @author Kent
+ */
+public final class Encoding {
+
+	/**
+	 * The codec of the saved data, null to save the JSON text
+	 */
+	private volatile Codec codec;
+
+	/**
+	 * The compression of the saved data, null to save the data uncompressed
+	 */
+	private volatile Compression compression;
+
+
+	/**
+	 * Set the codec of the saved data
+	 * @param codec - the codec, null to save the JSON text
+	 */
+	public void setCodec(Codec codec) {
+		if (codec != null) {
+			Serializer.addCodec(codec);
+		}
+		this.codec = codec;
+	}
+
+
+	/**
+	 * @return the codec of the saved data, null if the JSON text is saved
+	 */
+	public Codec getCodec() {
+		return codec;
+	}
+
+
+	/**
+	 * Set the compression of the saved data
+	 * @param compression - the compression, null to save the data uncompressed
+	 */
+	public void setCompression(Compression compression) {
+		if (compression != null) {
+			Serializer.addCompression(compression);
+		}
+		this.compression = compression;
+	}
+
+
+	/**
+	 * @return the compression of the saved data, null if the data are saved uncompressed
+	 */
+	public Compression getCompression() {
+		return compression;
+	}
+
+
+	/**
+	 * Encode the data with the codec and the compression
+	 * @param data - the data
+	 * @return the encoded data
+	 * @see Serializer#encode(Object, Codec, Compression)
+	 */
+	public byte[] encode(Object data) {
+		return Serializer.encode(data, codec, compression);
+	}
+
+
+	/**
+	 * Write the data encoded with the codec and the compression
+	 * @param data - the data
+	 * @param out - the output of the encoded data, not closed
+	 * @throws IOException if the output can not be written
+	 * @see Serializer#encode(Object, OutputStream, Codec, Compression)
+	 */
+	public void encode(Object data, OutputStream out) throws IOException {
+		Serializer.encode(data, out, codec, compression);
+	}
+}
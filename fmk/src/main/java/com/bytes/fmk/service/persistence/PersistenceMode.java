@@ -2,5 +2,7 @@ package com.bytes.fmk.service.persistence;
 
 public enum PersistenceMode {
 	RedisLocal,
-	RedisAzure
-}
+	RedisAzure,
+	File,
+	Memory
+}
\ No newline at end of file
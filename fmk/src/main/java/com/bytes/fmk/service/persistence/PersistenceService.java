@@ -16,6 +16,33 @@ public interface PersistenceService extends ThinkrService {
 	public <D> boolean saveData(String key, D data);
 	
 	
+	/**
+	 * Request to persist the state of the data at the time of the request. A service
+	 * deferring its writes serializes the data on the caller thread, so the saved 
+	 * state is not newer than the saves requested after it.
+	 * @param key - the key to retrieve the data
+	 * @param data - the data to be persisted
+	 * @return true if successful
+	 */
+	public default <D> boolean saveSnapshot(String key, D data) {
+		return saveData(key, data);
+	}
+	
+	
+	/**
+	 * Request to persist the specified data objects with their keys
+	 * @param data - the data to be persisted keyed by their key
+	 * @return true if all data were persisted
+	 */
+	public default <D> boolean saveAll(Map<String, D> data) {
+		boolean result = true;
+		for (Map.Entry<String, D> entry : data.entrySet()) {
+			result = saveData(entry.getKey(), entry.getValue()) && result;
+		}
+		return result;
+	}
+	
+	
 	/**
 	 * Request to load the data corresponding to the specified key
 	 * @param key - the key corresponding to the data
@@ -28,7 +55,7 @@ public interface PersistenceService extends ThinkrService {
 	/**
 	 * Request to save the map to redis
 	 * @param resourceId - The redis map id
-	 * @param map - The map containing data. The data will be converted to JSON string
+	 * @param map - The map containing data. The data will be encoded, see {@code Serializer#encode}
 	 * @return true if the serialization and persistence was successful
 	 */
 	<D> boolean saveMap(String resourceId, Map<String, D> map);
@@ -51,4 +78,65 @@ public interface PersistenceService extends ThinkrService {
 	 */
 	public boolean clear(String resourceId);
 	
+	
+	/**
+	 * @return the codec and the compression of the saved data, null if the 
+	 * service does not encode the data
+	 */
+	public default Encoding getEncoding() {
+		return null;
+	}
+	
+	
+	/**
+	 * Request to encode the saved data with the codec, the data previously
+	 * saved with other codecs are still loaded
+	 * @param codec - the codec, null to save the JSON text
+	 * @return true if the service supports the codec
+	 * @see Encoding#setCodec(Codec)
+	 */
+	public default boolean setCodec(Codec codec) {
+		Encoding encoding = getEncoding();
+		if (encoding == null) {
+			return false;
+		}
+		encoding.setCodec(codec);
+		return true;
+	}
+	
+	
+	/**
+	 * @return the codec of the saved data, null if the JSON text is saved
+	 */
+	public default Codec getCodec() {
+		Encoding encoding = getEncoding();
+		return (encoding == null) ?null :encoding.getCodec();
+	}
+	
+	
+	/**
+	 * Request to compress the saved data, the data previously saved with 
+	 * or without compression are still loaded
+	 * @param compression - the compression, null to save the data uncompressed
+	 * @return true if the service supports the compression
+	 * @see Encoding#setCompression(Compression)
+	 */
+	public default boolean setCompression(Compression compression) {
+		Encoding encoding = getEncoding();
+		if (encoding == null) {
+			return false;
+		}
+		encoding.setCompression(compression);
+		return true;
+	}
+	
+	
+	/**
+	 * @return the compression of the saved data, null if the data are saved uncompressed
+	 */
+	public default Compression getCompression() {
+		Encoding encoding = getEncoding();
+		return (encoding == null) ?null :encoding.getCompression();
+	}
+	
 }
@@ -0,0 +1,16 @@
+package com.bytes.fmk.service.persistence;
+
+/**
+ * A persisted object rebuilding its runtime state once it is deserialized,
+ * e.g. replacing the maps created by Gson with the concurrent maps it uses.
+ * This is called by the {@code Serializer} before the object is returned.
+ *
+ * @author Kent
+ */
+public interface Restorable {
+
+	/**
+	 * Request to rebuild the state that is not persisted as it is used
+	 */
+	public void restore();
+}
@@ -1,27 +1,76 @@
 package com.bytes.fmk.service.persistence;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PushbackInputStream;
 import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
 import java.time.OffsetDateTime;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.bytes.fmk.service.persistence.impl.BinaryCodec;
+import com.bytes.fmk.service.persistence.impl.DeflateCompression;
 import com.bytes.fmk.service.persistence.impl.OffsetDateTimeDeserializer;
 import com.bytes.fmk.service.persistence.impl.OffsetDateTimeSerializer;
+import com.bytes.fmk.service.persistence.impl.RestorableAdapterFactory;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonIOException;
+import com.google.gson.stream.JsonWriter;
 
 public abstract class Serializer {
 	
 	protected static Logger logger = LoggerFactory.getLogger(Serializer.class);
 	protected static Gson gson;
 	
+	/**
+	 * The codecs recognized when decoding, the data of other codecs are JSON text
+	 */
+	private static List<Codec> codecs;
+	
+	/**
+	 * The compressions recognized when decoding, the data of other compressions are not compressed
+	 */
+	private static List<Compression> compressions;
+	
+	/**
+	 * The number of bytes peeked to recognize the codec of the data
+	 */
+	private static final int HEADER_PEEK_SIZE = 16;
+	
 	static {
-		gson = new GsonBuilder()
+		gson = newGsonBuilder().create();
+		
+		codecs = new CopyOnWriteArrayList<>();
+		codecs.add(new BinaryCodec());
+		
+		compressions = new CopyOnWriteArrayList<>();
+		compressions.add(new DeflateCompression());
+	}
+	
+	
+	/**
+	 * Create the builder of the Gson configuration of the persisted data, 
+	 * the codecs convert the data with the same configuration
+	 * @return the Gson builder
+	 */
+	public static GsonBuilder newGsonBuilder() {
+		return new GsonBuilder()
 		        .registerTypeAdapter(OffsetDateTime.class, new OffsetDateTimeSerializer())
 		        .registerTypeAdapter(OffsetDateTime.class, new OffsetDateTimeDeserializer())
-		        .create();
+		        .registerTypeAdapterFactory(new RestorableAdapterFactory());
 	}
 	
 	
@@ -78,6 +127,234 @@ public abstract class Serializer {
 	public static String toJson(Object data) {
 		return gson.toJson(data);
 	}
+	
+	
+	/**
+	 * Returns the json tree of an object, its json value is the json value of the object
+	 * @param data - the object to serialize
+	 * @return the json tree
+	 */
+	public static JsonElement toJsonTree(Object data) {
+		return gson.toJsonTree(data);
+	}
+
+
+	/**
+	 * Retrieve the strongly typed objects from the encoded data, the compressed
+	 * data are decompressed while they are decoded and the data of an unknown 
+	 * codec are parsed as JSON text
+	 * 
+	 * @param data - the encoded data
+	 * @param resourceId - the resource id of the data type
+	 * @return the strongly typed object
+	 */
+	public <D> D getData(byte[] data, String resourceId) {
+		return getData(new ByteArrayInputStream(data), resourceId);
+	}
+	
+	
+	/**
+	 * Retrieve the strongly typed objects from the stream of the encoded data, 
+	 * the data is decoded while it is read
+	 * 
+	 * @param data - the stream of the encoded data, closed when the object is read
+	 * @param resourceId - the resource id of the data type
+	 * @return the strongly typed object
+	 * @see #getData(byte[], String)
+	 */
+	public <D> D getData(InputStream data, String resourceId) {
+		Type type = getResourceIdMap().get(resourceId);
+		try (PushbackInputStream in = newInputStream(data)) {
+			return decode(in, type);
+		} catch (Exception e) {
+			logger.error("Unknown data type. Unable to convert to data object: " + resourceId + " " + type, e);
+		}
+		return null;
+	}
+	
+	
+	/**
+	 * Create the stream of the encoded data, decompressing the compressed data
+	 * @param data - the persisted data
+	 * @return the stream of the encoded data, the header can be pushed back
+	 * @throws IOException if the compression is not supported
+	 */
+	private static PushbackInputStream newInputStream(InputStream data) throws IOException {
+		
+		PushbackInputStream in = new PushbackInputStream(data, HEADER_PEEK_SIZE);
+		byte[] header = peek(in);
+		for (Compression compression : compressions) {
+			if (compression.isCompressed(header)) {
+				return new PushbackInputStream(compression.newInputStream(in), HEADER_PEEK_SIZE);
+			}
+		}
+		return in;
+	}
+	
+	
+	/**
+	 * Decode the object with the codec of the header
+	 * @param in - the stream of the encoded data, the header can be pushed back
+	 * @param type - the type of the object
+	 * @return the object
+	 * @throws IOException if the data is malformed
+	 */
+	private static <D> D decode(PushbackInputStream in, Type type) throws IOException {
+		
+		byte[] header = peek(in);
+		for (Codec codec : codecs) {
+			if (codec.isEncoded(header)) {
+				return codec.decode(in, type);
+			}
+		}
+		return gson.fromJson(new InputStreamReader(in, StandardCharsets.UTF_8), type);
+	}
+	
+	
+	/**
+	 * Read the header and push it back, the stream is read from the start after
+	 * @param in - the stream of the data
+	 * @return the header, shorter if the data is shorter
+	 * @throws IOException if the data can not be read
+	 */
+	private static byte[] peek(PushbackInputStream in) throws IOException {
+		
+		byte[] header = new byte[HEADER_PEEK_SIZE];
+		int count = 0;
+		int read;
+		while (count < header.length && (read = in.read(header, count, header.length - count)) >= 0) {
+			count += read;
+		}
+		in.unread(header, 0, count);
+		return Arrays.copyOf(header, count);
+	}
+	
+	
+	/**
+	 * Returns the JSON text of an object
+	 * @param data - the object to serialize
+	 * @return the encoded data
+	 * @see #encode(Object, OutputStream)
+	 */
+	public static byte[] encode(Object data) {
+		return encode(data, (Codec) null, null);
+	}
+	
+	
+	/**
+	 * Returns the compressed JSON text of an object
+	 * @param data - the object to serialize
+	 * @param compression - the compression, null for the uncompressed data
+	 * @return the encoded data
+	 * @see #encode(Object, OutputStream, Codec, Compression)
+	 */
+	public static byte[] encode(Object data, Compression compression) {
+		return encode(data, (Codec) null, compression);
+	}
+	
+	
+	/**
+	 * Returns the compressed encoded representation of an object
+	 * @param data - the object to serialize
+	 * @param codec - the codec, null for the JSON text
+	 * @param compression - the compression, null for the uncompressed data
+	 * @return the encoded data
+	 * @see #encode(Object, OutputStream, Codec, Compression)
+	 */
+	public static byte[] encode(Object data, Codec codec, Compression compression) {
+		
+		ByteArrayOutputStream out = new ByteArrayOutputStream(8192);
+		try {
+			encode(data, out, codec, compression);
+		} catch (IOException e) {
+			throw new JsonIOException(e);
+		}
+		return out.toByteArray();
+	}
+	
+	
+	/**
+	 * Write the JSON text of an object. The data is streamed to the output, 
+	 * the encoded data is never built as a whole. The output is flushed, not closed.
+	 * @param data - the object to serialize
+	 * @param out - the output of the encoded data
+	 * @throws IOException if the output can not be written
+	 */
+	public static void encode(Object data, OutputStream out) throws IOException {
+		encode(data, out, null, null);
+	}
+	
+	
+	/**
+	 * Write the compressed JSON text of an object, the data is compressed
+	 * while it is streamed to the output. The output is flushed, not closed.
+	 * @param data - the object to serialize
+	 * @param out - the output of the compressed data
+	 * @param compression - the compression, null for the uncompressed data
+	 * @throws IOException if the output can not be written
+	 * @see DeflateCompression
+	 */
+	public static void encode(Object data, OutputStream out, Compression compression) throws IOException {
+		encode(data, out, null, compression);
+	}
+	
+	
+	/**
+	 * Write the compressed encoded representation of an object, the data is 
+	 * compressed while it is written to the output. The output is flushed, not closed.
+	 * @param data - the object to serialize
+	 * @param out - the output of the compressed data
+	 * @param codec - the codec, null for the JSON text
+	 * @param compression - the compression, null for the uncompressed data
+	 * @throws IOException if the output can not be written
+	 * @see BinaryCodec
+	 * @see DeflateCompression
+	 */
+	public static void encode(Object data, OutputStream out, Codec codec, Compression compression) throws IOException {
+		
+		OutputStream target = (compression == null) ?out :compression.newOutputStream(out);
+		if (codec != null) {
+			codec.encode(data, target);
+		} else {
+			JsonWriter writer = gson.newJsonWriter(new OutputStreamWriter(target, StandardCharsets.UTF_8));
+			try {
+				gson.toJson(data, data.getClass(), writer);
+			} catch (JsonIOException e) {
+				if (e.getCause() instanceof IOException) {
+					throw (IOException) e.getCause();
+				}
+				throw e;
+			}
+			writer.flush();
+		}
+		if (compression != null) {
+			target.close();
+		}
+	}
+	
+	
+	/**
+	 * Request to decode the data of the specified codec, 
+	 * the {@code BinaryCodec} is always recognized
+	 * @param codec - the codec
+	 */
+	public static void addCodec(Codec codec) {
+		if (codecs.stream().noneMatch(c -> c.getClass() == codec.getClass())) {
+			codecs.add(codec);
+		}
+	}
+	
+	
+	/**
+	 * Request to decompress the data of the specified compression when decoding,
+	 * the {@code DeflateCompression} is always recognized
+	 * @param compression - the compression
+	 */
+	public static void addCompression(Compression compression) {
+		if (compressions.stream().noneMatch(c -> c.getClass() == compression.getClass())) {
+			compressions.add(compression);
+		}
+	}
 
 
 	public void registerResourceID(String resourceId, Type type) {
@@ -0,0 +1,48 @@
+package com.bytes.fmk.service.persistence.impl;
+
+import com.bytes.fmk.service.persistence.Serializer;
+
+/**
+ * Validation of the arguments of the persistence services
+ *
+ * @author Kent
+ */
+final class Arguments {
+
+	private Arguments() {
+	}
+
+
+	/**
+	 * Validate arguments for save operations.
+	 * @param resourceId - the resourceId
+	 * @param data - the data
+	 */
+	static <D> void validateCommit(String resourceId, D data) {
+
+		if (resourceId == null) {
+			throw new IllegalArgumentException("ResourceId cannot be null");
+		}
+
+		if (data == null) {
+			throw new IllegalArgumentException("Data to be persisted cannot be null");
+		}
+	}
+
+
+	/**
+	 * Validates the arguments for load operations
+	 * @param resourceId - the resourceId
+	 * @param serializer - the serializer
+	 */
+	static void validateLoad(String resourceId, Serializer serializer) {
+
+		if (resourceId == null) {
+			throw new IllegalArgumentException("ResourceId cannot be null");
+		}
+
+		if (serializer == null) {
+			throw new IllegalArgumentException("Serializer cannot be null");
+		}
+	}
+}
@@ -0,0 +1,1048 @@
+package com.bytes.fmk.service.persistence.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.bytes.fmk.service.persistence.Codec;
+import com.bytes.fmk.service.persistence.Serializer;
+import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.google.gson.stream.MalformedJsonException;
+
+/**
+ * Compact binary encoding of the persisted data.
+ * <pre>
+ * data    = header value
+ * header  = 0xFF 'T' version
+ * value   = tag [payload]
+ * object  = OBJECT (key value)* 0
+ * array   = ARRAY value* END
+ * key     = string
+ * string  = varint index + 2 of a previous string | 1 varint length UTF-8 bytes
+ * </pre>
+ * The strings, object keys included, are written once and referenced by their
+ * index after. The integers are zigzag varints, the integers of an array are the
+ * difference with the previous integer of the array and the {@code OffsetDateTime}
+ * strings are the epoch second, the nanosecond and the offset.
+ *
+ * <p>The codec has its own {@code Gson}, the data is written and read by the Gson
+ * type adapters through a {@code JsonWriter} and a {@code JsonReader} of this format.
+ * No tree of the data is built. The header can not start a JSON text, the data
+ * without the header are JSON.
+ *
+ * @author Kent
+ */
+public class BinaryCodec implements Codec {
+
+	public static final int VERSION = 1;
+
+	private static final int MAGIC = 0xFF;
+	private static final int FORMAT = 'T';
+
+	private static final int NULL = 0;
+	private static final int TRUE = 1;
+	private static final int FALSE = 2;
+	private static final int LONG = 3;
+	private static final int DOUBLE = 4;
+	private static final int NUMBER = 5;
+	private static final int STRING = 6;
+	private static final int TIME = 7;
+	private static final int ARRAY = 8;
+	private static final int OBJECT = 9;
+	private static final int END = 10;
+	private static final int DELTA = 11;
+
+	/**
+	 * The string reference of the end of an object, a new string and the first index
+	 */
+	private static final int END_KEY = 0;
+	private static final int NEW_STRING = 1;
+	private static final int FIRST_INDEX = 2;
+
+	private final Gson gson;
+
+
+	/**
+	 * Create the codec with the Gson configuration of the {@code Serializer}
+	 */
+	public BinaryCodec() {
+		this(Serializer.newGsonBuilder().create());
+	}
+
+
+	/**
+	 * Create the codec converting the data with the specified Gson
+	 * @param gson - the Gson
+	 */
+	public BinaryCodec(Gson gson) {
+		this.gson = gson;
+	}
+
+
+	@Override
+	public void encode(Object data, OutputStream out) throws IOException {
+
+		BinaryWriter writer = new BinaryWriter(out);
+		writer.write(MAGIC);
+		writer.write(FORMAT);
+		writer.write(VERSION);
+		if (data == null) {
+			writer.nullValue();
+		} else {
+			try {
+				gson.toJson(data, data.getClass(), writer);
+			} catch (JsonIOException e) {
+				if (e.getCause() instanceof IOException) {
+					throw (IOException) e.getCause();
+				}
+				throw e;
+			}
+		}
+		writer.flush();
+	}
+
+
+	@Override
+	public <D> D decode(InputStream in, Type type) throws IOException {
+
+		BinaryReader reader = new BinaryReader(in);
+		if (reader.read() != MAGIC || reader.read() != FORMAT) {
+			throw new MalformedJsonException("Not a binary encoded data");
+		}
+
+		int version = reader.read();
+		if (version != VERSION) {
+			throw new MalformedJsonException("Unsupported binary format version: " + version);
+		}
+
+		D data;
+		try {
+			data = gson.fromJson(reader, type);
+		} catch (JsonSyntaxException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw e;
+		}
+		if (reader.read() != -1) {
+			throw new MalformedJsonException("Unexpected data after the document" + reader.locationString());
+		}
+		return data;
+	}
+
+
+	@Override
+	public boolean isEncoded(byte[] data) {
+		return data != null && data.length >= 3
+				&& (data[0] & 0xFF) == MAGIC && data[1] == FORMAT;
+	}
+
+
+	/**
+	 * Writes the values as Gson writes them, no tree is built. The string 
+	 * dictionary is built while writing.
+	 */
+	private static final class BinaryWriter extends JsonWriter {
+
+		private final OutputStream out;
+		private final byte[] buffer = new byte[8192];
+		private int count;
+
+		private final Map<String, Integer> strings = new HashMap<>();
+
+		/**
+		 * The previous integer of each open array, null for an object
+		 */
+		private long[][] previous = new long[32][];
+		private int depth;
+
+		/**
+		 * The name written with its value, dropped with a null value unless nulls are serialized
+		 */
+		private String deferredName;
+
+
+		private BinaryWriter(OutputStream out) {
+			super(new StringWriter(0));
+			this.out = out;
+		}
+
+
+		@Override
+		public JsonWriter beginArray() throws IOException {
+			writeDeferredName();
+			write(ARRAY);
+			push(new long[1]);
+			return this;
+		}
+
+
+		@Override
+		public JsonWriter endArray() throws IOException {
+			write(END);
+			pop();
+			return this;
+		}
+
+
+		@Override
+		public JsonWriter beginObject() throws IOException {
+			writeDeferredName();
+			write(OBJECT);
+			push(null);
+			return this;
+		}
+
+
+		@Override
+		public JsonWriter endObject() throws IOException {
+			if (deferredName != null) {
+				throw new IllegalStateException("Missing value of " + deferredName);
+			}
+			writeVarint(END_KEY);
+			pop();
+			return this;
+		}
+
+
+		@Override
+		public JsonWriter name(String name) throws IOException {
+			if (name == null) {
+				throw new NullPointerException("name == null");
+			}
+			if (deferredName != null || depth == 0 || previous[depth - 1] != null) {
+				throw new IllegalStateException("Unexpected name " + name);
+			}
+			deferredName = name;
+			return this;
+		}
+
+
+		@Override
+		public JsonWriter value(String value) throws IOException {
+
+			if (value == null) {
+				return nullValue();
+			}
+
+			writeDeferredName();
+			OffsetDateTime time = parseTime(value);
+			if (time != null) {
+				write(TIME);
+				writeVarint(zigzag(time.toEpochSecond()));
+				writeVarint(time.getNano());
+				writeVarint(zigzag(time.getOffset().getTotalSeconds()));
+			} else {
+				write(STRING);
+				writeString(value);
+			}
+			return this;
+		}
+
+
+		@Override
+		public JsonWriter jsonValue(String value) throws IOException {
+			throw new UnsupportedOperationException("JSON text values are not supported by the binary codec");
+		}
+
+
+		@Override
+		public JsonWriter nullValue() throws IOException {
+
+			if (deferredName != null) {
+				if (!getSerializeNulls()) {
+					deferredName = null;
+					return this;
+				}
+				writeDeferredName();
+			}
+			write(NULL);
+			return this;
+		}
+
+
+		@Override
+		public JsonWriter value(boolean value) throws IOException {
+			writeDeferredName();
+			write(value ?TRUE :FALSE);
+			return this;
+		}
+
+
+		@Override
+		public JsonWriter value(Boolean value) throws IOException {
+			return (value == null) ?nullValue() :value(value.booleanValue());
+		}
+
+
+		@Override
+		public JsonWriter value(double value) throws IOException {
+
+			if (Double.isNaN(value) || Double.isInfinite(value)) {
+				throw new IllegalArgumentException("Numeric values must be finite, but was " + value);
+			}
+
+			writeDeferredName();
+			write(DOUBLE);
+			long bits = Double.doubleToRawLongBits(value);
+			for (int shift = 56; shift >= 0; shift -= 8) {
+				write((int) (bits >>> shift));
+			}
+			return this;
+		}
+
+
+		@Override
+		public JsonWriter value(long value) throws IOException {
+
+			writeDeferredName();
+			long[] previousInteger = (depth == 0) ?null :previous[depth - 1];
+			if (previousInteger != null) {
+				write(DELTA);
+				writeVarint(zigzag(value - previousInteger[0]));
+				previousInteger[0] = value;
+			} else {
+				write(LONG);
+				writeVarint(zigzag(value));
+			}
+			return this;
+		}
+
+
+		@Override
+		public JsonWriter value(Number value) throws IOException {
+
+			if (value == null) {
+				return nullValue();
+			}
+
+			if (value instanceof Long || value instanceof Integer || value instanceof Short
+					|| value instanceof Byte || value instanceof AtomicLong || value instanceof AtomicInteger) {
+				return value(value.longValue());
+			}
+
+			if (value instanceof Double || value instanceof Float) {
+				return value(value.doubleValue());
+			}
+
+			writeDeferredName();
+			write(NUMBER);
+			writeString(value.toString());
+			return this;
+		}
+
+
+		@Override
+		public void flush() throws IOException {
+			out.write(buffer, 0, count);
+			count = 0;
+			out.flush();
+		}
+
+
+		/**
+		 * The output stream is closed by the caller
+		 */
+		@Override
+		public void close() throws IOException {
+			flush();
+		}
+
+
+		private void writeDeferredName() throws IOException {
+			if (deferredName != null) {
+				writeString(deferredName);
+				deferredName = null;
+			}
+		}
+
+
+		private void push(long[] previousInteger) {
+			if (depth == previous.length) {
+				previous = Arrays.copyOf(previous, depth * 2);
+			}
+			previous[depth++] = previousInteger;
+		}
+
+
+		private void pop() {
+			if (depth == 0) {
+				throw new IllegalStateException("Nesting problem");
+			}
+			previous[--depth] = null;
+		}
+
+
+		private void writeString(String value) throws IOException {
+
+			Integer index = strings.get(value);
+			if (index != null) {
+				writeVarint(index + FIRST_INDEX);
+				return;
+			}
+
+			strings.put(value, strings.size());
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			writeVarint(NEW_STRING);
+			writeVarint(bytes.length);
+			if (bytes.length > buffer.length - count) {
+				out.write(buffer, 0, count);
+				count = 0;
+				if (bytes.length > buffer.length) {
+					out.write(bytes);
+					return;
+				}
+			}
+			System.arraycopy(bytes, 0, buffer, count, bytes.length);
+			count += bytes.length;
+		}
+
+
+		private void writeVarint(long value) throws IOException {
+			while ((value & ~0x7FL) != 0) {
+				write((int) ((value & 0x7F) | 0x80));
+				value >>>= 7;
+			}
+			write((int) value);
+		}
+
+
+		private void write(int b) throws IOException {
+			if (count == buffer.length) {
+				out.write(buffer, 0, count);
+				count = 0;
+			}
+			buffer[count++] = (byte) b;
+		}
+	}
+
+
+	/**
+	 * Reads the values as Gson reads them, one token ahead, no tree is built.
+	 * The string dictionary is rebuilt while reading.
+	 *
+	 * <p>Gson's map adapter promotes the name of an entry to a value through the
+	 * state of the {@code JsonReader} it extends. That state reads a text of empty
+	 * names, a promoted name is seen as a string of the text and is skipped with
+	 * its value when the name of this reader is read as a value.
+	 */
+	private static final class BinaryReader extends JsonReader {
+
+		/**
+		 * The kind of the peeked value
+		 */
+		private static final int INTEGER = 1;
+		private static final int REAL = 2;
+		private static final int TEXT = 3;
+
+		private final InputStream in;
+		private final byte[] buffer = new byte[8192];
+		private int position;
+		private int limit;
+		private long offset;
+
+		private final List<String> strings = new ArrayList<>();
+
+		/**
+		 * The previous integer of each open array, null for an object
+		 */
+		private long[][] previous = new long[32][];
+		private int depth;
+
+		/**
+		 * The next token, null if not peeked. The name or the value is read with the token.
+		 */
+		private JsonToken peeked;
+		private int kind;
+		private long integer;
+		private double real;
+		private String text;
+
+		/**
+		 * An object expects a name next, true after its values
+		 */
+		private boolean expectName;
+
+		/**
+		 * The peeked name is promoted to a value by the map adapter
+		 */
+		private boolean promoted;
+
+		/**
+		 * The single value of the document is read
+		 */
+		private boolean documentRead;
+
+
+		private BinaryReader(InputStream in) throws IOException {
+			super(new EmptyNames());
+			super.beginObject();
+			this.in = in;
+		}
+
+
+		@Override
+		public void beginArray() throws IOException {
+			expect(JsonToken.BEGIN_ARRAY);
+			push(new long[1]);
+		}
+
+
+		@Override
+		public void endArray() throws IOException {
+			expect(JsonToken.END_ARRAY);
+			pop();
+		}
+
+
+		@Override
+		public void beginObject() throws IOException {
+			expect(JsonToken.BEGIN_OBJECT);
+			push(null);
+			expectName = true;
+		}
+
+
+		@Override
+		public void endObject() throws IOException {
+			expect(JsonToken.END_OBJECT);
+			pop();
+		}
+
+
+		@Override
+		public boolean hasNext() throws IOException {
+			JsonToken token = peekToken();
+			return token != JsonToken.END_OBJECT && token != JsonToken.END_ARRAY && token != JsonToken.END_DOCUMENT;
+		}
+
+
+		@Override
+		public JsonToken peek() throws IOException {
+			JsonToken token = peekToken();
+			if (token == JsonToken.NAME && super.peek() == JsonToken.STRING) {
+				// Promoted by the map adapter, the name is read as a string value
+				super.nextString();
+				super.skipValue();
+				peeked = JsonToken.STRING;
+				promoted = true;
+				return JsonToken.STRING;
+			}
+			return token;
+		}
+
+
+		@Override
+		public String nextName() throws IOException {
+			expect(JsonToken.NAME);
+			return text;
+		}
+
+
+		@Override
+		public String nextString() throws IOException {
+
+			JsonToken token = peek();
+			if (token != JsonToken.STRING && token != JsonToken.NUMBER) {
+				throw new IllegalStateException("Expected a string but was " + token + locationString());
+			}
+
+			String value = (kind == INTEGER) ?Long.toString(integer) :(kind == REAL) ?Double.toString(real) :text;
+			consume();
+			return value;
+		}
+
+
+		@Override
+		public boolean nextBoolean() throws IOException {
+			peek();
+			expect(JsonToken.BOOLEAN);
+			return integer != 0;
+		}
+
+
+		@Override
+		public void nextNull() throws IOException {
+			peek();
+			expect(JsonToken.NULL);
+		}
+
+
+		@Override
+		public double nextDouble() throws IOException {
+
+			JsonToken token = peek();
+			if (token != JsonToken.STRING && token != JsonToken.NUMBER) {
+				throw new IllegalStateException("Expected a double but was " + token + locationString());
+			}
+
+			double value = (kind == INTEGER) ?integer :(kind == REAL) ?real :Double.parseDouble(text);
+			if (!isLenient() && (Double.isNaN(value) || Double.isInfinite(value))) {
+				throw new MalformedJsonException("JSON forbids NaN and infinities: " + value + locationString());
+			}
+			consume();
+			return value;
+		}
+
+
+		@Override
+		public long nextLong() throws IOException {
+
+			JsonToken token = peek();
+			if (token != JsonToken.STRING && token != JsonToken.NUMBER) {
+				throw new IllegalStateException("Expected a long but was " + token + locationString());
+			}
+
+			long value;
+			if (kind == INTEGER) {
+				value = integer;
+			} else if (kind == REAL) {
+				value = (long) real;
+				if (value != real) {
+					throw new NumberFormatException("Expected a long but was " + real + locationString());
+				}
+			} else {
+				try {
+					value = Long.parseLong(text);
+				} catch (NumberFormatException e) {
+					try {
+						value = new BigDecimal(text).longValueExact();
+					} catch (ArithmeticException | NumberFormatException e2) {
+						throw new NumberFormatException("Expected a long but was " + text + locationString());
+					}
+				}
+			}
+			consume();
+			return value;
+		}
+
+
+		@Override
+		public int nextInt() throws IOException {
+
+			JsonToken token = peek();
+			if (token != JsonToken.STRING && token != JsonToken.NUMBER) {
+				throw new IllegalStateException("Expected an int but was " + token + locationString());
+			}
+
+			long value;
+			if (kind == INTEGER) {
+				value = integer;
+			} else if (kind == REAL) {
+				value = (long) real;
+				if (value != real) {
+					throw new NumberFormatException("Expected an int but was " + real + locationString());
+				}
+			} else {
+				try {
+					value = new BigDecimal(text).intValueExact();
+				} catch (ArithmeticException | NumberFormatException e) {
+					throw new NumberFormatException("Expected an int but was " + text + locationString());
+				}
+			}
+			if (value != (int) value) {
+				throw new NumberFormatException("Expected an int but was " + value + locationString());
+			}
+			consume();
+			return (int) value;
+		}
+
+
+		@Override
+		public void skipValue() throws IOException {
+
+			int count = 0;
+			do {
+				switch (peekToken()) {
+				case BEGIN_ARRAY:
+					beginArray();
+					count++;
+					break;
+				case BEGIN_OBJECT:
+					beginObject();
+					count++;
+					break;
+				case END_ARRAY:
+					endArray();
+					count--;
+					break;
+				case END_OBJECT:
+					endObject();
+					count--;
+					break;
+				case END_DOCUMENT:
+					return;
+				default:
+					consume();
+				}
+			} while (count > 0);
+		}
+
+
+		@Override
+		public void close() throws IOException {
+			peeked = null;
+			depth = 0;
+		}
+
+
+		@Override
+		public String getPath() {
+			return locationString();
+		}
+
+
+		@Override
+		public String toString() {
+			return getClass().getSimpleName() + locationString();
+		}
+
+
+		private void expect(JsonToken token) throws IOException {
+			JsonToken next = peekToken();
+			if (next != token) {
+				throw new IllegalStateException("Expected " + token + " but was " + next + locationString());
+			}
+			consume();
+		}
+
+
+		private void consume() {
+			if (depth > 0 && previous[depth - 1] == null && peeked != JsonToken.END_OBJECT) {
+				// A name is followed by its value, a value by the next name
+				expectName = (peeked != JsonToken.NAME && !promoted);
+			}
+			promoted = false;
+			peeked = null;
+		}
+
+
+		/**
+		 * Peek the next token of this reader, the name of an object is not promoted
+		 * @return the next token
+		 */
+		private JsonToken peekToken() throws IOException {
+
+			if (peeked != null) {
+				return peeked;
+			}
+
+			if (depth == 0) {
+				// The document is a single value, it is read once
+				if (documentRead) {
+					return peeked = JsonToken.END_DOCUMENT;
+				}
+				documentRead = true;
+				return peeked = peekValue(readByte());
+			}
+
+			if (previous[depth - 1] == null && expectName) {
+				long reference = readVarint();
+				if (reference == END_KEY) {
+					return peeked = JsonToken.END_OBJECT;
+				}
+				text = readString(reference);
+				kind = TEXT;
+				return peeked = JsonToken.NAME;
+			}
+
+			int tag = readByte();
+			if (tag == END && previous[depth - 1] != null) {
+				return peeked = JsonToken.END_ARRAY;
+			}
+			return peeked = peekValue(tag);
+		}
+
+
+		/**
+		 * Read the value of the tag, the arrays and objects are read by their tokens
+		 * @param tag - the tag of the value
+		 * @return the token of the value
+		 * @throws IOException if the data is malformed
+		 */
+		private JsonToken peekValue(int tag) throws IOException {
+
+			switch (tag) {
+			case NULL:
+				return JsonToken.NULL;
+
+			case TRUE:
+			case FALSE:
+				integer = (tag == TRUE) ?1 :0;
+				return JsonToken.BOOLEAN;
+
+			case LONG:
+				integer = unzigzag(readVarint());
+				kind = INTEGER;
+				return JsonToken.NUMBER;
+
+			case DELTA:
+				long[] previousInteger = (depth == 0) ?null :previous[depth - 1];
+				if (previousInteger == null) {
+					throw new MalformedJsonException("Unexpected delta" + locationString());
+				}
+				previousInteger[0] += unzigzag(readVarint());
+				integer = previousInteger[0];
+				kind = INTEGER;
+				return JsonToken.NUMBER;
+
+			case DOUBLE:
+				long bits = 0;
+				for (int i = 0; i < 8; i++) {
+					bits = (bits << 8) | readByte();
+				}
+				real = Double.longBitsToDouble(bits);
+				kind = REAL;
+				return JsonToken.NUMBER;
+
+			case NUMBER:
+				text = readString(readVarint());
+				try {
+					new BigDecimal(text);
+				} catch (NumberFormatException e) {
+					throw new MalformedJsonException("Malformed number " + text + locationString());
+				}
+				kind = TEXT;
+				return JsonToken.NUMBER;
+
+			case STRING:
+				text = readString(readVarint());
+				kind = TEXT;
+				return JsonToken.STRING;
+
+			case TIME:
+				long epochSecond = unzigzag(readVarint());
+				int nano = (int) readVarint();
+				ZoneOffset zoneOffset = ZoneOffset.ofTotalSeconds((int) unzigzag(readVarint()));
+				text = OffsetDateTime.ofInstant(Instant.ofEpochSecond(epochSecond, nano), zoneOffset)
+						.format(DateTimeFormatter.ISO_OFFSET_DATE_TIME);
+				kind = TEXT;
+				return JsonToken.STRING;
+
+			case ARRAY:
+				return JsonToken.BEGIN_ARRAY;
+
+			case OBJECT:
+				return JsonToken.BEGIN_OBJECT;
+
+			case END:
+				throw new MalformedJsonException("Unexpected end of array" + locationString());
+
+			default:
+				throw new MalformedJsonException("Unexpected tag " + tag + locationString());
+			}
+		}
+
+
+		private void push(long[] previousInteger) {
+			if (depth == previous.length) {
+				previous = Arrays.copyOf(previous, depth * 2);
+			}
+			previous[depth++] = previousInteger;
+		}
+
+
+		private void pop() {
+			previous[--depth] = null;
+			expectName = true;
+		}
+
+
+		private String readString(long reference) throws IOException {
+
+			if (reference >= FIRST_INDEX) {
+				if (reference - FIRST_INDEX >= strings.size()) {
+					throw new MalformedJsonException("Unknown string reference " + reference + locationString());
+				}
+				return strings.get((int) (reference - FIRST_INDEX));
+			}
+
+			if (reference != NEW_STRING) {
+				throw new MalformedJsonException("Missing string" + locationString());
+			}
+
+			long length = readVarint();
+			if (length > Integer.MAX_VALUE) {
+				throw new MalformedJsonException("Malformed string length" + locationString());
+			}
+
+			String value;
+			if (length <= buffer.length) {
+				fill((int) length);
+				value = new String(buffer, position, (int) length, StandardCharsets.UTF_8);
+				position += length;
+			} else {
+				// Read in pieces, a truncated data fails before the full length is allocated
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream(buffer.length);
+				for (long remaining = length; remaining > 0; ) {
+					fill(1);
+					int size = (int) Math.min(remaining, limit - position);
+					bytes.write(buffer, position, size);
+					position += size;
+					remaining -= size;
+				}
+				value = new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+			}
+			strings.add(value);
+			return value;
+		}
+
+
+		private long readVarint() throws IOException {
+			long value = 0;
+			for (int shift = 0; shift < 64; shift += 7) {
+				int b = readByte();
+				value |= (long) (b & 0x7F) << shift;
+				if ((b & 0x80) == 0) {
+					return value;
+				}
+			}
+			throw new MalformedJsonException("Malformed varint" + locationString());
+		}
+
+
+		private int readByte() throws IOException {
+			int b = read();
+			if (b < 0) {
+				throw new MalformedJsonException("Truncated data" + locationString());
+			}
+			return b;
+		}
+
+
+		/**
+		 * @return the next byte, -1 at the end of the data
+		 */
+		private int read() throws IOException {
+			if (position == limit && !refill()) {
+				return -1;
+			}
+			return buffer[position++] & 0xFF;
+		}
+
+
+		/**
+		 * Buffer at least the specified number of bytes
+		 * @param size - the number of bytes, at most the buffer size
+		 * @throws IOException if the data is truncated
+		 */
+		private void fill(int size) throws IOException {
+
+			if (limit - position >= size) {
+				return;
+			}
+
+			System.arraycopy(buffer, position, buffer, 0, limit - position);
+			offset += position;
+			limit -= position;
+			position = 0;
+			while (limit < size) {
+				int read = in.read(buffer, limit, buffer.length - limit);
+				if (read < 0) {
+					throw new MalformedJsonException("Truncated data" + locationString());
+				}
+				limit += read;
+			}
+		}
+
+
+		private boolean refill() throws IOException {
+			offset += limit;
+			position = 0;
+			limit = 0;
+			int read;
+			do {
+				read = in.read(buffer, 0, buffer.length);
+			} while (read == 0);
+			if (read < 0) {
+				return false;
+			}
+			limit = read;
+			return true;
+		}
+
+
+		private String locationString() {
+			return " at position " + (offset + position);
+		}
+	}
+
+
+	/**
+	 * The text of an object of empty names, without end
+	 */
+	private static final class EmptyNames extends Reader {
+
+		private static final char[] TEXT = "{\"\":0,".toCharArray();
+		private int position;
+
+		@Override
+		public int read(char[] buffer, int offset, int length) {
+			for (int i = 0; i < length; i++) {
+				buffer[offset + i] = TEXT[position];
+				position = (position == TEXT.length - 1) ?1 :position + 1;
+			}
+			return length;
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+
+	/**
+	 * Parse the time written by the {@code OffsetDateTimeSerializer}, the time is
+	 * only returned if it is written back to the same string.
+	 * @param value - the string value
+	 * @return the time, null if the value is not a time
+	 */
+	private static OffsetDateTime parseTime(String value) {
+
+		if (value.length() < 20 || value.length() > 40
+				|| value.charAt(4) != '-' || value.charAt(10) != 'T') {
+			return null;
+		}
+
+		try {
+			OffsetDateTime time = OffsetDateTime.parse(value, DateTimeFormatter.ISO_OFFSET_DATE_TIME);
+			return value.equals(time.format(DateTimeFormatter.ISO_OFFSET_DATE_TIME)) ?time :null;
+		} catch (DateTimeParseException e) {
+			return null;
+		}
+	}
+
+
+	private static long zigzag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+
+	private static long unzigzag(long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+}
@@ -0,0 +1,165 @@
+package com.bytes.fmk.service.persistence.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import com.bytes.fmk.service.persistence.Compression;
+
+/**
+ * Compression of the encoded data with the JDK {@code Deflater}.
+ * <pre>
+ * data   = header zlib
+ * header = 0xFF 'Z' version
+ * </pre>
+ * The header can not start a JSON text nor a {@code BinaryCodec} data. The zlib
+ * checksum detects the corrupted data.
+ *
+ * @author Kent
+ */
+public class DeflateCompression implements Compression {
+
+	public static final int VERSION = 1;
+
+	private static final int MAGIC = 0xFF;
+	private static final int FORMAT = 'Z';
+	private static final int HEADER_SIZE = 3;
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private final int level;
+
+
+	/**
+	 * Create the compression favoring the speed, the persisted data are
+	 * repetitive and compressed well at the fastest level
+	 */
+	public DeflateCompression() {
+		this(Deflater.BEST_SPEED);
+	}
+
+
+	/**
+	 * @param level - the compression level, from {@code Deflater.BEST_SPEED}
+	 * to {@code Deflater.BEST_COMPRESSION}
+	 */
+	public DeflateCompression(int level) {
+		if (level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION) {
+			throw new IllegalArgumentException("Invalid compression level: " + level);
+		}
+		this.level = level;
+	}
+
+
+	@Override
+	public OutputStream newOutputStream(OutputStream out) throws IOException {
+		out.write(MAGIC);
+		out.write(FORMAT);
+		out.write(VERSION);
+		return new DeflatingStream(out, new Deflater(level));
+	}
+
+
+	@Override
+	public InputStream newInputStream(InputStream in) throws IOException {
+
+		if (in.read() != MAGIC || in.read() != FORMAT) {
+			throw new IOException("Not a compressed data");
+		}
+
+		int version = in.read();
+		if (version != VERSION) {
+			throw new IOException("Unsupported compression version: " + version);
+		}
+		return new InflatingStream(in, new Inflater());
+	}
+
+
+	@Override
+	public boolean isCompressed(byte[] data) {
+		return data != null && data.length > HEADER_SIZE
+				&& (data[0] & 0xFF) == MAGIC && data[1] == FORMAT;
+	}
+
+
+	/**
+	 * @return the compression level
+	 */
+	public int getLevel() {
+		return level;
+	}
+
+
+	/**
+	 * Inflates the compressed data, the end of the stream is checked against
+	 * the end of the compressed data. Closing it releases the inflater.
+	 */
+	private static final class InflatingStream extends InflaterInputStream {
+
+		private boolean closed;
+
+		private InflatingStream(InputStream in, Inflater inflater) {
+			super(in, inflater, BUFFER_SIZE);
+		}
+
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int count = super.read(b, off, len);
+			if (count < 0) {
+				if (!inf.finished()) {
+					throw new IOException("Truncated compressed data");
+				}
+				if (inf.getRemaining() > 0 || in.read() >= 0) {
+					throw new IOException("Unexpected data after the compressed data");
+				}
+			}
+			return count;
+		}
+
+
+		@Override
+		public void close() throws IOException {
+			if (!closed) {
+				closed = true;
+				try {
+					super.close();
+				} finally {
+					inf.end();
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Deflates to the output, closing it finishes the compressed data and
+	 * releases the deflater without closing the output
+	 */
+	private static final class DeflatingStream extends DeflaterOutputStream {
+
+		private boolean closed;
+
+		private DeflatingStream(OutputStream out, Deflater deflater) {
+			super(out, deflater, BUFFER_SIZE);
+		}
+
+
+		@Override
+		public void close() throws IOException {
+			if (!closed) {
+				closed = true;
+				try {
+					finish();
+					out.flush();
+				} finally {
+					def.end();
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,530 @@
+package com.bytes.fmk.service.persistence.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.bytes.fmk.service.persistence.Encoding;
+import com.bytes.fmk.service.persistence.PersistenceService;
+import com.bytes.fmk.service.persistence.Serializer;
+
+/**
+ * Persists the resources as snapshot files of a data directory.
+ * <pre>
+ * directory/name.data   - the data of a resource
+ * directory/name.map    - the fields of a map
+ * map   = field*
+ * field = length name length data
+ * </pre>
+ * The names are the URL encoded resource ids, the field names are UTF-8 and the
+ * lengths are 4-byte big-endian. A snapshot is written to a temporary file, forced
+ * to the disk and renamed over the previous snapshot, the loads never see a partial
+ * snapshot. A map is an append log, a save appends the saved fields and forces them
+ * to the disk, the last field of a name is its value. The log is compacted into a 
+ * snapshot of its last fields when it grew to twice its compacted size, so a save 
+ * costs the size of its fields. A partial field at the end of a log, e.g. written
+ * by a crash, is discarded. The large snapshots are decoded from a memory mapping.
+ *
+ * @author Kent
+ */
+public class FileImpl implements PersistenceService {
+
+	private static Logger logger = LoggerFactory.getLogger(FileImpl.class);
+
+	/**
+	 * The data directory of the {@code PersistenceMode.File} mode,
+	 * set by the thinkr.data.dir system property
+	 */
+	public static final Path DEFAULT_DIRECTORY = Paths.get(System.getProperty("thinkr.data.dir", "data"));
+
+	private static final String DATA_SUFFIX = ".data";
+	private static final String MAP_SUFFIX = ".map";
+	private static final String TEMPORARY_SUFFIX = ".tmp";
+
+	/**
+	 * The snapshots smaller than this size are read, mapping them costs more than reading them
+	 */
+	private static final int MAPPED_SIZE = 1 << 16;
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * The logs smaller than this size are not compacted
+	 */
+	private static final long COMPACTED_SIZE = 1 << 20;
+
+	private final Path directory;
+
+	/**
+	 * The logs of the maps, a log is appended, compacted and cleared by one save at a time
+	 */
+	private final ConcurrentMap<String, MapLog> mapLogs = new ConcurrentHashMap<>();
+
+	/**
+	 * The codec and the compression of the saved data
+	 */
+	private final Encoding encoding = new Encoding();
+
+
+	/**
+	 * @param directory - the data directory, created if it does not exist
+	 * @throws IllegalArgumentException if the directory can not be created
+	 */
+	public FileImpl(Path directory) {
+		try {
+			this.directory = Files.createDirectories(directory);
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Unable to create the data directory: " + directory, e);
+		}
+	}
+
+
+	/**
+	 * Request to persist the specified data object with a key
+	 * @param resourceId - the key to retrieve the data
+	 * @param data - the data to be persisted
+	 * @return true if successful
+	 */
+	@Override
+	public <D> boolean saveData(String resourceId, D data) {
+
+		Arguments.validateCommit(resourceId, data);
+
+		try {
+			write(getDataFile(resourceId), out -> encoding.encode(data, out));
+		} catch (Exception e) {
+			logger.error("Unable to persist data for : " + resourceId, e);
+			return false;
+		}
+		return true;
+	}
+
+
+	/**
+	 * Request to load the data corresponding to the specified key
+	 * @param resourceId - the key corresponding to the data
+	 * @param serializer - contains the the key to token type mapping for json deserialization
+	 * @return the data, null if not found
+	 */
+	@Override
+	public <D> D loadData(String resourceId, Serializer serializer) {
+
+		Arguments.validateLoad(resourceId, serializer);
+
+		try {
+			ByteBuffer data = read(getDataFile(resourceId));
+			if (data == null) {
+				logger.warn("No data found for resourceId: " + resourceId);
+				return null;
+			}
+			return serializer.getData(new ByteBufferInputStream(data), resourceId);
+		} catch (Exception e) {
+			logger.error("Unable to load data for: " + resourceId + " type " +
+					serializer.getResourceIdMap().get(resourceId), e);
+		}
+		return null;
+	}
+
+
+	/**
+	 * Request to persist the specified map, the fields are appended to
+	 * the log of the map
+	 * @param resourceId - the resource id
+	 * @param map - the map to be persisted. The key must be a string.
+	 */
+	@Override
+	public <D> boolean saveMap(String resourceId, Map<String, D> map) {
+
+		Arguments.validateCommit(resourceId, map);
+
+		Map<String, byte[]> fields = new HashMap<>();
+		for (Map.Entry<String, D> entry : map.entrySet()) {
+			fields.put(entry.getKey(), encoding.encode(entry.getValue()));
+		}
+
+		Path file = getMapFile(resourceId);
+		MapLog log = mapLogs.computeIfAbsent(resourceId, key -> new MapLog());
+		synchronized (log) {
+			try {
+				append(file, log, fields);
+			} catch (Exception e) {
+				logger.error("Unable to persist map for : " + resourceId, e);
+				return false;
+			}
+
+			if (log.length > Math.max(COMPACTED_SIZE, 2 * log.compactedLength)) {
+				try {
+					compact(file, log);
+				} catch (IOException e) {
+					logger.warn("Unable to compact map for : " + resourceId, e);
+				}
+			}
+		}
+		return true;
+	}
+
+
+	/**
+	 * Request to load a map specified by the resource id.
+	 * @param resourceId - the resource id
+	 * @param serializer - the serializer to convert the data into a strongly typed map
+	 * @return the map corresponding to the specified resource id,
+	 * empty if it doesn't exists. Note that the map key must be a String.
+	 */
+	@Override
+	public <D> Map<String, D> loadMap(String resourceId, Serializer serializer) {
+
+		Arguments.validateLoad(resourceId, serializer);
+
+		Map<String, D> result = new HashMap<>();
+		try {
+			ByteBuffer fields = read(getMapFile(resourceId));
+			Map<String, ByteBuffer> values = readFields(fields, getMapFile(resourceId));
+			for (Map.Entry<String, ByteBuffer> field : values.entrySet()) {
+				D value = serializer.getData(new ByteBufferInputStream(field.getValue()), resourceId);
+				result.put(field.getKey(), value);
+			}
+		} catch (Exception e) {
+			logger.error("Unable to load map for : " + resourceId, e);
+		}
+		return result;
+	}
+
+
+	/**
+	 * Request to clear all data associated with the specified resource id
+	 * @param resourceId - the resource id
+	 * @return true if the one or more entries were deleted, false otherwise.
+	 */
+	@Override
+	public boolean clear(String resourceId) {
+
+		boolean deleted = false;
+		MapLog log = mapLogs.computeIfAbsent(resourceId, key -> new MapLog());
+		synchronized (log) {
+			try {
+				deleted = Files.deleteIfExists(getDataFile(resourceId));
+				deleted = Files.deleteIfExists(getMapFile(resourceId)) || deleted;
+				log.length = 0;
+				log.compactedLength = 0;
+			} catch (IOException e) {
+				logger.error("Unable to clear : " + resourceId, e);
+			}
+		}
+		return deleted;
+	}
+
+
+	@Override
+	public Encoding getEncoding() {
+		return encoding;
+	}
+
+
+	/**
+	 * @return the data directory
+	 */
+	public Path getDirectory() {
+		return directory;
+	}
+
+
+	/**
+	 * Write the snapshot to a temporary file renamed to the file, the
+	 * temporary file is deleted if the write fails
+	 * @param file - the snapshot file
+	 * @param snapshot - the writer of the snapshot
+	 * @throws IOException if the snapshot can not be written
+	 */
+	private void write(Path file, SnapshotWriter snapshot) throws IOException {
+
+		Path temporary = file.resolveSibling(file.getFileName() + "." + UUID.randomUUID() + TEMPORARY_SUFFIX);
+		try {
+			try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+				OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+				snapshot.write(out);
+				out.flush();
+				channel.force(false);
+			}
+			Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(temporary);
+		}
+	}
+
+
+	/**
+	 * Read the snapshot, the large snapshot is memory-mapped
+	 * @param file - the snapshot file
+	 * @return the snapshot, null if the file does not exist
+	 * @throws IOException if the file can not be read
+	 */
+	private ByteBuffer read(Path file) throws IOException {
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException("Snapshot too large: " + file + " " + size);
+			}
+
+			if (size >= MAPPED_SIZE) {
+				return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			}
+
+			ByteBuffer buffer = ByteBuffer.allocate((int) size);
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer) < 0) {
+					throw new IOException("Snapshot truncated while reading: " + file);
+				}
+			}
+			buffer.flip();
+			return buffer;
+		} catch (NoSuchFileException e) {
+			return null;
+		}
+	}
+
+
+	/**
+	 * Append the fields to the log of the map. The log is read again if its size is not
+	 * the size of the last append, the partial field of a failed append or of a crash
+	 * is truncated.
+	 * @param file - the log file
+	 * @param log - the state of the log, its lock is held
+	 * @param fields - the encoded data of the saved fields
+	 * @throws IOException if the fields can not be written
+	 */
+	private void append(Path file, MapLog log, Map<String, byte[]> fields) throws IOException {
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+			long size = channel.size();
+			if (size != log.length) {
+				ByteBuffer records = read(file);
+				readFields(records, file);
+				long length = (records == null) ?0 :records.position();
+				if (size > length) {
+					channel.truncate(length);
+				}
+				if (log.length < 0) {
+					log.compactedLength = length;
+				}
+				log.length = length;
+			}
+			channel.position(log.length);
+			OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+			DataOutputStream data = new DataOutputStream(out);
+			for (Map.Entry<String, byte[]> field : fields.entrySet()) {
+				writeName(data, field.getKey());
+				data.writeInt(field.getValue().length);
+				data.write(field.getValue());
+			}
+			data.flush();
+			channel.force(false);
+			log.length = channel.position();
+		}
+	}
+
+
+	/**
+	 * Rewrite the log with the last field of each name
+	 * @param file - the log file
+	 * @param log - the state of the log, its lock is held
+	 * @throws IOException if the log can not be rewritten
+	 */
+	private void compact(Path file, MapLog log) throws IOException {
+
+		Map<String, ByteBuffer> fields = readFields(read(file), file);
+		write(file, out -> {
+			DataOutputStream data = new DataOutputStream(out);
+			byte[] chunk = new byte[BUFFER_SIZE];
+			for (Map.Entry<String, ByteBuffer> field : fields.entrySet()) {
+				ByteBuffer value = field.getValue();
+				writeName(data, field.getKey());
+				data.writeInt(value.remaining());
+				while (value.hasRemaining()) {
+					int count = Math.min(chunk.length, value.remaining());
+					value.get(chunk, 0, count);
+					data.write(chunk, 0, count);
+				}
+			}
+			data.flush();
+		});
+		logger.debug("Compacted map log {} from {} bytes to {} fields", file, log.length, fields.size());
+		log.length = Files.size(file);
+		log.compactedLength = log.length;
+	}
+
+
+	/**
+	 * Read the last field of each name of a map log, a partial field at the end is discarded
+	 * @param records - the log, null if none, positioned after the last complete field on return
+	 * @param file - the log file
+	 * @return the values keyed by field name, views of the log
+	 */
+	private static Map<String, ByteBuffer> readFields(ByteBuffer records, Path file) {
+
+		Map<String, ByteBuffer> fields = new LinkedHashMap<>();
+		while (records != null && records.hasRemaining()) {
+			int position = records.position();
+			try {
+				String name = readName(records);
+				fields.put(name, slice(records));
+			} catch (IOException e) {
+				logger.warn("Partial field discarded at {} of map log: {}", position, file);
+				records.position(position);
+				break;
+			}
+		}
+		return fields;
+	}
+
+
+	private static void writeName(DataOutputStream out, String name) throws IOException {
+		byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+
+	private static String readName(ByteBuffer buffer) throws IOException {
+		ByteBuffer name = slice(buffer);
+		byte[] bytes = new byte[name.remaining()];
+		name.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+
+	/**
+	 * Read a length and the bytes that follow it
+	 * @param buffer - the buffer positioned on the length, positioned after the bytes on return
+	 * @return the bytes, a view of the buffer
+	 * @throws IOException if the snapshot is truncated
+	 */
+	private static ByteBuffer slice(ByteBuffer buffer) throws IOException {
+
+		if (buffer.remaining() < Integer.BYTES) {
+			throw new IOException("Map snapshot truncated at " + buffer.position());
+		}
+		int length = buffer.getInt();
+		if (length < 0 || length > buffer.remaining()) {
+			throw new IOException("Map snapshot truncated at " + buffer.position());
+		}
+
+		ByteBuffer slice = buffer.slice();
+		slice.limit(length);
+		buffer.position(buffer.position() + length);
+		return slice;
+	}
+
+
+	private Path getDataFile(String resourceId) {
+		return directory.resolve(encodeName(resourceId) + DATA_SUFFIX);
+	}
+
+
+	private Path getMapFile(String resourceId) {
+		return directory.resolve(encodeName(resourceId) + MAP_SUFFIX);
+	}
+
+
+	/**
+	 * Encode the name of a file, the encoded name has no dot so it can not
+	 * be a suffix, a temporary name nor a relative path
+	 * @param name - the resource id
+	 * @return the file name
+	 */
+	private static String encodeName(String name) {
+		try {
+			return URLEncoder.encode(name, "UTF-8").replace(".", "%2E").replace("*", "%2A");
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+
+	/**
+	 * The state of the log of a map
+	 */
+	private static final class MapLog {
+
+		/**
+		 * The length of the complete fields, -1 until the log is read
+		 */
+		private long length = -1;
+
+		/**
+		 * The length of the log after its last compaction
+		 */
+		private long compactedLength;
+	}
+
+
+	/**
+	 * Writes the content of a snapshot
+	 */
+	@FunctionalInterface
+	private interface SnapshotWriter {
+		void write(OutputStream out) throws IOException;
+	}
+
+
+	/**
+	 * Reads a snapshot buffer, the mapped snapshot is decoded without a copy
+	 */
+	private static final class ByteBufferInputStream extends InputStream {
+
+		private final ByteBuffer buffer;
+
+		private ByteBufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+
+		@Override
+		public int read() {
+			return (buffer.hasRemaining()) ?buffer.get() & 0xFF :-1;
+		}
+
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (len == 0) {
+				return 0;
+			}
+			if (!buffer.hasRemaining()) {
+				return -1;
+			}
+			int count = Math.min(len, buffer.remaining());
+			buffer.get(b, off, count);
+			return count;
+		}
+
+
+		@Override
+		public int available() {
+			return buffer.remaining();
+		}
+	}
+}
@@ -0,0 +1,268 @@
+package com.bytes.fmk.service.persistence.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.bytes.fmk.service.persistence.Encoding;
+import com.bytes.fmk.service.persistence.PersistenceService;
+import com.bytes.fmk.service.persistence.Serializer;
+
+/**
+ * Persists the encoded data in memory, a stand-in of Redis for the tests and the
+ * benchmarks. The data is encoded and decoded as for Redis, the network is simulated
+ * by a latency per round trip and a bandwidth: a command waits the latency plus the
+ * transfer time of its data. A pipelined command, {@code saveAll} and {@code saveMap},
+ * is one round trip.
+ *
+ * @author Kent
+ */
+public class MemoryImpl implements PersistenceService {
+
+	private static Logger logger = LoggerFactory.getLogger(MemoryImpl.class);
+
+	private final Map<String, byte[]> values = new ConcurrentHashMap<>();
+	private final Map<String, Map<String, byte[]>> maps = new ConcurrentHashMap<>();
+
+	private volatile long latencyNanos;
+	private volatile long bandwidth;
+
+	/**
+	 * The codec and the compression of the saved data
+	 */
+	private final Encoding encoding = new Encoding();
+
+	// Metrics
+	private final AtomicLong roundTrips = new AtomicLong();
+	private final AtomicLong bytesWritten = new AtomicLong();
+	private final AtomicLong bytesRead = new AtomicLong();
+
+
+	/**
+	 * Request to persist the specified data object with a key
+	 * @param resourceId - the key to retrieve the data
+	 * @param data - the data to be persisted
+	 * @return true if successful
+	 */
+	@Override
+	public <D> boolean saveData(String resourceId, D data) {
+
+		Arguments.validateCommit(resourceId, data);
+
+		byte[] encoded = encoding.encode(data);
+		transfer(encoded.length, bytesWritten);
+		values.put(resourceId, encoded);
+		return true;
+	}
+
+
+	/**
+	 * Request to persist the specified data objects in one round trip
+	 * @param data - the data to be persisted keyed by their resource id
+	 * @return true if successful
+	 */
+	@Override
+	public <D> boolean saveAll(Map<String, D> data) {
+
+		data.forEach(Arguments::validateCommit);
+
+		Map<String, byte[]> encoded = new HashMap<>();
+		long size = 0;
+		for (Map.Entry<String, D> entry : data.entrySet()) {
+			byte[] value = encoding.encode(entry.getValue());
+			encoded.put(entry.getKey(), value);
+			size += value.length;
+		}
+		transfer(size, bytesWritten);
+		values.putAll(encoded);
+		return true;
+	}
+
+
+	/**
+	 * Request to load the data corresponding to the specified key
+	 * @param resourceId - the key corresponding to the data
+	 * @param serializer - contains the the key to token type mapping for json deserialization
+	 * @return the data, null if not found
+	 */
+	@Override
+	public <D> D loadData(String resourceId, Serializer serializer) {
+
+		Arguments.validateLoad(resourceId, serializer);
+
+		byte[] data = values.get(resourceId);
+		transfer((data == null) ?0 :data.length, bytesRead);
+		if (data == null) {
+			logger.warn("No data found for resourceId: " + resourceId);
+			return null;
+		}
+		return serializer.getData(data, resourceId);
+	}
+
+
+	/**
+	 * Request to persist the specified map in one round trip, the fields
+	 * are added to the fields previously saved
+	 * @param resourceId - the resource id
+	 * @param map - the map to be persisted. The key must be a string.
+	 */
+	@Override
+	public <D> boolean saveMap(String resourceId, Map<String, D> map) {
+
+		Arguments.validateCommit(resourceId, map);
+
+		Map<String, byte[]> encoded = new HashMap<>();
+		long size = 0;
+		for (Map.Entry<String, D> entry : map.entrySet()) {
+			byte[] value = encoding.encode(entry.getValue());
+			encoded.put(entry.getKey(), value);
+			size += value.length;
+		}
+		transfer(size, bytesWritten);
+		maps.computeIfAbsent(resourceId, k -> new ConcurrentHashMap<>()).putAll(encoded);
+		return true;
+	}
+
+
+	/**
+	 * Request to load a map specified by the resource id.
+	 * @param resourceId - the resource id
+	 * @param serializer - the serializer to convert the data into a strongly typed map
+	 * @return the map corresponding to the specified resource id,
+	 * empty if it doesn't exists. Note that the map key must be a String.
+	 */
+	@Override
+	public <D> Map<String, D> loadMap(String resourceId, Serializer serializer) {
+
+		Arguments.validateLoad(resourceId, serializer);
+
+		Map<String, byte[]> stored = new HashMap<>(maps.getOrDefault(resourceId, new HashMap<>()));
+		transfer(stored.values().stream().mapToLong(data -> data.length).sum(), bytesRead);
+
+		Map<String, D> result = new HashMap<>();
+		for (Map.Entry<String, byte[]> entry : stored.entrySet()) {
+			D data = serializer.getData(entry.getValue(), resourceId);
+			result.put(entry.getKey(), data);
+		}
+		return result;
+	}
+
+
+	/**
+	 * Request to clear all data associated with the specified resource id
+	 * @param resourceId - the resource id
+	 * @return true if the one or more entries were deleted, false otherwise.
+	 */
+	@Override
+	public boolean clear(String resourceId) {
+		transfer(0, bytesWritten);
+		return values.remove(resourceId) != null | maps.remove(resourceId) != null;
+	}
+
+
+	/**
+	 * Set the simulated latency of a round trip
+	 * @param latency - the latency, 0 for none
+	 * @param unit - the unit of the latency
+	 */
+	public void setLatency(long latency, TimeUnit unit) {
+		if (latency < 0) {
+			throw new IllegalArgumentException("Invalid latency: " + latency);
+		}
+		this.latencyNanos = unit.toNanos(latency);
+	}
+
+
+	/**
+	 * @return the simulated latency of a round trip in nanoseconds
+	 */
+	public long getLatencyNanos() {
+		return latencyNanos;
+	}
+
+
+	/**
+	 * Set the simulated bandwidth of the transfers
+	 * @param bytesPerSecond - the bandwidth in bytes per second, 0 for unlimited
+	 */
+	public void setBandwidth(long bytesPerSecond) {
+		if (bytesPerSecond < 0) {
+			throw new IllegalArgumentException("Invalid bandwidth: " + bytesPerSecond);
+		}
+		this.bandwidth = bytesPerSecond;
+	}
+
+
+	/**
+	 * @return the simulated bandwidth in bytes per second, 0 if unlimited
+	 */
+	public long getBandwidth() {
+		return bandwidth;
+	}
+
+
+	@Override
+	public Encoding getEncoding() {
+		return encoding;
+	}
+
+
+	/**
+	 * @return the number of simulated round trips
+	 */
+	public long getRoundTripCount() {
+		return roundTrips.get();
+	}
+
+
+	/**
+	 * @return the number of bytes saved
+	 */
+	public long getBytesWritten() {
+		return bytesWritten.get();
+	}
+
+
+	/**
+	 * @return the number of bytes loaded
+	 */
+	public long getBytesRead() {
+		return bytesRead.get();
+	}
+
+
+	/**
+	 * Get information on the simulated transfers.
+	 * @return information on the simulated transfers
+	 */
+	public String getCurrentUsage() {
+		return String.format(
+				"Memory: RoundTrips=%d, BytesWritten=%d, BytesRead=%d, LatencyNanos=%d, Bandwidth=%d",
+				roundTrips.get(), bytesWritten.get(), bytesRead.get(), latencyNanos, bandwidth);
+	}
+
+
+	/**
+	 * Wait the simulated time of a round trip transferring the bytes
+	 * @param size - the number of bytes transferred
+	 * @param counter - the counter of the transferred bytes
+	 */
+	private void transfer(long size, AtomicLong counter) {
+
+		roundTrips.incrementAndGet();
+		counter.addAndGet(size);
+
+		long current = bandwidth;
+		long nanos = latencyNanos + ((current == 0) ?0 :size * 1000000000L / current);
+		long deadline = System.nanoTime() + nanos;
+		for (long remaining = nanos; remaining > 0; remaining = deadline - System.nanoTime()) {
+			LockSupport.parkNanos(remaining);
+		}
+	}
+}
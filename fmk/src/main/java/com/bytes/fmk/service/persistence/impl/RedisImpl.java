@@ -1,11 +1,18 @@
 package com.bytes.fmk.service.persistence.impl;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.bytes.fmk.service.persistence.Encoding;
 import com.bytes.fmk.service.persistence.PersistenceService;
 import com.bytes.fmk.service.persistence.Serializer;
 
@@ -13,6 +20,7 @@ import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.JedisPoolConfig;
 import redis.clients.jedis.Pipeline;
+import redis.clients.util.SafeEncoder;
 
 public enum RedisImpl implements PersistenceService {
 
@@ -40,6 +48,18 @@ public enum RedisImpl implements PersistenceService {
 	
 	private static Logger logger = LoggerFactory.getLogger(RedisImpl.class);
 	private static Object staticLock = new Object();
+	
+	/**
+	 * The size of the chunks of the encoded data written to Redis
+	 */
+	private static final int CHUNK_SIZE = 1 << 20;
+	private static final int INITIAL_CHUNK_SIZE = 1 << 13;
+	
+	/**
+	 * The chunk of each thread, reused by its saves. It starts small and grows up 
+	 * to the chunk size, the small data never allocate a full chunk.
+	 */
+	private static final ThreadLocal<byte[]> chunks = ThreadLocal.withInitial(() -> new byte[INITIAL_CHUNK_SIZE]);
 
 	// Connection parameters
 	private String clientId;
@@ -51,6 +71,11 @@ public enum RedisImpl implements PersistenceService {
 	private int operationTimeout;
 	
 	private JedisPool pool;
+	
+	/**
+	 * The codec and the compression of the saved data
+	 */
+	private final Encoding encoding = new Encoding();
 
 	/**
 	 * 
@@ -121,6 +146,11 @@ public enum RedisImpl implements PersistenceService {
 		return poolConfig;
 	}
 
+	@Override
+	public Encoding getEncoding() {
+		return encoding;
+	}
+
 	/**
 	 * Get information on current pool usage.
 	 * @return information on Redis pool usage.
@@ -148,10 +178,16 @@ public enum RedisImpl implements PersistenceService {
 	 */
 	public <D> boolean saveData(String resourceId, D data) {
 		
-		validateCommitArguments(resourceId, data);
+		Arguments.validateCommit(resourceId, data);
 		
 		try (Jedis jedis = getPoolInstance().getResource()) {
-			jedis.set(resourceId, Serializer.toJson(data));
+			Pipeline pipeline = jedis.pipelined();
+			ChunkedOutputStream out = new ChunkedOutputStream(pipeline, resourceId);
+			out.write(data);
+			if (!isSynced(pipeline)) {
+				out.discard();
+				return false;
+			}
 		} catch (Exception e) {
 			logger.error("Unable to data for : " + resourceId, e);
 			return false;
@@ -159,6 +195,37 @@ public enum RedisImpl implements PersistenceService {
 		return true;
 	}
 	
+	/**
+	 * Request to persist the specified data objects.
+	 * This implementation uses a pooled connection and a pipeline 
+	 * for efficiency.
+	 * @param data - the data to be persisted keyed by their resource id
+	 * @return true if successful
+	 */
+	@Override
+	public <D> boolean saveAll(Map<String, D> data) {
+		
+		data.forEach(Arguments::validateCommit);
+		
+		try (Jedis jedis = getPoolInstance().getResource()) {
+			Pipeline pipeline = jedis.pipelined();
+			List<ChunkedOutputStream> outs = new ArrayList<>();
+			for (Map.Entry<String, D> entry : data.entrySet()) {
+				ChunkedOutputStream out = new ChunkedOutputStream(pipeline, entry.getKey());
+				out.write(entry.getValue());
+				outs.add(out);
+			}
+			if (!isSynced(pipeline)) {
+				outs.forEach(ChunkedOutputStream::discard);
+				return false;
+			}
+		} catch (Exception e) {
+			logger.error("Unable to persist data for : " + data.keySet(), e);
+			return false;
+		}
+		return true;
+	}
+	
 	/**
 	 * Request to load the data corresponding to the specified key
 	 * @param key - the key corresponding to the data
@@ -167,20 +234,20 @@ public enum RedisImpl implements PersistenceService {
 	 */
 	public <D> D loadData(String resourceId, Serializer serializer) {
 		
-		validateLoadArguments(resourceId, serializer);
+		Arguments.validateLoad(resourceId, serializer);
 		
 		D result = null;
-		String responseData;
+		byte[] responseData;
 		try (Jedis jedis = getPoolInstance().getResource()) {
-			responseData = jedis.get(resourceId);
-			logger.trace("Response from Jedis: " + responseData);
+			responseData = jedis.get(SafeEncoder.encode(resourceId));
+			logger.trace("Response from Jedis: {} bytes", (responseData == null) ?0 :responseData.length);
 		
 			if (responseData == null) {
 				logger.warn("No data found for resourceId: " + resourceId);
 				return null;
 			}
 	
-			// Convert the string value to the strongly-type object
+			// Convert the encoded value to the strongly-type object
 			result = serializer.getData(responseData, resourceId);
 		} catch (Exception e) {
 			logger.error("Unable to load data for: " + resourceId + " type " + 
@@ -202,13 +269,14 @@ public enum RedisImpl implements PersistenceService {
 	@Override
 	public <D> boolean saveMap(String resourceId, Map<String, D> map) {
 
-		validateCommitArguments(resourceId, map);
+		Arguments.validateCommit(resourceId, map);
 		
 		try (Jedis jedis = getPoolInstance().getResource()) {
 			Pipeline pipeline = jedis.pipelined();
-			for (String key : map.keySet()) {
-				D data = map.get(key);
-				pipeline.hset(resourceId, key, Serializer.toJson(data));
+			byte[] key = SafeEncoder.encode(resourceId);
+			for (String field : map.keySet()) {
+				D data = map.get(field);
+				pipeline.hset(key, SafeEncoder.encode(field), encoding.encode(data));
 			}
 			pipeline.sync();
 		} catch (Exception e) {
@@ -232,20 +300,20 @@ public enum RedisImpl implements PersistenceService {
 	@Override
 	public <D> Map<String, D> loadMap(String resourceId, Serializer serializer) {
 
-		validateLoadArguments(resourceId, serializer);
+		Arguments.validateLoad(resourceId, serializer);
 		
 		Map<String, D> result = new HashMap<>();
-		Map<String, String> responseData;
+		Map<byte[], byte[]> responseData;
 		try (Jedis jedis = getPoolInstance().getResource()) {
-			responseData = jedis.hgetAll(resourceId);
-			logger.trace("Response from Jedis: " + responseData);
+			responseData = jedis.hgetAll(SafeEncoder.encode(resourceId));
+			logger.trace("Response from Jedis: {} fields", responseData.size());
 		}
 
-		// Convert the string value to the strongly-type object
+		// Convert the encoded value to the strongly-type object
 		try {
-			for (String key : responseData.keySet()) {
-				D data = serializer.getData(responseData.get(key), resourceId);
-				result.put(key, data);
+			for (Map.Entry<byte[], byte[]> entry : responseData.entrySet()) {
+				D data = serializer.getData(entry.getValue(), resourceId);
+				result.put(SafeEncoder.encode(entry.getKey()), data);
 			}
 		} catch (Exception e) {
 			logger.error("Unable to load map for : " + resourceId, e);
@@ -265,35 +333,133 @@ public enum RedisImpl implements PersistenceService {
 	
 	
 	/**
-	 * Validate arguments for save operations.
-	 * @param resourceId - the resourceId
-	 * @param data - the data
+	 * Sync the pipeline
+	 * @param pipeline - the pipeline
+	 * @return true if no command failed
 	 */
-	private <D> void validateCommitArguments(String resourceId, D data) {
-		
-		if (resourceId == null) {
-			throw new IllegalArgumentException("ResourceId cannot be null");
-		}
-		
-		if (data == null) {
-			throw new IllegalArgumentException("Data to be persisted cannot be null");
+	private boolean isSynced(Pipeline pipeline) {
+		for (Object response : pipeline.syncAndReturnAll()) {
+			if (response instanceof Exception) {
+				logger.error("Redis command failed: " + ((Exception) response).getMessage());
+				return false;
+			}
 		}
+		return true;
 	}
 	
 	
 	/**
-	 * Validates the arguments for load operations
-	 * @param resourceId - the resourceId
-	 * @param serializer - the serializer 
+	 * Writes the encoded data to Redis in chunks, the encoded data never exists as a whole.
+	 * The data smaller than a chunk is set with one command. The larger data is appended 
+	 * to a temporary key renamed to the resource id after the last chunk, the loads never
+	 * see a partial value.
 	 */
-	private void validateLoadArguments(String resourceId, Serializer serializer) {
+	private final class ChunkedOutputStream extends OutputStream {
+		
+		private final Pipeline pipeline;
+		private final String resourceId;
+		private byte[] chunk = chunks.get();
+		private int count;
+		private byte[] temporaryKey;
+		
+		
+		/**
+		 * @param pipeline - the pipeline of the commands
+		 * @param resourceId - the resource id of the data
+		 */
+		private ChunkedOutputStream(Pipeline pipeline, String resourceId) {
+			this.pipeline = pipeline;
+			this.resourceId = resourceId;
+		}
+		
+		
+		/**
+		 * Encode the data and queue the commands writing it
+		 * @param data - the data
+		 * @throws IOException if the data can not be encoded
+		 */
+		private void write(Object data) throws IOException {
+			encoding.encode(data, this);
+			close();
+		}
+		
+		
+		@Override
+		public void write(int b) {
+			if (count == chunk.length) {
+				flushChunk();
+			}
+			chunk[count++] = (byte) b;
+		}
 		
-		if (resourceId == null) {
-			throw new IllegalArgumentException("ResourceId cannot be null");
+		
+		@Override
+		public void write(byte[] bytes, int offset, int length) {
+			while (length > 0) {
+				if (count == chunk.length) {
+					flushChunk();
+				}
+				int size = Math.min(length, chunk.length - count);
+				System.arraycopy(bytes, offset, chunk, count, size);
+				count += size;
+				offset += size;
+				length -= size;
+			}
+		}
+		
+		
+		@Override
+		public void close() {
+			byte[] last = Arrays.copyOf(chunk, count);
+			if (temporaryKey == null) {
+				pipeline.set(SafeEncoder.encode(resourceId), last);
+			} else {
+				append(last);
+				pipeline.rename(temporaryKey, SafeEncoder.encode(resourceId));
+			}
+		}
+		
+		
+		/**
+		 * Delete the temporary key of a failed write
+		 */
+		private void discard() {
+			if (temporaryKey != null) {
+				try (Jedis jedis = getPoolInstance().getResource()) {
+					jedis.del(temporaryKey);
+				} catch (Exception e) {
+					logger.warn("Unable to delete the temporary key of: " + resourceId, e);
+				}
+			}
+		}
+		
+		
+		/**
+		 * Grow the full chunk of the thread, the chunk is queued once it reached the chunk size
+		 */
+		private void flushChunk() {
+			if (chunk.length < CHUNK_SIZE) {
+				chunk = Arrays.copyOf(chunk, Math.min(CHUNK_SIZE, chunk.length << 1));
+				chunks.set(chunk);
+			} else {
+				append(chunk);
+			}
 		}
 		
-		if (serializer == null) {
-			throw new IllegalArgumentException("Serializer cannot be null");
+		
+		/**
+		 * Queue a chunk, the pipeline writes the command before returning 
+		 * so the chunk is reused
+		 * @param bytes - the chunk
+		 */
+		private void append(byte[] bytes) {
+			if (temporaryKey == null) {
+				temporaryKey = SafeEncoder.encode(resourceId + ":writing:" + UUID.randomUUID());
+				pipeline.set(temporaryKey, bytes);
+			} else if (bytes.length > 0) {
+				pipeline.append(temporaryKey, bytes);
+			}
+			count = 0;
 		}
 	}
 }
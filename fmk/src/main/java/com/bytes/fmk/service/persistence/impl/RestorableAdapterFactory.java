@@ -0,0 +1,46 @@
+package com.bytes.fmk.service.persistence.impl;
+
+import java.io.IOException;
+
+import com.bytes.fmk.service.persistence.Restorable;
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Restores the {@code Restorable} objects after Gson reads them, 
+ * the objects are written as is.
+ *
+ * @author Kent
+ */
+public class RestorableAdapterFactory implements TypeAdapterFactory {
+
+	@Override
+	public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> typeToken) {
+
+		if (!Restorable.class.isAssignableFrom(typeToken.getRawType())) {
+			return null;
+		}
+
+		TypeAdapter<T> delegate = gson.getDelegateAdapter(this, typeToken);
+		return new TypeAdapter<T>() {
+
+			@Override
+			public void write(JsonWriter out, T value) throws IOException {
+				delegate.write(out, value);
+			}
+
+			@Override
+			public T read(JsonReader in) throws IOException {
+				T value = delegate.read(in);
+				if (value != null) {
+					((Restorable) value).restore();
+				}
+				return value;
+			}
+		};
+	}
+}
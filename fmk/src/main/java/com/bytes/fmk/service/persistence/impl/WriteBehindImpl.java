@@ -0,0 +1,500 @@
+package com.bytes.fmk.service.persistence.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.bytes.fmk.service.persistence.Encoding;
+import com.bytes.fmk.service.persistence.PersistenceService;
+import com.bytes.fmk.service.persistence.Serializer;
+
+/**
+ * Write-behind {@code PersistenceService}, the saves are queued and written to the
+ * underlying persistence service by a single worker thread.
+ *
+ * <p>The caller only queues the reference of the data, it is serialized by the worker
+ * when the queue is flushed, so a flush writes the state of the data at that time.
+ * The data must be safe to serialize while it is updated, as with a direct save.
+ * The values of the map fields are kept as queued, and {@link #saveSnapshot(String, Object)}
+ * serializes the data on the caller thread for the data that must not be newer than
+ * the saves requested after it. The data of a flush are written before the maps.
+ * Repeated saves of the same resource id are coalesced, the last data replaces the
+ * queued data and the fields of a map are merged into the queued fields.
+ * The queue is flushed when the flush interval elapsed, when the number of queued
+ * resource ids reaches the flush threshold, on {@link #flush()} and on {@link #shutdown()}.
+ * The data of a flush are written in one batch, see {@link PersistenceService#saveAll(Map)}.
+ * The saves of a failed write, or of a write that threw, are queued again unless
+ * a newer save was queued.
+ *
+ * <p>The loads and clears of a resource id write its queued save first so the
+ * underlying persistence service is read after the saves requested before.
+ *
+ * <p>The queued saves are flushed when the JVM shuts down.
+ *
+ * @author Kent
+ */
+public class WriteBehindImpl implements PersistenceService {
+
+	/** Logger for this class */
+	private static Logger logger = LoggerFactory.getLogger(WriteBehindImpl.class);
+
+	public static final long DEFAULT_INTERVAL_MILLIS = 1000;
+	public static final int DEFAULT_THRESHOLD = 100;
+
+	/**
+	 * A queued save, either the data or the fields of a map
+	 */
+	private static final class Pending {
+
+		private final Object data;
+		private final Map<String, Object> fields;
+		private final long queuedNanos;
+
+		private Pending(Object data, Map<String, Object> fields, long queuedNanos) {
+			this.data = data;
+			this.fields = fields;
+			this.queuedNanos = queuedNanos;
+		}
+
+		/**
+		 * Coalesce a newer save into this save
+		 * @param newer - the newer save
+		 * @return the coalesced save, queued at the time of this save
+		 */
+		private Pending coalesce(Pending newer) {
+			if (newer.fields == null || fields == null) {
+				return new Pending(newer.data, newer.fields, queuedNanos);
+			}
+
+			Map<String, Object> merged = new HashMap<>(fields);
+			merged.putAll(newer.fields);
+			return new Pending(null, merged, queuedNanos);
+		}
+	}
+
+	private final PersistenceService datastore;
+	private final Map<String, Pending> pending;
+	private final int threshold;
+	private final long intervalNanos;
+
+	/**
+	 * Held while writing, the loads and clears wait for the writes in progress
+	 */
+	private final Object flushLock = new Object();
+	private final Object signal = new Object();
+	private final Thread worker;
+	private final Thread shutdownHook;
+	private volatile boolean running;
+
+	private final AtomicLong queued = new AtomicLong();
+	private final AtomicLong coalesced = new AtomicLong();
+	private final AtomicLong written = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+	private final AtomicLong flushes = new AtomicLong();
+
+
+	/**
+	 * Create and start the write-behind service
+	 * @param datastore - the underlying persistence service
+	 * @param intervalMillis - the maximum time between flushes
+	 * @param threshold - the number of queued resource ids that starts a flush
+	 */
+	public WriteBehindImpl(PersistenceService datastore, long intervalMillis, int threshold) {
+
+		if (datastore == null || intervalMillis < 1 || threshold < 1) {
+			throw new IllegalArgumentException(String.format(
+					"Invalid write-behind configuration datastore: %1$s interval: %2$d threshold: %3$d",
+					datastore, intervalMillis, threshold));
+		}
+
+		this.datastore = datastore;
+		this.pending = new ConcurrentHashMap<>();
+		this.threshold = threshold;
+		this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+		this.running = true;
+		this.worker = new Thread(this::run, "persistence-write-behind");
+		this.worker.setDaemon(true);
+		this.worker.start();
+		this.shutdownHook = new Thread(this::flush, "persistence-write-behind-shutdown");
+		Runtime.getRuntime().addShutdownHook(shutdownHook);
+	}
+
+
+	/**
+	 * Request to queue the data
+	 * @param resourceId - the key to retrieve the data
+	 * @param data - the data to be persisted
+	 * @return true if queued, false if stopped
+	 */
+	@Override
+	public <D> boolean saveData(String resourceId, D data) {
+		Arguments.validateCommit(resourceId, data);
+		return queue(resourceId, new Pending(data, null, System.nanoTime()));
+	}
+
+
+	/**
+	 * Request to queue the state of the data, the data is serialized on the caller thread
+	 * @param resourceId - the key to retrieve the data
+	 * @param data - the data to be persisted
+	 * @return true if queued, false if stopped
+	 */
+	@Override
+	public <D> boolean saveSnapshot(String resourceId, D data) {
+		Arguments.validateCommit(resourceId, data);
+		return queue(resourceId, new Pending(Serializer.toJsonTree(data), null, System.nanoTime()));
+	}
+
+
+	/**
+	 * Request to queue the data objects
+	 * @param data - the data to be persisted keyed by their resource id
+	 * @return true if queued, false if stopped
+	 */
+	@Override
+	public <D> boolean saveAll(Map<String, D> data) {
+		boolean result = true;
+		for (Map.Entry<String, D> entry : data.entrySet()) {
+			result = saveData(entry.getKey(), entry.getValue()) && result;
+		}
+		return result;
+	}
+
+
+	/**
+	 * Request to queue the fields of the map
+	 * @param resourceId - the map id
+	 * @param map - the map containing the data
+	 * @return true if queued, false if stopped
+	 */
+	@Override
+	public <D> boolean saveMap(String resourceId, Map<String, D> map) {
+		Arguments.validateCommit(resourceId, map);
+
+		// The fields are kept, the values are serialized on flush
+		Map<String, Object> fields = new HashMap<>(map);
+		return queue(resourceId, new Pending(null, fields, System.nanoTime()));
+	}
+
+
+	/**
+	 * Request to load the data, its queued save is written first
+	 * @param resourceId - the key corresponding to the data
+	 * @param serializer - the serializer
+	 * @return the data, null if not found
+	 */
+	@Override
+	public <D> D loadData(String resourceId, Serializer serializer) {
+		synchronized (flushLock) {
+			write(resourceId);
+			return datastore.loadData(resourceId, serializer);
+		}
+	}
+
+
+	/**
+	 * Request to load the map, its queued fields are written first
+	 * @param resourceId - the map id
+	 * @param serializer - the serializer
+	 * @return the map, empty if it doesn't exist
+	 */
+	@Override
+	public <D> Map<String, D> loadMap(String resourceId, Serializer serializer) {
+		synchronized (flushLock) {
+			write(resourceId);
+			return datastore.loadMap(resourceId, serializer);
+		}
+	}
+
+
+	/**
+	 * Request to clear the data, its queued save is discarded
+	 * @param resourceId - the resource id
+	 * @return true if the one or more entries were deleted, false otherwise.
+	 */
+	@Override
+	public boolean clear(String resourceId) {
+		synchronized (flushLock) {
+			pending.remove(resourceId);
+			return datastore.clear(resourceId);
+		}
+	}
+
+
+	/**
+	 * Write the queued saves
+	 * @return true if all queued saves were written
+	 */
+	public boolean flush() {
+
+		synchronized (flushLock) {
+			flushes.incrementAndGet();
+			Map<String, Pending> batch = new HashMap<>();
+			for (String resourceId : new ArrayList<>(pending.keySet())) {
+				Pending save = pending.remove(resourceId);
+				if (save != null) {
+					batch.put(resourceId, save);
+				}
+			}
+			if (batch.isEmpty()) {
+				return true;
+			}
+
+			boolean result = true;
+			Map<String, Object> data = new HashMap<>();
+			Map<String, Pending> maps = new HashMap<>();
+			for (Map.Entry<String, Pending> entry : batch.entrySet()) {
+				Pending save = entry.getValue();
+				if (save.fields == null) {
+					data.put(entry.getKey(), save.data);
+				} else {
+					maps.put(entry.getKey(), save);
+				}
+			}
+
+			// The data are written first, the maps are the changes saved after them
+			if (!data.isEmpty()) {
+				if (write(data.size() + " queued saves", () -> datastore.saveAll(data))) {
+					written.addAndGet(data.size());
+				} else {
+					data.keySet().forEach(resourceId -> requeue(resourceId, batch.get(resourceId)));
+					result = false;
+				}
+			}
+			for (Map.Entry<String, Pending> entry : maps.entrySet()) {
+				result = write(entry.getKey(), entry.getValue()) && result;
+			}
+
+			logger.debug("Flushed {} queued saves, {} still queued", batch.size(), pending.size());
+			return result;
+		}
+	}
+
+
+	/**
+	 * Stop the worker and write the queued saves
+	 * @return true if all queued saves were written
+	 */
+	public boolean shutdown() {
+
+		running = false;
+		synchronized (signal) {
+			signal.notifyAll();
+		}
+
+		try {
+			worker.join(TimeUnit.NANOSECONDS.toMillis(intervalNanos));
+			Runtime.getRuntime().removeShutdownHook(shutdownHook);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (IllegalStateException e) {
+			logger.debug("JVM is shutting down, write-behind shutdown hook is kept");
+		}
+		return flush();
+	}
+
+
+	/**
+	 * @return the codec and the compression of the underlying persistence service
+	 */
+	@Override
+	public Encoding getEncoding() {
+		return datastore.getEncoding();
+	}
+
+
+	/**
+	 * @return the underlying persistence service
+	 */
+	public PersistenceService getDatastore() {
+		return datastore;
+	}
+
+
+	/**
+	 * @return the number of queued resource ids
+	 */
+	public int getQueueDepth() {
+		return pending.size();
+	}
+
+
+	/**
+	 * @return the age of the oldest queued save in milliseconds, 0 if none
+	 */
+	public long getLagMillis() {
+		long now = System.nanoTime();
+		long lag = 0;
+		for (Pending save : pending.values()) {
+			lag = Math.max(lag, now - save.queuedNanos);
+		}
+		return TimeUnit.NANOSECONDS.toMillis(lag);
+	}
+
+
+	/**
+	 * @return the number of requested saves
+	 */
+	public long getQueuedCount() {
+		return queued.get();
+	}
+
+
+	/**
+	 * @return the number of saves coalesced into a queued save
+	 */
+	public long getCoalescedCount() {
+		return coalesced.get();
+	}
+
+
+	/**
+	 * @return the number of written saves
+	 */
+	public long getWrittenCount() {
+		return written.get();
+	}
+
+
+	/**
+	 * @return the number of failed writes
+	 */
+	public long getFailedCount() {
+		return failed.get();
+	}
+
+
+	/**
+	 * @return the number of flushes
+	 */
+	public long getFlushCount() {
+		return flushes.get();
+	}
+
+
+	/**
+	 * Get information on the queue usage
+	 * @return information on the queue usage
+	 */
+	public String getCurrentUsage() {
+		return String.format(
+				"WriteBehind: Depth=%d, LagMillis=%d, Queued=%d, Coalesced=%d, Written=%d, Failed=%d, Flushes=%d",
+				getQueueDepth(), getLagMillis(), getQueuedCount(), getCoalescedCount(),
+				getWrittenCount(), getFailedCount(), getFlushCount());
+	}
+
+
+	private boolean queue(String resourceId, Pending save) {
+
+		if (!running) {
+			logger.error("Write-behind is stopped, save is rejected for: " + resourceId);
+			return false;
+		}
+
+		queued.incrementAndGet();
+		pending.merge(resourceId, save, (queuedSave, newer) -> {
+			coalesced.incrementAndGet();
+			return queuedSave.coalesce(newer);
+		});
+
+		if (pending.size() >= threshold) {
+			synchronized (signal) {
+				signal.notifyAll();
+			}
+		}
+		return true;
+	}
+
+
+	/**
+	 * Write the queued save of a resource id, the caller holds the flush lock
+	 * @param resourceId - the resource id
+	 * @return true if written or none queued
+	 */
+	private boolean write(String resourceId) {
+		Pending save = pending.remove(resourceId);
+		if (save == null) {
+			return true;
+		}
+
+		if (save.fields != null) {
+			return write(resourceId, save);
+		}
+
+		if (write(resourceId, () -> datastore.saveData(resourceId, save.data))) {
+			written.incrementAndGet();
+			return true;
+		}
+		requeue(resourceId, save);
+		return false;
+	}
+
+
+	private boolean write(String resourceId, Pending save) {
+		if (write(resourceId, () -> datastore.saveMap(resourceId, save.fields))) {
+			written.incrementAndGet();
+			return true;
+		}
+		requeue(resourceId, save);
+		return false;
+	}
+
+
+	/**
+	 * Write with the underlying persistence service, an exception is a failed write
+	 * @param description - the description of the written saves
+	 * @param write - the write
+	 * @return true if written
+	 */
+	private boolean write(String description, BooleanSupplier write) {
+		try {
+			return write.getAsBoolean();
+		} catch (RuntimeException e) {
+			logger.error("Unable to write " + description + ": " + e.getMessage(), e);
+			return false;
+		}
+	}
+
+
+	/**
+	 * Queue a failed save again, a newer queued save is kept
+	 * @param resourceId - the resource id
+	 * @param save - the failed save
+	 */
+	private void requeue(String resourceId, Pending save) {
+		failed.incrementAndGet();
+		pending.merge(resourceId, save, (newer, failedSave) -> failedSave.coalesce(newer));
+	}
+
+
+	private void run() {
+
+		while (running) {
+			try {
+				synchronized (signal) {
+					if (running && pending.size() < threshold) {
+						TimeUnit.NANOSECONDS.timedWait(signal, intervalNanos);
+					}
+				}
+			} catch (InterruptedException e) {
+				logger.debug("Write-behind interrupted, flushing {} queued saves", pending.size());
+				running = false;
+			}
+
+			try {
+				flush();
+			} catch (RuntimeException e) {
+				logger.error("Unable to flush the queued saves: " + e.getMessage(), e);
+			}
+		}
+	}
+
+}
@@ -63,7 +63,7 @@ public class LeaderboardServiceTest extends LeaderboardServiceTestBase {
 		Assert.assertEquals(1, ascending.size());
 
 		int count = 0;
-		Map<String, List<LedgerEntry>> ledgerEntries = service.getLedger().getRecordEntries();
+		Map<String, List<LedgerEntry>> ledgerEntries = service.getLedger(leaderboardId).getRecordEntries();
 		for (List<LedgerEntry> list : ledgerEntries.values()) { count += list.size(); }
 		Assert.assertEquals("Ledger entries", 3, count);
 	}
@@ -155,7 +155,7 @@ public class LeaderboardServiceTest extends LeaderboardServiceTestBase {
 		Assert.assertEquals("Monthly user03 score", 90, monthly.getScore(user03.getId(), category).getPoints());
 
 		// Get ledger
-		Ledger ledger = service.getLedger();
+		Ledger ledger = service.getLedger(monthly.getId());
 		
 		// Create a daily leaderboard from ledger entries
 		Leaderboard daily = service.create("One Day Leaderboard" , Cycle.Daily);
@@ -188,7 +188,7 @@ public class LeaderboardServiceTest extends LeaderboardServiceTestBase {
 		// Check for overlapping ledger records resulting from 
 		// multiple leaderboards {day, weekly, month}
 		int count = 0;
-		Ledger ledger = service.getLedger();
+		Ledger ledger = service.getLedger(set.getId());
 		Map<String, List<LedgerEntry>> recordEntries = ledger.getRecordEntries();
 		for (String userId : recordEntries.keySet()) {
 			Assert.assertEquals("Recordable per user", 30, recordEntries.get(userId).size());
@@ -246,7 +246,7 @@ public class LeaderboardServiceTest extends LeaderboardServiceTestBase {
 		// Assert original state
 		Map<String, LeaderboardImpl> leaderboards = Deencapsulation.getField(service, "leaderboards");
 		Map<String, LeaderboardSetImpl> leaderboardSets = Deencapsulation.getField(service, "leaderboardSets");
-		Assert.assertEquals("Service original - ledger", ledgerEntryCount, service.getLedger().getSize());
+		Assert.assertEquals("Service original - ledger", ledgerEntryCount, service.getLedger(set.getId()).getSize());
 		Assert.assertEquals("Service original - leaderboards", leaderboardCount, leaderboards.keySet().size());
 		Assert.assertEquals("Service original - leaderboardSets", leaderboardSetCount, leaderboardSets.keySet().size());
 
@@ -265,7 +265,7 @@ public class LeaderboardServiceTest extends LeaderboardServiceTestBase {
 				service.load(PersistenceMode.RedisLocal, LeaderboardServiceSerializer.RESOURCE_ID) != null);
 		leaderboards = Deencapsulation.getField(service, "leaderboards");
 		leaderboardSets = Deencapsulation.getField(service, "leaderboardSets");
-		Assert.assertEquals("Service loaded - ledger", ledgerEntryCount, service.getLedger().getSize());
+		Assert.assertEquals("Service loaded - ledger", ledgerEntryCount, service.getLedger(set.getId()).getSize());
 		Assert.assertEquals("Service loaded - leaderboards", leaderboardCount, leaderboards.keySet().size());
 		Assert.assertEquals("Service loaded - leaderboardSets", leaderboardSetCount, leaderboardSets.keySet().size());
 		
@@ -0,0 +1,150 @@
+package com.bytes.fmk.service.leaderboard.impl;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.bytes.fmk.data.model.User;
+import com.bytes.fmk.service.leaderboard.Cycle;
+import com.bytes.fmk.service.leaderboard.Leaderboard;
+import com.bytes.fmk.service.leaderboard.Scorable;
+import com.bytes.fmk.service.leaderboard.Score;
+import com.bytes.fmk.service.leaderboard.ScoreboardType;
+import com.bytes.fmk.service.leaderboard.ledger.LedgerEntry;
+
+public class BatchUpdaterTest {
+
+	private static final int MAX_USERS = 100;
+	private static final int MAX_UPDATES = 5000;
+
+	private String categoryName = "Karma";
+	private LeaderboardServiceImpl service;
+
+	@Before
+	public void setup() {
+		service = new LeaderboardServiceImpl();
+	}
+
+
+	@Test
+	public void coalesced() {
+
+		LeaderboardImpl expected = createLeaderboard("expected");
+		LeaderboardImpl actual = createLeaderboard("actual");
+		actual.setAutoUpdate(true);
+
+		Random random = new Random(11);
+		for (int i = 0; i < MAX_UPDATES; i++) {
+			String userId = "userId" + random.nextInt(MAX_USERS);
+			Scorable scorable = new Scorable(categoryName, random.nextInt(20));
+			service.update(expected.getId(), userId, scorable);
+			Assert.assertTrue(service.submit(actual.getId(), userId, scorable));
+		}
+		service.flush();
+		service.calculate(expected.getId());
+
+		validate(expected, actual);
+	}
+
+
+	@Test
+	public void backpressure() throws InterruptedException {
+
+		service.setBatchUpdate(8, 4, 1);
+		LeaderboardImpl leaderboard = createLeaderboard("backpressure");
+
+		// Producers block on the small queue instead of failing
+		ExecutorService producers = Executors.newFixedThreadPool(4);
+		for (int p = 0; p < 4; p++) {
+			producers.execute(() -> {
+				for (int i = 0; i < MAX_UPDATES / 4; i++) {
+					service.submit(leaderboard.getId(), "userId" + (i % MAX_USERS), new Scorable(categoryName, 1));
+				}
+			});
+		}
+		producers.shutdown();
+		Assert.assertTrue(producers.awaitTermination(30, TimeUnit.SECONDS));
+		service.flush();
+
+		long total = 0;
+		for (int i = 0; i < MAX_USERS; i++) {
+			total += leaderboard.getScoreTotal("userId" + i).getPoints();
+		}
+		Assert.assertEquals(MAX_UPDATES, total);
+	}
+
+
+	@Test
+	public void ledger() {
+
+		LeaderboardImpl leaderboard = createLeaderboard("ledger");
+		OffsetDateTime time = OffsetDateTime.now();
+		for (int i = 0; i < 10; i++) {
+			service.submit(leaderboard.getId(), "userId1", new LedgerEntry(categoryName, 5, time.plusSeconds(i)));
+		}
+		service.flush();
+
+		Assert.assertEquals(50, leaderboard.getScore("userId1", categoryName).getPoints());
+		Assert.assertEquals(50, leaderboard.getScoreTotal("userId1").getPoints());
+		Assert.assertEquals(10, service.getLedger(leaderboard.getId()).getRecordEntries().get("userId1").size());
+	}
+
+
+	@Test
+	public void inactiveNotLogged() {
+
+		LeaderboardImpl leaderboard = service.create("daily", Cycle.Daily);
+		leaderboard.addCategories(categoryName);
+		service.addUser(leaderboard.getId(), new User("userId1"));
+		service.submit(leaderboard.getId(), "userId1", new LedgerEntry(categoryName, 5, OffsetDateTime.now().minusDays(2)));
+		service.flush();
+
+		// Like the synchronous update, points that are not applied are not logged
+		Assert.assertEquals(0, leaderboard.getScoreTotal("userId1").getPoints());
+		Assert.assertEquals(0, service.getLedger(leaderboard.getId()).getSize());
+	}
+
+
+	@Test(expected = IllegalStateException.class)
+	public void unregisteredUser() {
+
+		LeaderboardImpl leaderboard = createLeaderboard("unregistered");
+		service.submit(leaderboard.getId(), "unknownUser", new Scorable(categoryName, 1));
+	}
+
+
+	private void validate(LeaderboardImpl expected, LeaderboardImpl actual) {
+
+		for (String categoryName : new String[] {this.categoryName, Leaderboard.TOTAL}) {
+			List<Score> expectedScores = service.listDescending(expected.getId(), ScoreboardType.User, categoryName, 1, MAX_USERS);
+			List<Score> actualScores = service.listDescending(actual.getId(), ScoreboardType.User, categoryName, 1, MAX_USERS);
+			Assert.assertEquals(MAX_USERS, actualScores.size());
+			for (int i = 0; i < MAX_USERS; i++) {
+				Assert.assertEquals(expectedScores.get(i).getEntryId(), actualScores.get(i).getEntryId());
+				Assert.assertEquals(expectedScores.get(i).getPoints(), actualScores.get(i).getPoints());
+			}
+		}
+	}
+
+
+	private LeaderboardImpl createLeaderboard(String title) {
+
+		LeaderboardImpl leaderboard = service.create(title, Cycle.Custom);
+		leaderboard.addCategories(categoryName);
+		List<User> users = new ArrayList<>();
+		for (int i = 0; i < MAX_USERS; i++) {
+			users.add(new User("userId" + i));
+		}
+		users.forEach(user -> service.addUser(leaderboard.getId(), user));
+		service.calculate(leaderboard.getId());
+		return leaderboard;
+	}
+}
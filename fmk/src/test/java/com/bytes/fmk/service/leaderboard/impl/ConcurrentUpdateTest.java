@@ -0,0 +1,140 @@
+package com.bytes.fmk.service.leaderboard.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.bytes.fmk.data.model.User;
+import com.bytes.fmk.service.leaderboard.Cycle;
+import com.bytes.fmk.service.leaderboard.Leaderboard;
+import com.bytes.fmk.service.leaderboard.Scorable;
+import com.bytes.fmk.service.leaderboard.Score;
+import com.bytes.fmk.service.leaderboard.ScoreStorage;
+import com.bytes.fmk.service.leaderboard.ScoreboardType;
+
+public class ConcurrentUpdateTest {
+
+	private static final int MAX_THREADS = 16;
+	private static final int MAX_USERS = 50;
+	private static final int MAX_UPDATES = 2000;
+
+	private String categoryName = "Karma";
+	private LeaderboardServiceImpl service;
+
+	@Before
+	public void setup() {
+		service = new LeaderboardServiceImpl();
+	}
+
+
+	@Test
+	public void noLostUpdates() throws InterruptedException {
+		validateConcurrentUpdates(ScoreStorage.Default);
+	}
+
+
+	@Test
+	public void noLostUpdatesColumnar() throws InterruptedException {
+		validateConcurrentUpdates(ScoreStorage.Columnar);
+	}
+
+
+	@Test
+	public void scoreAdd() throws InterruptedException {
+
+		Score score = new Score("userId", categoryName);
+		ExecutorService executor = Executors.newFixedThreadPool(MAX_THREADS);
+		for (int t = 0; t < MAX_THREADS; t++) {
+			executor.execute(() -> {
+				for (int i = 0; i < MAX_UPDATES * 10; i++) {
+					score.add(1);
+				}
+			});
+		}
+		executor.shutdown();
+		Assert.assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+		Assert.assertEquals(MAX_THREADS * MAX_UPDATES * 10, score.getPoints());
+	}
+
+
+	private void validateConcurrentUpdates(ScoreStorage storage) throws InterruptedException {
+
+		LeaderboardImpl leaderboard = service.create(storage.name(), Cycle.Custom);
+		leaderboard.setScoreStorage(storage);
+		leaderboard.setAutoUpdate(true);
+		leaderboard.addCategories(categoryName);
+		for (int i = 0; i < MAX_USERS; i++) {
+			service.addUser(leaderboard.getId(), new User("userId" + i));
+		}
+		service.calculate(leaderboard.getId());
+
+		// Expected points per user
+		long[] expected = new long[MAX_USERS];
+		for (int t = 0; t < MAX_THREADS; t++) {
+			for (int i = 0; i < MAX_UPDATES; i++) {
+				expected[(t * 31 + i) % MAX_USERS] += i % 7 + 1;
+			}
+		}
+
+		// Read the ranks while updating
+		AtomicBoolean running = new AtomicBoolean(true);
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		Thread reader = new Thread(() -> {
+			try {
+				while (running.get()) {
+					service.listDescending(leaderboard.getId(), ScoreboardType.User, categoryName, 1, 10);
+					service.getRank(leaderboard.getId(), Leaderboard.TOTAL, "userId0");
+				}
+			} catch (Throwable e) {
+				failure.set(e);
+			}
+		});
+		reader.start();
+
+		CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(MAX_THREADS);
+		for (int t = 0; t < MAX_THREADS; t++) {
+			int thread = t;
+			executor.execute(() -> {
+				try {
+					start.await();
+					for (int i = 0; i < MAX_UPDATES; i++) {
+						String userId = "userId" + ((thread * 31 + i) % MAX_USERS);
+						service.update(leaderboard.getId(), userId, new Scorable(categoryName, i % 7 + 1));
+					}
+				} catch (Throwable e) {
+					failure.set(e);
+				}
+			});
+		}
+		start.countDown();
+		executor.shutdown();
+		Assert.assertTrue(executor.awaitTermination(60, TimeUnit.SECONDS));
+		running.set(false);
+		reader.join();
+		Assert.assertNull("Concurrent failure: " + failure.get(), failure.get());
+
+		for (int i = 0; i < MAX_USERS; i++) {
+			Assert.assertEquals(expected[i], leaderboard.getScore("userId" + i, categoryName).getPoints());
+			Assert.assertEquals(expected[i], leaderboard.getScoreTotal("userId" + i).getPoints());
+		}
+
+		// The incrementally maintained ranks are sorted
+		for (String name : new String[] {categoryName, Leaderboard.TOTAL}) {
+			List<Score> ranked = new ArrayList<>(leaderboard.getRankedScores(name, ScoreboardType.User));
+			Assert.assertEquals(MAX_USERS, ranked.size());
+			for (int i = 1; i < ranked.size(); i++) {
+				Assert.assertTrue(ranked.get(i - 1).getPoints() >= ranked.get(i).getPoints());
+			}
+		}
+	}
+}
@@ -0,0 +1,165 @@
+package com.bytes.fmk.service.leaderboard.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.bytes.fmk.data.model.User;
+import com.bytes.fmk.service.leaderboard.Cycle;
+import com.bytes.fmk.service.leaderboard.Leaderboard;
+import com.bytes.fmk.service.leaderboard.Scorable;
+import com.bytes.fmk.service.leaderboard.ScoreboardType;
+import com.bytes.fmk.service.persistence.DefaultSerializer;
+import com.bytes.fmk.service.persistence.PersistenceService;
+import com.bytes.fmk.service.persistence.Serializer;
+
+public class DeltaPersisterTest {
+
+	private static final int MAX_USERS = 100;
+
+	private String categoryName = "Karma";
+	private LeaderboardServiceImpl service;
+	private LeaderboardImpl leaderboard;
+	private MapStore datastore;
+
+	@Before
+	public void setup() {
+		service = new LeaderboardServiceImpl();
+		leaderboard = service.create("delta", Cycle.Custom);
+		leaderboard.setDeltaPersist(true);
+		leaderboard.addCategories(categoryName);
+		for (int i = 0; i < MAX_USERS; i++) {
+			service.addUser(leaderboard.getId(), new User("userId" + i));
+		}
+		datastore = new MapStore();
+	}
+
+
+	@Test
+	public void changedScores() {
+
+		DeltaPersister persister = new DeltaPersister(leaderboard, datastore);
+		Assert.assertTrue(persister.isFullSaveRequired());
+		Assert.assertTrue(persister.save(persister.drainChanges(true)));
+		Assert.assertFalse(persister.isFullSaveRequired());
+
+		service.update(leaderboard.getId(), "userId1", new Scorable(categoryName, 5));
+		service.update(leaderboard.getId(), "userId2", new Scorable(categoryName, 7));
+		service.update(leaderboard.getId(), "userId1", new Scorable(categoryName, 3));
+		Assert.assertTrue(persister.save(persister.drainChanges(false)));
+
+		// Only the changed scores of the changed categories are written
+		Map<String, String> karma = datastore.maps.get(getResourceId(ScoreboardType.User, categoryName));
+		Map<String, String> total = datastore.maps.get(getResourceId(ScoreboardType.User, Leaderboard.TOTAL));
+		Assert.assertEquals(2, karma.size());
+		Assert.assertEquals("8", karma.get("userId1"));
+		Assert.assertEquals("7", total.get("userId2"));
+		Assert.assertEquals(2, datastore.writes);
+
+		// Nothing changed
+		Assert.assertTrue(persister.save(persister.drainChanges(false)));
+		Assert.assertEquals(2, datastore.writes);
+
+		service.addUser(leaderboard.getId(), new User("userId" + MAX_USERS));
+		Assert.assertTrue(persister.isFullSaveRequired());
+	}
+
+
+	@Test
+	public void failedWrite() {
+
+		DeltaPersister persister = new DeltaPersister(leaderboard, datastore);
+		persister.drainChanges(true);
+		service.update(leaderboard.getId(), "userId1", new Scorable(categoryName, 5));
+
+		datastore.failing = true;
+		Assert.assertFalse(persister.save(persister.drainChanges(false)));
+
+		datastore.failing = false;
+		Map<Scoreboard, Map<String, Set<String>>> changes = persister.drainChanges(false);
+		Assert.assertTrue(changes.get(leaderboard.getScoreboards().get(ScoreboardType.User)).get(categoryName).contains("userId1"));
+		Assert.assertTrue(persister.save(changes));
+		Assert.assertEquals("5", datastore.maps.get(getResourceId(ScoreboardType.User, categoryName)).get("userId1"));
+	}
+
+
+	@Test
+	public void load() {
+
+		DeltaPersister persister = new DeltaPersister(leaderboard, datastore);
+		Map<Scoreboard, Map<String, Set<String>>> changes = persister.drainChanges(true);
+		String base = Serializer.toJson(leaderboard);
+		persister.save(changes);
+
+		for (int i = 0; i < MAX_USERS; i++) {
+			service.update(leaderboard.getId(), "userId" + i, new Scorable(categoryName, i));
+		}
+		persister.save(persister.drainChanges(false));
+
+		DefaultSerializer serializer = new DefaultSerializer();
+		serializer.addMapping(leaderboard.getId(), LeaderboardImpl.class);
+		LeaderboardImpl loaded = serializer.getData(base, leaderboard.getId());
+		Assert.assertEquals(0, loaded.getScore("userId" + (MAX_USERS - 1), categoryName).getPoints());
+
+		new DeltaPersister(loaded, datastore).load();
+		for (int i = 0; i < MAX_USERS; i++) {
+			Assert.assertEquals(i, loaded.getScore("userId" + i, categoryName).getPoints());
+			Assert.assertEquals(i, loaded.getScoreTotal("userId" + i).getPoints());
+		}
+		Assert.assertTrue(new DeltaPersister(loaded, datastore).isFullSaveRequired());
+	}
+
+
+	private String getResourceId(ScoreboardType type, String categoryName) {
+		return leaderboard.getId() + ":" + type + ":" + categoryName;
+	}
+
+
+	/**
+	 * Stores the maps in memory
+	 */
+	private static class MapStore implements PersistenceService {
+
+		private Map<String, Map<String, String>> maps = new HashMap<>();
+		private int writes;
+		private boolean failing;
+
+		@Override
+		public <D> boolean saveData(String key, D data) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public <D> D loadData(String key, Serializer serializer) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public <D> boolean saveMap(String resourceId, Map<String, D> map) {
+			if (failing) {
+				return false;
+			}
+			writes++;
+			Map<String, String> stored = maps.computeIfAbsent(resourceId, k -> new HashMap<>());
+			map.forEach((key, data) -> stored.put(key, Serializer.toJson(data)));
+			return true;
+		}
+
+		@Override
+		public <D> Map<String, D> loadMap(String resourceId, Serializer serializer) {
+			Map<String, D> result = new HashMap<>();
+			maps.getOrDefault(resourceId, new HashMap<>()).forEach((key, data) ->
+				result.put(key, serializer.getData(data, resourceId)));
+			return result;
+		}
+
+		@Override
+		public boolean clear(String resourceId) {
+			return maps.remove(resourceId) != null;
+		}
+	}
+}
@@ -0,0 +1,128 @@
+package com.bytes.fmk.service.leaderboard.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.bytes.fmk.data.model.User;
+import com.bytes.fmk.service.leaderboard.Cycle;
+import com.bytes.fmk.service.leaderboard.Leaderboard;
+import com.bytes.fmk.service.leaderboard.Scorable;
+import com.bytes.fmk.service.leaderboard.Score;
+import com.bytes.fmk.service.leaderboard.ScoreCategory;
+import com.bytes.fmk.service.leaderboard.ScoreboardType;
+
+public class LazyUpdateTest {
+
+	private static final int MAX_USERS = 100;
+	private static final int MAX_THREADS = 8;
+
+	private String categoryName = "Karma";
+	private LeaderboardServiceImpl service;
+
+	@Before
+	public void setup() {
+		service = new LeaderboardServiceImpl();
+	}
+
+
+	@Test
+	public void recalculateOnRead() {
+
+		LeaderboardImpl leaderboard = createLeaderboard(0);
+		for (int i = 0; i < MAX_USERS; i++) {
+			service.update(leaderboard.getId(), "userId" + i, new Scorable(categoryName, i));
+		}
+
+		// Updates only mark the category as staled
+		Assert.assertTrue(getCategory(leaderboard, categoryName).isStaled());
+		Assert.assertTrue(getCategory(leaderboard, Leaderboard.TOTAL).isStaled());
+
+		List<Score> top = service.listDescending(leaderboard.getId(), ScoreboardType.User, categoryName, 1, 3);
+		Assert.assertEquals(3, top.size());
+		Assert.assertEquals("userId" + (MAX_USERS - 1), top.get(0).getEntryId());
+		Assert.assertFalse(getCategory(leaderboard, categoryName).isStaled());
+		Assert.assertFalse(getCategory(leaderboard, Leaderboard.TOTAL).isStaled());
+
+		service.update(leaderboard.getId(), "userId0", new Scorable(categoryName, MAX_USERS));
+		Assert.assertTrue(getCategory(leaderboard, categoryName).isStaled());
+		Assert.assertEquals(1, service.getRank(leaderboard.getId(), Leaderboard.TOTAL, "userId0"));
+		Assert.assertFalse(getCategory(leaderboard, Leaderboard.TOTAL).isStaled());
+	}
+
+
+	@Test
+	public void recalculateInBackground() throws InterruptedException {
+
+		LeaderboardImpl leaderboard = createLeaderboard(50);
+		for (int i = 0; i < MAX_USERS; i++) {
+			service.update(leaderboard.getId(), "userId" + i, new Scorable(categoryName, i));
+		}
+
+		// Recalculated without any read
+		long deadline = System.currentTimeMillis() + 5000;
+		while (getCategory(leaderboard, categoryName).isStaled() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		Assert.assertFalse(getCategory(leaderboard, categoryName).isStaled());
+		Assert.assertNotNull(getCategory(leaderboard, categoryName).getCalculatedTime());
+	}
+
+
+	@Test
+	public void concurrentReaders() throws Exception {
+
+		LeaderboardImpl leaderboard = createLeaderboard(0);
+		for (int i = 0; i < MAX_USERS; i++) {
+			service.update(leaderboard.getId(), "userId" + i, new Scorable(categoryName, i * 2));
+		}
+
+		CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(MAX_THREADS);
+		List<Future<List<Score>>> results = new ArrayList<>();
+		for (int t = 0; t < MAX_THREADS; t++) {
+			results.add(executor.submit(() -> {
+				start.await();
+				return service.listDescending(leaderboard.getId(), ScoreboardType.User, categoryName, 1, MAX_USERS);
+			}));
+		}
+		start.countDown();
+		executor.shutdown();
+		Assert.assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+		for (Future<List<Score>> result : results) {
+			List<Score> scores = result.get();
+			Assert.assertEquals(MAX_USERS, scores.size());
+			for (int i = 0; i < MAX_USERS; i++) {
+				Assert.assertEquals("userId" + (MAX_USERS - 1 - i), scores.get(i).getEntryId());
+			}
+		}
+	}
+
+
+	private ScoreCategory getCategory(LeaderboardImpl leaderboard, String name) {
+		return leaderboard.getScoreboards().get(ScoreboardType.User).getCategory(name);
+	}
+
+
+	private LeaderboardImpl createLeaderboard(long maxStaleness) {
+
+		LeaderboardImpl leaderboard = service.create("lazy", Cycle.Custom);
+		leaderboard.setLazyUpdate(true);
+		leaderboard.setMaxStaleness(maxStaleness);
+		leaderboard.addCategories(categoryName);
+		for (int i = 0; i < MAX_USERS; i++) {
+			service.addUser(leaderboard.getId(), new User("userId" + i));
+		}
+		service.calculate(leaderboard.getId());
+		return leaderboard;
+	}
+}
@@ -2,11 +2,15 @@ package com.bytes.fmk.service.leaderboard.impl;
 
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.bytes.fmk.service.leaderboard.ScoreStorage;
+import com.bytes.fmk.service.leaderboard.ScoreboardType;
+
 import mockit.Deencapsulation;
 
 // TODO Leaderboard serialization tests
@@ -51,4 +55,24 @@ public class LeaderboardSerializerTest {
 		Assert.assertEquals(1, leaderboard.getCategoryNames().size());
 		
 	}
+	
+	
+	@Test
+	public void restoreScoreboards() {
+		
+		LeaderboardSerializer serializer = new LeaderboardSerializer();
+		serializer.registerLeaderboard("1");
+		LeaderboardImpl leaderboard = serializer.getData(leaderboardJson, "1");
+		
+		// The maps read by Gson are replaced once, before the leaderboard is used
+		for (Scoreboard scoreboard : leaderboard.getScoreboards().values()) {
+			Assert.assertEquals(ScoreStorage.Default, scoreboard.getStorage());
+			Assert.assertTrue(scoreboard.getScoreEntries() instanceof ConcurrentHashMap);
+			Assert.assertTrue(Deencapsulation.getField(scoreboard, "categories") instanceof ConcurrentHashMap);
+		}
+		
+		Scoreboard scoreboard = leaderboard.getScoreboards().get(ScoreboardType.User);
+		Assert.assertTrue(scoreboard.addEntry("userId"));
+		Assert.assertTrue(scoreboard.getScores("userId") instanceof ConcurrentHashMap);
+	}
 }
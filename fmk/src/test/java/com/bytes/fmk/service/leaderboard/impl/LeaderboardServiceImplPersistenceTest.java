@@ -19,11 +19,14 @@ import com.bytes.fmk.service.leaderboard.Scorable;
 import com.bytes.fmk.service.leaderboard.Score;
 import com.bytes.fmk.service.leaderboard.ScoreboardType;
 import com.bytes.fmk.service.leaderboard.ledger.Ledger;
+import com.bytes.fmk.service.leaderboard.ledger.impl.LedgerImpl;
 import com.bytes.fmk.service.leaderboard.ledger.impl.RecordableScore;
 import com.bytes.fmk.service.leaderboard.report.Report;
 import com.bytes.fmk.service.leaderboard.report.ReportBuilder;
 import com.bytes.fmk.service.leaderboard.report.impl.ReportBuilderImpl;
 import com.bytes.fmk.service.persistence.PersistenceMode;
+import com.bytes.fmk.service.persistence.PersistenceService;
+import com.bytes.fmk.service.persistence.impl.WriteBehindImpl;
 
 import mockit.Deencapsulation;
 
@@ -59,16 +62,8 @@ public class LeaderboardServiceImplPersistenceTest {
 	
 	/**
 	 * Clone the current leaderboard and test for equality.
-	 * ***Warning*** This test wipes data, run only in local mode
-	 * <pre>
-	 * start server:
-	 * 		src/redis-server 
-	 * 	
-	 * start client:
-	 * 		src/redis-cli 
-	 * 		auth password
-	 * 		hgetall leaderboardId
-	 * </pre>
+	 * The in-memory persistence runs without a Redis server, 
+	 * the {@code RedisImpl} tests cover the Redis persistence.
 	 */
 	@Test
 	public void saveAndLoadLeaderboard() {
@@ -84,15 +79,13 @@ public class LeaderboardServiceImplPersistenceTest {
 		service.calculate(leaderboardId);
 		
 		// 1. Clear Cache
-//		PersistenceService cache = RedisImpl.Local;
-//		leaderboardId = leaderboard.getId();
-//		cache.clear(leaderboardId);
+		Thinkr.INSTANCE.getPersistenceService(PersistenceMode.Memory).clear(leaderboardId);
 		
 		// 2. Save current leaderboard to Cache
-		Assert.assertTrue(service.save(leaderboard, PersistenceMode.RedisLocal));
+		Assert.assertTrue(service.save(leaderboard, PersistenceMode.Memory));
 		
 		// 3. Load - Create a new leaderboard instance and load from Cache
-		LeaderboardImpl leaderboard2 = service.load(leaderboardId, PersistenceMode.RedisLocal);
+		LeaderboardImpl leaderboard2 = service.load(leaderboardId, PersistenceMode.Memory);
 		Assert.assertEquals(leaderboardId, leaderboard2.getId());
 		
 		// 4. Compare strongly-type map between the original and new leaderboard
@@ -107,6 +100,68 @@ public class LeaderboardServiceImplPersistenceTest {
 	}
 	
 	
+	/**
+	 * The delta save of a leaderboard saves the entries added to its ledger partition
+	 */
+	@Test
+	public void deltaSaveLedger() {
+		
+		leaderboard.setDeltaPersist(true);
+		service.addUser(leaderboardId, new User("userId1"));
+		String ledgerId = leaderboard.getLedgerId();
+		try {
+			Assert.assertTrue(service.save(leaderboard, PersistenceMode.Memory));
+			service.update(leaderboardId, "userId1", new Scorable(categoryName, 5));
+			service.update(leaderboardId, "userId1", new Scorable(categoryName, 3));
+			Assert.assertTrue(service.save(leaderboard, PersistenceMode.Memory));
+			
+			LeaderboardServiceImpl restored = new LeaderboardServiceImpl();
+			restored.load(leaderboardId, PersistenceMode.Memory);
+			Assert.assertEquals(8, restored.getLeaderboard(leaderboardId).getScore("userId1", categoryName).getPoints());
+			Assert.assertEquals(2, restored.getLedger(leaderboardId).getSize());
+		} finally {
+			PersistenceService datastore = Thinkr.INSTANCE.getPersistenceService(PersistenceMode.Memory);
+			datastore.clear(ledgerId);
+			datastore.clear(ledgerId + LedgerImpl.APPENDS_SUFFIX);
+		}
+	}
+	
+	
+	/**
+	 * The full save of a delta persisted leaderboard is the state of the save request,
+	 * the updates before the flush of the write-behind are saved by the next save
+	 */
+	@Test
+	public void deltaSaveWriteBehind() {
+		
+		leaderboard.setDeltaPersist(true);
+		for (int i = 1; i <= 3; i++) {
+			service.addUser(leaderboardId, new User("userId" + i));
+		}
+		service.update(leaderboardId, "userId1", new Scorable(categoryName, 5));
+		
+		WriteBehindImpl writeBehind = Thinkr.INSTANCE.setWriteBehind(PersistenceMode.Memory, 60000, 1000);
+		try {
+			Assert.assertTrue(service.save(leaderboard, PersistenceMode.Memory));
+			service.update(leaderboardId, "userId1", new Scorable(categoryName, 3));
+			service.update(leaderboardId, "userId2", new Scorable(categoryName, 7));
+			Assert.assertTrue(writeBehind.flush());
+			
+			LeaderboardImpl loaded = new LeaderboardServiceImpl().load(leaderboardId, PersistenceMode.Memory);
+			Assert.assertEquals(5, loaded.getScore("userId1", categoryName).getPoints());
+			Assert.assertEquals(0, loaded.getScore("userId2", categoryName).getPoints());
+			
+			Assert.assertTrue(service.save(leaderboard, PersistenceMode.Memory));
+			Assert.assertTrue(writeBehind.flush());
+			loaded = new LeaderboardServiceImpl().load(leaderboardId, PersistenceMode.Memory);
+			Assert.assertEquals(8, loaded.getScore("userId1", categoryName).getPoints());
+			Assert.assertEquals(7, loaded.getScore("userId2", categoryName).getPoints());
+		} finally {
+			Thinkr.INSTANCE.removeWriteBehind(PersistenceMode.Memory).clear(leaderboardId);
+		}
+	}
+	
+
 	@Test
 	public void merge() {
 		
@@ -119,13 +174,13 @@ public class LeaderboardServiceImplPersistenceTest {
 		LeaderboardImpl source = create(sourceTitle, sourceCategories, 1, 10);
 		LeaderboardImpl target = create(targetTitle, targetCategories, 5, 15);
 
-		Assert.assertTrue(service.save(source, PersistenceMode.RedisLocal));
-		Assert.assertTrue(service.save(target, PersistenceMode.RedisLocal));
+		Assert.assertTrue(service.save(source, PersistenceMode.Memory));
+		Assert.assertTrue(service.save(target, PersistenceMode.Memory));
 		
 		// Merge
 		LeaderboardImpl merged = service.merge(
-				source.getId(), PersistenceMode.RedisLocal, 
-				target.getId(), PersistenceMode.RedisLocal);
+				source.getId(), PersistenceMode.Memory, 
+				target.getId(), PersistenceMode.Memory);
 		
 		Assert.assertEquals("Leaderboard Title", target.getTitle(), merged.getTitle());
 		Assert.assertEquals("Number of user", 15, merged.getSize());
@@ -142,7 +197,7 @@ public class LeaderboardServiceImplPersistenceTest {
 		
 		// Verify the integrity of the merged leaderboard
 		System.out.println(service.generateReport(merged.getId(), ReportBuilderImpl.DEFAULT));
-		service.save(merged, PersistenceMode.RedisLocal);
+		service.save(merged, PersistenceMode.Memory);
 		System.out.println(merged.getId());
 	}
 	
@@ -158,7 +213,7 @@ public class LeaderboardServiceImplPersistenceTest {
 		}
 		
 		String userId = userIdPrefix+1;
-		Ledger ledger = service.getLedger();
+		Ledger ledger = service.getLedger(leaderboardId);
 		service.update(leaderboard.getId(), userId, RecordableScore.Point);
 		Assert.assertEquals(51, ledger.getSize());
 		Assert.assertEquals(2, ledger.getRecordEntries().get(userId).size());
@@ -171,8 +226,62 @@ public class LeaderboardServiceImplPersistenceTest {
 		Report generateReport = service.generateReport(leaderboardId, ReportBuilder.DEFAULT);
 		System.out.println(generateReport);
 		
-		service.save(leaderboard, PersistenceMode.RedisLocal);
+		service.save(leaderboard, PersistenceMode.Memory);
+		
+	}
+	
+	
+	/**
+	 * The ledger is loaded with the leaderboard, the next save keeps its history
+	 */
+	@Test
+	public void saveLoadSaveLedger() {
+		
+		for (int i = 0; i < MAX_USERS; i++) {
+			service.addUser(leaderboardId, new User("userId" + (i+1)));
+			service.update(leaderboardId, "userId" + (i+1), RecordableScore.Point);
+		}
+		Assert.assertTrue(service.save(leaderboard, PersistenceMode.Memory));
+		
+		LeaderboardServiceImpl reloaded = new LeaderboardServiceImpl();
+		Assert.assertNotNull(reloaded.load(leaderboardId, PersistenceMode.Memory));
+		Assert.assertEquals(MAX_USERS, reloaded.getLedger(leaderboardId).getSize());
+		
+		reloaded.update(leaderboardId, "userId1", RecordableScore.Point);
+		Assert.assertTrue(reloaded.save(reloaded.getLeaderboard(leaderboardId), PersistenceMode.Memory));
+		
+		LeaderboardServiceImpl restored = new LeaderboardServiceImpl();
+		restored.load(leaderboardId, PersistenceMode.Memory);
+		Assert.assertEquals(MAX_USERS + 1, restored.getLedger(leaderboardId).getSize());
+		Assert.assertEquals(2, restored.getLedger(leaderboardId).getRecordEntries().get("userId1").size());
+	}
+	
+	
+	/**
+	 * A leaderboard saved without its ledger partition is loaded with an empty ledger
+	 */
+	@Test
+	public void loadMissingLedger() {
+		
+		for (int i = 0; i < MAX_USERS; i++) {
+			service.addUser(leaderboardId, new User("userId" + (i+1)));
+			service.update(leaderboardId, "userId" + (i+1), RecordableScore.Point);
+		}
+		Assert.assertTrue(service.save(leaderboard, PersistenceMode.Memory));
+		Assert.assertTrue(Thinkr.INSTANCE.getPersistenceService(PersistenceMode.Memory).clear(leaderboard.getLedgerId()));
+		
+		LeaderboardServiceImpl reloaded = new LeaderboardServiceImpl();
+		Assert.assertNotNull(reloaded.load(leaderboardId, PersistenceMode.Memory));
+		Ledger ledger = reloaded.getLedger(leaderboardId);
+		Assert.assertEquals(leaderboard.getLedgerId(), ledger.getId());
+		Assert.assertEquals(0, ledger.getSize());
+		
+		reloaded.update(leaderboardId, "userId1", RecordableScore.Point);
+		Assert.assertTrue(reloaded.save(reloaded.getLeaderboard(leaderboardId), PersistenceMode.Memory));
 		
+		LeaderboardServiceImpl restored = new LeaderboardServiceImpl();
+		restored.load(leaderboardId, PersistenceMode.Memory);
+		Assert.assertEquals(1, restored.getLedger(leaderboardId).getSize());
 	}
 	
 	
@@ -183,7 +292,7 @@ public class LeaderboardServiceImplPersistenceTest {
 	@Ignore 
 	public void checkIntegrity() {
 		
-		LeaderboardImpl loaded = service.load(leaderboardId, PersistenceMode.RedisLocal);
+		LeaderboardImpl loaded = service.load(leaderboardId, PersistenceMode.Memory);
 		
 		Scorable scoreable1 = new Scorable("CategoryST1", 5);
 		service.update(loaded.getId(), "userId10", scoreable1);
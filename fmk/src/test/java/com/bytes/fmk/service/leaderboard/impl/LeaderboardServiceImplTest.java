@@ -7,9 +7,11 @@ import org.junit.Test;
 
 import com.bytes.fmk.data.model.User;
 import com.bytes.fmk.service.leaderboard.Cycle;
+import com.bytes.fmk.service.leaderboard.LeaderboardSet;
 import com.bytes.fmk.service.leaderboard.Scorable;
 import com.bytes.fmk.service.leaderboard.Score;
 import com.bytes.fmk.service.leaderboard.ScoreboardType;
+import com.bytes.fmk.service.leaderboard.ledger.Ledger;
 
 
 public class LeaderboardServiceImplTest {
@@ -42,6 +44,31 @@ public class LeaderboardServiceImplTest {
 		leaderboardLogic.calculate(leaderboardId);
 	}
 
+	/**
+	 * Each leaderboard logs in its own ledger partition, a set logs once for all its leaderboards
+	 */
+	@Test
+	public void ledgerPartitions() {
+		
+		Assert.assertEquals(MAX_USERS, leaderboardLogic.getLedger(leaderboardId).getSize());
+		Assert.assertEquals(0, leaderboardLogic.getLedger().getSize());
+		Assert.assertNull(leaderboardLogic.getLedger("unknown"));
+		
+		LeaderboardSet set = leaderboardLogic.createSet("Set", Cycle.Daily, Cycle.Weekly, Cycle.Monthly);
+		leaderboardLogic.addUser(set.getId(), new User("userId1"));
+		leaderboardLogic.update(set.getId(), "userId1", new Scorable(categoryName, 5));
+		
+		Ledger ledger = leaderboardLogic.getLedger(set.getId());
+		Assert.assertEquals(1, ledger.getSize());
+		Assert.assertEquals(set.getLedgerId(), ledger.getId());
+		for (String id : set.getAll()) {
+			Assert.assertSame(ledger, leaderboardLogic.getLedger(id));
+			Assert.assertEquals(5, leaderboardLogic.getLeaderboard(id).getScoreTotal("userId1").getPoints());
+		}
+		Assert.assertEquals(MAX_USERS, leaderboardLogic.getLedger(leaderboardId).getSize());
+	}
+	
+	
 	/**
 	 * Create a new user, add score (first), and list my rank
 	 */
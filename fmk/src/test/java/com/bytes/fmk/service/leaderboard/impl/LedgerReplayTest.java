@@ -0,0 +1,150 @@
+package com.bytes.fmk.service.leaderboard.impl;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.bytes.fmk.data.model.User;
+import com.bytes.fmk.service.leaderboard.Cycle;
+import com.bytes.fmk.service.leaderboard.Leaderboard;
+import com.bytes.fmk.service.leaderboard.LeaderboardSet;
+import com.bytes.fmk.service.leaderboard.Score;
+import com.bytes.fmk.service.leaderboard.ScoreboardType;
+import com.bytes.fmk.service.leaderboard.ledger.Ledger;
+import com.bytes.fmk.service.leaderboard.ledger.LedgerEntry;
+import com.bytes.fmk.service.leaderboard.ledger.impl.LedgerImpl;
+
+public class LedgerReplayTest {
+
+	private static final int MAX_USERS = 200;
+	private static final int MAX_UPDATES = 10000;
+
+	private String[] categoryNames = {"Karma", "Posts"};
+	private LeaderboardServiceImpl service;
+
+	@Before
+	public void setup() {
+		service = new LeaderboardServiceImpl();
+	}
+
+
+	@Test
+	public void rebuild() {
+
+		LeaderboardImpl expected = service.create("expected", Cycle.Custom);
+		for (int i = 0; i < MAX_USERS; i++) {
+			service.addUser(expected.getId(), new User("userId" + i));
+		}
+
+		Random random = new Random(17);
+		OffsetDateTime time = OffsetDateTime.now();
+		for (int i = 0; i < MAX_UPDATES; i++) {
+			service.update(expected.getId(), "userId" + random.nextInt(MAX_USERS),
+					new LedgerEntry(categoryNames[random.nextInt(categoryNames.length)], random.nextInt(10), time.plusNanos(i * 1000L)));
+		}
+		service.calculate(expected.getId());
+		Ledger ledger = service.getLedger(expected.getId());
+		long size = ledger.getSize();
+
+		// Users and categories are added from the ledger
+		LeaderboardImpl actual = service.create("actual", Cycle.Custom);
+		Assert.assertEquals(MAX_UPDATES, service.replay(actual.getId(), ledger));
+		Assert.assertEquals("Entries are not logged again", size, ledger.getSize());
+		Assert.assertEquals(0, service.getLedger(actual.getId()).getSize());
+
+		for (String categoryName : new String[] {categoryNames[0], categoryNames[1], Leaderboard.TOTAL}) {
+			List<Score> expectedScores = service.listDescending(expected.getId(), ScoreboardType.User, categoryName, 1, MAX_USERS);
+			List<Score> actualScores = service.listDescending(actual.getId(), ScoreboardType.User, categoryName, 1, MAX_USERS);
+			Assert.assertEquals(expectedScores.size(), actualScores.size());
+			for (int i = 0; i < expectedScores.size(); i++) {
+				Assert.assertEquals(expectedScores.get(i).getEntryId(), actualScores.get(i).getEntryId());
+				Assert.assertEquals(expectedScores.get(i).getPoints(), actualScores.get(i).getPoints());
+			}
+		}
+	}
+
+
+	@Test
+	public void activePeriod() {
+
+		LeaderboardImpl daily = service.create("daily", Cycle.Daily);
+		service.addUser(daily.getId(), new User("userId1"));
+
+		OffsetDateTime now = OffsetDateTime.now();
+		service.getLedger().add("userId1", new LedgerEntry(categoryNames[0], 5, now));
+		service.getLedger().add("userId1", new LedgerEntry(categoryNames[0], 7, now.minusDays(2)));
+		service.getLedger().add("userId1", new LedgerEntry(categoryNames[0], 9, now.plusDays(2)));
+
+		Assert.assertEquals(1, service.replay(daily.getId(), service.getLedger()));
+		Assert.assertEquals(5, daily.getScore("userId1", categoryNames[0]).getPoints());
+		Assert.assertEquals(5, daily.getScoreTotal("userId1").getPoints());
+		Assert.assertEquals(1, service.getRank(daily.getId(), Leaderboard.TOTAL, "userId1"));
+	}
+
+
+	@Test
+	public void replayTwice() {
+
+		LeaderboardImpl daily = service.create("daily", Cycle.Daily);
+		service.addUser(daily.getId(), new User("userId1"));
+		service.addUser(daily.getId(), new User("userId2"));
+		service.update(daily.getId(), "userId2", new LedgerEntry(categoryNames[1], 3, OffsetDateTime.now()));
+
+		OffsetDateTime now = OffsetDateTime.now();
+		Ledger ledger = new LedgerImpl();
+		ledger.add("userId1", new LedgerEntry(categoryNames[0], 5, now));
+		ledger.add("userId1", new LedgerEntry(categoryNames[0], 7, now.plusNanos(1000)));
+
+		// The board is reset, the points of the ledger are not added twice
+		Assert.assertEquals(2, service.replay(daily.getId(), ledger));
+		Assert.assertEquals(2, service.replay(daily.getId(), ledger));
+		Assert.assertEquals(12, daily.getScoreTotal("userId1").getPoints());
+		Assert.assertEquals(0, daily.getScoreTotal("userId2").getPoints());
+		Assert.assertEquals(1, service.getRank(daily.getId(), Leaderboard.TOTAL, "userId1"));
+	}
+
+
+	@Test
+	public void replaySet() {
+
+		LeaderboardSet set = service.createSet("set", Cycle.Daily, Cycle.Weekly, Cycle.Monthly);
+		OffsetDateTime now = OffsetDateTime.now();
+		Ledger ledger = new LedgerImpl();
+		for (int i = 0; i < 10; i++) {
+			service.addUser(set.getId(), new User("userId" + i));
+			ledger.add("userId" + i, new LedgerEntry(categoryNames[0], i, now));
+		}
+
+		// An entry of the three leaderboards is counted once
+		Assert.assertEquals(10, service.replay(set.getId(), ledger));
+		for (LeaderboardImpl leaderboard : service.getLeaderboards(set.getId())) {
+			Assert.assertEquals(9, leaderboard.getScoreTotal("userId9").getPoints());
+		}
+	}
+
+
+	@Test
+	public void compactClosedCycles() {
+
+		LeaderboardImpl daily = service.create("daily", Cycle.Daily);
+		service.addUser(daily.getId(), new User("userId1"));
+
+		OffsetDateTime now = OffsetDateTime.now();
+		service.getLedger().add("userId1", new LedgerEntry(categoryNames[0], 5, now));
+		service.getLedger().add("userId1", new LedgerEntry(categoryNames[0], 7, now.minusDays(2)));
+		service.getLedger().add("userId1", new LedgerEntry(categoryNames[0], 9, now.minusDays(3)));
+
+		Assert.assertEquals(2, service.compactLedger(null));
+		Assert.assertEquals(1, service.getLedger().getSize());
+		Assert.assertEquals(Long.valueOf(21), service.getLedger().getUserPoints(
+				Ledger.DEFAULT_RECORD_ID, "userId1", now.minusDays(3), now).get(categoryNames[0]));
+
+		// The open daily cycle is not compacted
+		Assert.assertEquals(1, service.replay(daily.getId(), service.getLedger()));
+		Assert.assertEquals(5, daily.getScoreTotal("userId1").getPoints());
+	}
+}
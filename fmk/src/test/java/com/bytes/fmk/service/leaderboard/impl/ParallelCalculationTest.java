@@ -0,0 +1,94 @@
+package com.bytes.fmk.service.leaderboard.impl;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.bytes.fmk.data.model.User;
+import com.bytes.fmk.service.leaderboard.Cycle;
+import com.bytes.fmk.service.leaderboard.Leaderboard;
+import com.bytes.fmk.service.leaderboard.Scorable;
+import com.bytes.fmk.service.leaderboard.Score;
+import com.bytes.fmk.service.leaderboard.ScoreCategory;
+import com.bytes.fmk.service.leaderboard.ScoreboardType;
+
+public class ParallelCalculationTest {
+
+	private static final int MAX_USERS = 2000;
+	private static final int MAX_UPDATES = 20000;
+
+	private String[] categoryNames = {"Karma", "Posts", "Likes", "Votes"};
+	private LeaderboardServiceImpl service;
+
+	@Before
+	public void setup() {
+		service = new LeaderboardServiceImpl();
+	}
+
+
+	@Test
+	public void sameRanks() {
+
+		LeaderboardImpl expected = createLeaderboard("sequential", false);
+		LeaderboardImpl actual = createLeaderboard("parallel", true);
+
+		Random random = new Random(5);
+		for (int i = 0; i < MAX_UPDATES; i++) {
+			String userId = "userId" + random.nextInt(MAX_USERS);
+			Scorable scorable = new Scorable(categoryNames[random.nextInt(categoryNames.length)], random.nextInt(50));
+			service.update(expected.getId(), userId, scorable);
+			service.update(actual.getId(), userId, scorable);
+		}
+		service.calculate(expected.getId());
+		service.calculate(actual.getId());
+
+		for (ScoreCategory category : actual.getCategories()) {
+			Assert.assertFalse(category.isStaled());
+			validate(expected, actual, category.getName());
+		}
+		validate(expected, actual, Leaderboard.TOTAL);
+	}
+
+
+	@Test
+	public void singleCategory() {
+
+		LeaderboardImpl leaderboard = createLeaderboard("parallel", true);
+		for (int i = 0; i < MAX_USERS; i++) {
+			service.update(leaderboard.getId(), "userId" + i, new Scorable(categoryNames[0], i));
+		}
+		service.calculate(leaderboard.getId(), categoryNames[0]);
+
+		List<Score> top = service.listDescending(leaderboard.getId(), ScoreboardType.User, Leaderboard.TOTAL, 1, 2);
+		Assert.assertEquals("userId" + (MAX_USERS - 1), top.get(0).getEntryId());
+		Assert.assertEquals("userId" + (MAX_USERS - 2), top.get(1).getEntryId());
+	}
+
+
+	private void validate(LeaderboardImpl expected, LeaderboardImpl actual, String categoryName) {
+
+		List<Score> expectedScores = expected.getRankedScores(categoryName, ScoreboardType.User);
+		List<Score> actualScores = actual.getRankedScores(categoryName, ScoreboardType.User);
+		Assert.assertEquals(MAX_USERS, actualScores.size());
+		for (int i = 0; i < MAX_USERS; i++) {
+			Assert.assertEquals(expectedScores.get(i).getEntryId(), actualScores.get(i).getEntryId());
+			Assert.assertEquals(expectedScores.get(i).getPoints(), actualScores.get(i).getPoints());
+		}
+	}
+
+
+	private LeaderboardImpl createLeaderboard(String title, boolean parallelCalculation) {
+
+		LeaderboardImpl leaderboard = service.create(title, Cycle.Custom);
+		leaderboard.setAutoUpdate(false);
+		leaderboard.setParallelCalculation(parallelCalculation);
+		leaderboard.addCategories(categoryNames);
+		for (int i = 0; i < MAX_USERS; i++) {
+			service.addUser(leaderboard.getId(), new User("userId" + i));
+		}
+		return leaderboard;
+	}
+}
@@ -0,0 +1,123 @@
+package com.bytes.fmk.service.leaderboard.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.bytes.fmk.service.leaderboard.Score;
+import com.bytes.fmk.service.leaderboard.ScoreCategory;
+
+public class RankIndexTest {
+
+	private static final int MAX_ENTRIES = 1000;
+
+	private ScoreCategory category;
+	private List<Score> scores;
+	private Random random;
+
+	@Before
+	public void setup() {
+		category = new ScoreCategory("Karma");
+		scores = new ArrayList<>();
+		random = new Random(7);
+		for (int i = 0; i < MAX_ENTRIES; i++) {
+			Score score = new Score("entry" + i, category.getName());
+			score.setPoints(random.nextInt(100));
+			scores.add(score);
+		}
+	}
+
+
+	@Test
+	public void buildFromSorted() {
+
+		Collections.sort(scores, category);
+		RankIndex index = new RankIndex(category, scores.toArray(new Score[0]));
+
+		Assert.assertEquals(MAX_ENTRIES, index.size());
+		Assert.assertEquals(scores, index);
+		Assert.assertEquals(scores, new ArrayList<>(index));
+	}
+
+
+	@Test
+	public void insertAndDelete() {
+
+		RankIndex index = new RankIndex(category);
+		scores.forEach(index::insert);
+		Assert.assertFalse("Duplicate insert", index.insert(scores.get(0)));
+
+		for (int i = 0; i < MAX_ENTRIES / 2; i++) {
+			Assert.assertTrue(index.delete(scores.remove(random.nextInt(scores.size()))));
+		}
+
+		Collections.sort(scores, category);
+		Assert.assertEquals(scores.size(), index.size());
+		Assert.assertEquals(scores, index);
+	}
+
+
+	@Test
+	public void reposition() {
+
+		RankIndex index = new RankIndex(category);
+		scores.forEach(index::insert);
+
+		for (int i = 0; i < MAX_ENTRIES * 5; i++) {
+			Score score = scores.get(random.nextInt(scores.size()));
+			index.delete(score);
+			score.add(random.nextInt(50));
+			index.insert(score);
+		}
+
+		Collections.sort(scores, category);
+		Assert.assertEquals(scores, index);
+	}
+
+
+	@Test
+	public void rank() {
+
+		RankIndex index = new RankIndex(category);
+		scores.forEach(index::insert);
+
+		Collections.sort(scores, category);
+		for (int i = 0; i < scores.size(); i++) {
+			Assert.assertEquals(i, index.rank(scores.get(i)));
+			Assert.assertEquals(i, index.indexOf(scores.get(i)));
+		}
+		Assert.assertEquals(-1, index.rank(new Score("unknown", category.getName())));
+	}
+
+
+	@Test
+	public void incrementalUpdate() {
+
+		Scoreboard scoreboard = new Scoreboard();
+		scoreboard.addCategories(category.getName());
+		scoreboard.addEntry("user1");
+		scoreboard.addEntry("user2");
+		scoreboard.setRankedScores(category.getName(), new RankIndex(category, new Score[] {
+				scoreboard.getScore("user1", category.getName()), 
+				scoreboard.getScore("user2", category.getName())}));
+		scoreboard.getCategory(category.getName()).setStaled(false);
+
+		scoreboard.addEntry("user3");
+		scoreboard.addPoints("user3", category.getName(), 10, true);
+		Assert.assertEquals("user3", scoreboard.getRankedScores(category.getName()).get(0).getEntryId());
+
+		scoreboard.addPoints("user2", category.getName(), 20, true);
+		Assert.assertEquals("user2", scoreboard.getRankedScores(category.getName()).get(0).getEntryId());
+		Assert.assertEquals("user3", scoreboard.getRankedScores(category.getName()).get(1).getEntryId());
+		Assert.assertEquals(3, scoreboard.getRank("user1", category.getName()));
+
+		scoreboard.addPoints("user1", category.getName(), 5, false);
+		Assert.assertTrue("Not updating the rank marks the category staled",
+				scoreboard.getCategory(category.getName()).isStaled());
+	}
+}
@@ -0,0 +1,184 @@
+package com.bytes.fmk.service.leaderboard.impl;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.bytes.fmk.data.model.User;
+import com.bytes.fmk.service.leaderboard.Cycle;
+import com.bytes.fmk.service.leaderboard.Leaderboard;
+import com.bytes.fmk.service.leaderboard.Scorable;
+import com.bytes.fmk.service.leaderboard.Score;
+import com.bytes.fmk.service.leaderboard.ScoreCategory;
+import com.bytes.fmk.service.leaderboard.ScoreStorage;
+import com.bytes.fmk.service.leaderboard.ScoreboardType;
+
+public class ScoreColumnsTest {
+
+	private static final int MAX_USERS = 200;
+	private static final int RANK_USERS = 20000;
+
+	private String categoryName = "Karma";
+	private LeaderboardServiceImpl service;
+
+	@Before
+	public void setup() {
+		service = new LeaderboardServiceImpl();
+	}
+
+
+	@Test
+	public void columnar() {
+		validateStorage(ScoreStorage.Columnar);
+	}
+
+
+	@Test
+	public void offHeap() {
+		validateStorage(ScoreStorage.OffHeap);
+	}
+
+
+	@Test
+	public void persistedFormat() {
+
+		LeaderboardImpl columnar = createLeaderboard(ScoreStorage.Columnar);
+		String json = LeaderboardSerializer.toJson(columnar);
+
+		LeaderboardSerializer serializer = new LeaderboardSerializer();
+		serializer.registerLeaderboard(columnar.getId());
+		LeaderboardImpl loaded = serializer.getData(json, columnar.getId());
+
+		Assert.assertEquals(ScoreStorage.Columnar, loaded.getScoreStorage());
+		Assert.assertEquals(MAX_USERS, loaded.getSize());
+		for (int i = 0; i < MAX_USERS; i++) {
+			String userId = "userId" + i;
+			Assert.assertEquals(columnar.getScore(userId, categoryName).getPoints(),
+					loaded.getScore(userId, categoryName).getPoints());
+		}
+		Assert.assertTrue("Restored as columns",
+				loaded.getScoreboards().get(ScoreboardType.User).getScoreEntries() instanceof ScoreColumns);
+	}
+
+
+	@Test
+	public void removeUser() {
+
+		LeaderboardImpl leaderboard = createLeaderboard(ScoreStorage.Columnar);
+		String userId = "userId" + (MAX_USERS - 1);
+		Assert.assertEquals(1, service.getRank(leaderboard.getId(), Leaderboard.TOTAL, userId));
+
+		Assert.assertTrue(service.removeUser(leaderboard.getId(), userId));
+		Assert.assertEquals(MAX_USERS - 1, leaderboard.getSize());
+		Assert.assertEquals("userId" + (MAX_USERS - 2),
+				service.listDescending(leaderboard.getId(), 1, 1).get(0).getEntryId());
+
+		// The released row is reused with zero points
+		service.addUser(leaderboard.getId(), new User("newUser"));
+		Assert.assertEquals(0, leaderboard.getScoreTotal("newUser").getPoints());
+	}
+
+
+	@Test
+	public void incrementalRank() {
+
+		LeaderboardImpl leaderboard = createLeaderboard(ScoreStorage.Columnar);
+		Scoreboard scoreboard = leaderboard.getScoreboards().get(ScoreboardType.User);
+		Object calculatedTime = scoreboard.getCategory(categoryName).getCalculatedTime();
+
+		// The scores are repositioned in the index, the category is not recalculated
+		for (int i = 0; i < MAX_USERS; i++) {
+			service.update(leaderboard.getId(), "userId" + i, new Scorable(categoryName, MAX_USERS - 2 * i));
+		}
+		Assert.assertSame(calculatedTime, scoreboard.getCategory(categoryName).getCalculatedTime());
+
+		List<Score> scores = service.listDescending(leaderboard.getId(), ScoreboardType.User, categoryName, 1, MAX_USERS);
+		Assert.assertEquals(MAX_USERS, scores.size());
+		for (int i = 1; i < MAX_USERS; i++) {
+			Assert.assertTrue(scoreboard.getCategory(categoryName).compare(scores.get(i - 1), scores.get(i)) < 0);
+			Assert.assertEquals(i + 1, service.getRank(leaderboard.getId(), categoryName, scores.get(i).getEntryId()));
+		}
+	}
+
+
+	@Test
+	public void removedScore() {
+
+		LeaderboardImpl leaderboard = createLeaderboard(ScoreStorage.Columnar);
+		Score removed = leaderboard.getScore("userId7", categoryName);
+		long points = removed.getPoints();
+
+		// The row is reused by the next entry, the held score no longer writes to it
+		Assert.assertTrue(service.removeUser(leaderboard.getId(), "userId7"));
+		service.addUser(leaderboard.getId(), new User("newUser"));
+		removed.add(5);
+		Assert.assertEquals(points + 5, removed.getPoints());
+		Assert.assertEquals(0, leaderboard.getScore("newUser", categoryName).getPoints());
+	}
+
+
+	@Test
+	public void parallelRank() {
+
+		LeaderboardImpl leaderboard = service.create("parallel", Cycle.Custom);
+		leaderboard.setScoreStorage(ScoreStorage.Columnar);
+		leaderboard.setParallelCalculation(true);
+		leaderboard.addCategories(categoryName);
+		for (int i = 0; i < RANK_USERS; i++) {
+			service.addUser(leaderboard.getId(), new User("userId" + i));
+			leaderboard.getScore("userId" + i, categoryName).add(i % 100);
+		}
+		service.calculate(leaderboard.getId());
+
+		// Ties are ordered by entry id
+		List<Score> scores = leaderboard.getRankedScores(categoryName, ScoreboardType.User);
+		Assert.assertEquals(RANK_USERS, scores.size());
+		ScoreCategory category = leaderboard.getCategory(categoryName);
+		for (int i = 1; i < RANK_USERS; i++) {
+			Assert.assertTrue(category.compare(scores.get(i - 1), scores.get(i)) < 0);
+		}
+	}
+
+
+	/**
+	 * Compare the ranks against the default storage
+	 * @param storage - the storage engine
+	 */
+	private void validateStorage(ScoreStorage storage) {
+
+		LeaderboardImpl expected = createLeaderboard(ScoreStorage.Default);
+		LeaderboardImpl actual = createLeaderboard(storage);
+		Assert.assertEquals(storage, actual.getScoreStorage());
+
+		List<Score> expectedScores = service.listDescending(expected.getId(), ScoreboardType.User, categoryName, 1, MAX_USERS);
+		List<Score> actualScores = service.listDescending(actual.getId(), ScoreboardType.User, categoryName, 1, MAX_USERS);
+		Assert.assertEquals(MAX_USERS, actualScores.size());
+		for (int i = 0; i < MAX_USERS; i++) {
+			Assert.assertEquals(expectedScores.get(i).getEntryId(), actualScores.get(i).getEntryId());
+			Assert.assertEquals(expectedScores.get(i).getPoints(), actualScores.get(i).getPoints());
+		}
+
+		Assert.assertEquals(
+				expected.getScores("userId7").get(categoryName).getPoints(),
+				actual.getScores("userId7").get(categoryName).getPoints());
+	}
+
+
+	private LeaderboardImpl createLeaderboard(ScoreStorage storage) {
+
+		LeaderboardImpl leaderboard = service.create(storage.name(), Cycle.Custom);
+		leaderboard.setScoreStorage(storage);
+		leaderboard.addCategories(categoryName);
+		for (int i = 0; i < MAX_USERS; i++) {
+			service.addUser(leaderboard.getId(), new User("userId" + i));
+		}
+		for (int i = 0; i < MAX_USERS; i++) {
+			service.update(leaderboard.getId(), "userId" + i, new Scorable(categoryName, i % 17));
+			service.update(leaderboard.getId(), "userId" + i, new Scorable(categoryName, i));
+		}
+		service.calculate(leaderboard.getId());
+		return leaderboard;
+	}
+}
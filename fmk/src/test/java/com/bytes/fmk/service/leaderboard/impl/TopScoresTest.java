@@ -0,0 +1,132 @@
+package com.bytes.fmk.service.leaderboard.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.bytes.fmk.data.model.User;
+import com.bytes.fmk.service.leaderboard.Cycle;
+import com.bytes.fmk.service.leaderboard.Leaderboard;
+import com.bytes.fmk.service.leaderboard.Scorable;
+import com.bytes.fmk.service.leaderboard.Score;
+import com.bytes.fmk.service.leaderboard.ScoreCategory;
+import com.bytes.fmk.service.leaderboard.ScoreStorage;
+import com.bytes.fmk.service.leaderboard.ScoreboardType;
+
+public class TopScoresTest {
+
+	private static final int MAX_USERS = 500;
+	private static final int TOP_SCORES = 20;
+
+	private String categoryName = "Karma";
+	private LeaderboardServiceImpl service;
+	private Random random;
+
+	@Before
+	public void setup() {
+		service = new LeaderboardServiceImpl();
+		random = new Random(3);
+	}
+
+
+	@Test
+	public void topScores() {
+		validateTopScores(ScoreStorage.Default);
+	}
+
+
+	@Test
+	public void topScoresColumnar() {
+		validateTopScores(ScoreStorage.Columnar);
+	}
+
+
+	@Test
+	public void withoutCalculation() {
+
+		LeaderboardImpl leaderboard = createLeaderboard(ScoreStorage.Default);
+		leaderboard.setAutoUpdate(false);
+		for (int i = 0; i < MAX_USERS; i++) {
+			service.update(leaderboard.getId(), "userId" + i, new Scorable(categoryName, i));
+		}
+
+		// The full rank is never calculated
+		List<Score> top = service.listDescending(leaderboard.getId(), ScoreboardType.User, categoryName, 1, 3);
+		Assert.assertEquals(3, top.size());
+		Assert.assertEquals("userId" + (MAX_USERS - 1), top.get(0).getEntryId());
+		Assert.assertEquals("userId" + (MAX_USERS - 3), top.get(2).getEntryId());
+		Assert.assertNull(leaderboard.getRankedScores(categoryName, ScoreboardType.User));
+	}
+
+
+	@Test
+	public void removeUser() {
+
+		LeaderboardImpl leaderboard = createLeaderboard(ScoreStorage.Default);
+		for (int i = 0; i < MAX_USERS; i++) {
+			service.update(leaderboard.getId(), "userId" + i, new Scorable(categoryName, i));
+		}
+		service.calculate(leaderboard.getId());
+		service.listDescending(leaderboard.getId(), ScoreboardType.User, categoryName, 1, TOP_SCORES);
+
+		service.removeUser(leaderboard.getId(), "userId" + (MAX_USERS - 1));
+		List<Score> top = service.listDescending(leaderboard.getId(), ScoreboardType.User, categoryName, 1, TOP_SCORES);
+		Assert.assertEquals(TOP_SCORES, top.size());
+		Assert.assertEquals("userId" + (MAX_USERS - 2), top.get(0).getEntryId());
+		Assert.assertEquals("userId" + (MAX_USERS - 1 - TOP_SCORES), top.get(TOP_SCORES - 1).getEntryId());
+	}
+
+
+	private void validateTopScores(ScoreStorage storage) {
+
+		LeaderboardImpl leaderboard = createLeaderboard(storage);
+		service.calculate(leaderboard.getId());
+
+		for (int round = 0; round < 20; round++) {
+			for (int i = 0; i < MAX_USERS; i++) {
+				// Lowered scores can leave the view
+				int points = random.nextInt(100) - 40;
+				service.update(leaderboard.getId(), "userId" + random.nextInt(MAX_USERS), new Scorable(categoryName, points));
+			}
+
+			for (String name : new String[] {categoryName, Leaderboard.TOTAL}) {
+				List<Score> expected = sort(leaderboard, name);
+				List<Score> actual = service.listDescending(leaderboard.getId(), ScoreboardType.User, name, 1, 10);
+				Assert.assertEquals(10, actual.size());
+				for (int i = 0; i < actual.size(); i++) {
+					Assert.assertEquals(expected.get(i).getEntryId(), actual.get(i).getEntryId());
+					Assert.assertEquals(expected.get(i).getPoints(), actual.get(i).getPoints());
+				}
+			}
+		}
+	}
+
+
+	private List<Score> sort(LeaderboardImpl leaderboard, String name) {
+
+		ScoreCategory category = leaderboard.getCategory(name);
+		List<Score> scores = new ArrayList<>();
+		for (int i = 0; i < MAX_USERS; i++) {
+			scores.add(leaderboard.getScore("userId" + i, name));
+		}
+		scores.sort(category);
+		return scores;
+	}
+
+
+	private LeaderboardImpl createLeaderboard(ScoreStorage storage) {
+
+		LeaderboardImpl leaderboard = service.create(storage.name(), Cycle.Custom);
+		leaderboard.setScoreStorage(storage);
+		leaderboard.setTopScoreCount(TOP_SCORES);
+		leaderboard.addCategories(categoryName);
+		for (int i = 0; i < MAX_USERS; i++) {
+			service.addUser(leaderboard.getId(), new User("userId" + i));
+		}
+		return leaderboard;
+	}
+}
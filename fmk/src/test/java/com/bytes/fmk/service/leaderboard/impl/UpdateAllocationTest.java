@@ -0,0 +1,92 @@
+package com.bytes.fmk.service.leaderboard.impl;
+
+import java.lang.management.ManagementFactory;
+import java.time.OffsetDateTime;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+
+import com.bytes.fmk.data.model.User;
+import com.bytes.fmk.service.leaderboard.Cycle;
+import com.bytes.fmk.service.leaderboard.ledger.LedgerEntry;
+
+public class UpdateAllocationTest {
+
+	private static final int MAX_USERS = 100;
+	private static final int MAX_UPDATES = 20000;
+
+	/**
+	 * Bytes allocated per update with debug logging disabled
+	 */
+	private static final long ALLOCATION_BUDGET = 1024;
+
+	private String categoryName = "Karma";
+	private LeaderboardServiceImpl service;
+	private Logger logger;
+	private Level level;
+
+	@Before
+	public void setup() {
+		service = new LeaderboardServiceImpl();
+		logger = (Logger) LoggerFactory.getLogger("com.bytes.fmk");
+		level = logger.getLevel();
+		logger.setLevel(Level.INFO);
+	}
+
+
+	@After
+	public void teardown() {
+		logger.setLevel(level);
+	}
+
+
+	@Test
+	public void allocationPerUpdate() {
+
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+		Assume.assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+		threadBean.setThreadAllocatedMemoryEnabled(true);
+
+		LeaderboardImpl leaderboard = service.create("allocation", Cycle.Custom);
+		leaderboard.addCategories(categoryName);
+		for (int i = 0; i < MAX_USERS; i++) {
+			service.addUser(leaderboard.getId(), new User("userId" + i));
+		}
+		service.calculate(leaderboard.getId());
+
+		// Distinct times, the recordables are created up front
+		OffsetDateTime time = OffsetDateTime.now();
+		LedgerEntry[] entries = new LedgerEntry[MAX_UPDATES * 2];
+		for (int i = 0; i < entries.length; i++) {
+			entries[i] = new LedgerEntry(categoryName, i % 7 + 1, time.plusNanos(i * 1000L));
+		}
+
+		// Warm up
+		for (int i = 0; i < MAX_UPDATES; i++) {
+			service.update(leaderboard.getId(), "userId" + (i % MAX_USERS), entries[i]);
+		}
+
+		String[] userIds = new String[MAX_USERS];
+		for (int i = 0; i < MAX_USERS; i++) {
+			userIds[i] = "userId" + i;
+		}
+
+		long threadId = Thread.currentThread().getId();
+		long before = threadBean.getThreadAllocatedBytes(threadId);
+		for (int i = MAX_UPDATES; i < entries.length; i++) {
+			service.update(leaderboard.getId(), userIds[i % MAX_USERS], entries[i]);
+		}
+		long allocated = (threadBean.getThreadAllocatedBytes(threadId) - before) / MAX_UPDATES;
+
+		Assert.assertTrue("Allocated " + allocated + " bytes per update", allocated < ALLOCATION_BUDGET);
+	}
+}
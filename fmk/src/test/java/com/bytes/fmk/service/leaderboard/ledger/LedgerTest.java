@@ -1,9 +1,13 @@
 package com.bytes.fmk.service.leaderboard.ledger;
 
+import java.time.OffsetDateTime;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import org.junit.Assert;
 
+import com.bytes.fmk.service.leaderboard.Scorable;
+
 public class LedgerTest {
 
 	
@@ -22,4 +26,39 @@ public class LedgerTest {
 		Assert.assertEquals("category name", categoryName, userEntries.get(1).getCategoryName());
 		Assert.assertEquals("category name", categoryName, userEntries.get(2).getCategoryName());
 	}
+	
+	
+	/**
+	 * Validate the filtered streams of the ledger.
+	 * @param ledger - an empty ledger
+	 */
+	protected void validateStream(Ledger ledger) {
+		
+		OffsetDateTime now = OffsetDateTime.now();
+		for (int i = 0; i < 10; i++) {
+			ledger.add("record1", "user1", new Scorable("Cat1", 3, now.plusSeconds(i)));
+			ledger.add("record1", "user2", new Scorable("Cat2", 4, now.plusSeconds(i)));
+			ledger.add("record2", "user1", new Scorable("Cat1", 3, now.plusSeconds(i)));
+		}
+		Assert.assertEquals("Size", 30, ledger.getSize());
+		
+		Assert.assertEquals("All", 20, ledger.stream("record1", LedgerFilter.all()).count());
+		Assert.assertEquals("Unknown record", 0, ledger.stream("record3", LedgerFilter.all()).count());
+		Assert.assertEquals("Unknown user", 0, ledger.stream("record1", LedgerFilter.all().withUser("user3")).count());
+		
+		List<LedgerEntry> user2Entries = ledger.stream("record1", LedgerFilter.all().withUser("user2"))
+				.collect(Collectors.toList());
+		Assert.assertEquals("User", 10, user2Entries.size());
+		user2Entries.forEach(entry -> {
+			Assert.assertEquals("user2", entry.getUserId());
+			Assert.assertEquals("Cat2", entry.getCategoryName());
+			Assert.assertEquals(4, entry.getPoints());
+		});
+		
+		Assert.assertEquals("Category", 10, ledger.stream("record1", LedgerFilter.all().withCategory("cat1")).count());
+		Assert.assertEquals("Time", 6, ledger.stream("record1", 
+				LedgerFilter.all().withTime(now.plusSeconds(2), now.plusSeconds(5))).count());
+		Assert.assertEquals("All criteria", 3, ledger.stream("record1", LedgerFilter.all()
+				.withUser("user1").withCategory("Cat1").withTime(now.plusSeconds(7), null)).count());
+	}
 }
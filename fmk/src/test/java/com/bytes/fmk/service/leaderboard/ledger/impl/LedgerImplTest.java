@@ -12,6 +12,7 @@ import com.bytes.fmk.service.leaderboard.Scorable;
 import com.bytes.fmk.service.leaderboard.ledger.Ledger;
 import com.bytes.fmk.service.leaderboard.ledger.LedgerEntry;
 import com.bytes.fmk.service.leaderboard.ledger.LedgerTest;
+import com.bytes.fmk.service.persistence.Serializer;
 
 
 public class LedgerImplTest extends LedgerTest {
@@ -106,4 +107,67 @@ public class LedgerImplTest extends LedgerTest {
 		Assert.assertEquals("Record1 user count", 3, recordEntries1.keySet().size());
 		Assert.assertEquals("Record2 user count", 3, recordEntries2.keySet().size());
 	}
+	
+	
+	@Test
+	public void stream() throws Exception {
+		validateStream(ledger);
+	}
+	
+	
+	@Test
+	public void compact() throws Exception {
+		
+		OffsetDateTime now = OffsetDateTime.now();
+		for (int i = 0; i < 3; i++) {
+			ledger.add(record1, user1, new Scorable(category1, 3, now.plusNanos(i)));
+			ledger.add(record1, user1, new Scorable(category1, 3, now.minusDays(2).plusNanos(i)));
+			ledger.add(record2, user2, new Scorable(category2, 4, now.minusDays(3).plusNanos(i)));
+		}
+		
+		Ledger archive = new LedgerImpl();
+		Assert.assertEquals(6, ledger.compact(now.minusDays(1), archive));
+		Assert.assertEquals(3, ledger.getSize());
+		Assert.assertEquals(3, ledger.getUserEntries(record1, user1).size());
+		Assert.assertEquals(0, ledger.getUserEntries(record2, user2).size());
+		Assert.assertEquals(6, archive.getSize());
+		Assert.assertEquals(3, archive.getUserEntries(record2, user2).size());
+		
+		// The totals include the compacted entries, after deserialization too
+		Ledger deserialized = Serializer.fromJson(Serializer.toJson(ledger), 
+				LedgerSerializer.RESOURCE_ID, new LedgerSerializer());
+		for (Ledger actual : new Ledger[] {ledger, deserialized}) {
+			Assert.assertEquals(Long.valueOf(18), actual.getUserPoints(record1, user1, now.minusDays(3), now).get(category1));
+			Assert.assertEquals(Long.valueOf(9), actual.getUserPoints(record1, user1, now.minusDays(2), now.minusDays(2)).get(category1));
+			Assert.assertEquals(Long.valueOf(12), actual.getUserPoints(record2, user2, now.minusDays(3), now).get(category2));
+			Assert.assertEquals(3, actual.getSize());
+		}
+	}
+	
+	
+	@Test
+	public void rollup() throws Exception {
+		
+		OffsetDateTime now = OffsetDateTime.now();
+		for (int i = 0; i < 3; i++) {
+			ledger.add(record1, user1, new Scorable(category1, 3, now.plusNanos(i)));
+			ledger.add(record1, user2, new Scorable(category2, 4, now.minusDays(2).plusNanos(i)));
+		}
+		ledger.add(record1, user1, new Scorable(category1, 3, now));
+		
+		Assert.assertEquals(Long.valueOf(9), ledger.getUserPoints(record1, user1, now, now).get(category1));
+		Assert.assertEquals(1, ledger.getPoints(record1, now, now).size());
+		Assert.assertEquals(2, ledger.getPoints(record1, now.minusDays(2), now).size());
+		
+		// The size and the rollups are built again after deserialization
+		Ledger deserialized = Serializer.fromJson(Serializer.toJson(ledger), 
+				LedgerSerializer.RESOURCE_ID, new LedgerSerializer());
+		Assert.assertEquals(6, deserialized.getSize());
+		Assert.assertEquals(Long.valueOf(9), deserialized.getUserPoints(record1, user1, now, now).get(category1));
+		Assert.assertEquals(Long.valueOf(12), deserialized.getUserPoints(record1, user2, now.minusDays(2), now).get(category2));
+		
+		deserialized.add(record1, user1, new Scorable(category1, 3, now.plusSeconds(1)));
+		Assert.assertEquals(7, deserialized.getSize());
+		Assert.assertEquals(Long.valueOf(12), deserialized.getUserPoints(record1, user1, now, now.plusSeconds(1)).get(category1));
+	}
 }
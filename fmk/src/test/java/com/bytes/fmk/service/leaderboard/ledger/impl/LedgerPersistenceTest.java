@@ -1,13 +1,17 @@
 package com.bytes.fmk.service.leaderboard.ledger.impl;
 
+import java.time.OffsetDateTime;
+
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.bytes.fmk.service.Thinkr;
 import com.bytes.fmk.service.leaderboard.Scorable;
 import com.bytes.fmk.service.leaderboard.ledger.Ledger;
 import com.bytes.fmk.service.leaderboard.ledger.LedgerTest;
 import com.bytes.fmk.service.persistence.PersistenceMode;
+import com.bytes.fmk.service.persistence.PersistenceService;
 import com.bytes.fmk.service.persistence.Serializer;
 
 import mockit.Deencapsulation;
@@ -77,15 +81,72 @@ public class LedgerPersistenceTest extends LedgerTest {
 	@Test
 	public void saveAndLoad() {
 		
-		Assert.assertTrue("Local persistence", 
-				ledger.save(PersistenceMode.RedisLocal, LedgerSerializer.RESOURCE_ID));
+		Assert.assertTrue("Memory persistence", 
+				ledger.save(PersistenceMode.Memory, LedgerSerializer.RESOURCE_ID));
 		
 		Deencapsulation.setField(ledger, "id", null);
 		Deencapsulation.setField(ledger, "entries", null);
 		Deencapsulation.setField(ledger, "recordables", null);
 		Assert.assertTrue("Nulled instanced for loading", ledger.getId() == null);
 		
-		ledger.load(PersistenceMode.RedisLocal, LedgerSerializer.RESOURCE_ID);
+		ledger.load(PersistenceMode.Memory, LedgerSerializer.RESOURCE_ID);
 		validateUserEntries(3, scorable1.getCategoryName(), ledger.getUserEntries(record1, user1));
 	}
+
+	
+	@Test
+	public void saveAppends() {
+		
+		String ledgerId = "Ledger-appends";
+		PersistenceService datastore = Thinkr.INSTANCE.getPersistenceService(PersistenceMode.Memory);
+		LedgerImpl ledger = new LedgerImpl(ledgerId);
+		OffsetDateTime now = OffsetDateTime.now();
+		try {
+			// The first save is a full save
+			ledger.add(record1, user1, new Scorable("cat1", 3, now));
+			Assert.assertTrue(ledger.saveAppends(PersistenceMode.Memory, ledgerId));
+			
+			ledger.add(record1, user1, new Scorable("cat1", 3, now.plusSeconds(1)));
+			ledger.add(record2, user2, new Scorable("cat2", 4, now.plusSeconds(2)));
+			Assert.assertTrue(ledger.saveAppends(PersistenceMode.Memory, ledgerId));
+			
+			LedgerImpl loaded = (LedgerImpl) new LedgerImpl(ledgerId).load(PersistenceMode.Memory, ledgerId);
+			Assert.assertEquals(3, loaded.getSize());
+			Assert.assertEquals(2, loaded.getUserEntries(record1, user1).size());
+			Assert.assertEquals(4, loaded.getUserEntries(record2, user2).get(0).getPoints());
+			
+			// The full save holds the first entry, the appends hold the others
+			datastore.clear(ledgerId + LedgerImpl.APPENDS_SUFFIX);
+			Assert.assertEquals(1, new LedgerImpl(ledgerId).load(PersistenceMode.Memory, ledgerId).getSize());
+		} finally {
+			datastore.clear(ledgerId);
+			datastore.clear(ledgerId + LedgerImpl.APPENDS_SUFFIX);
+		}
+	}
+	
+	
+	@Test
+	public void appendLogFull() {
+		
+		String ledgerId = "Ledger-full";
+		PersistenceService datastore = Thinkr.INSTANCE.getPersistenceService(PersistenceMode.Memory);
+		LedgerImpl ledger = new LedgerImpl(ledgerId);
+		OffsetDateTime now = OffsetDateTime.now();
+		try {
+			Assert.assertTrue(ledger.saveAppends(PersistenceMode.Memory, ledgerId));
+			for (int i = 0; i <= LedgerImpl.APPEND_SLOTS; i++) {
+				ledger.add(record1, user1, new Scorable("cat1", 3, now.plusSeconds(i)));
+				Assert.assertTrue(ledger.saveAppends(PersistenceMode.Memory, ledgerId));
+			}
+			
+			// The batch after the last slot is a full save
+			int count = LedgerImpl.APPEND_SLOTS + 1;
+			Assert.assertEquals(count, new LedgerImpl(ledgerId).load(PersistenceMode.Memory, ledgerId).getSize());
+			datastore.clear(ledgerId + LedgerImpl.APPENDS_SUFFIX);
+			Assert.assertEquals(count, new LedgerImpl(ledgerId).load(PersistenceMode.Memory, ledgerId).getSize());
+		} finally {
+			datastore.clear(ledgerId);
+			datastore.clear(ledgerId + LedgerImpl.APPENDS_SUFFIX);
+		}
+	}
 }
@@ -0,0 +1,54 @@
+package com.bytes.fmk.service.leaderboard.ledger.impl;
+
+import java.time.OffsetDateTime;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.bytes.fmk.service.leaderboard.Cycle;
+import com.bytes.fmk.service.leaderboard.impl.util.LeaderboardUtil;
+
+public class LedgerRollupTest {
+
+	private OffsetDateTime start = LeaderboardUtil.getStartTime(Cycle.Weekly, OffsetDateTime.now());
+
+
+	@Test
+	public void alignedDays() {
+
+		LedgerRollup rollup = new LedgerRollup();
+		rollup.add("record1", "user1", "Cat1", 3, start.toEpochSecond());
+		rollup.add("record1", "user1", "Cat1", 3, start.plusHours(23).toEpochSecond());
+		rollup.add("record1", "user1", "Cat1", 3, start.plusDays(1).toEpochSecond());
+		rollup.add("record1", "user1", "Cat1", 3, start.minusSeconds(1).toEpochSecond());
+
+		OffsetDateTime dayStart = LeaderboardUtil.getStartTime(Cycle.Daily, start.plusHours(12));
+		Assert.assertEquals(Long.valueOf(6), rollup.getUserPoints("record1", "user1", dayStart, dayStart).get("Cat1"));
+		Assert.assertEquals(Long.valueOf(9), rollup.getUserPoints("record1", "user1", start, start.plusWeeks(1).minusSeconds(1)).get("Cat1"));
+		Assert.assertEquals(Long.valueOf(12), rollup.getUserPoints("record1", "user1", start.minusDays(1), start.plusDays(1)).get("Cat1"));
+	}
+
+
+	@Test
+	public void usersAndCategories() {
+
+		LedgerRollup rollup = new LedgerRollup();
+		for (int i = 0; i < 7; i++) {
+			rollup.add("record1", "user1", "Cat1", 3, start.plusDays(i).toEpochSecond());
+			rollup.add("record1", "user1", "Cat2", 4, start.plusDays(i).toEpochSecond());
+			rollup.add("record1", "user2", "Cat1", 5, start.plusDays(i).toEpochSecond());
+			rollup.add("record2", "user2", "Cat1", 5, start.plusDays(i).toEpochSecond());
+		}
+
+		Map<String, Map<String, Long>> points = rollup.getPoints("record1", start, start.plusWeeks(1).minusSeconds(1));
+		Assert.assertEquals(2, points.size());
+		Assert.assertEquals(Long.valueOf(21), points.get("user1").get("Cat1"));
+		Assert.assertEquals(Long.valueOf(28), points.get("user1").get("Cat2"));
+		Assert.assertEquals(Long.valueOf(35), points.get("user2").get("Cat1"));
+
+		Assert.assertTrue(rollup.getPoints("record3", start, start.plusWeeks(1)).isEmpty());
+		Assert.assertTrue(rollup.getUserPoints("record1", "user3", start, start.plusWeeks(1)).isEmpty());
+		Assert.assertTrue(rollup.getPoints("record1", start.plusWeeks(1), start).isEmpty());
+	}
+}
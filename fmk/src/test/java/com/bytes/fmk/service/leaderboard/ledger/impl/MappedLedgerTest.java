@@ -0,0 +1,206 @@
+package com.bytes.fmk.service.leaderboard.ledger.impl;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.bytes.fmk.service.leaderboard.Scorable;
+import com.bytes.fmk.service.leaderboard.ledger.LedgerEntry;
+import com.bytes.fmk.service.leaderboard.ledger.LedgerFilter;
+import com.bytes.fmk.service.leaderboard.ledger.LedgerTest;
+
+public class MappedLedgerTest extends LedgerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private String record1 = "record1";
+	private String record2 = "record2";
+
+	private String user1 = "user1";
+	private String user2 = "user2";
+	private String user3 = "user3";
+
+	private String category1 = "Cat1";
+	private String category2 = "Cat2";
+	private String category3 = "Cat3";
+
+	private Path directory;
+	private MappedLedger ledger;
+
+	@Before
+	public void setup() throws Exception {
+		directory = folder.newFolder("ledger").toPath();
+		ledger = new MappedLedger(directory, 4);
+	}
+
+
+	@After
+	public void teardown() throws Exception {
+		ledger.close();
+	}
+
+
+	@Test
+	public void addEntries() throws Exception {
+
+		int count = 3;
+		OffsetDateTime now = OffsetDateTime.now();
+		for (int i = 0; i < count; i++) {
+			ledger.add(record1, user1, new Scorable(category1, 3, now));
+		}
+
+		List<LedgerEntry> user1Entries = ledger.getUserEntries(record1, user1);
+		Assert.assertEquals("Add - multiple entries same record, same time",
+				1, user1Entries.size());
+
+		for (int i = 0; i < count; i++) {
+			ledger.add(record1, user2, new Scorable(category1, 3, now.plusMinutes(i)));
+		}
+		List<LedgerEntry> user2Entries = ledger.getUserEntries(record1, user2);
+		Assert.assertEquals("Add - multiple entries same record, different time",
+				count, user2Entries.size());
+		Assert.assertEquals(count + 1, ledger.getSize());
+		Assert.assertTrue(ledger.getUserEntries(record2, user1).isEmpty());
+	}
+
+
+	@Test
+	public void addRecord() throws Exception {
+
+		int count = 3;
+		OffsetDateTime now = OffsetDateTime.now();
+		for (int i = 0; i < count; i++) {
+			ledger.add(record1, user1, new Scorable(category1, 3, now.plusNanos(i)));
+			ledger.add(record1, user2, new Scorable(category2, 4, now.plusNanos(i)));
+			ledger.add(record1, user3, new Scorable(category3, 5, now.plusNanos(i)));
+
+			ledger.add(record2, user1, new Scorable(category1, 3, now.plusNanos(i)));
+			ledger.add(record2, user2, new Scorable(category2, 4, now.plusNanos(i)));
+			ledger.add(record2, user3, new Scorable(category3, 5, now.plusNanos(i)));
+		}
+
+		validateUserEntries(count, category1, ledger.getUserEntries(record2, user1));
+		validateUserEntries(count, category2, ledger.getUserEntries(record2, user2));
+		validateUserEntries(count, category3, ledger.getUserEntries(record2, user3));
+
+		Map<String, List<LedgerEntry>> recordEntries1 = ledger.getRecordEntries(record1);
+		Map<String, List<LedgerEntry>> recordEntries2 = ledger.getRecordEntries(record2);
+
+		Assert.assertEquals("Record1 user count", 3, recordEntries1.keySet().size());
+		Assert.assertEquals("Record2 user count", 3, recordEntries2.keySet().size());
+
+		// 18 entries in segments of 4
+		Assert.assertEquals(18, ledger.getSize());
+		Assert.assertTrue(Files.exists(directory.resolve("ledger-00004.seg")));
+	}
+
+
+	@Test
+	public void stream() throws Exception {
+		validateStream(ledger);
+	}
+
+
+	@Test
+	public void reopen() throws Exception {
+
+		OffsetDateTime now = OffsetDateTime.of(2018, 3, 1, 10, 30, 0, 123456789, ZoneOffset.ofHours(-8));
+		for (int i = 0; i < 10; i++) {
+			ledger.add(record1, user1, new Scorable(category1, i, now.plusSeconds(i)));
+		}
+		ledger.close();
+
+		ledger = new MappedLedger(directory, 4);
+		Assert.assertEquals(10, ledger.getSize());
+
+		List<LedgerEntry> entries = ledger.getUserEntries(record1, user1);
+		Assert.assertEquals(10, entries.size());
+		for (int i = 0; i < 10; i++) {
+			Assert.assertEquals(category1, entries.get(i).getCategoryName());
+			Assert.assertEquals(i, entries.get(i).getPoints());
+			Assert.assertEquals(now.plusSeconds(i), entries.get(i).getTime());
+		}
+
+		// Duplicates of reloaded entries are detected
+		ledger.add(record1, user1, new Scorable(category1, 0, now));
+		ledger.add(record1, user2, new Scorable(category2, 1, now));
+		Assert.assertEquals(11, ledger.getSize());
+	}
+
+
+	@Test
+	public void duplicates() throws Exception {
+
+		// The duplicates are the same recordable at the same instant, the offset aside
+		OffsetDateTime now = OffsetDateTime.of(2018, 5, 22, 10, 0, 0, 0, ZoneOffset.UTC);
+		for (int i = 0; i < 1000; i++) {
+			ledger.add(record1, user1, new Scorable(category1, 3, now.plusNanos(i)));
+		}
+		for (int i = 0; i < 1000; i++) {
+			ledger.add(record1, user1, new Scorable(category1, 3, now.plusNanos(i).withOffsetSameInstant(ZoneOffset.ofHours(2))));
+		}
+		Assert.assertEquals(1000, ledger.getSize());
+
+		// Another recordable at the same time is not a duplicate
+		ledger.add(record1, user1, new Scorable(category2, 3, now));
+		ledger.add(record1, user1, new Scorable(category1, 4, now));
+		Assert.assertEquals(1002, ledger.getSize());
+	}
+
+
+	@Test
+	public void outOfOrder() throws Exception {
+
+		// The entries of a user are sorted by time, the duplicates of earlier times are found
+		OffsetDateTime now = OffsetDateTime.of(2018, 5, 22, 10, 0, 0, 0, ZoneOffset.UTC);
+		for (int i = 9; i >= 0; i--) {
+			ledger.add(record1, user1, new Scorable(category1, 3, now.plusSeconds(i * 2)));
+		}
+		for (int i = 0; i < 10; i++) {
+			ledger.add(record1, user1, new Scorable(category1, 3, now.plusSeconds(i * 2)));
+			ledger.add(record1, user1, new Scorable(category1, 3, now.plusSeconds(i * 2 + 1)));
+		}
+		ledger.close();
+
+		ledger = new MappedLedger(directory, 4);
+		for (int i = 0; i < 20; i++) {
+			ledger.add(record1, user1, new Scorable(category1, 3, now.plusSeconds(i)));
+		}
+		Assert.assertEquals(20, ledger.getSize());
+
+		List<LedgerEntry> entries = ledger.getUserEntries(record1, user1);
+		for (int i = 0; i < 20; i++) {
+			Assert.assertEquals(now.plusSeconds(i), entries.get(i).getTime());
+		}
+	}
+
+
+	@Test
+	public void streamWhileAdding() throws Exception {
+
+		OffsetDateTime now = OffsetDateTime.now();
+		for (int i = 0; i < 100; i++) {
+			ledger.add(record1, user1, new Scorable(category1, i, now.plusSeconds(i)));
+		}
+
+		// The stream visits the entries of its creation, the entries added after are ignored
+		Stream<LedgerEntry> stream = ledger.stream(record1, LedgerFilter.all());
+		for (int i = 0; i < 100; i++) {
+			ledger.add(record1, "user" + i, new Scorable(category2, i, now.plusSeconds(i)));
+		}
+		Assert.assertEquals(100, stream.filter(entry -> user1.equals(entry.getUserId())).count());
+		Assert.assertEquals(200, ledger.stream(record1, LedgerFilter.all()).count());
+	}
+}
@@ -0,0 +1,72 @@
+package com.bytes.fmk.service.leaderboard.ledger.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RecordableDictionaryTest {
+
+	private static final int MAX_THREADS = 8;
+	private static final int MAX_RECORDABLES = 500;
+
+
+	@Test
+	public void ignoreCase() {
+
+		RecordableDictionary dictionary = new RecordableDictionary(null);
+		int id = dictionary.getId("Karma", 5);
+		Assert.assertEquals(id, dictionary.getId("karma", 5));
+		Assert.assertEquals(id, dictionary.getId("KARMA", 5));
+		Assert.assertNotEquals(id, dictionary.getId("Karma", 6));
+		Assert.assertEquals(2, dictionary.size());
+		Assert.assertEquals("Karma", dictionary.get(id).name);
+
+		Assert.assertEquals(new RecordableInfo("Karma", 5).hashCode(), new RecordableInfo("kARMA", 5).hashCode());
+	}
+
+
+	@Test
+	public void restore() {
+
+		List<RecordableInfo> recordables = Arrays.asList(
+				new RecordableInfo("Points", 1), new RecordableInfo("Karma", 1));
+		RecordableDictionary dictionary = new RecordableDictionary(recordables);
+		Assert.assertEquals(0, dictionary.getId("points", 1));
+		Assert.assertEquals(1, dictionary.getId("Karma", 1));
+		Assert.assertEquals(2, dictionary.getId("Karma", 2));
+	}
+
+
+	@Test
+	public void concurrentWriters() throws Exception {
+
+		RecordableDictionary dictionary = new RecordableDictionary(null);
+		ExecutorService executor = Executors.newFixedThreadPool(MAX_THREADS);
+		List<Future<int[]>> results = new ArrayList<>();
+		for (int t = 0; t < MAX_THREADS; t++) {
+			results.add(executor.submit(() -> {
+				int[] ids = new int[MAX_RECORDABLES];
+				for (int i = 0; i < MAX_RECORDABLES; i++) {
+					ids[i] = dictionary.getId("Category" + (i % 10), i);
+				}
+				return ids;
+			}));
+		}
+		executor.shutdown();
+
+		int[] expected = results.get(0).get();
+		for (Future<int[]> result : results) {
+			Assert.assertArrayEquals(expected, result.get());
+		}
+		Assert.assertEquals(MAX_RECORDABLES, dictionary.size());
+		for (int i = 0; i < MAX_RECORDABLES; i++) {
+			Assert.assertEquals(i, dictionary.get(expected[i]).points);
+		}
+	}
+}
@@ -0,0 +1,123 @@
+package com.bytes.fmk.service.leaderboard.ledger.impl;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.gson.Gson;
+
+public class TimelineTest {
+
+	private OffsetDateTime now = OffsetDateTime.of(2018, 3, 1, 10, 30, 0, 5, ZoneOffset.ofHours(-8));
+
+
+	@Test
+	public void duplicates() {
+
+		Timeline timeline = new Timeline();
+		for (int i = 0; i < 100; i++) {
+			Assert.assertTrue(timeline.add(now.plusSeconds(i)));
+		}
+		for (int i = 0; i < 100; i++) {
+			Assert.assertFalse(timeline.add(now.plusSeconds(i)));
+		}
+
+		// Same instant in another offset
+		Assert.assertFalse(timeline.add(now.withOffsetSameInstant(ZoneOffset.UTC)));
+		Assert.assertEquals(100, timeline.size());
+	}
+
+
+	@Test
+	public void outOfOrder() {
+
+		Timeline timeline = new Timeline();
+		int[] seconds = {5, 1, 9, 3, 7, 0, 8, 2, 6, 4};
+		for (int second : seconds) {
+			Assert.assertTrue(timeline.add(now.plusSeconds(second)));
+		}
+		Assert.assertFalse(timeline.add(now.plusSeconds(3)));
+
+		List<OffsetDateTime> times = timeline.getTimes();
+		Assert.assertEquals(seconds.length, times.size());
+		for (int i = 0; i < times.size(); i++) {
+			Assert.assertTrue(times.get(i).isEqual(now.plusSeconds(i)));
+		}
+	}
+
+
+	@Test
+	public void merge() {
+
+		// Reversed times are buffered and merged, the times of each merge are visible before
+		Timeline timeline = new Timeline();
+		for (int i = 999; i >= 0; i--) {
+			Assert.assertTrue(timeline.add(now.plusSeconds(i * 2)));
+			Assert.assertTrue(timeline.contains(Timeline.toEpochNanos(now.plusSeconds(i * 2))));
+		}
+		for (int i = 0; i < 2000; i++) {
+			Assert.assertEquals(i % 2 == 1, timeline.add(now.plusSeconds(i)));
+		}
+		Assert.assertEquals(2000, timeline.size());
+
+		List<OffsetDateTime> times = timeline.getTimes();
+		for (int i = 0; i < times.size(); i++) {
+			Assert.assertTrue(times.get(i).isEqual(now.plusSeconds(i)));
+		}
+		Assert.assertEquals(1000, timeline.removeBefore(Timeline.toEpochNanos(now.plusSeconds(1000))).length);
+	}
+
+
+	@Test
+	public void addUnique() {
+
+		Timeline timeline = new Timeline();
+		OffsetDateTime first = timeline.addUnique(now);
+		OffsetDateTime second = timeline.addUnique(now);
+		Assert.assertTrue(first.isEqual(now));
+		Assert.assertTrue(second.isEqual(now.plusNanos(1)));
+		Assert.assertEquals(2, timeline.size());
+	}
+
+
+	@Test
+	public void removeBefore() {
+
+		Timeline timeline = new Timeline();
+		for (int i = 0; i < 100; i++) {
+			timeline.add(now.plusSeconds(i));
+		}
+
+		long[] removed = timeline.removeBefore(Timeline.toEpochNanos(now.plusSeconds(90)));
+		Assert.assertEquals(90, removed.length);
+		Assert.assertEquals(Timeline.toEpochNanos(now), removed[0]);
+		Assert.assertEquals(10, timeline.size());
+		Assert.assertTrue(timeline.getTimes().get(0).isEqual(now.plusSeconds(90)));
+		Assert.assertEquals(0, timeline.removeBefore(Timeline.toEpochNanos(now)).length);
+
+		// Appends after the removal
+		Assert.assertTrue(timeline.add(now));
+		Assert.assertEquals(11, timeline.size());
+	}
+
+
+	@Test
+	public void json() {
+
+		Gson gson = new Gson();
+		Timeline timeline = new Timeline();
+		timeline.add(now);
+		timeline.add(now.plusSeconds(1));
+
+		Timeline deserialized = gson.fromJson(gson.toJson(timeline), Timeline.class);
+		Assert.assertEquals(timeline.getTimes(), deserialized.getTimes());
+
+		// Earlier versions persisted the times as strings
+		Timeline legacy = gson.fromJson("[\"2018-03-01T10:30:00.000000005-08:00\"]", Timeline.class);
+		Assert.assertEquals(1, legacy.size());
+		Assert.assertTrue(legacy.getTimes().get(0).isEqual(now));
+	}
+}
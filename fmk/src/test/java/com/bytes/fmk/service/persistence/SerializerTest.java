@@ -0,0 +1,84 @@
+package com.bytes.fmk.service.persistence;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.bytes.fmk.data.model.User;
+import com.bytes.fmk.service.leaderboard.Cycle;
+import com.bytes.fmk.service.leaderboard.impl.LeaderboardImpl;
+import com.bytes.fmk.service.leaderboard.impl.LeaderboardServiceImpl;
+import com.bytes.fmk.service.persistence.impl.BinaryCodec;
+
+public class SerializerTest {
+
+	@Test
+	public void streamJson() throws IOException {
+
+		LeaderboardServiceImpl service = new LeaderboardServiceImpl();
+		LeaderboardImpl leaderboard = service.create("stream", Cycle.Weekly);
+		leaderboard.addCategories("Karma");
+		for (int i = 0; i < 100; i++) {
+			service.addUser(leaderboard.getId(), new User("userId" + i, "Kënt中" + i));
+		}
+
+		// The streamed JSON is the JSON text
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		Serializer.encode(leaderboard, out);
+		Assert.assertArrayEquals(Serializer.toJson(leaderboard).getBytes(StandardCharsets.UTF_8), out.toByteArray());
+
+		DefaultSerializer serializer = new DefaultSerializer();
+		serializer.addMapping(leaderboard.getId(), LeaderboardImpl.class);
+		LeaderboardImpl loaded = serializer.getData(out.toByteArray(), leaderboard.getId());
+		Assert.assertEquals(leaderboard.getId(), loaded.getId());
+		Assert.assertEquals(leaderboard.getStartDate(), loaded.getStartDate());
+		for (int i = 0; i < 100; i++) {
+			Assert.assertNotNull(loaded.getScore("userId" + i, "Karma"));
+		}
+	}
+
+
+	@Test
+	public void streamUnclosed() throws IOException {
+
+		User user = new User("userId", "Kënt");
+		ClosingStream out = new ClosingStream();
+		Serializer.encode(user, out);
+		Assert.assertFalse(out.closed);
+		Assert.assertArrayEquals(Serializer.encode(user), out.toByteArray());
+
+		out = new ClosingStream();
+		Serializer.encode(user, out, new BinaryCodec(), null);
+		Assert.assertFalse(out.closed);
+		Assert.assertEquals("Kënt", new DefaultSerializer().<User>getData(out.toByteArray(), "User").getDisplayName());
+	}
+
+
+	@Test(expected = IOException.class)
+	public void streamFailure() throws IOException {
+		Serializer.encode(new User("userId"), new OutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				throw new IOException("Closed");
+			}
+		});
+	}
+
+
+	/**
+	 * Records the close of the stream
+	 */
+	private static class ClosingStream extends ByteArrayOutputStream {
+
+		private boolean closed;
+
+		@Override
+		public void close() {
+			closed = true;
+		}
+	}
+}
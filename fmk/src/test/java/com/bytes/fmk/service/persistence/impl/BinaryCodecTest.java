@@ -0,0 +1,161 @@
+package com.bytes.fmk.service.persistence.impl;
+
+import java.io.ByteArrayInputStream;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.bytes.fmk.data.model.User;
+import com.bytes.fmk.service.leaderboard.Cycle;
+import com.bytes.fmk.service.leaderboard.Scorable;
+import com.bytes.fmk.service.leaderboard.impl.LeaderboardImpl;
+import com.bytes.fmk.service.leaderboard.impl.LeaderboardServiceImpl;
+import com.bytes.fmk.service.leaderboard.ledger.impl.LedgerImpl;
+import com.bytes.fmk.service.persistence.DefaultSerializer;
+import com.bytes.fmk.service.persistence.Serializer;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.gson.reflect.TypeToken;
+
+public class BinaryCodecTest {
+
+	private static final int MAX_USERS = 1000;
+
+	private BinaryCodec codec;
+	private LeaderboardServiceImpl service;
+	private LeaderboardImpl leaderboard;
+
+	@Before
+	public void setup() {
+		codec = new BinaryCodec();
+		service = new LeaderboardServiceImpl();
+		leaderboard = service.create("binary", Cycle.Weekly);
+		leaderboard.addCategories("Karma", "Speed");
+		for (int i = 0; i < MAX_USERS; i++) {
+			service.addUser(leaderboard.getId(), new User("userId" + i));
+			service.update(leaderboard.getId(), "userId" + i, new Scorable("Karma", i));
+			service.update(leaderboard.getId(), "userId" + i, new Scorable("Speed", -i));
+		}
+	}
+
+
+	@Test
+	public void leaderboard() {
+
+		JsonElement tree = Serializer.toJsonTree(leaderboard);
+		byte[] encoded = encode(leaderboard);
+		Assert.assertTrue(codec.isEncoded(encoded));
+		Assert.assertEquals(tree, decode(encoded));
+
+		int jsonSize = Serializer.toJson(leaderboard).getBytes(StandardCharsets.UTF_8).length;
+		Assert.assertTrue("Compact " + encoded.length + " of " + jsonSize, encoded.length * 4 < jsonSize);
+
+		DefaultSerializer serializer = new DefaultSerializer();
+		serializer.addMapping(leaderboard.getId(), LeaderboardImpl.class);
+		LeaderboardImpl loaded = serializer.getData(encoded, leaderboard.getId());
+		Assert.assertEquals(leaderboard.getStartDate(), loaded.getStartDate());
+		for (int i = 0; i < MAX_USERS; i++) {
+			Assert.assertEquals(i, loaded.getScore("userId" + i, "Karma").getPoints());
+			Assert.assertEquals(-i, loaded.getScore("userId" + i, "Speed").getPoints());
+		}
+	}
+
+
+	@Test
+	public void ledger() {
+
+		LedgerImpl ledger = new LedgerImpl();
+		OffsetDateTime now = OffsetDateTime.now();
+		for (int i = 0; i < MAX_USERS; i++) {
+			ledger.add("record1", "userId" + (i % 10), new Scorable("Karma", 3, now.plusNanos(i * 1000)));
+		}
+
+		JsonElement tree = Serializer.toJsonTree(ledger);
+		byte[] encoded = encode(ledger);
+		Assert.assertEquals(tree, decode(encoded));
+
+		int jsonSize = Serializer.toJson(ledger).getBytes(StandardCharsets.UTF_8).length;
+		Assert.assertTrue("Compact " + encoded.length + " of " + jsonSize, encoded.length * 4 < jsonSize);
+
+		DefaultSerializer serializer = new DefaultSerializer();
+		serializer.addMapping("Ledger", LedgerImpl.class);
+		LedgerImpl loaded = serializer.getData(encoded, "Ledger");
+		Assert.assertEquals(MAX_USERS, loaded.getSize());
+		Assert.assertEquals(MAX_USERS / 10, loaded.getUserEntries("record1", "userId1").size());
+	}
+
+
+	@Test
+	public void values() {
+
+		String json = "{\"a\":[1,-2,9223372036854775807,-9223372036854775808],\"b\":[1.5,\"x\",null,true,false],"
+				+ "\"c\":\"2018-05-22T10:12:37Z\",\"d\":\"2018-05-22T10:12:37.123+02:00\",\"e\":\"2018-05-22T10:12:37+0200\","
+				+ "\"f\":12345678901234567890,\"g\":[],\"h\":{},\"x\":\"x\"}";
+		JsonElement tree = Serializer.toJsonTree(new JsonParser().parse(json));
+		Assert.assertEquals(tree, decode(encode(tree)));
+	}
+
+
+	@Test
+	public void mapKeys() throws Exception {
+
+		// The map adapter reads the names as values, the keys are converted by their adapter
+		Map<String, Map<Integer, List<Long>>> maps = new TreeMap<>();
+		for (int i = 0; i < 3; i++) {
+			Map<Integer, List<Long>> values = new TreeMap<>();
+			for (int j = 0; j < i; j++) {
+				values.put(j - 1, new ArrayList<>(Arrays.asList(3L * j, 1L, -4L)));
+			}
+			maps.put("map" + i, values);
+		}
+		Type type = new TypeToken<Map<String, Map<Integer, List<Long>>>>() {}.getType();
+
+		Map<String, Map<Integer, List<Long>>> decoded = codec.decode(new ByteArrayInputStream(encode(maps)), type);
+		Assert.assertEquals(maps, decoded);
+	}
+
+
+	@Test
+	public void compatibility() {
+
+		User user = new User("Kent");
+		DefaultSerializer serializer = new DefaultSerializer();
+		byte[] json = Serializer.encode(user);
+		Assert.assertFalse(codec.isEncoded(json));
+		Assert.assertEquals("Kent", serializer.<User>getData(json, "User").getDisplayName());
+
+		// The binary data is decoded by any serializer, the codec is selected on encode only
+		byte[] binary = Serializer.encode(user, codec, null);
+		Assert.assertTrue(codec.isEncoded(binary));
+		Assert.assertEquals("Kent", serializer.<User>getData(binary, "User").getDisplayName());
+	}
+
+
+	@Test
+	public void truncated() {
+		byte[] encoded = encode(leaderboard);
+		Assert.assertNull(decode(Arrays.copyOf(encoded, encoded.length / 2)));
+		Assert.assertNull(decode(Arrays.copyOf(encoded, encoded.length + 1)));
+	}
+
+
+	private JsonElement decode(byte[] data) {
+		DefaultSerializer serializer = new DefaultSerializer();
+		serializer.addMapping("Tree", JsonElement.class);
+		return serializer.getData(data, "Tree");
+	}
+
+
+	private byte[] encode(Object data) {
+		return Serializer.encode(data, codec, null);
+	}
+}
@@ -0,0 +1,129 @@
+package com.bytes.fmk.service.persistence.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.bytes.fmk.data.model.User;
+import com.bytes.fmk.service.leaderboard.Cycle;
+import com.bytes.fmk.service.leaderboard.Scorable;
+import com.bytes.fmk.service.leaderboard.impl.LeaderboardImpl;
+import com.bytes.fmk.service.leaderboard.impl.LeaderboardServiceImpl;
+import com.bytes.fmk.service.persistence.DefaultSerializer;
+import com.bytes.fmk.service.persistence.Serializer;
+
+public class DeflateCompressionTest {
+
+	private static final int MAX_USERS = 1000;
+
+	private DeflateCompression compression;
+	private LeaderboardImpl leaderboard;
+	private DefaultSerializer serializer;
+
+	@Before
+	public void setup() {
+		compression = new DeflateCompression();
+		LeaderboardServiceImpl service = new LeaderboardServiceImpl();
+		leaderboard = service.create("deflate", Cycle.Weekly);
+		leaderboard.addCategories("Karma", "Speed");
+		for (int i = 0; i < MAX_USERS; i++) {
+			service.addUser(leaderboard.getId(), new User("userId" + i));
+			service.update(leaderboard.getId(), "userId" + i, new Scorable("Karma", i));
+		}
+		serializer = new DefaultSerializer();
+		serializer.addMapping(leaderboard.getId(), LeaderboardImpl.class);
+	}
+
+
+	@Test
+	public void json() {
+
+		byte[] json = Serializer.encode(leaderboard);
+		byte[] compressed = Serializer.encode(leaderboard, compression);
+		Assert.assertTrue(compression.isCompressed(compressed));
+		Assert.assertTrue("Compressed " + compressed.length + " of " + json.length, compressed.length * 4 < json.length);
+		assertLoaded(serializer.getData(compressed, leaderboard.getId()));
+	}
+
+
+	@Test
+	public void binary() {
+
+		BinaryCodec codec = new BinaryCodec();
+		byte[] binary = Serializer.encode(leaderboard, codec, null);
+		byte[] compressed = Serializer.encode(leaderboard, codec, compression);
+		Assert.assertTrue(compressed.length < binary.length);
+		assertLoaded(serializer.getData(compressed, leaderboard.getId()));
+	}
+
+
+	@Test
+	public void compatibility() {
+
+		// The uncompressed data are still loaded
+		User user = new User("Kent");
+		DefaultSerializer userSerializer = new DefaultSerializer();
+		byte[] json = Serializer.encode(user);
+		Assert.assertFalse(compression.isCompressed(json));
+		Assert.assertEquals("Kent", userSerializer.<User>getData(json, "User").getDisplayName());
+
+		BinaryCodec codec = new BinaryCodec();
+		byte[] binary = Serializer.encode(user, codec, null);
+		Assert.assertFalse(compression.isCompressed(binary));
+		Assert.assertEquals("Kent", userSerializer.<User>getData(binary, "User").getDisplayName());
+		Assert.assertEquals("Kent", userSerializer.<User>getData(Serializer.encode(user, codec, compression), "User").getDisplayName());
+	}
+
+
+	@Test
+	public void levels() {
+
+		byte[] fastest = Serializer.encode(leaderboard, compression);
+		byte[] smallest = Serializer.encode(leaderboard, new DeflateCompression(9));
+		Assert.assertTrue(smallest.length <= fastest.length);
+		assertLoaded(serializer.getData(smallest, leaderboard.getId()));
+	}
+
+
+	@Test
+	public void stream() throws IOException {
+
+		// The stream inflates to the encoded data, byte by byte
+		byte[] json = Serializer.encode(leaderboard);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] compressed = Serializer.encode(leaderboard, compression);
+		try (InputStream in = compression.newInputStream(new ByteArrayInputStream(compressed))) {
+			int read;
+			while ((read = in.read()) >= 0) {
+				out.write(read);
+			}
+		}
+		Assert.assertArrayEquals(json, out.toByteArray());
+	}
+
+
+	@Test
+	public void corrupted() {
+
+		byte[] compressed = Serializer.encode(leaderboard, compression);
+		Assert.assertNull(serializer.getData(Arrays.copyOf(compressed, compressed.length / 2), leaderboard.getId()));
+		Assert.assertNull(serializer.getData(Arrays.copyOf(compressed, compressed.length + 1), leaderboard.getId()));
+
+		compressed[compressed.length / 2] ^= 0x55;
+		Assert.assertNull(serializer.getData(compressed, leaderboard.getId()));
+	}
+
+
+	private void assertLoaded(LeaderboardImpl loaded) {
+		Assert.assertEquals(leaderboard.getStartDate(), loaded.getStartDate());
+		for (int i = 0; i < MAX_USERS; i++) {
+			Assert.assertEquals(i, loaded.getScore("userId" + i, "Karma").getPoints());
+		}
+	}
+}
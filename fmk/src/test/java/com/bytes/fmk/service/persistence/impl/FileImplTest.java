@@ -0,0 +1,199 @@
+package com.bytes.fmk.service.persistence.impl;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.bytes.fmk.data.model.User;
+import com.bytes.fmk.service.leaderboard.Cycle;
+import com.bytes.fmk.service.leaderboard.Scorable;
+import com.bytes.fmk.service.leaderboard.impl.LeaderboardImpl;
+import com.bytes.fmk.service.leaderboard.impl.LeaderboardServiceImpl;
+import com.bytes.fmk.service.persistence.DefaultSerializer;
+
+public class FileImplTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private FileImpl datastore;
+
+	@Before
+	public void setup() {
+		datastore = new FileImpl(folder.getRoot().toPath().resolve("data"));
+	}
+
+
+	@Test
+	public void saveData() throws IOException {
+
+		Assert.assertTrue(datastore.saveData("User", new User("Kent")));
+		Assert.assertTrue(datastore.saveData("User", new User("Kydan")));
+		Assert.assertEquals("Kydan", datastore.<User>loadData("User", new DefaultSerializer()).getDisplayName());
+		Assert.assertNull(datastore.loadData("Unknown", new DefaultSerializer()));
+
+		// The temporary files are renamed
+		try (Stream<Path> files = Files.list(datastore.getDirectory())) {
+			Assert.assertEquals(1, files.count());
+		}
+	}
+
+
+	@Test
+	public void mappedSnapshot() {
+
+		LeaderboardServiceImpl service = new LeaderboardServiceImpl();
+		LeaderboardImpl leaderboard = service.create("file", Cycle.Weekly);
+		leaderboard.addCategories("Karma");
+		for (int i = 0; i < 1000; i++) {
+			service.addUser(leaderboard.getId(), new User("userId" + i));
+			service.update(leaderboard.getId(), "userId" + i, new Scorable("Karma", i));
+		}
+
+		DefaultSerializer serializer = new DefaultSerializer();
+		serializer.addMapping(leaderboard.getId(), LeaderboardImpl.class);
+		Assert.assertTrue(datastore.saveData(leaderboard.getId(), leaderboard));
+		LeaderboardImpl loaded = datastore.loadData(leaderboard.getId(), serializer);
+		for (int i = 0; i < 1000; i++) {
+			Assert.assertEquals(i, loaded.getScore("userId" + i, "Karma").getPoints());
+		}
+
+		datastore.setCompression(new DeflateCompression());
+		Assert.assertTrue(datastore.saveData(leaderboard.getId(), leaderboard));
+		loaded = datastore.loadData(leaderboard.getId(), serializer);
+		Assert.assertEquals(999, loaded.getScore("userId999", "Karma").getPoints());
+	}
+
+
+	@Test
+	public void saveMap() throws IOException {
+
+		Map<String, User> users = new HashMap<>();
+		users.put("1", new User("Kent"));
+		users.put("../2.data", new User("Kydan"));
+		Assert.assertTrue(datastore.saveMap("Users:*", users));
+
+		users.clear();
+		users.put("1", new User("Kaelyn"));
+		Assert.assertTrue(datastore.saveMap("Users:*", users));
+
+		DefaultSerializer serializer = new DefaultSerializer();
+		serializer.addMapping("Users:*", User.class);
+		Map<String, User> loaded = datastore.loadMap("Users:*", serializer);
+		Assert.assertEquals(2, loaded.size());
+		Assert.assertEquals("Kaelyn", loaded.get("1").getDisplayName());
+		Assert.assertEquals("Kydan", loaded.get("../2.data").getDisplayName());
+		Assert.assertTrue(datastore.loadMap("Unknown", new DefaultSerializer()).isEmpty());
+
+		// The map is a single log
+		try (Stream<Path> files = Files.list(datastore.getDirectory())) {
+			Assert.assertEquals(1, files.count());
+		}
+	}
+
+
+	@Test
+	public void mappedMap() {
+
+		// The fields of a mapped snapshot are decoded in place
+		Map<String, User> users = new HashMap<>();
+		for (int i = 0; i < 2000; i++) {
+			users.put("userId" + i, new User("userId" + i, "Kent" + i));
+		}
+		datastore.setCompression(new DeflateCompression());
+		Assert.assertTrue(datastore.saveMap("Users", users));
+		datastore.setCompression(null);
+		Assert.assertTrue(datastore.saveMap("Users", Collections.singletonMap("userId0", new User("userId0", "Kydan"))));
+
+		DefaultSerializer serializer = new DefaultSerializer();
+		serializer.addMapping("Users", User.class);
+		Map<String, User> loaded = datastore.loadMap("Users", serializer);
+		Assert.assertEquals(2000, loaded.size());
+		Assert.assertEquals("Kydan", loaded.get("userId0").getDisplayName());
+		Assert.assertEquals("Kent1999", loaded.get("userId1999").getDisplayName());
+	}
+
+
+	@Test
+	public void appendMap() throws IOException {
+
+		Path file = datastore.getDirectory().resolve("Users.map");
+		Assert.assertTrue(datastore.saveMap("Users", Collections.singletonMap("1", new User("1", "Kent"))));
+		long size = Files.size(file);
+		Assert.assertTrue(datastore.saveMap("Users", Collections.singletonMap("1", new User("1", "Kydan"))));
+
+		// The saved field is appended, the previous fields are not rewritten
+		Assert.assertEquals(2 * size + 1, Files.size(file));
+		DefaultSerializer serializer = new DefaultSerializer();
+		serializer.addMapping("Users", User.class);
+		Assert.assertEquals("Kydan", datastore.<User>loadMap("Users", serializer).get("1").getDisplayName());
+	}
+
+
+	@Test
+	public void compactMap() throws IOException {
+
+		StringBuilder name = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			name.append('K');
+		}
+		for (int i = 0; i < 4000; i++) {
+			Assert.assertTrue(datastore.saveMap("Users", Collections.singletonMap("userId" + (i % 10), new User("userId", name + "" + i))));
+		}
+
+		// The log is compacted into its last fields when it grows
+		Assert.assertTrue(Files.size(datastore.getDirectory().resolve("Users.map")) < 2 << 20);
+		DefaultSerializer serializer = new DefaultSerializer();
+		serializer.addMapping("Users", User.class);
+		Map<String, User> loaded = datastore.loadMap("Users", serializer);
+		Assert.assertEquals(10, loaded.size());
+		Assert.assertEquals(name + "3999", loaded.get("userId9").getDisplayName());
+	}
+
+
+	@Test
+	public void partialField() throws IOException {
+
+		Path file = datastore.getDirectory().resolve("Users.map");
+		Assert.assertTrue(datastore.saveMap("Users", Collections.singletonMap("1", new User("1", "Kent"))));
+		long size = Files.size(file);
+		Files.write(file, new byte[] {0, 0, 0, 9, 'u'}, StandardOpenOption.APPEND);
+
+		// The partial field of a crash is discarded and truncated by the next save
+		DefaultSerializer serializer = new DefaultSerializer();
+		serializer.addMapping("Users", User.class);
+		Assert.assertEquals(1, datastore.loadMap("Users", serializer).size());
+		Assert.assertTrue(datastore.saveMap("Users", Collections.singletonMap("2", new User("2", "Kate"))));
+		Assert.assertEquals(2 * size, Files.size(file));
+		Map<String, User> loaded = datastore.loadMap("Users", serializer);
+		Assert.assertEquals("Kent", loaded.get("1").getDisplayName());
+		Assert.assertEquals("Kate", loaded.get("2").getDisplayName());
+	}
+
+
+	@Test
+	public void clear() {
+
+		datastore.saveData("User", new User("Kent"));
+		datastore.saveMap("User", Collections.singletonMap("1", new User("Kent")));
+		Assert.assertTrue(datastore.clear("User"));
+		Assert.assertNull(datastore.loadData("User", new DefaultSerializer()));
+		Assert.assertTrue(datastore.loadMap("User", new DefaultSerializer()).isEmpty());
+		Assert.assertFalse(datastore.clear("User"));
+
+		// The log is started again
+		datastore.saveMap("User", Collections.singletonMap("2", new User("Kydan")));
+		Assert.assertEquals(1, datastore.loadMap("User", new DefaultSerializer()).size());
+	}
+}
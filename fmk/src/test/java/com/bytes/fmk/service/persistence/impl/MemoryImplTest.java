@@ -0,0 +1,93 @@
+package com.bytes.fmk.service.persistence.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.bytes.fmk.data.model.User;
+import com.bytes.fmk.service.Thinkr;
+import com.bytes.fmk.service.leaderboard.Cycle;
+import com.bytes.fmk.service.leaderboard.Scorable;
+import com.bytes.fmk.service.leaderboard.impl.LeaderboardImpl;
+import com.bytes.fmk.service.leaderboard.impl.LeaderboardServiceImpl;
+import com.bytes.fmk.service.persistence.DefaultSerializer;
+import com.bytes.fmk.service.persistence.PersistenceMode;
+
+public class MemoryImplTest {
+
+	private MemoryImpl datastore;
+
+	@Before
+	public void setup() {
+		datastore = new MemoryImpl();
+	}
+
+
+	@Test
+	public void saveData() {
+
+		Assert.assertTrue(datastore.saveData("User", new User("Kent")));
+		Assert.assertEquals("Kent", datastore.<User>loadData("User", new DefaultSerializer()).getDisplayName());
+		Assert.assertNull(datastore.loadData("Unknown", new DefaultSerializer()));
+
+		Map<String, User> users = new HashMap<>();
+		users.put("1", new User("Kent"));
+		users.put("2", new User("Kydan"));
+		Assert.assertTrue(datastore.saveMap("User", users));
+		Assert.assertEquals(2, datastore.loadMap("User", new DefaultSerializer()).size());
+
+		Assert.assertTrue(datastore.clear("User"));
+		Assert.assertFalse(datastore.clear("User"));
+		Assert.assertEquals(7, datastore.getRoundTripCount());
+	}
+
+
+	@Test
+	public void simulatedNetwork() {
+
+		Map<String, User> users = new HashMap<>();
+		for (int i = 0; i < 10; i++) {
+			users.put("User" + i, new User("Kent" + i));
+		}
+
+		// The pipelined saves are one round trip
+		datastore.setLatency(20, TimeUnit.MILLISECONDS);
+		long start = System.nanoTime();
+		datastore.saveAll(users);
+		long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		Assert.assertTrue("Elapsed " + elapsed, elapsed >= 20 && elapsed < 200);
+
+		// 1 KB per second
+		datastore.setLatency(0, TimeUnit.MILLISECONDS);
+		datastore.setBandwidth(1000);
+		long size = datastore.getBytesWritten() / users.size();
+		start = System.nanoTime();
+		datastore.loadData("User1", new DefaultSerializer());
+		elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		Assert.assertTrue("Elapsed " + elapsed + " for " + size, elapsed >= size - 5);
+	}
+
+
+	@Test
+	public void leaderboard() {
+
+		LeaderboardServiceImpl service = new LeaderboardServiceImpl();
+		LeaderboardImpl leaderboard = service.create("memory", Cycle.Weekly);
+		leaderboard.addCategories("Karma");
+		for (int i = 0; i < 100; i++) {
+			service.addUser(leaderboard.getId(), new User("userId" + i));
+			service.update(leaderboard.getId(), "userId" + i, new Scorable("Karma", i));
+		}
+
+		Assert.assertTrue(Thinkr.INSTANCE.getPersistenceService(PersistenceMode.Memory) instanceof MemoryImpl);
+		Assert.assertTrue(service.save(leaderboard, PersistenceMode.Memory));
+		LeaderboardImpl loaded = new LeaderboardServiceImpl().load(leaderboard.getId(), PersistenceMode.Memory);
+		for (int i = 0; i < 100; i++) {
+			Assert.assertEquals(i, loaded.getScore("userId" + i, "Karma").getPoints());
+		}
+	}
+}
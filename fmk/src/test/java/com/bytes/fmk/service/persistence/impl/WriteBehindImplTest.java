@@ -0,0 +1,249 @@
+package com.bytes.fmk.service.persistence.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.bytes.fmk.data.model.User;
+import com.bytes.fmk.service.persistence.DefaultSerializer;
+import com.bytes.fmk.service.persistence.PersistenceService;
+import com.bytes.fmk.service.persistence.Serializer;
+
+public class WriteBehindImplTest {
+
+	private MapStore datastore;
+	private WriteBehindImpl writeBehind;
+
+	@Before
+	public void setup() {
+		datastore = new MapStore();
+		writeBehind = new WriteBehindImpl(datastore, 60000, 1000);
+	}
+
+	@After
+	public void teardown() {
+		writeBehind.shutdown();
+	}
+
+
+	@Test
+	public void coalesceSaves() {
+
+		User user = new User("Kent");
+		for (int i = 0; i < 10; i++) {
+			user.setDisplayName("Kent" + i);
+			Assert.assertTrue(writeBehind.saveData("User", user));
+		}
+		Assert.assertEquals(1, writeBehind.getQueueDepth());
+		Assert.assertEquals(0, datastore.writes);
+
+		// The data is serialized on flush
+		user.setDisplayName("Flushed");
+		Assert.assertTrue(writeBehind.flush());
+		Assert.assertEquals(1, datastore.writes);
+		Assert.assertEquals(10, writeBehind.getQueuedCount());
+		Assert.assertEquals(9, writeBehind.getCoalescedCount());
+		Assert.assertEquals(1, writeBehind.getWrittenCount());
+		Assert.assertEquals(0, writeBehind.getQueueDepth());
+		Assert.assertEquals("Flushed", writeBehind.<User>loadData("User", new DefaultSerializer()).getDisplayName());
+	}
+
+
+	@Test
+	public void mergeMaps() {
+
+		Map<String, User> users = new HashMap<>();
+		users.put("1", new User("Kent"));
+		users.put("2", new User("Kydan"));
+		writeBehind.saveMap("User", users);
+
+		users.clear();
+		users.put("2", new User("Kaelyn"));
+		writeBehind.saveMap("User", users);
+
+		// Loading writes the queued fields first
+		Map<String, User> loaded = writeBehind.loadMap("User", new DefaultSerializer());
+		Assert.assertEquals(1, datastore.writes);
+		Assert.assertEquals(2, loaded.size());
+		Assert.assertEquals("Kent", loaded.get("1").getDisplayName());
+		Assert.assertEquals("Kaelyn", loaded.get("2").getDisplayName());
+	}
+
+
+	@Test
+	public void requeueFailedWrites() {
+
+		writeBehind.saveData("User", new User("Kent"));
+		datastore.failing = true;
+		Assert.assertFalse(writeBehind.flush());
+		Assert.assertEquals(1, writeBehind.getFailedCount());
+		Assert.assertEquals(1, writeBehind.getQueueDepth());
+
+		// The newer save is kept
+		writeBehind.saveData("User", new User("Kydan"));
+		datastore.failing = false;
+		Assert.assertTrue(writeBehind.flush());
+		Assert.assertEquals("Kydan", writeBehind.<User>loadData("User", new DefaultSerializer()).getDisplayName());
+	}
+
+
+	@Test
+	public void requeueThrownWrites() {
+
+		Map<String, User> users = new HashMap<>();
+		users.put("1", new User("Kent"));
+		writeBehind.saveData("User", new User("Kent"));
+		writeBehind.saveMap("Users", users);
+		datastore.throwing = true;
+		Assert.assertFalse(writeBehind.flush());
+		Assert.assertEquals(2, writeBehind.getFailedCount());
+		Assert.assertEquals(2, writeBehind.getQueueDepth());
+
+		datastore.throwing = false;
+		Assert.assertTrue(writeBehind.flush());
+		Assert.assertEquals(0, writeBehind.getQueueDepth());
+		Assert.assertEquals("Kent", writeBehind.<User>loadData("User", new DefaultSerializer()).getId());
+		Assert.assertEquals(1, datastore.maps.get("Users").size());
+	}
+
+
+	@Test
+	public void clearQueued() {
+
+		writeBehind.saveData("User", new User("Kent"));
+		Assert.assertFalse(writeBehind.clear("User"));
+		Assert.assertTrue(writeBehind.flush());
+		Assert.assertEquals(0, datastore.writes);
+	}
+
+
+	@Test
+	public void flushOnThreshold() throws InterruptedException {
+
+		writeBehind.shutdown();
+		writeBehind = new WriteBehindImpl(datastore, 60000, 10);
+		for (int i = 0; i < 10; i++) {
+			writeBehind.saveData("User" + i, new User("Kent" + i));
+		}
+
+		long deadline = System.currentTimeMillis() + 5000;
+		while (datastore.values.size() < 10 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		Assert.assertEquals(10, datastore.values.size());
+		Assert.assertEquals(1, datastore.batches);
+	}
+
+
+	@Test
+	public void flushOnShutdown() {
+
+		writeBehind.saveData("User", new User("Kent"));
+		Assert.assertTrue(writeBehind.getLagMillis() >= 0);
+		Assert.assertTrue(writeBehind.shutdown());
+		Assert.assertEquals(1, datastore.writes);
+		Assert.assertEquals(0, writeBehind.getLagMillis());
+		Assert.assertFalse("Stopped", writeBehind.saveData("User", new User("Kydan")));
+	}
+
+
+	@Test
+	public void encodingOfDatastore() {
+
+		Assert.assertFalse("Not supported", writeBehind.setCodec(new BinaryCodec()));
+		Assert.assertNull(writeBehind.getCodec());
+
+		MemoryImpl memory = new MemoryImpl();
+		WriteBehindImpl memoryWriteBehind = new WriteBehindImpl(memory, 60000, 1000);
+		try {
+			BinaryCodec codec = new BinaryCodec();
+			DeflateCompression compression = new DeflateCompression();
+			Assert.assertTrue(memoryWriteBehind.setCodec(codec));
+			Assert.assertTrue(memoryWriteBehind.setCompression(compression));
+			Assert.assertSame(codec, memory.getCodec());
+			Assert.assertSame(compression, memory.getCompression());
+
+			memoryWriteBehind.saveData("User", new User("Kent"));
+			Assert.assertEquals("Kent", memoryWriteBehind.<User>loadData("User", new DefaultSerializer()).getId());
+		} finally {
+			memoryWriteBehind.shutdown();
+		}
+	}
+
+
+	/**
+	 * Stores the JSON values in memory
+	 */
+	private static class MapStore implements PersistenceService {
+
+		private Map<String, String> values = new HashMap<>();
+		private Map<String, Map<String, String>> maps = new HashMap<>();
+		private int writes;
+		private int batches;
+		private boolean failing;
+		private boolean throwing;
+
+		@Override
+		public synchronized <D> boolean saveData(String resourceId, D data) {
+			if (throwing) {
+				throw new IllegalStateException("Datastore is down");
+			}
+			if (failing) {
+				return false;
+			}
+			writes++;
+			values.put(resourceId, Serializer.toJson(data));
+			return true;
+		}
+
+		@Override
+		public synchronized <D> boolean saveAll(Map<String, D> data) {
+			if (throwing) {
+				throw new IllegalStateException("Datastore is down");
+			}
+			if (failing) {
+				return false;
+			}
+			batches++;
+			data.forEach(this::saveData);
+			return true;
+		}
+
+		@Override
+		public synchronized <D> D loadData(String resourceId, Serializer serializer) {
+			String data = values.get(resourceId);
+			return (data == null) ?null :serializer.getData(data, resourceId);
+		}
+
+		@Override
+		public synchronized <D> boolean saveMap(String resourceId, Map<String, D> map) {
+			if (throwing) {
+				throw new IllegalStateException("Datastore is down");
+			}
+			if (failing) {
+				return false;
+			}
+			writes++;
+			Map<String, String> stored = maps.computeIfAbsent(resourceId, k -> new HashMap<>());
+			map.forEach((key, data) -> stored.put(key, Serializer.toJson(data)));
+			return true;
+		}
+
+		@Override
+		public synchronized <D> Map<String, D> loadMap(String resourceId, Serializer serializer) {
+			Map<String, D> result = new HashMap<>();
+			maps.getOrDefault(resourceId, new HashMap<>()).forEach((key, data) ->
+				result.put(key, serializer.getData(data, resourceId)));
+			return result;
+		}
+
+		@Override
+		public synchronized boolean clear(String resourceId) {
+			return values.remove(resourceId) != null | maps.remove(resourceId) != null;
+		}
+	}
+}